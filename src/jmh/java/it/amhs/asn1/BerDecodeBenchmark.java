@@ -0,0 +1,161 @@
+package it.amhs.asn1;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import it.amhs.compliance.SecurityLabelPolicy;
+import it.amhs.service.protocol.p1.P1BerMessageParser;
+
+/**
+ * Compares the copy-per-level traversal used before slice decoding (every nested value
+ * materialized and decoded again) with in-place child decoding on multi-recipient P1 transfers,
+ * and list-based envelope lookups with the {@link BerReader} cursor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BerDecodeBenchmark {
+
+    @Param({"10", "500"})
+    public int recipients;
+
+    private byte[] transfer;
+    private P1BerMessageParser parser;
+
+    @Setup
+    public void setUp() {
+        transfer = buildTransfer(recipients);
+        parser = new P1BerMessageParser(new SecurityLabelPolicy());
+    }
+
+    @Benchmark
+    public long copyingTraversal() {
+        return walkCopying(BerCodec.decodeSingle(transfer));
+    }
+
+    @Benchmark
+    public long sliceTraversal() {
+        return walkSlices(BerCodec.decodeSingle(transfer));
+    }
+
+    @Benchmark
+    public int envelopeLookupByList() {
+        BerTlv envelope = BerCodec.findOptional(BerCodec.decodeChildren(BerCodec.decodeSingle(transfer)), 2, 9).orElseThrow();
+        List<BerTlv> fields = BerCodec.decodeChildren(envelope);
+        int found = 0;
+        for (int tag = 0; tag <= 6; tag++) {
+            if (BerCodec.findOptional(fields, 2, tag).isPresent()) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int envelopeLookupByReader() {
+        BerReader root = BerReader.over(BerCodec.decodeSingle(transfer));
+        root.skipTo(2, 9);
+        int found = 0;
+        for (BerTlv field : root.enter().contextFields(6)) {
+            if (field != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public P1BerMessageParser.ParsedP1Message parseTransfer() {
+        return parser.parse(transfer);
+    }
+
+    private static long walkCopying(BerTlv tlv) {
+        byte[] value = tlv.value();
+        long total = value.length;
+        if (tlv.constructed()) {
+            for (BerTlv child : BerCodec.decodeAll(value)) {
+                total += walkCopying(child);
+            }
+        }
+        return total;
+    }
+
+    private static long walkSlices(BerTlv tlv) {
+        long total = tlv.length();
+        if (tlv.constructed()) {
+            for (BerTlv child : BerCodec.decodeChildren(tlv)) {
+                total += walkSlices(child);
+            }
+        }
+        return total;
+    }
+
+    static byte[] buildTransfer(int recipientCount) {
+        ByteArrayOutputStream perRecipient = new ByteArrayOutputStream();
+        for (int i = 0; i < recipientCount; i++) {
+            perRecipient.writeBytes(sequence(concat(
+                contextPrimitive(0, String.format("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LI%06d/CN=OPS", i)),
+                contextPrimitive(1, new byte[] {0x01})
+            )));
+        }
+
+        byte[] trace = concat(
+            sequence(contextPrimitive(0, "MTA1")),
+            sequence(contextPrimitive(0, "MTA2"))
+        );
+
+        byte[] envelope = concat(
+            contextConstructed(0, concat(
+                contextPrimitive(0, "MTS-BENCH-0001"),
+                contextPrimitive(8, "20260228123045Z")
+            )),
+            contextConstructed(1, perRecipient.toByteArray()),
+            contextConstructed(2, trace),
+            contextConstructed(3, BerCodec.encode(new BerTlv(0, false, 6, 0, 9, new byte[] {
+                0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x07, 0x01
+            }))),
+            contextPrimitive(4, "LIRRZQZX")
+        );
+
+        byte[] body = "ZCZC BENCHMARK BODY ".repeat(200).getBytes(StandardCharsets.UTF_8);
+        return sequence(concat(
+            contextPrimitive(2, body),
+            contextConstructed(9, envelope)
+        ));
+    }
+
+    private static byte[] sequence(byte[] value) {
+        return BerCodec.encode(new BerTlv(0, true, 16, 0, value.length, value));
+    }
+
+    private static byte[] contextConstructed(int tag, byte[] value) {
+        return BerCodec.encode(new BerTlv(2, true, tag, 0, value.length, value));
+    }
+
+    private static byte[] contextPrimitive(int tag, String value) {
+        return contextPrimitive(tag, value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] contextPrimitive(int tag, byte[] value) {
+        return BerCodec.encode(new BerTlv(2, false, tag, 0, value.length, value));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+package it.amhs.asn1;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares building a nested recipient list by concatenating per-level arrays with a single
+ * {@link BerWriter} pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BerEncodeBenchmark {
+
+    @Param({"10", "500"})
+    public int recipients;
+
+    @Benchmark
+    public byte[] concatenating() {
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        for (int i = 0; i < recipients; i++) {
+            byte[] address = recipient(i).getBytes(StandardCharsets.US_ASCII);
+            byte[] field = BerCodec.encode(new BerTlv(2, false, 0, 0, address.length, address));
+            byte[] info = BerCodec.encode(new BerTlv(0, true, 16, 0, field.length, field));
+            list.writeBytes(info);
+        }
+        byte[] recipientList = list.toByteArray();
+        byte[] field = BerCodec.encode(new BerTlv(2, true, 1, 0, recipientList.length, recipientList));
+        byte[] envelope = BerCodec.encode(new BerTlv(2, true, 9, 0, field.length, field));
+        return BerCodec.encode(new BerTlv(0, true, 16, 0, envelope.length, envelope));
+    }
+
+    @Benchmark
+    public byte[] singlePass() {
+        BerWriter writer = new BerWriter(64 + 48 * recipients);
+        writer.startConstructed(0, 16).startConstructed(2, 9).startConstructed(2, 1);
+        for (int i = 0; i < recipients; i++) {
+            writer.startConstructed(0, 16)
+                .writeString(2, 0, recipient(i), StandardCharsets.US_ASCII)
+                .end();
+        }
+        return writer.end().end().end().toByteArray();
+    }
+
+    private static String recipient(int index) {
+        return String.format("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LI%06d", index);
+    }
+}
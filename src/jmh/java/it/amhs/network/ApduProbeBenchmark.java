@@ -0,0 +1,113 @@
+package it.amhs.network;
+
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import it.amhs.service.protocol.p22.P22InterPersonalMessageCodec;
+import it.amhs.service.protocol.p22.P22ProtocolCodec;
+import it.amhs.service.protocol.p22.P22RoseCodec;
+import it.amhs.service.protocol.p3.P3BindCodec;
+import it.amhs.service.protocol.p3.P3ProtocolCodec;
+import it.amhs.service.protocol.p3.P3ReleaseCodec;
+import it.amhs.service.protocol.p3.P3SubmitCodec;
+
+/**
+ * Cost of probing application APDUs that the gateway sees after the bind. Control traffic (release
+ * and ACSE-like control PDUs, truncated BER) is mostly rejected by the strict ROSE decode, so
+ * {@code throwingStrictDecode} pays for an exception per PDU where {@code tryStrictDecode} returns
+ * a reason. {@code codecProbes} runs the full P22 and P3 probes the dispatch path uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApduProbeBenchmark {
+
+    private static final String[] CONTROL = {
+        // P22 release-like control APDU
+        "61 0C 30 0A 02 01 01 A0 05 62 03 80 01 00",
+        // P3 release request
+        "A6 02 05 00",
+        // Truncated BER
+        "30 05 02",
+        // ROSE reject
+        "A4 06 02 01 01 80 01 00"
+    };
+
+    private static final String[] DATA = {
+        "A1 0A 02 01 01 02 01 03 30 02 05 00",
+        "A1 0D 02 01 02 02 01 03 30 05 04 03 41 42 43"
+    };
+
+    @Param({"control", "data", "mixed"})
+    public String traffic;
+
+    private P22RoseCodec roseCodec;
+    private P22ProtocolCodec p22ProtocolCodec;
+    private P3ProtocolCodec p3ProtocolCodec;
+    private byte[][] apdus;
+
+    @Setup
+    public void setUp() {
+        roseCodec = new P22RoseCodec();
+        p22ProtocolCodec = new P22ProtocolCodec(roseCodec, new P22InterPersonalMessageCodec());
+        p3ProtocolCodec = new P3ProtocolCodec(new P3BindCodec(), new P3SubmitCodec(), new P3ReleaseCodec(), null);
+
+        String[] samples = switch (traffic) {
+            case "control" -> CONTROL;
+            case "data" -> DATA;
+            default -> new String[] {CONTROL[0], DATA[0], CONTROL[1], DATA[1], CONTROL[2], CONTROL[3]};
+        };
+        HexFormat hex = HexFormat.ofDelimiter(" ");
+        apdus = new byte[samples.length][];
+        for (int i = 0; i < samples.length; i++) {
+            apdus[i] = hex.parseHex(samples[i]);
+        }
+    }
+
+    @Benchmark
+    public int throwingStrictDecode() {
+        int decoded = 0;
+        for (byte[] apdu : apdus) {
+            try {
+                roseCodec.decodeInvoke(apdu);
+                decoded++;
+            } catch (RuntimeException ignored) {
+            }
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public int tryStrictDecode() {
+        int decoded = 0;
+        for (byte[] apdu : apdus) {
+            if (roseCodec.tryDecodeInvoke(apdu).isDecoded()) {
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public int codecProbes() {
+        int supported = 0;
+        for (byte[] apdu : apdus) {
+            if (p22ProtocolCodec.probe(apdu).supported()) {
+                supported++;
+            }
+            if (p3ProtocolCodec.probe(apdu).supported()) {
+                supported++;
+            }
+        }
+        return supported;
+    }
+}
@@ -0,0 +1,93 @@
+package it.amhs.network;
+
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import it.amhs.service.protocol.acse.AcseAssociationProtocol;
+import it.amhs.service.protocol.p22.P22InterPersonalMessageCodec;
+import it.amhs.service.protocol.p22.P22ProtocolCodec;
+import it.amhs.service.protocol.p22.P22RoseCodec;
+import it.amhs.service.protocol.p3.P3BindCodec;
+import it.amhs.service.protocol.p3.P3ProtocolCodec;
+import it.amhs.service.protocol.p3.P3ReleaseCodec;
+import it.amhs.service.protocol.p3.P3SubmitCodec;
+
+/**
+ * Per-PDU cost of the P3 gateway dispatch decision, as {@link P3GatewayServer#planDispatch} makes
+ * it for every reassembled payload: carrier classification, unwrapping down to the application
+ * APDU and the post-bind probes, plus the codec probe the chosen handler receives. Handlers
+ * themselves are not run. {@code classify} shares one decoded layer per array across the probes;
+ * {@code classifyRedecoding} is the baseline where every probe decodes its octets again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GatewayDispatchBenchmark {
+
+    // Session CONNECT carrying presentation CP, AARQ and the P3 bind argument.
+    private static final String BIND_SPDU =
+        "0D FF 01 00 01 26 0A 13 04 11 54 53 4E 42 4B 31 30 32 37 35 2E 31 35 64 38 2E 31 "
+            + "0B 0F 17 0D 32 36 30 34 32 35 31 36 32 39 31 30 5A 05 0C 13 01 00 15 04 1F FD 1F FD "
+            + "16 01 01 14 02 00 02 C1 C4 31 81 C1 A0 03 80 01 01 A2 81 B9 A4 55 30 0F 02 01 01 "
+            + "06 04 52 01 00 01 30 04 06 02 51 01 30 0F 02 01 03 06 04 56 00 02 01 30 04 06 02 "
+            + "51 01 30 0F 02 01 05 06 04 56 00 02 02 30 04 06 02 51 01 30 0F 02 01 07 06 04 56 "
+            + "00 02 06 30 04 06 02 51 01 30 0F 02 01 09 06 04 56 00 02 0B 30 04 06 02 51 01 "
+            + "61 60 30 5E 02 01 01 A0 59 60 57 A1 06 06 04 56 00 01 00 BE 4D 28 4B 06 02 51 01 "
+            + "02 01 09 A0 42 B0 40 31 3E 60 30 30 2E 61 04 13 02 4B 48 62 06 13 04 49 43 41 4F "
+            + "A2 07 13 05 4C 6F 63 61 6C 83 09 74 65 63 68 6E 6F 73 6B 79 A6 0A 13 08 56 44 "
+            + "54 49 41 53 52 56 A2 0A 16 08 63 68 61 6E 67 65 69 74";
+
+    // Session DATA TRANSFER carrying presentation user data and a ROSE invoke.
+    private static final String ROSE_INVOKE_SPDU =
+        "01 00 01 03 19 01 03 61 13 30 11 02 01 03 A0 0C A1 0A 02 01 01 02 01 03 30 02 05 00";
+
+    @Param({"bind", "roseInvoke"})
+    public String pdu;
+
+    private P3GatewayServer server;
+    private P3ProtocolCodec p3ProtocolCodec;
+    private P22ProtocolCodec p22ProtocolCodec;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        p3ProtocolCodec = new P3ProtocolCodec(new P3BindCodec(), new P3SubmitCodec(), new P3ReleaseCodec(), null);
+        p22ProtocolCodec = new P22ProtocolCodec(new P22RoseCodec(), new P22InterPersonalMessageCodec());
+        server = new P3GatewayServer(
+            "127.0.0.1", 102, 1, 0, 0, false, false, false, "STANDARD_P3", 4 * 1024 * 1024,
+            null, null, p3ProtocolCodec, p22ProtocolCodec, new AcseAssociationProtocol()
+        );
+        payload = HexFormat.ofDelimiter(" ").parseHex("bind".equals(pdu) ? BIND_SPDU : ROSE_INVOKE_SPDU);
+        if (classify() == null || classifyRedecoding() == null) {
+            throw new IllegalStateException("Sample " + pdu + " does not reach an application APDU");
+        }
+    }
+
+    @Benchmark
+    public Object classify() {
+        return plan(new InboundFrame(p3ProtocolCodec, p22ProtocolCodec));
+    }
+
+    @Benchmark
+    public Object classifyRedecoding() {
+        return plan(new InboundFrame(p3ProtocolCodec, p22ProtocolCodec, false));
+    }
+
+    private Object plan(InboundFrame inbound) {
+        P3GatewayServer.Dispatch dispatch = server.planDispatch(inbound, payload, null);
+        return switch (dispatch.action()) {
+            case P22 -> dispatch.apdu().p22Probe();
+            case P3 -> dispatch.apdu().p3Probe();
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package it.amhs.service.address;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the previous regex-based O/R address parse with the single-pass scanner, uncached and
+ * through the shared cache, on a typical ICAO AMHS recipient.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ORAddressParseBenchmark {
+
+    private static final String ADDRESS = "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX/CN=OPERATIONS";
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("(?:^|[\\s/;,])\\s*([A-Za-z][A-Za-z0-9-]*)\\s*=\\s*(\"(?:[^\"]|\\\\\")*\"|[^/;,]*)");
+    private static final Pattern PRINTABLE_STRING = Pattern.compile("^[A-Za-z0-9 '(),\\-.:=?]*$");
+    private static final List<Character> DISALLOWED_VALUE_CHARS = List.of('/', '+', '"');
+
+    @Benchmark
+    public ORAddress regex() {
+        Map<String, String> values = new LinkedHashMap<>();
+        Matcher matcher = ATTRIBUTE_PATTERN.matcher(ADDRESS.trim());
+        while (matcher.find()) {
+            String key = matcher.group(1).trim().toUpperCase();
+            String value = matcher.group(2).trim();
+            if ("C".equals(key) && !value.matches("^[A-Z]{2}$|^\\d{3}$")) {
+                throw new IllegalArgumentException("O/R attribute C must be alpha-2 or numeric-3 country code");
+            }
+            for (char ch : value.toCharArray()) {
+                if (DISALLOWED_VALUE_CHARS.contains(ch)) {
+                    throw new IllegalArgumentException("Disallowed character: " + ch);
+                }
+            }
+            if (!PRINTABLE_STRING.matcher(value).matches()) {
+                throw new IllegalArgumentException("O/R attribute " + key + " must use PrintableString characters");
+            }
+            values.put(key, value);
+        }
+        return ORAddress.of(values);
+    }
+
+    @Benchmark
+    public ORAddress scanner() {
+        return ORAddress.parseUncached(ADDRESS);
+    }
+
+    @Benchmark
+    public ORAddress cached() {
+        return ORAddress.parse(ADDRESS);
+    }
+}
@@ -0,0 +1,89 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Ingest throughput of the striped executor for a burst of messages that all go to one national
+ * PRMD, as is typical for a single-domain deployment. Each message stands in for a store with a
+ * fixed database round trip. {@code recipient} stripes the way {@link RFC1006Service} does;
+ * {@code prmd} stripes by routing domain only, so the whole burst lands on one worker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestStripingBenchmark {
+
+    private static final int MESSAGES = 256;
+    private static final int RECIPIENTS = 64;
+    private static final long STORE_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private StripedPriorityExecutor executor;
+    private String[] recipients;
+
+    @Setup
+    public void setUp() {
+        executor = new StripedPriorityExecutor(workers, "bench-ingest-");
+        recipients = new String[RECIPIENTS];
+        for (int i = 0; i < RECIPIENTS; i++) {
+            recipients[i] = "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LI" + (char) ('A' + i % 26) + (char) ('A' + i / 26)
+                + "/OU1=LI" + (char) ('A' + i % 26) + (char) ('A' + i / 26) + "ZQZX";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void recipient() throws InterruptedException {
+        ingest(false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void prmd() throws InterruptedException {
+        ingest(true);
+    }
+
+    private void ingest(boolean byDomain) throws InterruptedException {
+        CountDownLatch stored = new CountDownLatch(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            String recipient = recipients[i % RECIPIENTS];
+            String key = byDomain ? "PRMD=ENAV" : RFC1006Service.ingestStripeKey(recipient);
+            executor.execute(key, new Store(i % 5, stored));
+        }
+        stored.await();
+    }
+
+    private record Store(int rank, CountDownLatch stored) implements Runnable, Comparable<Store> {
+
+        @Override
+        public void run() {
+            LockSupport.parkNanos(STORE_NANOS);
+            stored.countDown();
+        }
+
+        @Override
+        public int compareTo(Store other) {
+            return Integer.compare(rank, other.rank);
+        }
+    }
+}
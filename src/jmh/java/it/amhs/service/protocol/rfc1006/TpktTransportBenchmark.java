@@ -0,0 +1,151 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loopback round trip of one TSDU through a byte echo peer. {@code perFrameWrites} frames the way
+ * the RFC1006 stacks did before {@link TpktTransport}: unbuffered socket streams, a copied array
+ * and a write per DT, header octets read one call at a time and Nagle left on. {@code transport}
+ * uses the shared transport. Both segment at 16384 octets of user data; the average time per
+ * operation is the round-trip latency and its inverse the TSDU throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TpktTransportBenchmark {
+
+    private static final int MAX_USER_DATA = TpktTransport.DEFAULT_MAX_USER_DATA;
+
+    @Param({"256", "4096", "65536"})
+    public int payloadSize;
+
+    private ServerSocket echoPeer;
+    private Socket perFrameSocket;
+    private InputStream perFrameIn;
+    private OutputStream perFrameOut;
+    private Socket transportSocket;
+    private TpktTransport transport;
+    private TsduReassemblyBuffer tsdu;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        echoPeer = new ServerSocket(0, 4, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptEchoClients, "tpkt-echo-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        payload = new byte[payloadSize];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        perFrameSocket = new Socket(InetAddress.getLoopbackAddress(), echoPeer.getLocalPort());
+        perFrameSocket.setTcpNoDelay(false);
+        perFrameIn = perFrameSocket.getInputStream();
+        perFrameOut = perFrameSocket.getOutputStream();
+
+        transportSocket = new Socket(InetAddress.getLoopbackAddress(), echoPeer.getLocalPort());
+        transport = TpktTransport.open(transportSocket, false);
+        tsdu = new TsduReassemblyBuffer(MAX_USER_DATA, 256 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        perFrameSocket.close();
+        transportSocket.close();
+        echoPeer.close();
+    }
+
+    @Benchmark
+    public int perFrameWrites() throws IOException {
+        int offset = 0;
+        do {
+            int chunk = Math.min(MAX_USER_DATA, payload.length - offset);
+            boolean endOfTsdu = offset + chunk >= payload.length;
+            byte[] frame = new byte[7 + chunk];
+            frame[0] = 0x03;
+            frame[2] = (byte) (frame.length >> 8);
+            frame[3] = (byte) frame.length;
+            frame[4] = 0x02;
+            frame[5] = TpktTransport.PDU_DT;
+            frame[6] = endOfTsdu ? (byte) 0x80 : 0x00;
+            System.arraycopy(payload, offset, frame, 7, chunk);
+            perFrameOut.write(frame);
+            offset += chunk;
+        } while (offset < payload.length);
+        perFrameOut.flush();
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        boolean endOfTsdu = false;
+        while (!endOfTsdu) {
+            int version = perFrameIn.read();
+            int reserved = perFrameIn.read();
+            int lengthHi = perFrameIn.read();
+            int lengthLo = perFrameIn.read();
+            if ((version | reserved | lengthHi | lengthLo) < 0) {
+                throw new EOFException("Echo peer closed the connection");
+            }
+            byte[] tpdu = perFrameIn.readNBytes(((lengthHi << 8) | lengthLo) - 4);
+            endOfTsdu = (tpdu[2] & 0x80) != 0;
+            response.write(tpdu, 3, tpdu.length - 3);
+        }
+        return response.size();
+    }
+
+    @Benchmark
+    public int transport() throws IOException {
+        transport.sendData(payload);
+        tsdu.reset();
+        TpktTransport.Frame frame;
+        do {
+            frame = transport.readFrame();
+            transport.readUserData(tsdu);
+        } while (!frame.endOfTsdu());
+        return tsdu.size();
+    }
+
+    private void acceptEchoClients() {
+        while (!echoPeer.isClosed()) {
+            try {
+                Socket client = echoPeer.accept();
+                client.setTcpNoDelay(true);
+                Thread echo = new Thread(() -> echo(client), "tpkt-echo");
+                echo.setDaemon(true);
+                echo.start();
+            } catch (IOException ex) {
+                return;
+            }
+        }
+    }
+
+    private static void echo(Socket client) {
+        byte[] buffer = new byte[64 * 1024];
+        try (client; InputStream in = client.getInputStream(); OutputStream out = client.getOutputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException ignored) {
+            // benchmark finished
+        }
+    }
+}
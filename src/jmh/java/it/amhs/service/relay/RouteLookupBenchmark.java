@@ -0,0 +1,83 @@
+package it.amhs.service.relay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import it.amhs.service.address.ORAddress;
+
+/**
+ * Compares the compiled route trie with a linear scan of the same table, for tables the size of
+ * a national management domain. Routes are split between PRMD-level and organisation-level
+ * entries and looked up with recipients spread across the table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouteLookupBenchmark {
+
+    private static final int LOOKUPS = 64;
+
+    @Param({"100", "10000", "50000"})
+    public int routes;
+
+    private RouteTrie trie;
+    private List<RouteTrie.Route> table;
+    private ORAddress[] recipients;
+
+    @Setup
+    public void setUp() {
+        table = new ArrayList<>(routes);
+        for (int i = 0; i < routes; i++) {
+            String criteria = i % 2 == 0
+                ? "/C=IT/ADMD=ICAO/PRMD=P" + (i / 2)
+                : "/C=IT/ADMD=ICAO/PRMD=P" + (i / 2) + "/O=ORG" + i;
+            table.add(new RouteTrie.Route(ORAddress.parse(criteria).attributes(), List.of("mta" + i + ":102"), i));
+        }
+        trie = RouteTrie.compile(table);
+
+        recipients = new ORAddress[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            int route = (int) ((long) i * routes / LOOKUPS) | 1;
+            recipients[i] = ORAddress.parse("/C=IT/ADMD=ICAO/PRMD=P" + (route / 2) + "/O=ORG" + route + "/CN=OPS");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int trie() {
+        int found = 0;
+        for (ORAddress recipient : recipients) {
+            found += trie.find(recipient).order();
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int linearScan() {
+        int found = 0;
+        for (ORAddress recipient : recipients) {
+            Map<String, String> attributes = recipient.attributes();
+            for (RouteTrie.Route route : table) {
+                if (route.criteria().entrySet().stream()
+                    .allMatch(e -> e.getValue().equalsIgnoreCase(attributes.getOrDefault(e.getKey(), "")))) {
+                    found += route.order();
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
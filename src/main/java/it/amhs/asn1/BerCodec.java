@@ -1,6 +1,5 @@
 package it.amhs.asn1;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -15,42 +14,110 @@ public final class BerCodec {
     }
 
     public static List<BerTlv> decodeAll(byte[] payload) {
+        return decodeAll(payload, 0, payload.length);
+    }
+
+    /**
+     * Decodes consecutive TLVs in {@code buffer[offset, offset + length)}. The returned TLVs
+     * share {@code buffer} instead of copying their values.
+     */
+    public static List<BerTlv> decodeAll(byte[] buffer, int offset, int length) {
+        checkRange(buffer, offset, length);
         List<BerTlv> result = new ArrayList<>();
-        int offset = 0;
-        while (offset < payload.length) {
-            BerDecodeResult decoded = decodeAt(payload, offset);
-            result.add(decoded.tlv());
-            offset += decoded.totalLength();
+        int limit = offset + length;
+        int index = offset;
+        while (index < limit) {
+            BerTlv decoded = decodeAt(buffer, index, limit);
+            result.add(decoded);
+            index += decoded.encodedLength();
         }
         return result;
     }
 
+    /**
+     * Decodes the children of a constructed TLV in place, without materializing its value.
+     */
+    public static List<BerTlv> decodeChildren(BerTlv parent) {
+        return decodeAll(parent.buffer(), parent.valueOffset(), parent.length());
+    }
+
+    /**
+     * Decodes the first TLV carried in the value of {@code parent}, e.g. an explicitly tagged field.
+     */
+    public static BerTlv decodeNested(BerTlv parent) {
+        return decodeSingle(parent.buffer(), parent.valueOffset(), parent.length());
+    }
+
     public static BerTlv decodeSingle(byte[] payload) {
         if (payload == null || payload.length == 0)
             throw new IllegalArgumentException("Empty ASN.1 BER payload");
-        return decodeAt(payload, 0).tlv();
+        return decodeAt(payload, 0, payload.length);
+    }
+
+    public static BerTlv decodeSingle(byte[] buffer, int offset, int length) {
+        if (buffer == null || length == 0)
+            throw new IllegalArgumentException("Empty ASN.1 BER payload");
+        checkRange(buffer, offset, length);
+        return decodeAt(buffer, offset, offset + length);
+    }
+
+    /**
+     * Like {@link #decodeSingle(byte[])}, but reports malformed input as a rejection instead of
+     * throwing.
+     */
+    public static DecodeResult<BerTlv> tryDecodeSingle(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            return DecodeResult.rejected("Empty ASN.1 BER payload");
+        }
+        Failure failure = new Failure();
+        BerTlv decoded = decodeAt(payload, 0, payload.length, failure);
+        return decoded == null ? DecodeResult.rejected(failure.reason) : DecodeResult.decoded(decoded);
+    }
+
+    /**
+     * Like {@link #decodeChildren(BerTlv)}, but reports malformed input as a rejection instead of
+     * throwing.
+     */
+    public static DecodeResult<List<BerTlv>> tryDecodeChildren(BerTlv parent) {
+        Failure failure = new Failure();
+        List<BerTlv> result = new ArrayList<>();
+        byte[] buffer = parent.buffer();
+        int limit = parent.valueOffset() + parent.length();
+        int index = parent.valueOffset();
+        while (index < limit) {
+            BerTlv decoded = decodeAt(buffer, index, limit, failure);
+            if (decoded == null) {
+                return DecodeResult.rejected(failure.reason);
+            }
+            result.add(decoded);
+            index += decoded.encodedLength();
+        }
+        return DecodeResult.decoded(result);
     }
 
     public static byte[] encode(BerTlv tlv) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        writeTag(out, tlv.tagClass(), tlv.constructed(), tlv.tagNumber());
-        writeLength(out, tlv.length());
-        out.writeBytes(tlv.value());
-        return out.toByteArray();
+        byte[] out = new byte[BerWriter.tagSize(tlv.tagNumber()) + BerWriter.lengthSize(tlv.length()) + tlv.length()];
+        int offset = BerWriter.writeTag(out, 0, tlv.tagClass(), tlv.constructed(), tlv.tagNumber());
+        offset = BerWriter.writeLength(out, offset, tlv.length());
+        System.arraycopy(tlv.buffer(), tlv.valueOffset(), out, offset, tlv.length());
+        return out;
     }
 
     public static byte[] encodeAll(List<BerTlv> values) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BerWriter writer = new BerWriter();
         for (BerTlv tlv : values) {
-            out.writeBytes(encode(tlv));
+            writer.writeTlv(tlv);
         }
-        return out.toByteArray();
+        return writer.toByteArray();
     }
 
     public static Optional<BerTlv> findOptional(List<BerTlv> values, int tagClass, int tagNumber) {
-        return values.stream()
-            .filter(v -> v.tagClass() == tagClass && v.tagNumber() == tagNumber)
-            .findFirst();
+        for (BerTlv value : values) {
+            if (value.tagClass() == tagClass && value.tagNumber() == tagNumber) {
+                return Optional.of(value);
+            }
+        }
+        return Optional.empty();
     }
 
     public static BerTlv choose(List<BerTlv> values, int... tagNumbers) {
@@ -64,9 +131,27 @@ public final class BerCodec {
         throw new IllegalArgumentException("No CHOICE arm found for tags " + java.util.Arrays.toString(tagNumbers));
     }
 
-    private static BerDecodeResult decodeAt(byte[] payload, int offset) {
-        if (offset >= payload.length) {
-            throw new IllegalArgumentException("Missing ASN.1 BER tag");
+    static void checkRange(byte[] buffer, int offset, int length) {
+        if (buffer == null || offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IllegalArgumentException("BER range exceeds available bytes");
+        }
+    }
+
+    /**
+     * Decodes the TLV starting at {@code offset}; its encoding must end at or before {@code limit}.
+     */
+    static BerTlv decodeAt(byte[] payload, int offset, int limit) {
+        return decodeAt(payload, offset, limit, null);
+    }
+
+    /**
+     * Core of {@link #decodeAt(byte[], int, int)}. With a {@code failure} sink, malformed input
+     * records the reason there and yields {@code null} instead of throwing, so probes can reject
+     * input without paying for an exception.
+     */
+    private static BerTlv decodeAt(byte[] payload, int offset, int limit, Failure failure) {
+        if (offset >= limit) {
+            return reject(failure, "Missing ASN.1 BER tag");
         }
 
         int index = offset;
@@ -78,8 +163,8 @@ public final class BerCodec {
             tagNumber = 0;
             boolean sawAtLeastOne = false;
             while (true) {
-                if (index >= payload.length) {
-                    throw new IllegalArgumentException("Truncated high-tag-number form");
+                if (index >= limit) {
+                    return reject(failure, "Truncated high-tag-number form");
                 }
                 int octet = payload[index++] & 0xFF;
                 sawAtLeastOne = true;
@@ -89,92 +174,131 @@ public final class BerCodec {
                 }
             }
             if (!sawAtLeastOne) {
-                throw new IllegalArgumentException("Invalid high-tag-number form");
+                return reject(failure, "Invalid high-tag-number form");
             }
         }
 
-        if (index >= payload.length) {
-            throw new IllegalArgumentException("Missing ASN.1 BER length");
+        if (index >= limit) {
+            return reject(failure, "Missing ASN.1 BER length");
         }
 
         int firstLengthOctet = payload[index++] & 0xFF;
-        int valueLength;
-        if ((firstLengthOctet & 0x80) == 0) {
-            valueLength = firstLengthOctet;
-        } else {
-            int numberOfLengthOctets = firstLengthOctet & 0x7F;
-            if (numberOfLengthOctets == 0) {
-                throw new IllegalArgumentException("Indefinite BER length is not supported");
-            }
-            if (numberOfLengthOctets > 4) {
-                throw new IllegalArgumentException("BER length too large");
+        if (firstLengthOctet == 0x80) {
+            if (!constructed) {
+                return reject(failure, "Indefinite BER length requires a constructed encoding");
             }
-            if (index + numberOfLengthOctets > payload.length) {
-                throw new IllegalArgumentException("Truncated BER length");
+            int endOfContents = findEndOfContents(payload, index, limit, failure);
+            if (endOfContents < 0) {
+                return null;
             }
-            valueLength = 0;
-            for (int i = 0; i < numberOfLengthOctets; i++) {
-                valueLength = (valueLength << 8) | (payload[index++] & 0xFF);
+            return BerTlv.view(tagClass, true, tagNumber, index - offset, endOfContents - index, payload, index, true);
+        }
+
+        long valueLength = firstLengthOctet;
+        if ((firstLengthOctet & 0x80) != 0) {
+            int numberOfLengthOctets = firstLengthOctet & 0x7F;
+            valueLength = readLongLength(payload, index, limit, numberOfLengthOctets, failure);
+            if (valueLength < 0) {
+                return null;
             }
+            index += numberOfLengthOctets;
         }
 
-        if (valueLength < 0 || index + valueLength > payload.length) {
-            throw new IllegalArgumentException("BER value length exceeds available bytes");
+        if (valueLength > limit - index) {
+            return reject(failure, "BER value length exceeds available bytes");
         }
 
-        byte[] value = java.util.Arrays.copyOfRange(payload, index, index + valueLength);
-        int headerLength = index - offset;
-        int totalLength = headerLength + valueLength;
-        return new BerDecodeResult(new BerTlv(tagClass, constructed, tagNumber, headerLength, valueLength, value), totalLength);
+        return BerTlv.view(tagClass, constructed, tagNumber, index - offset, (int) valueLength, payload, index, false);
     }
 
-    private static void writeTag(ByteArrayOutputStream out, int tagClass, boolean constructed, int tagNumber) {
-        int firstOctet = (tagClass & 0x03) << 6;
-        if (constructed) {
-            firstOctet |= 0x20;
-        }
-        if (tagNumber < 31) {
-            out.write(firstOctet | tagNumber);
-            return;
-        }
-
-        out.write(firstOctet | 0x1F);
-        int[] chunks = new int[6];
-        int chunkCount = 0;
-        int number = tagNumber;
-        do {
-            chunks[chunkCount++] = number & 0x7F;
-            number >>= 7;
-        } while (number > 0);
+    /**
+     * Returns the offset of the end-of-contents octets closing the indefinite-length element whose
+     * content starts at {@code contentOffset}, or -1 after recording a failure. Nested elements are
+     * skipped header by header with a depth counter rather than by recursion, so deeply nested input
+     * cannot exhaust the stack.
+     */
+    private static int findEndOfContents(byte[] payload, int contentOffset, int limit, Failure failure) {
+        int index = contentOffset;
+        int depth = 1;
+        while (index < limit) {
+            int tagOctet = payload[index++] & 0xFF;
+            if (tagOctet == 0x00) {
+                if (index >= limit || payload[index] != 0x00) {
+                    return rejectOffset(failure, "Invalid BER end-of-contents octets");
+                }
+                if (--depth == 0) {
+                    return index - 1;
+                }
+                index++;
+                continue;
+            }
+            if ((tagOctet & 0x1F) == 0x1F) {
+                do {
+                    if (index >= limit) {
+                        return rejectOffset(failure, "Truncated high-tag-number form");
+                    }
+                } while ((payload[index++] & 0x80) != 0);
+            }
+            if (index >= limit) {
+                return rejectOffset(failure, "Missing ASN.1 BER length");
+            }
 
-        for (int i = chunkCount - 1; i >= 0; i--) {
-            int octet = chunks[i];
-            if (i != 0) {
-                octet |= 0x80;
+            int lengthOctet = payload[index++] & 0xFF;
+            if (lengthOctet == 0x80) {
+                if ((tagOctet & 0x20) == 0) {
+                    return rejectOffset(failure, "Indefinite BER length requires a constructed encoding");
+                }
+                depth++;
+                continue;
+            }
+            long valueLength = lengthOctet;
+            if ((lengthOctet & 0x80) != 0) {
+                int numberOfLengthOctets = lengthOctet & 0x7F;
+                valueLength = readLongLength(payload, index, limit, numberOfLengthOctets, failure);
+                if (valueLength < 0) {
+                    return -1;
+                }
+                index += numberOfLengthOctets;
+            }
+            if (valueLength > limit - index) {
+                return rejectOffset(failure, "BER value length exceeds available bytes");
             }
-            out.write(octet);
+            index += (int) valueLength;
         }
+        return rejectOffset(failure, "Missing BER end-of-contents octets");
     }
 
-    private static void writeLength(ByteArrayOutputStream out, int length) {
-        if (length < 128) {
-            out.write(length);
-            return;
+    /**
+     * Reads a long-form length as an unsigned value, or returns -1 after recording a failure.
+     */
+    private static long readLongLength(byte[] payload, int index, int limit, int numberOfLengthOctets, Failure failure) {
+        if (numberOfLengthOctets > 4) {
+            return rejectOffset(failure, "BER length too large");
         }
-
-        int temp = length;
-        int bytes = 0;
-        byte[] lengthBuffer = new byte[4];
-        while (temp > 0) {
-            lengthBuffer[bytes++] = (byte) (temp & 0xFF);
-            temp >>= 8;
+        if (index + numberOfLengthOctets > limit) {
+            return rejectOffset(failure, "Truncated BER length");
+        }
+        long valueLength = 0;
+        for (int i = 0; i < numberOfLengthOctets; i++) {
+            valueLength = (valueLength << 8) | (payload[index + i] & 0xFF);
         }
-        out.write(0x80 | bytes);
-        for (int i = bytes - 1; i >= 0; i--) {
-            out.write(lengthBuffer[i]);
+        return valueLength;
+    }
+
+    private static BerTlv reject(Failure failure, String reason) {
+        rejectOffset(failure, reason);
+        return null;
+    }
+
+    private static int rejectOffset(Failure failure, String reason) {
+        if (failure == null) {
+            throw new IllegalArgumentException(reason);
         }
+        failure.reason = reason;
+        return -1;
     }
 
-    private record BerDecodeResult(BerTlv tlv, int totalLength) {
+    private static final class Failure {
+        private String reason;
     }
 }
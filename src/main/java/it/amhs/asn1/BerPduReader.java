@@ -0,0 +1,158 @@
+package it.amhs.asn1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads complete BER-encoded PDUs from a stream, one top-level TLV at a time.
+ * <p>
+ * Definite and indefinite lengths are both accepted. Octets are appended to a single buffer as
+ * they arrive; indefinite-length elements are delimited by tracking open constructed elements
+ * until their end-of-contents octets, so the value is never staged and copied a second time.
+ * A PDU larger than {@code maxPduLength} octets is rejected before it is buffered, and a declared
+ * length only allocates as its octets are actually received.
+ * <p>
+ * For a definite-length PDU the buffer grows towards exactly the declared size and is handed to
+ * the caller as is, so a large PDU is held once. An indefinite-length PDU has no size up front and
+ * is trimmed with one copy when its buffer is larger than the encoding.
+ */
+public final class BerPduReader {
+
+    private static final int INITIAL_CAPACITY = 4_096;
+    private static final int READ_CHUNK = 65_536;
+    private static final int RETAINED_CAPACITY = 65_536;
+
+    private final InputStream input;
+    private final int maxPduLength;
+    private byte[] scratch = new byte[INITIAL_CAPACITY];
+    private byte[] buffer;
+    private int size;
+    private int limit;
+
+    public BerPduReader(InputStream input, int maxPduLength) {
+        if (maxPduLength < 2) {
+            throw new IllegalArgumentException("BER PDU ceiling must be >= 2 octets");
+        }
+        this.input = input;
+        this.maxPduLength = maxPduLength;
+    }
+
+    /**
+     * Returns the next PDU including its header and any end-of-contents octets, or {@code null}
+     * if the stream ends before the first octet of a PDU.
+     */
+    public byte[] read() throws IOException {
+        buffer = scratch;
+        size = 0;
+        limit = maxPduLength;
+        int depth = 0;
+        do {
+            int tagOctet = input.read();
+            if (tagOctet < 0) {
+                if (size == 0) {
+                    return null;
+                }
+                throw new EOFException("Truncated BER encoding");
+            }
+            append(tagOctet);
+            if ((tagOctet & 0x1F) == 0x1F) {
+                int octet;
+                do {
+                    octet = readOctet("Truncated high-tag-number form");
+                    append(octet);
+                } while ((octet & 0x80) != 0);
+            }
+
+            int lengthOctet = readOctet("Missing BER length octet");
+            append(lengthOctet);
+            if (depth > 0 && tagOctet == 0x00 && lengthOctet == 0x00) {
+                depth--;
+                continue;
+            }
+            if (lengthOctet == 0x80) {
+                if ((tagOctet & 0x20) == 0) {
+                    throw new IllegalArgumentException("Indefinite BER length requires a constructed encoding");
+                }
+                depth++;
+                continue;
+            }
+
+            long valueLength = lengthOctet;
+            if ((lengthOctet & 0x80) != 0) {
+                int numberOfLengthOctets = lengthOctet & 0x7F;
+                if (numberOfLengthOctets > 4) {
+                    throw new IllegalArgumentException("BER length too large");
+                }
+                valueLength = 0;
+                for (int i = 0; i < numberOfLengthOctets; i++) {
+                    int octet = readOctet("Truncated BER length");
+                    append(octet);
+                    valueLength = (valueLength << 8) | octet;
+                }
+            }
+            if (depth == 0) {
+                checkCeiling(valueLength);
+                limit = (int) (size + valueLength);
+            }
+            readValue(valueLength);
+        } while (depth > 0);
+
+        return takePdu();
+    }
+
+    private byte[] takePdu() {
+        byte[] pdu = buffer;
+        buffer = null;
+        if (pdu.length == size && pdu != scratch) {
+            return pdu;
+        }
+        if (pdu != scratch && pdu.length <= RETAINED_CAPACITY) {
+            scratch = pdu;
+        }
+        return Arrays.copyOf(pdu, size);
+    }
+
+    private void readValue(long valueLength) throws IOException {
+        checkCeiling(valueLength);
+        long remaining = valueLength;
+        while (remaining > 0) {
+            int chunk = (int) Math.min(remaining, READ_CHUNK);
+            ensureCapacity(chunk);
+            int read = input.readNBytes(buffer, size, chunk);
+            if (read != chunk) {
+                throw new EOFException("Truncated BER value");
+            }
+            size += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    private int readOctet(String truncatedMessage) throws IOException {
+        int octet = input.read();
+        if (octet < 0) {
+            throw new EOFException(truncatedMessage);
+        }
+        return octet;
+    }
+
+    private void append(int octet) {
+        checkCeiling(1);
+        ensureCapacity(1);
+        buffer[size++] = (byte) octet;
+    }
+
+    private void checkCeiling(long additional) {
+        if (size + additional > maxPduLength) {
+            throw new IllegalArgumentException("BER PDU exceeds configured limit of " + maxPduLength + " octets");
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(limit, Math.max(required, buffer.length * 2)));
+        }
+    }
+}
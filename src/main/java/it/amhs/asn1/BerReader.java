@@ -0,0 +1,121 @@
+package it.amhs.asn1;
+
+import java.nio.charset.Charset;
+
+/**
+ * Forward-only cursor over the TLVs of one BER nesting level.
+ * <p>
+ * {@link #next()} decodes only the header of the following element; nested levels are opened
+ * with {@link #enter()} and share the same buffer, so lookups never build intermediate lists.
+ */
+public final class BerReader {
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+    private BerTlv current;
+
+    public BerReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BerReader(byte[] buffer, int offset, int length) {
+        BerCodec.checkRange(buffer, offset, length);
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Returns a reader over the children of {@code parent}.
+     */
+    public static BerReader over(BerTlv parent) {
+        return new BerReader(parent.buffer(), parent.valueOffset(), parent.length());
+    }
+
+    public boolean hasNext() {
+        return position < limit;
+    }
+
+    /**
+     * Moves to the next element at this level, returning {@code false} once the level is exhausted.
+     */
+    public boolean next() {
+        if (position >= limit) {
+            current = null;
+            return false;
+        }
+        current = BerCodec.decodeAt(buffer, position, limit);
+        position += current.encodedLength();
+        return true;
+    }
+
+    /**
+     * Advances past non-matching elements to the next one with the given tag.
+     */
+    public boolean skipTo(int tagClass, int tagNumber) {
+        while (next()) {
+            if (isTag(tagClass, tagNumber)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isTag(int tagClass, int tagNumber) {
+        return current().tagClass() == tagClass && current.tagNumber() == tagNumber;
+    }
+
+    public int tagClass() {
+        return current().tagClass();
+    }
+
+    public boolean constructed() {
+        return current().constructed();
+    }
+
+    public int tagNumber() {
+        return current().tagNumber();
+    }
+
+    public int length() {
+        return current().length();
+    }
+
+    public BerTlv tlv() {
+        return current();
+    }
+
+    public String string(Charset charset) {
+        return current().valueAsString(charset);
+    }
+
+    /**
+     * Returns a reader over the children of the current element.
+     */
+    public BerReader enter() {
+        return over(current());
+    }
+
+    /**
+     * Consumes the rest of this level and returns the first context-specific element seen for
+     * each tag number up to {@code maxTagNumber}, indexed by tag number.
+     */
+    public BerTlv[] contextFields(int maxTagNumber) {
+        BerTlv[] fields = new BerTlv[maxTagNumber + 1];
+        while (next()) {
+            int tagNumber = current.tagNumber();
+            if (current.tagClass() == BerCodec.TAG_CLASS_CONTEXT && tagNumber <= maxTagNumber && fields[tagNumber] == null) {
+                fields[tagNumber] = current;
+            }
+        }
+        return fields;
+    }
+
+    private BerTlv current() {
+        if (current == null) {
+            throw new IllegalStateException("BER reader is not positioned on an element");
+        }
+        return current;
+    }
+}
@@ -1,8 +1,49 @@
 package it.amhs.asn1;
 
-public record BerTlv(int tagClass, boolean constructed, int tagNumber, int headerLength, int length, byte[] value) {
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
-    public BerTlv {
+/**
+ * Decoded BER tag-length-value.
+ * <p>
+ * TLVs produced by {@link BerCodec} are views over the decoded buffer: the value is addressed
+ * by offset and length and {@link #value()} only copies it out on first use. Callers must not
+ * mutate a buffer while TLVs decoded from it are still in use.
+ * <p>
+ * For indefinite-length encodings {@link #length()} covers the content up to, but excluding,
+ * the end-of-contents octets; {@link #encodedLength()} includes them.
+ */
+public final class BerTlv {
+
+    private final int tagClass;
+    private final boolean constructed;
+    private final int tagNumber;
+    private final int headerLength;
+    private final int length;
+    private final byte[] buffer;
+    private final int valueOffset;
+    private final boolean indefiniteLength;
+    private volatile byte[] value;
+
+    public BerTlv(int tagClass, boolean constructed, int tagNumber, int headerLength, int length, byte[] value) {
+        this(tagClass, constructed, tagNumber, headerLength, length, value, 0, false);
+        if (value.length != length) {
+            throw new IllegalArgumentException("ASN.1 value length mismatch");
+        }
+        this.value = value;
+    }
+
+    private BerTlv(
+        int tagClass,
+        boolean constructed,
+        int tagNumber,
+        int headerLength,
+        int length,
+        byte[] buffer,
+        int valueOffset,
+        boolean indefiniteLength
+    ) {
         if (tagClass < 0 || tagClass > 3) {
             throw new IllegalArgumentException("Invalid ASN.1 tag class: " + tagClass);
         }
@@ -12,9 +53,85 @@ public record BerTlv(int tagClass, boolean constructed, int tagNumber, int heade
         if (length < 0) {
             throw new IllegalArgumentException("Invalid ASN.1 length: " + length);
         }
-        if (value == null || value.length != length) {
+        if (buffer == null || valueOffset < 0 || valueOffset + length > buffer.length) {
             throw new IllegalArgumentException("ASN.1 value length mismatch");
         }
+        this.tagClass = tagClass;
+        this.constructed = constructed;
+        this.tagNumber = tagNumber;
+        this.headerLength = headerLength;
+        this.length = length;
+        this.buffer = buffer;
+        this.valueOffset = valueOffset;
+        this.indefiniteLength = indefiniteLength;
+    }
+
+    static BerTlv view(
+        int tagClass,
+        boolean constructed,
+        int tagNumber,
+        int headerLength,
+        int length,
+        byte[] buffer,
+        int valueOffset,
+        boolean indefiniteLength
+    ) {
+        return new BerTlv(tagClass, constructed, tagNumber, headerLength, length, buffer, valueOffset, indefiniteLength);
+    }
+
+    public int tagClass() {
+        return tagClass;
+    }
+
+    public boolean constructed() {
+        return constructed;
+    }
+
+    public int tagNumber() {
+        return tagNumber;
+    }
+
+    public int headerLength() {
+        return headerLength;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean indefiniteLength() {
+        return indefiniteLength;
+    }
+
+    /**
+     * Returns the number of octets this TLV occupies in its source buffer, including the header
+     * and any end-of-contents octets.
+     */
+    public int encodedLength() {
+        return headerLength + length + (indefiniteLength ? 2 : 0);
+    }
+
+    /**
+     * Returns the value octets, copying them out of the shared buffer on first access.
+     */
+    public byte[] value() {
+        byte[] materialized = value;
+        if (materialized == null) {
+            materialized = Arrays.copyOfRange(buffer, valueOffset, valueOffset + length);
+            value = materialized;
+        }
+        return materialized;
+    }
+
+    /**
+     * Returns a read-only buffer over the value octets without copying them.
+     */
+    public ByteBuffer valueBuffer() {
+        return ByteBuffer.wrap(buffer, valueOffset, length).slice().asReadOnlyBuffer();
+    }
+
+    public String valueAsString(Charset charset) {
+        return new String(buffer, valueOffset, length, charset);
     }
 
     public boolean isUniversal() {
@@ -24,4 +141,22 @@ public record BerTlv(int tagClass, boolean constructed, int tagNumber, int heade
     public boolean isContextSpecific() {
         return tagClass == 2;
     }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int valueOffset() {
+        return valueOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "BerTlv[tagClass=" + tagClass
+            + ", constructed=" + constructed
+            + ", tagNumber=" + tagNumber
+            + ", headerLength=" + headerLength
+            + ", length=" + length
+            + (indefiniteLength ? ", indefinite" : "") + "]";
+    }
 }
@@ -0,0 +1,179 @@
+package it.amhs.asn1;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Single-buffer BER encoder for nested structures.
+ * <p>
+ * {@link #startConstructed(int, int)} reserves one length octet and {@link #end()} back-patches
+ * the definite length once the content size is known, widening the length field in place only
+ * when the content needs the long form. Output is identical to nesting {@link BerCodec#encode}.
+ * A writer can be {@link #reset()} and reused for the next APDU.
+ */
+public final class BerWriter {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private byte[] buffer;
+    private int size;
+    private int[] open = new int[8];
+    private int depth;
+
+    public BerWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BerWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public BerWriter startConstructed(int tagClass, int tagNumber) {
+        ensureCapacity(tagSize(tagNumber) + 1);
+        size = writeTag(buffer, size, tagClass, true, tagNumber);
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+        open[depth++] = size;
+        buffer[size++] = 0;
+        return this;
+    }
+
+    public BerWriter end() {
+        if (depth == 0) {
+            throw new IllegalStateException("No constructed BER element is open");
+        }
+        int lengthOffset = open[--depth];
+        int contentOffset = lengthOffset + 1;
+        int contentLength = size - contentOffset;
+        int extra = lengthSize(contentLength) - 1;
+        if (extra > 0) {
+            ensureCapacity(extra);
+            System.arraycopy(buffer, contentOffset, buffer, contentOffset + extra, contentLength);
+            size += extra;
+        }
+        writeLength(buffer, lengthOffset, contentLength);
+        return this;
+    }
+
+    public BerWriter writePrimitive(int tagClass, int tagNumber, byte[] value) {
+        return writePrimitive(tagClass, tagNumber, value, 0, value.length);
+    }
+
+    public BerWriter writePrimitive(int tagClass, int tagNumber, byte[] value, int offset, int length) {
+        ensureCapacity(tagSize(tagNumber) + lengthSize(length) + length);
+        size = writeTag(buffer, size, tagClass, false, tagNumber);
+        size = writeLength(buffer, size, length);
+        System.arraycopy(value, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    public BerWriter writeString(int tagClass, int tagNumber, String value, Charset charset) {
+        return writePrimitive(tagClass, tagNumber, value.getBytes(charset));
+    }
+
+    public BerWriter writeTlv(BerTlv tlv) {
+        ensureCapacity(tagSize(tlv.tagNumber()) + lengthSize(tlv.length()) + tlv.length());
+        size = writeTag(buffer, size, tlv.tagClass(), tlv.constructed(), tlv.tagNumber());
+        size = writeLength(buffer, size, tlv.length());
+        System.arraycopy(tlv.buffer(), tlv.valueOffset(), buffer, size, tlv.length());
+        size += tlv.length();
+        return this;
+    }
+
+    /**
+     * Appends octets that are already BER encoded.
+     */
+    public BerWriter writeEncoded(byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, buffer, size, encoded.length);
+        size += encoded.length;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public BerWriter reset() {
+        size = 0;
+        depth = 0;
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        if (depth != 0) {
+            throw new IllegalStateException("Unclosed constructed BER elements: " + depth);
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    static int tagSize(int tagNumber) {
+        if (tagNumber < 31) {
+            return 1;
+        }
+        int size = 1;
+        int number = tagNumber;
+        do {
+            size++;
+            number >>>= 7;
+        } while (number > 0);
+        return size;
+    }
+
+    static int lengthSize(int length) {
+        if (length < 128) {
+            return 1;
+        }
+        int size = 1;
+        int temp = length;
+        while (temp > 0) {
+            size++;
+            temp >>>= 8;
+        }
+        return size;
+    }
+
+    static int writeTag(byte[] out, int offset, int tagClass, boolean constructed, int tagNumber) {
+        int firstOctet = (tagClass & 0x03) << 6;
+        if (constructed) {
+            firstOctet |= 0x20;
+        }
+        if (tagNumber < 31) {
+            out[offset++] = (byte) (firstOctet | tagNumber);
+            return offset;
+        }
+
+        out[offset++] = (byte) (firstOctet | 0x1F);
+        int chunks = tagSize(tagNumber) - 1;
+        for (int i = chunks - 1; i >= 0; i--) {
+            int octet = (tagNumber >>> (7 * i)) & 0x7F;
+            if (i != 0) {
+                octet |= 0x80;
+            }
+            out[offset++] = (byte) octet;
+        }
+        return offset;
+    }
+
+    static int writeLength(byte[] out, int offset, int length) {
+        if (length < 128) {
+            out[offset++] = (byte) length;
+            return offset;
+        }
+        int bytes = lengthSize(length) - 1;
+        out[offset++] = (byte) (0x80 | bytes);
+        for (int i = bytes - 1; i >= 0; i--) {
+            out[offset++] = (byte) (length >>> (8 * i));
+        }
+        return offset;
+    }
+}
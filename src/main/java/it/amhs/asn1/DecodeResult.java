@@ -0,0 +1,30 @@
+package it.amhs.asn1;
+
+/**
+ * Outcome of a decode attempt that does not throw: the decoded value, or the reason the input was
+ * rejected.
+ */
+public record DecodeResult<T>(T value, String reason) {
+
+    public static <T> DecodeResult<T> decoded(T value) {
+        return new DecodeResult<>(value, null);
+    }
+
+    public static <T> DecodeResult<T> rejected(String reason) {
+        return new DecodeResult<>(null, reason);
+    }
+
+    public boolean isDecoded() {
+        return value != null;
+    }
+
+    /**
+     * Returns the value, or throws an {@link IllegalArgumentException} carrying the rejection reason.
+     */
+    public T orElseThrow() {
+        if (value == null) {
+            throw new IllegalArgumentException(reason);
+        }
+        return value;
+    }
+}
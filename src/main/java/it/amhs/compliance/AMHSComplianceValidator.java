@@ -157,14 +157,7 @@ public class AMHSComplianceValidator {
     }
 
     private java.util.Optional<String> firstIcaoUnit(ORAddress orAddress) {
-        return java.util.stream.Stream.concat(
-                orAddress.organizationalUnits().stream(),
-                java.util.stream.Stream.of(orAddress.get("O"), orAddress.get("CN"))
-            )
-            .map(this::normalized)
-            .filter(StringUtils::hasText)
-            .filter(unit -> ICAO_8_CHAR.matcher(unit).matches())
-            .findFirst();
+        return orAddress.icaoUnit();
     }
 
     private String normalized(String value) {
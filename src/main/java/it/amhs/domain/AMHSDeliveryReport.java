@@ -2,6 +2,7 @@ package it.amhs.domain;
 
 import java.util.Date;
 import java.util.HexFormat;
+import java.util.Locale;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -10,15 +11,22 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_amhs_report_message_generated", columnList = "message_id_fk, generated_at, id"),
+    @Index(name = "idx_amhs_report_recipient_cursor", columnList = "recipient_normalized, id")
+})
 @Getter
 @Setter
 public class AMHSDeliveryReport {
@@ -34,6 +42,9 @@ public class AMHSDeliveryReport {
     @Column(name = "recipient", nullable = false, length = 1024)
     private String recipient;
 
+    @Column(name = "recipient_normalized", length = 1024)
+    private String recipientNormalized;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "report_type", nullable = false, length = 8)
     private AMHSReportType reportType;
@@ -84,10 +95,24 @@ public class AMHSDeliveryReport {
         this.ndrApduRawBerHex = HexFormat.of().formatHex(apdu);
     }
 
+    /**
+     * Key used for recipient mailbox lookups, so they can use a plain index instead of a
+     * case-insensitive comparison.
+     */
+    public static String normalizeRecipient(String recipient) {
+        return recipient == null ? null : recipient.trim().toUpperCase(Locale.ROOT);
+    }
+
     @PrePersist
     protected void onCreate() {
         if (generatedAt == null) {
             generatedAt = new Date();
         }
+        recipientNormalized = normalizeRecipient(recipient);
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        recipientNormalized = normalizeRecipient(recipient);
     }
 }
@@ -0,0 +1,134 @@
+package it.amhs.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Admission control for a listener: caps the connections it holds (running plus waiting for a
+ * worker) in total and per peer address, so a saturated listener refuses new peers at once
+ * instead of parking them in an unbounded executor queue.
+ * <p>
+ * Every {@link Decision#ADMITTED} connection must be {@link #release released} exactly once when
+ * its session ends.
+ */
+final class ConnectionAdmission {
+
+    /**
+     * TPKT + COTP DR TPDU, references unknown, reason 1 (congestion at TSAP).
+     */
+    private static final byte[] CONGESTION_DISCONNECT_FRAME = {
+        0x03, 0x00, 0x00, 0x0B, 0x06, (byte) 0x80, 0x00, 0x00, 0x00, 0x00, 0x01
+    };
+
+    enum Decision {
+        ADMITTED,
+        GLOBAL_LIMIT,
+        SOURCE_LIMIT
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerSource;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final ConcurrentHashMap<InetAddress, Integer> perSource = new ConcurrentHashMap<>();
+    private final AtomicLong refusedAtGlobalLimit = new AtomicLong();
+    private final AtomicLong refusedAtSourceLimit = new AtomicLong();
+
+    /**
+     * @param maxConnectionsPerSource limit per peer address, or 0 for none
+     */
+    ConnectionAdmission(int maxConnections, int maxConnectionsPerSource) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Connection limit must be >= 1");
+        }
+        if (maxConnectionsPerSource < 0) {
+            throw new IllegalArgumentException("Per-source connection limit must be >= 0");
+        }
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerSource = maxConnectionsPerSource;
+    }
+
+    /**
+     * Worker pool whose queue holds at most {@code maxQueued} sessions waiting for one of
+     * {@code workers} threads; a full pool rejects instead of queueing without bound.
+     */
+    static ThreadPoolExecutor workerPool(int workers, int maxQueued, ThreadFactory threadFactory) {
+        BlockingQueue<Runnable> queue = maxQueued == 0 ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(maxQueued);
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue, threadFactory);
+    }
+
+    Decision tryAdmit(InetAddress source) {
+        if (admitted.incrementAndGet() > maxConnections) {
+            admitted.decrementAndGet();
+            refusedAtGlobalLimit.incrementAndGet();
+            return Decision.GLOBAL_LIMIT;
+        }
+        if (maxConnectionsPerSource > 0 && !reserveSource(source)) {
+            admitted.decrementAndGet();
+            refusedAtSourceLimit.incrementAndGet();
+            return Decision.SOURCE_LIMIT;
+        }
+        return Decision.ADMITTED;
+    }
+
+    void release(InetAddress source) {
+        if (maxConnectionsPerSource > 0) {
+            perSource.computeIfPresent(source, (address, count) -> count <= 1 ? null : count - 1);
+        }
+        admitted.decrementAndGet();
+    }
+
+    /**
+     * Closes a connection that was not admitted. When {@code sendDisconnect} is set, a COTP DR is
+     * written first so an RFC1006 peer sees the refusal instead of a silent close; TLS sockets are
+     * closed without it, since writing would run the handshake on the accepting thread.
+     */
+    void refuse(Socket socket, boolean sendDisconnect) {
+        try (socket) {
+            if (sendDisconnect && !(socket instanceof SSLSocket)) {
+                OutputStream out = socket.getOutputStream();
+                out.write(CONGESTION_DISCONNECT_FRAME);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // the peer may already be gone
+        }
+    }
+
+    int admitted() {
+        return admitted.get();
+    }
+
+    long refusedAtGlobalLimit() {
+        return refusedAtGlobalLimit.get();
+    }
+
+    long refusedAtSourceLimit() {
+        return refusedAtSourceLimit.get();
+    }
+
+    private boolean reserveSource(InetAddress source) {
+        boolean[] reserved = new boolean[1];
+        perSource.compute(source, (address, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConnectionsPerSource) {
+                return count;
+            }
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+}
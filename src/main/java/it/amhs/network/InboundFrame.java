@@ -0,0 +1,128 @@
+package it.amhs.network;
+
+import java.util.IdentityHashMap;
+import java.util.function.Function;
+
+import it.amhs.asn1.BerCodec;
+import it.amhs.asn1.BerTlv;
+import it.amhs.service.protocol.p22.P22ProtocolCodec;
+import it.amhs.service.protocol.p3.P3ProtocolCodec;
+
+/**
+ * One reassembled inbound RFC1006 payload, classified once and shared by every dispatch decision.
+ * <p>
+ * Classification, unwrapping of the session/presentation/ACSE carriers and the post-bind control
+ * probes all look at the same octets, often at several nesting levels. Each distinct array seen
+ * while handling the payload gets one {@link Layer} that decodes its top-level TLV, runs each codec
+ * probe and unwraps its carrier at most once; the chosen handler then receives the probe, with what
+ * it decoded, so it does not decode again. Layers are keyed by array identity, so callers must pass on the arrays
+ * the frame handed out rather than copies. Not thread-safe: a frame belongs to one session thread.
+ */
+final class InboundFrame {
+
+    private final P3ProtocolCodec p3ProtocolCodec;
+    private final P22ProtocolCodec p22ProtocolCodec;
+    private final boolean shareLayers;
+    private final IdentityHashMap<byte[], Layer> layers = new IdentityHashMap<>();
+
+    InboundFrame(P3ProtocolCodec p3ProtocolCodec, P22ProtocolCodec p22ProtocolCodec) {
+        this(p3ProtocolCodec, p22ProtocolCodec, true);
+    }
+
+    /**
+     * {@code shareLayers = false} hands out a new {@link Layer} on every call, so each probe decodes
+     * the octets again as it did before layers were shared; it exists for benchmarking only.
+     */
+    InboundFrame(P3ProtocolCodec p3ProtocolCodec, P22ProtocolCodec p22ProtocolCodec, boolean shareLayers) {
+        this.p3ProtocolCodec = p3ProtocolCodec;
+        this.p22ProtocolCodec = p22ProtocolCodec;
+        this.shareLayers = shareLayers;
+    }
+
+    Layer layer(byte[] encoded) {
+        if (!shareLayers) {
+            return new Layer(encoded);
+        }
+        return layers.computeIfAbsent(encoded, Layer::new);
+    }
+
+    final class Layer {
+
+        private final byte[] encoded;
+        private boolean rootDecoded;
+        private BerTlv root;
+        private P3ProtocolCodec.Probe p3Probe;
+        private P22ProtocolCodec.Probe p22Probe;
+        private String kind;
+        private boolean unwrapped;
+        private byte[] inner;
+
+        private Layer(byte[] encoded) {
+            this.encoded = encoded;
+        }
+
+        byte[] encoded() {
+            return encoded;
+        }
+
+        int length() {
+            return encoded == null ? 0 : encoded.length;
+        }
+
+        /**
+         * Top-level TLV, or {@code null} if the octets are not a single well-formed BER element.
+         */
+        BerTlv root() {
+            if (!rootDecoded) {
+                rootDecoded = true;
+                root = BerCodec.tryDecodeSingle(encoded).value();
+            }
+            return root;
+        }
+
+        P3ProtocolCodec.Probe p3Probe() {
+            if (p3Probe == null) {
+                p3Probe = p3ProtocolCodec.probe(encoded);
+            }
+            return p3Probe;
+        }
+
+        P22ProtocolCodec.Probe p22Probe() {
+            if (p22Probe == null) {
+                p22Probe = p22ProtocolCodec.probe(encoded);
+            }
+            return p22Probe;
+        }
+
+        boolean p3Supported() {
+            return p3Probe().supported();
+        }
+
+        boolean p22Supported() {
+            return p22Probe().supported();
+        }
+
+        boolean applicationSupported() {
+            return p3Supported() || p22Supported();
+        }
+
+        String kind(Function<Layer, String> classifier) {
+            if (kind == null) {
+                kind = classifier.apply(this);
+            }
+            return kind;
+        }
+
+        /**
+         * Content of this layer's carrier as returned by {@code unwrapper}; the same array is
+         * returned on every call so nested layers resolve to the same {@link Layer}.
+         */
+        byte[] inner(Function<byte[], byte[]> unwrapper) {
+            if (!unwrapped) {
+                unwrapped = true;
+                inner = unwrapper.apply(encoded);
+            }
+            return inner;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package it.amhs.network;
+
+import java.util.Arrays;
+import java.util.List;
+
+import it.amhs.asn1.BerCodec;
+import it.amhs.asn1.BerTlv;
+
+/**
+ * Where one peer's application APDUs sit inside its RFC1006 payloads, learned from a PDU the
+ * heuristic unwrapping resolved after the bind.
+ * <p>
+ * A UA keeps the same session/presentation/ACSE wrapping for the whole association, so later PDUs
+ * can be unwrapped by replaying the recorded outer kind, session user-data offset, presentation
+ * context id and BER child-index path instead of scoring candidates again. Replay touches each
+ * layer on the path once; any mismatch returns {@code null} and the caller falls back to the
+ * heuristics. Not thread-safe: a profile belongs to one session thread.
+ */
+final class LayerProfile {
+
+    private static final int MAX_PATH_DEPTH = 16;
+
+    private final String kind;
+    private final int sessionOffset;
+    private final int contextId;
+    private final int[] path;
+
+    private LayerProfile(String kind, int sessionOffset, int contextId, int[] path) {
+        this.kind = kind;
+        this.sessionOffset = sessionOffset;
+        this.contextId = contextId;
+        this.path = path;
+    }
+
+    /**
+     * @param sessionUserData user data the session layer carried, or {@code null} if {@code payload}
+     *                        is not a session SPDU
+     * @return the profile, or {@code null} if {@code applicationPdu} is not reachable by replay
+     */
+    static LayerProfile learn(String kind, byte[] payload, byte[] sessionUserData, int contextId, byte[] applicationPdu) {
+        if (kind == null || payload == null || applicationPdu == null) {
+            return null;
+        }
+        int sessionOffset = -1;
+        byte[] body = payload;
+        if (sessionUserData != null) {
+            sessionOffset = payload.length - sessionUserData.length;
+            if (sessionOffset < 0
+                || !Arrays.equals(payload, sessionOffset, payload.length, sessionUserData, 0, sessionUserData.length)) {
+                return null;
+            }
+            body = sessionUserData;
+        }
+        if (Arrays.equals(body, applicationPdu)) {
+            return new LayerProfile(kind, sessionOffset, contextId, new int[0]);
+        }
+        try {
+            BerTlv root = BerCodec.decodeSingle(body);
+            if (root.encodedLength() != body.length) {
+                return null;
+            }
+            int[] path = new int[MAX_PATH_DEPTH];
+            int depth = find(root, applicationPdu, path, 0);
+            return depth < 0 ? null : new LayerProfile(kind, sessionOffset, contextId, Arrays.copyOf(path, depth));
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    String kind() {
+        return kind;
+    }
+
+    int contextId() {
+        return contextId;
+    }
+
+    boolean sessionCarried() {
+        return sessionOffset >= 0;
+    }
+
+    /**
+     * Octets below the session layer: the session user data for a session SPDU, otherwise the
+     * payload itself. Returns {@code null} if the payload is too short for the learned offset.
+     */
+    byte[] body(byte[] payload) {
+        if (sessionOffset < 0) {
+            return payload;
+        }
+        if (payload.length <= sessionOffset) {
+            return null;
+        }
+        return Arrays.copyOfRange(payload, sessionOffset, payload.length);
+    }
+
+    /**
+     * Follows the learned path from {@code root}, the top-level TLV of {@link #body(byte[])}.
+     *
+     * @return the encoded APDU, {@code body} itself for an empty path, or {@code null} on mismatch
+     */
+    byte[] locate(byte[] body, BerTlv root) {
+        if (root == null || root.encodedLength() != body.length) {
+            return null;
+        }
+        if (path.length == 0) {
+            return body;
+        }
+        try {
+            BerTlv node = root;
+            for (int index : path) {
+                List<BerTlv> children = children(node);
+                if (index >= children.size()) {
+                    return null;
+                }
+                node = children.get(index);
+            }
+            return BerCodec.encode(node);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LayerProfile[kind=" + kind
+            + ", sessionOffset=" + sessionOffset
+            + ", contextId=" + contextId
+            + ", path=" + Arrays.toString(path) + "]";
+    }
+
+    private static int find(BerTlv node, byte[] target, int[] path, int depth) {
+        if (node.length() < target.length && Arrays.equals(BerCodec.encode(node), target)) {
+            return depth;
+        }
+        // Anything nested in this node is no longer than its value octets.
+        if (depth == path.length || node.length() < target.length) {
+            return -1;
+        }
+        List<BerTlv> children;
+        try {
+            children = children(node);
+        } catch (RuntimeException ex) {
+            return -1;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            path[depth] = i;
+            int found = find(children.get(i), target, path, depth + 1);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Constructed nodes step into their children; primitive nodes (e.g. an OCTET STRING carrying
+     * an encoded APDU) step into the single TLV their value holds.
+     */
+    private static List<BerTlv> children(BerTlv node) {
+        if (node.constructed()) {
+            return BerCodec.decodeChildren(node);
+        }
+        return List.of(BerCodec.decodeNested(node));
+    }
+}
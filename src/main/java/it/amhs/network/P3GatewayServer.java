@@ -17,10 +17,11 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -34,6 +35,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import it.amhs.asn1.BerCodec;
+import it.amhs.asn1.BerPduReader;
 import it.amhs.asn1.BerTlv;
 import it.amhs.service.protocol.acse.AcseAssociationProtocol;
 import it.amhs.service.protocol.acse.AcseModels;
@@ -41,6 +43,8 @@ import it.amhs.service.protocol.p22.P22ProtocolCodec;
 import it.amhs.service.protocol.p3.P3GatewaySessionService;
 import it.amhs.service.protocol.p3.P3ProtocolCodec;
 import it.amhs.service.protocol.rfc1006.CotpConnectionTpdu;
+import it.amhs.service.protocol.rfc1006.TpktTransport;
+import it.amhs.service.protocol.rfc1006.TsduReassemblyBuffer;
 
 @Component
 @ConditionalOnProperty(prefix = "amhs.p3.gateway", name = "enabled", havingValue = "true")
@@ -48,15 +52,8 @@ public class P3GatewayServer {
 
     private static final Logger logger = LoggerFactory.getLogger(P3GatewayServer.class);
 
-    private static final byte TPKT_VERSION = 0x03;
-    private static final byte TPKT_RESERVED = 0x00;
-    private static final int MAX_TPKT_LENGTH = 65_535;
-
-    private static final byte COTP_PDU_CR = (byte) 0xE0;
-    private static final byte COTP_PDU_CC = (byte) 0xD0;
-    private static final byte COTP_PDU_DT = (byte) 0xF0;
-    private static final byte COTP_PDU_DR = (byte) 0x80;
-    private static final byte COTP_PDU_DC = (byte) 0xC0;
+    private static final int RFC1006_REASSEMBLY_INITIAL_CAPACITY = 8 * 1024;
+    private static final int RFC1006_REASSEMBLY_RETAINED_CAPACITY = 256 * 1024;
 
     private static final int TAG_CLASS_UNIVERSAL = 0;
     private static final int TAG_CLASS_APPLICATION = 1;
@@ -72,6 +69,8 @@ public class P3GatewayServer {
 
     private static final String DEFAULT_PRESENTATION_TRANSFER_SYNTAX_OID = "2.1.1";
 
+    private static final HexFormat HEX = HexFormat.ofDelimiter(" ").withUpperCase();
+
     private final String host;
     private final int port;
     private final boolean tlsEnabled;
@@ -83,6 +82,8 @@ public class P3GatewayServer {
     private final P3ProtocolCodec p3ProtocolCodec;
     private final P22ProtocolCodec p22ProtocolCodec;
     private final AcseAssociationProtocol acseAssociationProtocol;
+    private final int maxPduBytes;
+    private final ConnectionAdmission admission;
     private final ExecutorService clientExecutor;
     private final AtomicLong connectionSequence = new AtomicLong(0);
 
@@ -90,10 +91,13 @@ public class P3GatewayServer {
         @Value("${amhs.p3.gateway.host:0.0.0.0}") String host,
         @Value("${amhs.p3.gateway.port:102}") int port,
         @Value("${amhs.p3.gateway.max-sessions:64}") int maxSessions,
+        @Value("${amhs.p3.gateway.max-queued-sessions:64}") int maxQueuedSessions,
+        @Value("${amhs.p3.gateway.max-sessions-per-source:0}") int maxSessionsPerSource,
         @Value("${amhs.p3.gateway.tls.enabled:false}") boolean tlsEnabled,
         @Value("${amhs.p3.gateway.tls.need-client-auth:false}") boolean needClientAuth,
         @Value("${amhs.p3.gateway.text.welcome-enabled:false}") boolean textWelcomeEnabled,
         @Value("${amhs.p3.gateway.listener-profile:STANDARD_P3}") String listenerProfile,
+        @Value("${amhs.p3.gateway.max-pdu-bytes:4194304}") int maxPduBytes,
         SSLContext tls,
         P3GatewaySessionService sessionService,
         P3ProtocolCodec p3ProtocolCodec,
@@ -106,6 +110,15 @@ public class P3GatewayServer {
         if (maxSessions < 1) {
             throw new IllegalArgumentException("amhs.p3.gateway.max-sessions must be >= 1");
         }
+        if (maxQueuedSessions < 0) {
+            throw new IllegalArgumentException("amhs.p3.gateway.max-queued-sessions must be >= 0");
+        }
+        if (maxSessionsPerSource < 0) {
+            throw new IllegalArgumentException("amhs.p3.gateway.max-sessions-per-source must be >= 0");
+        }
+        if (maxPduBytes < 1024) {
+            throw new IllegalArgumentException("amhs.p3.gateway.max-pdu-bytes must be >= 1024");
+        }
 
         this.host = host;
         this.port = port;
@@ -118,7 +131,9 @@ public class P3GatewayServer {
         this.p3ProtocolCodec = p3ProtocolCodec;
         this.p22ProtocolCodec = p22ProtocolCodec;
         this.acseAssociationProtocol = acseAssociationProtocol;
-        this.clientExecutor = Executors.newFixedThreadPool(maxSessions, new NamedDaemonThreadFactory());
+        this.maxPduBytes = maxPduBytes;
+        this.admission = new ConnectionAdmission(maxSessions + maxQueuedSessions, maxSessionsPerSource);
+        this.clientExecutor = ConnectionAdmission.workerPool(maxSessions, maxQueuedSessions, new NamedDaemonThreadFactory());
 
         logger.info(
             "AMHS P3 gateway listener-profile={} supported={}",
@@ -147,24 +162,57 @@ public class P3GatewayServer {
         while (true) {
             Socket socket = server.accept();
             long connectionId = connectionSequence.incrementAndGet();
+            InetAddress source = socket.getInetAddress();
+            ConnectionAdmission.Decision decision = admission.tryAdmit(source);
+            if (decision != ConnectionAdmission.Decision.ADMITTED) {
+                refuse(connectionId, socket, decision == ConnectionAdmission.Decision.SOURCE_LIMIT
+                    ? "per-source session limit" : "session limit");
+                continue;
+            }
             logger.info(
                 "P3 gateway connection #{} from {}:{} to local-port={}",
                 connectionId,
-                socket.getInetAddress(),
+                source,
                 socket.getPort(),
                 socket.getLocalPort()
             );
-            clientExecutor.execute(() -> handleClient(connectionId, socket));
+            try {
+                clientExecutor.execute(() -> {
+                    try {
+                        handleClient(connectionId, socket);
+                    } finally {
+                        admission.release(source);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                admission.release(source);
+                refuse(connectionId, socket, "worker queue limit");
+            }
         }
     }
 
+    /**
+     * RFC1006-only listeners answer with a COTP DR; multi-protocol ones cannot tell what the peer
+     * speaks before reading from it, so they just close.
+     */
+    private void refuse(long connectionId, Socket socket, String limit) {
+        logger.warn(
+            "P3 gateway {} reached; refusing connection #{} from {}:{}",
+            limit,
+            connectionId,
+            socket.getInetAddress(),
+            socket.getPort()
+        );
+        admission.refuse(socket, listenerProfile == ListenerProfile.STANDARD_P3);
+    }
+
     private void handleClient(long connectionId, Socket socket) {
         try (
             socket;
-            PushbackInputStream input = new PushbackInputStream(socket.getInputStream(), 16);
-            OutputStream output = socket.getOutputStream()
+            PushbackInputStream input = new PushbackInputStream(TpktTransport.bufferedInput(socket.getInputStream()), 16);
+            OutputStream output = TpktTransport.bufferedOutput(socket.getOutputStream())
         ) {
-        	socket.setTcpNoDelay(false);
+            TpktTransport.configure(socket);
             P3GatewaySessionService.SessionState session = sessionService.newSession();
 
             byte[] preview = input.readNBytes(8);
@@ -252,10 +300,11 @@ public class P3GatewayServer {
         PushbackInputStream input,
         OutputStream output
     ) throws Exception {
+        BerPduReader reader = new BerPduReader(input, maxPduBytes);
         int pduIndex = 0;
 
         while (true) {
-            byte[] pdu = readBerPdu(input);
+            byte[] pdu = reader.read();
             if (pdu == null) {
                 logger.info("P3 gateway connection #{} BER session closed after {} APDU(s)", connectionId, pduIndex);
                 return;
@@ -282,62 +331,22 @@ public class P3GatewayServer {
         }
     }
 
-    private byte[] readBerPdu(PushbackInputStream inputStream) throws Exception {
-        int firstOctet = inputStream.read();
-        if (firstOctet < 0) {
-            return null;
-        }
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        out.write(firstOctet);
-
-        int secondOctet = inputStream.read();
-        if (secondOctet < 0) {
-            throw new EOFException("Missing BER length octet");
-        }
-        out.write(secondOctet);
-
-        int valueLength;
-        if ((secondOctet & 0x80) == 0) {
-            valueLength = secondOctet;
-        } else {
-            int numLenOctets = secondOctet & 0x7F;
-            if (numLenOctets == 0) {
-                throw new IllegalArgumentException("Indefinite BER length is not supported");
-            }
-
-            byte[] lenBytes = inputStream.readNBytes(numLenOctets);
-            if (lenBytes.length != numLenOctets) {
-                throw new EOFException("Truncated BER length");
-            }
-            out.writeBytes(lenBytes);
-
-            valueLength = 0;
-            for (byte b : lenBytes) {
-                valueLength = (valueLength << 8) | (b & 0xFF);
-            }
-        }
-
-        byte[] value = inputStream.readNBytes(valueLength);
-        if (value.length != valueLength) {
-            throw new EOFException("Truncated BER value");
-        }
-
-        out.writeBytes(value);
-        return out.toByteArray();
-    }
-
     private void handleRfc1006Session(
     	    long connectionId,
     	    P3GatewaySessionService.SessionState session,
     	    PushbackInputStream input,
     	    OutputStream output
     	) throws Exception {
-	    ByteArrayOutputStream segmentedPayload = new ByteArrayOutputStream();
+	    TpktTransport transport = new TpktTransport(input, output, false);
+	    TsduReassemblyBuffer segmentedPayload = new TsduReassemblyBuffer(
+	        RFC1006_REASSEMBLY_INITIAL_CAPACITY,
+	        RFC1006_REASSEMBLY_RETAINED_CAPACITY
+	    );
 	    int pduIndex = 0;
+	    LayerProfile layerProfile = null;
 
 	    while (true) {
-	        CotpFrame frame = readRfc1006Frame(input);
+	        TpktTransport.Frame frame = transport.readFrame();
 	        if (frame == null) {
 	            logger.info(
 	                "P3 gateway connection #{} RFC1006 session closed after {} payload(s)",
@@ -347,8 +356,8 @@ public class P3GatewayServer {
 	            return;
 	        }
 
-	        if (frame.type == COTP_PDU_CR) {
-	            CotpConnectionTpdu request = CotpConnectionTpdu.parse(frame.payload);
+	        if (frame.type() == TpktTransport.PDU_CR) {
+	            CotpConnectionTpdu request = CotpConnectionTpdu.parse(frame.tpdu());
 	            CotpConnectionTpdu confirm = new CotpConnectionTpdu(
 	                CotpConnectionTpdu.PDU_CC,
 	                request.sourceReference(),
@@ -357,34 +366,43 @@ public class P3GatewayServer {
 	                request.tpduSize(),
 	                request.unknownParameters()
 	            );
-	            sendTpktFrame(output, confirm.serialize());
-	            output.flush();
+	            transport.sendTpdu(confirm.serialize());
+	            transport.negotiateTpduSize(request.negotiatedMaxUserData());
 	            logger.info("P3 gateway connection #{} RFC1006 COTP connection confirmed", connectionId);
 	            continue;
 	        }
 
-	        if (frame.type == COTP_PDU_DR) {
-	            sendTpktFrame(output, new byte[] { 0x06, COTP_PDU_DC, 0x00, 0x00, 0x00, 0x00, 0x00 });
-	            output.flush();
+	        if (frame.type() == TpktTransport.PDU_DR) {
+	            transport.sendTpdu(new byte[] { 0x06, TpktTransport.PDU_DC, 0x00, 0x00, 0x00, 0x00, 0x00 });
 	            logger.info("P3 gateway connection #{} RFC1006 disconnect requested by peer", connectionId);
 	            return;
 	        }
 
-	        if (frame.type != COTP_PDU_DT) {
+	        if (frame.type() != TpktTransport.PDU_DT) {
 	            logger.warn(
 	                "P3 gateway connection #{} ignoring unsupported TPDU type=0x{}",
 	                connectionId,
-	                toHexByte(frame.type)
+	                toHexByte(frame.type())
 	            );
 	            continue;
 	        }
 
-	        segmentedPayload.writeBytes(frame.userData);
-	        if (!frame.endOfTsdu) {
+	        if (segmentedPayload.size() + frame.userDataLength() > maxPduBytes) {
+	            logger.warn(
+	                "P3 gateway connection #{} segmented payload exceeds {} octets; disconnecting",
+	                connectionId,
+	                maxPduBytes
+	            );
+	            sendRfc1006Disconnect(transport);
+	            return;
+	        }
+
+	        transport.readUserData(segmentedPayload);
+	        if (!frame.endOfTsdu()) {
 	            continue;
 	        }
 
-	        byte[] payload = segmentedPayload.toByteArray();
+	        byte[] payload = segmentedPayload.rawBytes();
 	        segmentedPayload.reset();
 
 	        if (payload.length == 0) {
@@ -392,7 +410,10 @@ public class P3GatewayServer {
 	        }
 
 	        pduIndex++;
-	        String kind = classifyPayload(payload);
+	        InboundFrame inbound = new InboundFrame(p3ProtocolCodec, p22ProtocolCodec);
+	        boolean bound = session.isBound();
+	        Dispatch dispatch = planDispatch(inbound, payload, layerProfile);
+	        String kind = dispatch.kind();
 
 	        logger.info(
 	            "P3 gateway connection #{} RFC1006 payload #{} len={} kind={} first-bytes={}",
@@ -403,7 +424,7 @@ public class P3GatewayServer {
 	            toHexPreview(payload, 192)
 	        );
 
-	        if (isSessionAbortWithUserData(payload)) {
+	        if (dispatch.action() == DispatchAction.SESSION_ABORT) {
 	            logger.warn(
 	                "P3 gateway connection #{} peer sent Session/PRES ABORT payload={}",
 	                connectionId,
@@ -412,18 +433,16 @@ public class P3GatewayServer {
 	            return;
 	        }
 
-	        byte[] applicationPdu = extractApplicationPdu(payload, kind);
-	        
-	        if (applicationPdu == null) {
-	            if (isSessionAbortSpdu(payload)) {
-	                logger.info(
-	                    "P3 gateway connection #{} peer closed session payload={}",
-	                    connectionId,
-	                    toHexPreview(payload, 64)
-	                );
-	                return;
-	            }
-
+	        byte[] applicationPdu = dispatch.applicationPdu();
+	        if (dispatch.action() == DispatchAction.SESSION_CLOSED) {
+	            logger.info(
+	                "P3 gateway connection #{} peer closed session payload={}",
+	                connectionId,
+	                toHexPreview(payload, 64)
+	            );
+	            return;
+	        }
+	        if (dispatch.action() == DispatchAction.UNSUPPORTED_PAYLOAD) {
 	            logger.warn(
 	                "P3 gateway connection #{} payload #{} unsupported kind={} first-bytes={}",
 	                connectionId,
@@ -432,23 +451,24 @@ public class P3GatewayServer {
 	                toHexPreview(payload, 192)
 	            );
 
-	            sendRfc1006Disconnect(output);
+	            sendRfc1006Disconnect(transport);
+	            return;
+	        }
+
+	        if (dispatch.action() == DispatchAction.RELEASE_OR_ACK) {
+	            logger.info(
+	                "Peer sent ACSE release/ack; closing gracefully first-bytes={}",
+	                toHexPreview(applicationPdu, 64)
+	            );
 	            return;
 	        }
 
-	        if (isTinyPostBindReleaseOrAckApdu(applicationPdu) || isWrappedTinyReleaseOrAckApdu(applicationPdu)) {
-        	    logger.info(
-        	        "Peer sent ACSE release/ack; closing gracefully first-bytes={}",
-        	        toHexPreview(applicationPdu, 64)
-        	    );
-        	    return;
-        	}
-	        
-	        if (isPeerRosReject(applicationPdu)) {
+	        if (dispatch.action() == DispatchAction.ROS_REJECT) {
 	            logger.info("Peer sent ROS reject/control; ignoring");
 	            continue;
 	        }
-	        
+
+	        InboundFrame.Layer apdu = dispatch.apdu();
 	        logger.info(
 	            "P3 gateway delivering application PDU to ASN.1 handler len={} first-bytes={}",
 	            applicationPdu.length,
@@ -463,49 +483,43 @@ public class P3GatewayServer {
 	            );
 	        }
 
-	        logger.info("P3 BER dispatch detail {}", describeTopLevelBer(applicationPdu));
-
-	        boolean p3Supported = p3ProtocolCodec.isSupportedApplicationApdu(applicationPdu);
-	        boolean p22Supported = p22ProtocolCodec.isSupportedApplicationApdu(applicationPdu);
-	        boolean smallControl = isSmallPostBindControlApdu(applicationPdu);
-	        boolean tinyReleaseOrAck = isTinyPostBindReleaseOrAckApdu(applicationPdu) || isWrappedTinyReleaseOrAckApdu(applicationPdu);
-	        boolean peerRejectControl = isPeerPostBindRejectControlApdu(applicationPdu);
-	        boolean benignZeroEnum = isBenignZeroEnumeratedControl(applicationPdu);
-
+	        logger.info("P3 BER dispatch detail {}", describeTopLevelBer(apdu));
 	        logger.info(
-	        	    "dispatch probe p3Supported={} p22Supported={} smallControl={} tinyReleaseOrAck={} peerRejectControl={} benignZeroEnum={}",
-	        	    p3Supported,
-	        	    p22Supported,
-	        	    smallControl,
-	        	    tinyReleaseOrAck,
-	        	    peerRejectControl,
-	        	    benignZeroEnum
-	        	);
+	            "dispatch probe action={} p3Supported={} p22Supported={}",
+	            dispatch.action(),
+	            apdu.p3Supported(),
+	            apdu.p22Supported()
+	        );
 
 	        byte[] applicationResponse;
 
-	        if (benignZeroEnum) {
-	            continue;
-	        } else if (isPeerRejectOrAbortControl(applicationPdu)) {
-	            continue;
-	        } else if (peerRejectControl) {
-	            continue;
-	        } else if (smallControl) {
-	            logger.info(
-	                "Peer sent small post-bind control/reject; ignoring first-bytes={}",
-	                toHexPreview(applicationPdu, 64)
-	            );
-	            continue;
-	        } else if (p22Supported) {
-	            applicationResponse = p22ProtocolCodec.handle(applicationPdu);
-	        } else if (p3Supported) {
-	            applicationResponse = p3ProtocolCodec.handle(session, applicationPdu);
-	        } else {
-	            sendRfc1006Disconnect(output);
-	            return;
+	        switch (dispatch.action()) {
+	            case IGNORED_CONTROL -> {
+	                continue;
+	            }
+	            case SMALL_CONTROL -> {
+	                logger.info(
+	                    "Peer sent small post-bind control/reject; ignoring first-bytes={}",
+	                    toHexPreview(applicationPdu, 64)
+	                );
+	                continue;
+	            }
+	            case P22 -> applicationResponse = p22ProtocolCodec.handle(applicationPdu, apdu.p22Probe());
+	            case P3 -> applicationResponse = p3ProtocolCodec.handle(session, applicationPdu, apdu.p3Probe());
+	            default -> {
+	                sendRfc1006Disconnect(transport);
+	                return;
+	            }
 	        }
 
-	        byte[] wrappedResponse = rewrapResponse(payload, kind, applicationResponse);
+	        if (bound && !dispatch.replayed()) {
+	            layerProfile = learnLayerProfile(inbound, payload, kind, applicationPdu);
+	            if (layerProfile != null) {
+	                logger.info("P3 gateway connection #{} learned {}", connectionId, layerProfile);
+	            }
+	        }
+
+	        byte[] wrappedResponse = rewrapResponse(inbound, payload, kind, applicationResponse);
 
 	        logger.info(
 	            "P3 outbound application response len={} first-bytes={}",
@@ -518,7 +532,7 @@ public class P3GatewayServer {
 	            toHexPreview(wrappedResponse, 192)
 	        );
 
-	        sendRfc1006Dt(output, wrappedResponse);
+	        transport.sendData(wrappedResponse);
 
 	        if (session.isClosed()) {
 	            logger.info("P3 gateway connection #{} RFC1006 session closed by release", connectionId);
@@ -571,21 +585,18 @@ public class P3GatewayServer {
         return false;
     }
     
-    private boolean isPeerRosReject(byte[] apdu) {
-        if (apdu == null || apdu.length < 4 || apdu.length > 32) {
+    private boolean isPeerRosReject(InboundFrame.Layer apdu) {
+        if (apdu.length() < 4 || apdu.length() > 32) {
             return false;
         }
 
-        try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
+        BerTlv root = apdu.root();
 
-            // ROS reject: [4]
-            return root.tagClass() == TAG_CLASS_CONTEXT
-                && root.constructed()
-                && root.tagNumber() == 4;
-        } catch (RuntimeException ex) {
-            return false;
-        }
+        // ROS reject: [4]
+        return root != null
+            && root.tagClass() == TAG_CLASS_CONTEXT
+            && root.constructed()
+            && root.tagNumber() == 4;
     }
     
     private boolean isBenignZeroEnumeratedControl(byte[] apdu) {
@@ -595,21 +606,21 @@ public class P3GatewayServer {
             && (apdu[1] & 0xFF) == 0x00;
     }
 
-    private boolean isPeerPostBindRejectControlApdu(byte[] apdu) {
-        if (apdu == null || apdu.length < 8 || apdu.length > 32) {
+    private boolean isPeerPostBindRejectControlApdu(InboundFrame.Layer apdu) {
+        if (apdu.length() < 8 || apdu.length() > 32) {
             return false;
         }
 
         try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
+            BerTlv root = apdu.root();
 
             // observed peer control:
             // 61 0C 30 0A 02 01 01 A0 05 62 03 80 01 00
-            if (root.tagClass() != TAG_CLASS_APPLICATION || !root.constructed() || root.tagNumber() != 1) {
+            if (root == null || root.tagClass() != TAG_CLASS_APPLICATION || !root.constructed() || root.tagNumber() != 1) {
                 return false;
             }
 
-            List<BerTlv> fields = BerCodec.decodeAll(root.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(root);
             fields = unwrapSequenceIfPresent(fields);
 
             if (fields.size() < 2) {
@@ -645,13 +656,16 @@ public class P3GatewayServer {
         }
     }
     
-    private boolean isTinyPostBindReleaseOrAckApdu(byte[] apdu) {
-        if (apdu == null || apdu.length < 3 || apdu.length > 32) {
+    private boolean isTinyPostBindReleaseOrAckApdu(InboundFrame.Layer apdu) {
+        if (apdu.length() < 3 || apdu.length() > 32) {
             return false;
         }
 
         try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
+            BerTlv root = apdu.root();
+            if (root == null) {
+                return false;
+            }
 
             // direct ACSE release/ack: 62 03 80 01 00
             if (root.tagClass() == TAG_CLASS_APPLICATION
@@ -668,7 +682,7 @@ public class P3GatewayServer {
                 && root.constructed()
                 && root.tagNumber() == 1) {
 
-                List<BerTlv> children = BerCodec.decodeAll(root.value());
+                List<BerTlv> children = BerCodec.decodeChildren(root);
                 children = unwrapSequenceIfPresent(children);
 
                 for (BerTlv child : children) {
@@ -702,7 +716,7 @@ public class P3GatewayServer {
             }
 
             if (node.constructed()) {
-                for (BerTlv child : BerCodec.decodeAll(node.value())) {
+                for (BerTlv child : BerCodec.decodeChildren(node)) {
                     if (containsTinyReleaseAck(child)) {
                         return true;
                     }
@@ -776,7 +790,7 @@ public class P3GatewayServer {
             return Collections.emptyList();
         }
         try {
-            return BerCodec.decodeAll(tlv.value());
+            return BerCodec.decodeChildren(tlv);
         } catch (Exception ex) {
             logger.debug("failed to decode BER children tagClass={} tagNumber={} len={}",
                 tlv.tagClass(), tlv.tagNumber(), tlv.length(), ex);
@@ -784,111 +798,22 @@ public class P3GatewayServer {
         }
     }
 
-    private String describeTopLevelBer(byte[] payload) {
-        if (payload == null || payload.length == 0) {
+    private String describeTopLevelBer(InboundFrame.Layer payload) {
+        if (payload.length() == 0) {
             return "empty";
         }
-        try {
-            BerTlv tlv = BerCodec.decodeSingle(payload);
-            return "tagClass=" + tlv.tagClass()
-                + " constructed=" + tlv.constructed()
-                + " tagNumber=" + tlv.tagNumber()
-                + " len=" + tlv.length();
-        } catch (RuntimeException ex) {
-            return "decode-failed:" + ex.getMessage();
-        }
-    }
-
-    private CotpFrame readRfc1006Frame(PushbackInputStream input) throws Exception {
-        int version = input.read();
-        if (version < 0) {
-            return null;
-        }
-
-        int reserved = input.read();
-        int lenHi = input.read();
-        int lenLo = input.read();
-        if (reserved < 0 || lenHi < 0 || lenLo < 0) {
-            throw new EOFException("Connection closed while reading TPKT header");
-        }
-
-        if (version != TPKT_VERSION || reserved != TPKT_RESERVED) {
-            throw new IllegalArgumentException("Invalid TPKT header");
-        }
-
-        int tpktLength = ((lenHi & 0xFF) << 8) | (lenLo & 0xFF);
-        if (tpktLength < 7 || tpktLength > MAX_TPKT_LENGTH) {
-            throw new IllegalArgumentException("Invalid TPKT frame length: " + tpktLength);
-        }
-
-        byte[] cotpTpdu = input.readNBytes(tpktLength - 4);
-        if (cotpTpdu.length != tpktLength - 4) {
-            throw new EOFException("Truncated TPKT payload");
-        }
-
-        int lengthIndicator = cotpTpdu[0] & 0xFF;
-        if (lengthIndicator + 1 > cotpTpdu.length || lengthIndicator < 1) {
-            throw new IllegalArgumentException("Invalid COTP length indicator: " + lengthIndicator);
-        }
-
-        byte type = (byte) (cotpTpdu[1] & 0xF0);
-
-        if (type == COTP_PDU_CR || type == COTP_PDU_CC || type == COTP_PDU_DR || type == COTP_PDU_DC) {
-            return new CotpFrame(type, true, new byte[0], cotpTpdu);
-        }
-
-        if (type != COTP_PDU_DT) {
-            return new CotpFrame(type, true, new byte[0], cotpTpdu);
-        }
-
-        if (lengthIndicator < 2) {
-            throw new IllegalArgumentException("Unsupported COTP DT header");
-        }
-
-        boolean eot = (cotpTpdu[2] & 0x80) != 0;
-        int dataOffset = lengthIndicator + 1;
-        byte[] userData = Arrays.copyOfRange(cotpTpdu, dataOffset, cotpTpdu.length);
-
-        return new CotpFrame(type, eot, userData, cotpTpdu);
-    }
-
-    private void sendRfc1006Dt(OutputStream output, byte[] payload) throws Exception {
-        byte[] response = payload == null ? new byte[0] : payload;
-
-        byte[] tpdu = new byte[3 + response.length];
-        tpdu[0] = 0x02;
-        tpdu[1] = COTP_PDU_DT;
-        tpdu[2] = (byte) 0x80;
-        if (response.length > 0) {
-            System.arraycopy(response, 0, tpdu, 3, response.length);
-        }
-
-        sendTpktFrame(output, tpdu);
-        output.flush();
-    }
-
-    // Send to the channel
-    private void sendTpktFrame(OutputStream output, byte[] tpdu) throws Exception {
-        int length = 4 + tpdu.length;
-        if (length > MAX_TPKT_LENGTH) {
-            throw new IllegalArgumentException("TPKT frame too large: " + length);
+        BerTlv tlv = payload.root();
+        if (tlv == null) {
+            return "decode-failed";
         }
-
-        byte[] frame = new byte[length];
-
-        frame[0] = TPKT_VERSION;
-        frame[1] = TPKT_RESERVED;
-        frame[2] = (byte) ((length >> 8) & 0xFF);
-        frame[3] = (byte) (length & 0xFF);
-
-        System.arraycopy(tpdu, 0, frame, 4, tpdu.length);
-
-        output.write(frame);
+        return "tagClass=" + tlv.tagClass()
+            + " constructed=" + tlv.constructed()
+            + " tagNumber=" + tlv.tagNumber()
+            + " len=" + tlv.length();
     }
 
-    private void sendRfc1006Disconnect(OutputStream output) throws Exception {
-        sendTpktFrame(output, new byte[] { 0x06, COTP_PDU_DR, 0x00, 0x00, 0x00, 0x00, 0x00 });
-        output.flush();
+    private void sendRfc1006Disconnect(TpktTransport transport) throws Exception {
+        transport.sendTpdu(new byte[] { 0x06, TpktTransport.PDU_DR, 0x00, 0x00, 0x00, 0x00, 0x00 });
     }
 
     private ProtocolKind detectProtocol(byte[] preview) {
@@ -933,19 +858,110 @@ public class P3GatewayServer {
             return false;
         }
 
-        try {
-            BerTlv tlv = BerCodec.decodeSingle(preview);
-            int totalLength = tlv.headerLength() + tlv.length();
-            return totalLength > 0 && totalLength <= preview.length;
-        } catch (RuntimeException ex) {
-            return false;
+        if ((first & 0x20) != 0 && (first & 0x1F) != 0x1F && (preview[1] & 0xFF) == 0x80) {
+            return true;
+        }
+
+        BerTlv tlv = BerCodec.tryDecodeSingle(preview).value();
+        return tlv != null && tlv.encodedLength() > 0 && tlv.encodedLength() <= preview.length;
+    }
+
+    /**
+     * Decides what {@link #handleRfc1006Session} does with one reassembled payload: classifies it,
+     * unwraps it down to the application APDU (along {@code profile} when it still matches) and
+     * runs the post-bind control and codec probes, without invoking a handler.
+     */
+    Dispatch planDispatch(InboundFrame inbound, byte[] payload, LayerProfile profile) {
+        String kind = classifyPayload(inbound, payload);
+        if (isSessionAbortWithUserData(payload)) {
+            return new Dispatch(kind, DispatchAction.SESSION_ABORT, null, null, false);
+        }
+        byte[] applicationPdu = replayLayerProfile(profile, inbound, payload, kind);
+        boolean replayed = applicationPdu != null;
+        if (!replayed) {
+            applicationPdu = extractApplicationPdu(inbound, payload, kind);
+        }
+        if (applicationPdu == null) {
+            DispatchAction action = isSessionAbortSpdu(payload) ? DispatchAction.SESSION_CLOSED : DispatchAction.UNSUPPORTED_PAYLOAD;
+            return new Dispatch(kind, action, null, null, false);
+        }
+
+        InboundFrame.Layer apdu = inbound.layer(applicationPdu);
+        DispatchAction action;
+        if (isTinyPostBindReleaseOrAckApdu(apdu) || isWrappedTinyReleaseOrAckApdu(applicationPdu)) {
+            action = DispatchAction.RELEASE_OR_ACK;
+        } else if (isPeerRosReject(apdu)) {
+            action = DispatchAction.ROS_REJECT;
+        } else if (isBenignZeroEnumeratedControl(applicationPdu)
+            || isPeerRejectOrAbortControl(applicationPdu)
+            || isPeerPostBindRejectControlApdu(apdu)) {
+            action = DispatchAction.IGNORED_CONTROL;
+        } else if (isSmallPostBindControlApdu(applicationPdu)) {
+            action = DispatchAction.SMALL_CONTROL;
+        } else if (apdu.p22Supported()) {
+            action = DispatchAction.P22;
+        } else if (apdu.p3Supported()) {
+            action = DispatchAction.P3;
+        } else {
+            action = DispatchAction.UNSUPPORTED_APDU;
+        }
+        return new Dispatch(kind, action, applicationPdu, apdu, replayed);
+    }
+
+    /**
+     * Unwraps {@code payload} along the path learned from an earlier PDU of the same association,
+     * or returns {@code null} so the caller falls back to {@link #extractApplicationPdu}.
+     */
+    private byte[] replayLayerProfile(LayerProfile profile, InboundFrame frame, byte[] payload, String kind) {
+        if (profile == null || !profile.kind().equals(kind)) {
+            return null;
+        }
+        byte[] body = profile.body(payload);
+        if (body == null) {
+            return null;
+        }
+        InboundFrame.Layer bodyLayer = frame.layer(body);
+        if (profile.contextId() != extractPresentationContextId(bodyLayer)) {
+            return null;
+        }
+        byte[] applicationPdu = profile.locate(body, bodyLayer.root());
+        if (applicationPdu == null || !frame.layer(applicationPdu).applicationSupported()) {
+            logger.debug("P3 gateway {} did not match payload; using heuristic unwrap", profile);
+            return null;
+        }
+        if (profile.sessionCarried()) {
+            // Response rewrapping asks the frame for the session user data again; hand it the body.
+            frame.layer(payload).inner(spdu -> body);
+        }
+        return applicationPdu;
+    }
+
+    private LayerProfile learnLayerProfile(InboundFrame frame, byte[] payload, String kind, byte[] applicationPdu) {
+        byte[] sessionUserData = "OSI_SESSION_SPDU".equals(kind)
+            ? frame.layer(payload).inner(this::extractSessionUserData)
+            : null;
+        if ("OSI_SESSION_SPDU".equals(kind) && sessionUserData == null) {
+            return null;
         }
+        byte[] body = sessionUserData == null ? payload : sessionUserData;
+        return LayerProfile.learn(
+            kind,
+            payload,
+            sessionUserData,
+            extractPresentationContextId(frame.layer(body)),
+            applicationPdu
+        );
     }
 
-    private String classifyPayload(byte[] payload) {
+    private String classifyPayload(InboundFrame frame, byte[] payload) {
         if (payload == null || payload.length == 0) {
             return "EMPTY";
         }
+        return frame.layer(payload).kind(this::classifyLayer);
+    }
+
+    private String classifyLayer(InboundFrame.Layer layer) {
+        byte[] payload = layer.encoded();
 
         int first = payload[0] & 0xFF;
 
@@ -958,9 +974,12 @@ public class P3GatewayServer {
         }
 
         try {
-            BerTlv tlv = BerCodec.decodeSingle(payload);
+            BerTlv tlv = layer.root();
+            if (tlv == null) {
+                return "UNKNOWN_BINARY";
+            }
 
-            if (looksLikeTopLevelAcse(payload)) {
+            if (payload.length >= 8 && looksLikeTopLevelAcse(tlv)) {
                 return "ACSE_APDU";
             }
 
@@ -977,11 +996,7 @@ public class P3GatewayServer {
             }
 
             // Native application APDUs only after wrapper checks
-            if (p3ProtocolCodec.isSupportedApplicationApdu(payload)) {
-                return "BER_APDU";
-            }
-
-            if (p22ProtocolCodec.isSupportedApplicationApdu(payload)) {
+            if (layer.applicationSupported()) {
                 return "BER_APDU";
             }
 
@@ -989,7 +1004,7 @@ public class P3GatewayServer {
             if (tlv.tagClass() == TAG_CLASS_UNIVERSAL
                 && tlv.constructed()
                 && tlv.tagNumber() == 16) {
-                List<BerTlv> fields = BerCodec.decodeAll(tlv.value());
+                List<BerTlv> fields = BerCodec.decodeChildren(tlv);
                 boolean hasContextId = false;
                 boolean hasPresentationDataValues = false;
 
@@ -1043,22 +1058,23 @@ public class P3GatewayServer {
         return payload != null && payload.length >= 2 && (payload[0] & 0xFF) == 0x19;
     }
 
-    private byte[] extractApplicationPdu(byte[] payload, String kind) {
+    private byte[] extractApplicationPdu(InboundFrame frame, byte[] payload, String kind) {
         if (payload == null || payload.length == 0) {
             return null;
         }
+        InboundFrame.Layer layer = frame.layer(payload);
         
         switch (kind) {
             case "BER_APDU":
                 return payload;
 
             case "OSI_SESSION_SPDU": {
-                byte[] sessionUserData = extractSessionUserData(payload);
+                byte[] sessionUserData = layer.inner(this::extractSessionUserData);
                 if (sessionUserData == null || sessionUserData.length == 0) {
                     return null;
                 }
 
-                String nestedKind = classifyPayload(sessionUserData);
+                String nestedKind = classifyPayload(frame, sessionUserData);
                 logger.info(
                     "P3 gateway session user-data classified kind={} first-bytes={}",
                     nestedKind,
@@ -1066,42 +1082,40 @@ public class P3GatewayServer {
                 );
 
                 // If carrier removal already produced a real app APDU, stop here.
-                if (p3ProtocolCodec.isSupportedApplicationApdu(sessionUserData)
-                    || p22ProtocolCodec.isSupportedApplicationApdu(sessionUserData)) {
+                if (frame.layer(sessionUserData).applicationSupported()) {
                     return sessionUserData;
                 }
 
-                return extractApplicationPdu(sessionUserData, nestedKind);
+                return extractApplicationPdu(frame, sessionUserData, nestedKind);
             }
 
             case "OSI_PRESENTATION_PPDU": {
-                byte[] ppduUserData = unwrapPresentation(payload);
+                byte[] ppduUserData = layer.inner(this::unwrapPresentation);
                 if (ppduUserData == null || ppduUserData.length == 0) {
                     return null;
                 }
 
-                String nestedKind = classifyPayload(ppduUserData);
+                String nestedKind = classifyPayload(frame, ppduUserData);
                 logger.info(
                     "P3 gateway presentation user-data classified kind={} first-bytes={}",
                     nestedKind,
                     toHexPreview(ppduUserData, 192)
                 );
 
-                if (p3ProtocolCodec.isSupportedApplicationApdu(ppduUserData)
-                    || p22ProtocolCodec.isSupportedApplicationApdu(ppduUserData)) {
+                if (frame.layer(ppduUserData).applicationSupported()) {
                     return ppduUserData;
                 }
 
-                return extractApplicationPdu(ppduUserData, nestedKind);
+                return extractApplicationPdu(frame, ppduUserData, nestedKind);
             }
 
             case "ACSE_APDU": {
-                byte[] acseUserData = unwrapAcse(payload);
+                byte[] acseUserData = layer.inner(this::unwrapAcse);
                 if (acseUserData == null || acseUserData.length == 0) {
                     return payload;
                 }
 
-                String nestedKind = classifyPayload(acseUserData);
+                String nestedKind = classifyPayload(frame, acseUserData);
                 logger.info(
                     "P3 gateway ACSE user-data classified kind={} first-bytes={}",
                     nestedKind,
@@ -1109,23 +1123,23 @@ public class P3GatewayServer {
                 );
 
                 // If ACSE unwrap already produced the application APDU, stop here.
-                if (p3ProtocolCodec.isSupportedApplicationApdu(acseUserData)
-                    || p22ProtocolCodec.isSupportedApplicationApdu(acseUserData)) {
+                if (frame.layer(acseUserData).applicationSupported()) {
                     return acseUserData;
                 }
 
                 if (!Arrays.equals(acseUserData, payload)) {
-                    return extractApplicationPdu(acseUserData, nestedKind);
+                    return extractApplicationPdu(frame, acseUserData, nestedKind);
                 }
 
                 return acseUserData;
             }
 
             case "OSI_PRESENTATION_USER_DATA": {
-                byte[] unwrapped = unwrapPresentationUserData(payload);
+                byte[] unwrapped = layer.inner(this::unwrapPresentationUserData);
                 if (unwrapped == null || unwrapped.length == 0) {
                     return null;
                 }
+                InboundFrame.Layer unwrappedLayer = frame.layer(unwrapped);
 
                 logger.info(
                     "P3 gateway unwrapped presentation user-data len={} first-bytes={}",
@@ -1133,16 +1147,15 @@ public class P3GatewayServer {
                     toHexPreview(unwrapped, 192)
                 );
                 
-                if (isTinyPostBindReleaseOrAckApdu(unwrapped) || isWrappedTinyReleaseOrAckApdu(payload)) {
+                if (isTinyPostBindReleaseOrAckApdu(unwrappedLayer) || isWrappedTinyReleaseOrAckApdu(payload)) {
                     return payload;
                 }
 
-                if (p3ProtocolCodec.isSupportedApplicationApdu(unwrapped)
-                    || p22ProtocolCodec.isSupportedApplicationApdu(unwrapped)) {
+                if (unwrappedLayer.applicationSupported()) {
                     return unwrapped;
                 }
                 
-                if (isRosInvokeOrResultOrError(unwrapped)) {
+                if (isRosInvokeOrResultOrError(unwrappedLayer)) {
                     logger.info(
                         "P3 gateway using full ROS APDU len={} first-bytes={}",
                         unwrapped.length,
@@ -1151,14 +1164,12 @@ public class P3GatewayServer {
                     return unwrapped;
                 }
                 
-                if (isFullRosApdu(unwrapped)) {
+                if (unwrappedLayer.length() >= 8 && isFullRosApdu(unwrappedLayer.root())) {
                     return unwrapped;
                 }
 
-                byte[] deeper = unwrapToRealApplicationApdu(unwrapped);
-                if (deeper != null
-                    && (p3ProtocolCodec.isSupportedApplicationApdu(deeper)
-                        || p22ProtocolCodec.isSupportedApplicationApdu(deeper))) {
+                byte[] deeper = unwrapToRealApplicationApdu(unwrappedLayer);
+                if (deeper != null && frame.layer(deeper).applicationSupported()) {
                     logger.info(
                         "P3 gateway deeper-unwrapped supported application payload len={} first-bytes={}",
                         deeper.length,
@@ -1167,9 +1178,9 @@ public class P3GatewayServer {
                     return deeper;
                 }
 
-                String nestedKind = classifyPayload(unwrapped);
+                String nestedKind = classifyPayload(frame, unwrapped);
                 if (!"BER_APDU".equals(nestedKind)) {
-                    byte[] nested = extractApplicationPdu(unwrapped, nestedKind);
+                    byte[] nested = extractApplicationPdu(frame, unwrapped, nestedKind);
                     if (nested != null) {
                         return nested;
                     }
@@ -1193,24 +1204,20 @@ public class P3GatewayServer {
         }
     }
     
-    private boolean isRosInvokeOrResultOrError(byte[] apdu) {
-        if (apdu == null || apdu.length < 4) {
+    private boolean isRosInvokeOrResultOrError(InboundFrame.Layer apdu) {
+        if (apdu.length() < 4) {
             return false;
         }
 
-        try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
-
-            return root.tagClass() == TAG_CLASS_CONTEXT
-                && root.constructed()
-                && (
-                    root.tagNumber() == 1 || // invoke
-                    root.tagNumber() == 2 || // returnResult
-                    root.tagNumber() == 3    // returnError
-                );
-        } catch (RuntimeException ex) {
-            return false;
-        }
+        BerTlv root = apdu.root();
+        return root != null
+            && root.tagClass() == TAG_CLASS_CONTEXT
+            && root.constructed()
+            && (
+                root.tagNumber() == 1 || // invoke
+                root.tagNumber() == 2 || // returnResult
+                root.tagNumber() == 3    // returnError
+            );
     }
 
     private byte[] unwrapPresentationUserData(byte[] encoded) {
@@ -1226,7 +1233,7 @@ public class P3GatewayServer {
                 && tlv.constructed()
                 && tlv.tagNumber() == 1) {
 
-                List<BerTlv> pdvLists = BerCodec.decodeAll(tlv.value());
+                List<BerTlv> pdvLists = BerCodec.decodeChildren(tlv);
                 for (BerTlv pdvList : pdvLists) {
                     byte[] payload = unwrapPresentationPdvList(pdvList);
                     if (payload != null && payload.length > 0) {
@@ -1266,7 +1273,7 @@ public class P3GatewayServer {
         }
 
         try {
-            List<BerTlv> fields = BerCodec.decodeAll(pdvList.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(pdvList);
 
             for (BerTlv field : fields) {
                 boolean isPresentationDataValues =
@@ -1309,18 +1316,12 @@ public class P3GatewayServer {
         }
     }
     
-    private byte[] unwrapToRealApplicationApdu(byte[] encoded) {
-        if (encoded == null || encoded.length < 16) {
+    private byte[] unwrapToRealApplicationApdu(InboundFrame.Layer encoded) {
+        if (encoded.length() < 16 || encoded.root() == null) {
             return null;
         }
 
-        try {
-            BerTlv root = BerCodec.decodeSingle(encoded);
-            return findBestNestedApplicationApdu(root);
-        } catch (RuntimeException ex) {
-            logger.debug("Failed to unwrap nested presentation value: {}", ex.getMessage());
-            return null;
-        }
+        return findBestNestedApplicationApdu(encoded.root());
     }
 
     private byte[] findBestNestedApplicationApdu(BerTlv node) {
@@ -1354,7 +1355,7 @@ public class P3GatewayServer {
                 && node.value().length >= 2) {
 
                 try {
-                    BerTlv inner = BerCodec.decodeSingle(node.value());
+                    BerTlv inner = BerCodec.decodeNested(node);
                     return findBestNestedApplicationApdu(inner);
                 } catch (RuntimeException ignored) {
                     return null;
@@ -1362,7 +1363,7 @@ public class P3GatewayServer {
             }
 
             if (node.constructed()) {
-                for (BerTlv child : BerCodec.decodeAll(node.value())) {
+                for (BerTlv child : BerCodec.decodeChildren(node)) {
                     byte[] found = findBestNestedApplicationApdu(child);
                     if (found != null) {
                         return found;
@@ -1380,9 +1381,15 @@ public class P3GatewayServer {
             return false;
         }
 
-        try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
+        return isFullRosApdu(BerCodec.tryDecodeSingle(apdu).value());
+    }
 
+    private boolean isFullRosApdu(BerTlv root) {
+        if (root == null) {
+            return false;
+        }
+
+        try {
             // Your trace shows full ROS invoke starts with A1:
             // A1 ... 02 01 invokeId 02 01 operationCode ...
             if (root.tagClass() != TAG_CLASS_CONTEXT || !root.constructed()) {
@@ -1394,7 +1401,7 @@ public class P3GatewayServer {
                 return false;
             }
 
-            List<BerTlv> fields = BerCodec.decodeAll(root.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(root);
 
             boolean hasInvokeId = false;
             for (BerTlv field : fields) {
@@ -1466,7 +1473,7 @@ public class P3GatewayServer {
         );
     }
 
-    private byte[] rewrapResponse(byte[] inboundPayload, String inboundKind, byte[] applicationResponse) {
+    private byte[] rewrapResponse(InboundFrame frame, byte[] inboundPayload, String inboundKind, byte[] applicationResponse) {
         if (applicationResponse == null) {
             return new byte[0];
         }
@@ -1493,7 +1500,7 @@ public class P3GatewayServer {
         }
 
         if ("OSI_SESSION_SPDU".equals(inboundKind)) {
-            return rewrapSessionSpdu(inboundPayload, applicationResponse);
+            return rewrapSessionSpdu(frame, inboundPayload, applicationResponse);
         }
 
         return applicationResponse;
@@ -1535,19 +1542,19 @@ public class P3GatewayServer {
         return rebuiltUserData != null ? rebuiltUserData : applicationResponse;
     }
 
-    private byte[] rewrapSessionSpdu(byte[] inboundSessionSpdu, byte[] applicationResponse) {
-        byte[] sessionUserData = extractSessionUserData(inboundSessionSpdu);
+    private byte[] rewrapSessionSpdu(InboundFrame frame, byte[] inboundSessionSpdu, byte[] applicationResponse) {
+        byte[] sessionUserData = frame.layer(inboundSessionSpdu).inner(this::extractSessionUserData);
         if (sessionUserData == null || sessionUserData.length == 0) {
             return applicationResponse;
         }
 
-        String nestedKind = classifyPayload(sessionUserData);
+        String nestedKind = classifyPayload(frame, sessionUserData);
 
         byte[] nestedResponse;
         if ("OSI_PRESENTATION_USER_DATA".equals(nestedKind)) {
             nestedResponse = rewrapPresentationUserData(sessionUserData, applicationResponse);
         } else {
-            nestedResponse = rewrapNestedInsideSession(sessionUserData, nestedKind, applicationResponse);
+            nestedResponse = rewrapNestedInsideSession(frame, sessionUserData, nestedKind, applicationResponse);
         }
 
         if (looksLikePostBindSessionCarrier(inboundSessionSpdu)) {
@@ -1621,7 +1628,7 @@ public class P3GatewayServer {
         return rebuilt;
     }
 
-    private byte[] rewrapNestedInsideSession(byte[] sessionUserData, String nestedKind, byte[] applicationResponse) {
+    private byte[] rewrapNestedInsideSession(InboundFrame frame, byte[] sessionUserData, String nestedKind, byte[] applicationResponse) {
         if ("OSI_PRESENTATION_PPDU".equals(nestedKind)) {
             return rewrapPresentationPpdu(sessionUserData, applicationResponse);
         }
@@ -1644,7 +1651,7 @@ public class P3GatewayServer {
         }
 
         if ("BER_APDU".equals(nestedKind)) {
-            byte[] maybePresentationWrapped = tryBuildPostBindPresentationUserData(sessionUserData, applicationResponse);
+            byte[] maybePresentationWrapped = tryBuildPostBindPresentationUserData(frame, sessionUserData, applicationResponse);
             if (maybePresentationWrapped != null) {
                 logger.info(
                     "P3 session->postbind-presentation branch rebuilt-first-bytes={}",
@@ -1657,7 +1664,7 @@ public class P3GatewayServer {
         return applicationResponse;
     }
 
-    private byte[] tryBuildPostBindPresentationUserData(byte[] inboundSessionUserData, byte[] applicationResponse) {
+    private byte[] tryBuildPostBindPresentationUserData(InboundFrame frame, byte[] inboundSessionUserData, byte[] applicationResponse) {
         if (inboundSessionUserData == null || inboundSessionUserData.length == 0 || applicationResponse == null) {
             return null;
         }
@@ -1671,7 +1678,7 @@ public class P3GatewayServer {
                 byte[] acseUserData = unwrapAcse(inboundSessionUserData);
 
                 if (acseUserData != null && acseUserData.length > 0) {
-                    String acseNestedKind = classifyPayload(acseUserData);
+                    String acseNestedKind = classifyPayload(frame, acseUserData);
 
                     if ("OSI_PRESENTATION_USER_DATA".equals(acseNestedKind)) {
                         int contextId = extractPresentationContextId(acseUserData);
@@ -1696,7 +1703,7 @@ public class P3GatewayServer {
              * If the fallback extraction landed on a BER blob that itself is presentation user-data,
              * rebuild that directly.
              */
-            String kind = classifyPayload(inboundSessionUserData);
+            String kind = classifyPayload(frame, inboundSessionUserData);
             if ("OSI_PRESENTATION_USER_DATA".equals(kind)) {
                 int contextId = extractPresentationContextId(inboundSessionUserData);
                 byte[] rebuiltPresUd = buildPresentationUserData(applicationResponse, contextId);
@@ -1723,17 +1730,26 @@ public class P3GatewayServer {
     private int extractPresentationContextId(byte[] encoded) { 
     	if (encoded == null || encoded.length == 0) { 
     		return 1; 
-    	} try { 
-    		BerTlv root = BerCodec.decodeSingle(encoded); 
+    	}
+    	BerTlv root = BerCodec.tryDecodeSingle(encoded).value();
+    	return root == null ? 1 : extractPresentationContextId(root);
+    }
+
+    private int extractPresentationContextId(InboundFrame.Layer layer) {
+    	return layer.root() == null ? 1 : extractPresentationContextId(layer.root());
+    }
+
+    private int extractPresentationContextId(BerTlv root) { 
+    	try { 
     		if (!looksLikePresentationFullyEncodedData(root)) {
     			return 1; 
     		} 
-    		List<BerTlv> pdvItems = BerCodec.decodeAll(root.value()); 
+    		List<BerTlv> pdvItems = BerCodec.decodeChildren(root); 
     		for (BerTlv pdvItem : pdvItems) { 
     			if (pdvItem.tagClass() != TAG_CLASS_UNIVERSAL || !pdvItem.constructed() || pdvItem.tagNumber() != 16) { 
     				continue; 
     			} 
-    			List<BerTlv> fields = BerCodec.decodeAll(pdvItem.value()); 
+    			List<BerTlv> fields = BerCodec.decodeChildren(pdvItem); 
     			for (BerTlv field : fields) { 
     				if (field.tagClass() == TAG_CLASS_UNIVERSAL && !field.constructed() && field.tagNumber() == 2) { 
     					return decodeSmallPositiveInteger(field.value()); 
@@ -1779,7 +1795,7 @@ public class P3GatewayServer {
                 return null;
             }
 
-            for (BerTlv child : BerCodec.decodeAll(node.value())) {
+            for (BerTlv child : BerCodec.decodeChildren(node)) {
                 byte[] found = findAcseApduInNode(child);
                 if (found != null) {
                     return found;
@@ -1828,7 +1844,7 @@ public class P3GatewayServer {
                 return null;
             }
 
-            List<BerTlv> rootChildren = BerCodec.decodeAll(root.value());
+            List<BerTlv> rootChildren = BerCodec.decodeChildren(root);
 
             BerTlv modeSelector = null;
             BerTlv inboundNormalModeParameters = null;
@@ -1882,7 +1898,7 @@ public class P3GatewayServer {
 
         if (inboundNormalModeParameters != null) {
             try {
-                for (BerTlv child : BerCodec.decodeAll(inboundNormalModeParameters.value())) {
+                for (BerTlv child : BerCodec.decodeChildren(inboundNormalModeParameters)) {
                     if (isPresentationCpContextDefinitionList(child)) {
                         inboundContextDefinitionList = child;
                     } else if (inboundPayloadChild == null) {
@@ -1999,7 +2015,7 @@ public class P3GatewayServer {
         List<BerTlv> items;
 
         try {
-            List<BerTlv> directItems = BerCodec.decodeAll(inboundListChild.value());
+            List<BerTlv> directItems = BerCodec.decodeChildren(inboundListChild);
 
             if (directItems.size() == 1
                 && directItems.get(0).tagClass() == TAG_CLASS_UNIVERSAL
@@ -2007,7 +2023,7 @@ public class P3GatewayServer {
                 && directItems.get(0).tagNumber() == 16) {
 
                 BerTlv maybeWrapper = directItems.get(0);
-                List<BerTlv> nested = BerCodec.decodeAll(maybeWrapper.value());
+                List<BerTlv> nested = BerCodec.decodeChildren(maybeWrapper);
 
                 boolean nestedAreItems = !nested.isEmpty();
                 for (BerTlv nestedItem : nested) {
@@ -2032,7 +2048,7 @@ public class P3GatewayServer {
                 throw new IllegalArgumentException("Presentation context definition item must be SEQUENCE");
             }
 
-            List<BerTlv> fields = BerCodec.decodeAll(item.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(item);
             if (fields.size() < 3) {
                 throw new IllegalArgumentException(
                     "Presentation context definition item must contain id, abstract syntax and transfer syntax list"
@@ -2107,7 +2123,7 @@ public class P3GatewayServer {
                 && inboundPayloadChild.tagNumber() == 1
                 && !looksLikeTopLevelAcse(inboundEncoded)) {
 
-                List<BerTlv> pdvItems = BerCodec.decodeAll(inboundPayloadChild.value());
+                List<BerTlv> pdvItems = BerCodec.decodeChildren(inboundPayloadChild);
                 if (pdvItems.isEmpty()) {
                     return null;
                 }
@@ -2153,7 +2169,7 @@ public class P3GatewayServer {
                 return null;
             }
 
-            List<BerTlv> fields = BerCodec.decodeAll(pdvListNode.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(pdvListNode);
             if (fields.isEmpty()) {
                 return null;
             }
@@ -2497,9 +2513,8 @@ public class P3GatewayServer {
         }
 
         try {
-            byte[] candidate = Arrays.copyOfRange(data, offset, data.length);
-            BerTlv tlv = BerCodec.decodeSingle(candidate);
-            int totalLength = tlv.headerLength() + tlv.length();
+            BerTlv tlv = BerCodec.decodeSingle(data, offset, data.length - offset);
+            int totalLength = tlv.encodedLength();
 
             if (totalLength <= 0 || offset + totalLength > data.length) {
                 return null;
@@ -2676,17 +2691,21 @@ public class P3GatewayServer {
 
         for (int i = 0; i < data.length - 1; i++) {
             try {
-                byte[] candidate = Arrays.copyOfRange(data, i, data.length);
-                BerTlv tlv = BerCodec.decodeSingle(candidate);
-                int totalLength = tlv.headerLength() + tlv.length();
+                BerTlv tlv = BerCodec.decodeSingle(data, i, data.length - i);
+                int totalLength = tlv.encodedLength();
 
                 if (totalLength <= 0 || i + totalLength > data.length) {
                     continue;
                 }
 
-                byte[] encoded = Arrays.copyOfRange(data, i, i + totalLength);
+                // Candidates that cannot win even with every codec bonus skip the decoding probes.
+                int score = scoreEmbeddedAsn1Structure(tlv, totalLength, i);
+                if (score == Integer.MIN_VALUE || score + EMBEDDED_ASN1_MAX_CODEC_SCORE <= bestScore) {
+                    continue;
+                }
 
-                int score = scoreEmbeddedAsn1Candidate(tlv, encoded, i, data.length);
+                byte[] encoded = Arrays.copyOfRange(data, i, i + totalLength);
+                score += scoreEmbeddedAsn1Codecs(encoded);
                 if (score > bestScore) {
                     bestScore = score;
                     bestOffset = i;
@@ -2702,8 +2721,9 @@ public class P3GatewayServer {
         return bestOffset;
     }
     
-    private int scoreEmbeddedAsn1Candidate(BerTlv tlv, byte[] encoded, int offset, int containerLength) {
-        if (tlv == null || encoded == null || encoded.length == 0) {
+    private int scoreEmbeddedAsn1Structure(BerTlv tlv, int encodedLength, int offset) {
+        // Absolute reject tiny nodes
+        if (tlv == null || encodedLength < 12) {
             return Integer.MIN_VALUE;
         }
 
@@ -2713,35 +2733,20 @@ public class P3GatewayServer {
         score -= offset;
 
         // Prefer larger candidates.
-        score += Math.min(encoded.length, 4096);
+        score += Math.min(encodedLength, 4096);
 
         // Strongly prefer top-level application constructed nodes.
         if (tlv.tagClass() == TAG_CLASS_APPLICATION && tlv.constructed()) {
             score += 5000;
         }
 
-        // Prefer ACSE if it really decodes.
-        if (looksLikeTopLevelAcse(encoded)) {
-            score += 4000;
-        }
-
-        // Prefer known P3 APDUs.
-        if (p3ProtocolCodec.isSupportedApplicationApdu(encoded)) {
-            score += 3500;
-        }
-
-        // Prefer known P22 APDUs.
-        if (p22ProtocolCodec.isSupportedApplicationApdu(encoded)) {
-            score += 3000;
-        }
-
         // Prefer Presentation root.
         if (tlv.tagClass() == TAG_CLASS_UNIVERSAL && tlv.constructed() && tlv.tagNumber() == 17) {
             score += 2500;
         }
 
         // Penalize tiny inner fragments heavily.
-        if (encoded.length < 16) {
+        if (encodedLength < 16) {
             score -= 5000;
         }
 
@@ -2751,13 +2756,29 @@ public class P3GatewayServer {
         }
 
         // High-tag-number context-specific tiny fields like BF 02 01 01 are almost never the real app PDU here.
-        if (tlv.tagClass() == TAG_CLASS_CONTEXT && encoded.length < 32) {
+        if (tlv.tagClass() == TAG_CLASS_CONTEXT && encodedLength < 32) {
             score -= 3000;
         }
-        
-        // Absolute reject tiny nodes
-        if (encoded.length < 12) {
-            return Integer.MIN_VALUE;
+
+        return score;
+    }
+
+    private int scoreEmbeddedAsn1Codecs(byte[] encoded) {
+        int score = 0;
+
+        // Prefer ACSE if it really decodes.
+        if (looksLikeTopLevelAcse(encoded)) {
+            score += 4000;
+        }
+
+        // Prefer known P3 APDUs.
+        if (p3ProtocolCodec.isSupportedApplicationApdu(encoded)) {
+            score += 3500;
+        }
+
+        // Prefer known P22 APDUs.
+        if (p22ProtocolCodec.isSupportedApplicationApdu(encoded)) {
+            score += 3000;
         }
 
         return score;
@@ -2846,6 +2867,7 @@ public class P3GatewayServer {
     }
     
     private static final int POST_BIND_SESSION_CARRIER_PREFIX_LEN = 7;
+    private static final int EMBEDDED_ASN1_MAX_CODEC_SCORE = 4000 + 3500 + 3000;
 
     private boolean looksLikePostBindSessionCarrier(byte[] spdu) {
         return spdu != null
@@ -2903,7 +2925,7 @@ public class P3GatewayServer {
 
     private List<Integer> findPresentationPayloadPath(BerTlv root) {
         try {
-            List<BerTlv> children = BerCodec.decodeAll(root.value());
+            List<BerTlv> children = BerCodec.decodeChildren(root);
 
             logger.info(
                 "P3 gateway presentation root children count={} first-bytes={}",
@@ -2968,7 +2990,7 @@ public class P3GatewayServer {
 
         if (node.constructed()) {
             try {
-                List<BerTlv> children = BerCodec.decodeAll(node.value());
+                List<BerTlv> children = BerCodec.decodeChildren(node);
 
                 for (int i = 0; i < children.size(); i++) {
                     List<Integer> nested = findPayloadPathInNode(children.get(i));
@@ -3005,7 +3027,7 @@ public class P3GatewayServer {
         BerTlv current = root;
 
         for (Integer index : path) {
-            List<BerTlv> children = BerCodec.decodeAll(current.value());
+            List<BerTlv> children = BerCodec.decodeChildren(current);
             if (index < 0 || index >= children.size()) {
                 return null;
             }
@@ -3037,7 +3059,7 @@ public class P3GatewayServer {
 
         if (tlv.tagClass() == TAG_CLASS_CONTEXT && tlv.constructed()) {
             try {
-                List<BerTlv> nested = BerCodec.decodeAll(tlv.value());
+                List<BerTlv> nested = BerCodec.decodeChildren(tlv);
                 if (nested.size() == 1) {
                     byte[] child = BerCodec.encode(nested.get(0));
                     if (child.length <= 8) {
@@ -3090,7 +3112,7 @@ public class P3GatewayServer {
             }
 
             if (node.constructed()) {
-                for (BerTlv child : BerCodec.decodeAll(node.value())) {
+                for (BerTlv child : BerCodec.decodeChildren(node)) {
                     byte[] found = findEmbeddedRoseOrApplication(child);
                     if (found != null) {
                         return found;
@@ -3114,7 +3136,7 @@ public class P3GatewayServer {
             }
 
             if (node.constructed()) {
-                for (BerTlv child : BerCodec.decodeAll(node.value())) {
+                for (BerTlv child : BerCodec.decodeChildren(node)) {
                     byte[] found = unwrapAcseNode(child);
                     if (found != null) {
                         return found;
@@ -3133,13 +3155,13 @@ public class P3GatewayServer {
         }
 
         try {
-            BerTlv external = BerCodec.decodeSingle(userInfoField.value());
+            BerTlv external = BerCodec.decodeNested(userInfoField);
 
             if (external.tagClass() != TAG_CLASS_UNIVERSAL || external.tagNumber() != 8) {
                 return null;
             }
 
-            List<BerTlv> externalElements = BerCodec.decodeAll(external.value());
+            List<BerTlv> externalElements = BerCodec.decodeChildren(external);
 
             for (BerTlv element : externalElements) {
                 if (element.tagClass() == TAG_CLASS_CONTEXT && element.tagNumber() == 0) {
@@ -3257,9 +3279,12 @@ public class P3GatewayServer {
             return false;
         }
 
-        try {
-            BerTlv tlv = BerCodec.decodeSingle(encoded);
+        BerTlv tlv = BerCodec.tryDecodeSingle(encoded).value();
+        return tlv != null && looksLikeTopLevelAcse(tlv);
+    }
 
+    private boolean looksLikeTopLevelAcse(BerTlv tlv) {
+        try {
             if (tlv.tagClass() != TAG_CLASS_APPLICATION || !tlv.constructed()) {
                 return false;
             }
@@ -3292,7 +3317,7 @@ public class P3GatewayServer {
         }
 
         try {
-            List<BerTlv> pdvItems = BerCodec.decodeAll(tlv.value());
+            List<BerTlv> pdvItems = BerCodec.decodeChildren(tlv);
             if (pdvItems.isEmpty()) {
                 return false;
             }
@@ -3304,7 +3329,7 @@ public class P3GatewayServer {
                     return false;
                 }
 
-                List<BerTlv> fields = BerCodec.decodeAll(item.value());
+                List<BerTlv> fields = BerCodec.decodeChildren(item);
                 if (fields.isEmpty()) {
                     return false;
                 }
@@ -3342,7 +3367,7 @@ public class P3GatewayServer {
         }
 
         try {
-            List<BerTlv> fields = BerCodec.decodeAll(tlv.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(tlv);
             if (fields.isEmpty()) {
                 return false;
             }
@@ -3372,9 +3397,9 @@ public class P3GatewayServer {
                 return Optional.empty();
             }
 
-            List<BerTlv> fields = BerCodec.decodeAll(aarq.value());
+            List<BerTlv> fields = BerCodec.decodeChildren(aarq);
             return BerCodec.findOptional(fields, TAG_CLASS_CONTEXT, 1).map(field -> {
-                BerTlv oid = BerCodec.decodeSingle(field.value());
+                BerTlv oid = BerCodec.decodeNested(field);
                 if (!oid.isUniversal() || oid.tagNumber() != 6) {
                     throw new IllegalArgumentException("AARQ application-context-name is not an OBJECT IDENTIFIER");
                 }
@@ -3429,18 +3454,11 @@ public class P3GatewayServer {
     }
 
     private String toHexByte(byte value) {
-        return String.format("%02X", value & 0xFF);
+        return HEX.toHexDigits(value);
     }
 
     private String toHex(byte[] bytes) {
-        StringBuilder value = new StringBuilder();
-        for (int i = 0; i < bytes.length; i++) {
-            if (i > 0) {
-                value.append(' ');
-            }
-            value.append(String.format("%02X", bytes[i] & 0xFF));
-        }
-        return value.toString();
+        return HEX.formatHex(bytes);
     }
 
     private String toHexPreview(byte[] bytes, int maxBytes) {
@@ -3494,7 +3512,21 @@ public class P3GatewayServer {
         }
     }
 
-    private record CotpFrame(byte type, boolean endOfTsdu, byte[] userData, byte[] payload) {}
+    enum DispatchAction {
+        SESSION_ABORT,
+        SESSION_CLOSED,
+        UNSUPPORTED_PAYLOAD,
+        RELEASE_OR_ACK,
+        ROS_REJECT,
+        IGNORED_CONTROL,
+        SMALL_CONTROL,
+        P22,
+        P3,
+        UNSUPPORTED_APDU
+    }
+
+    record Dispatch(String kind, DispatchAction action, byte[] applicationPdu, InboundFrame.Layer apdu, boolean replayed) {}
+
     private record SessionParameter(int pi, byte[] value) {}
     private record PresentationContextDefinition(int presentationContextId, String abstractSyntaxOid) {}
 
@@ -1,11 +1,16 @@
 package it.amhs.network;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
@@ -28,11 +33,23 @@ public class RFC1006Server {
     private final SSLContext tls;
     private final boolean tlsEnabled;
     private final boolean needClientAuth;
+    private final TransportMode transportMode;
+    private final ConnectionAdmission admission;
     private final ExecutorService clientExecutor;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong acceptedSessions = new AtomicLong();
+    private final AtomicLong rejectedSessions = new AtomicLong();
+    private final AtomicLong totalDispatchNanos = new AtomicLong();
+    private final AtomicLong maxDispatchNanos = new AtomicLong();
+    private volatile ServerSocket serverSocket;
 
     public RFC1006Server(@Value("${rfc1006.server.host:0.0.0.0}") String host,
                          @Value("${rfc1006.server.port:102}") int port,
                          @Value("${rfc1006.server.max-clients:32}") int maxClients,
+                         @Value("${rfc1006.server.transport:platform}") String transport,
+                         @Value("${rfc1006.server.max-virtual-sessions:10000}") int maxVirtualSessions,
+                         @Value("${rfc1006.server.max-queued-clients:32}") int maxQueuedClients,
+                         @Value("${rfc1006.server.max-connections-per-source:0}") int maxConnectionsPerSource,
                          @Value("${rfc1006.tls.enabled:false}") boolean tlsEnabled,
                          @Value("${rfc1006.tls.need-client-auth:false}") boolean needClientAuth,
                          SSLContext tls, RFC1006Service rfc1006Service) {
@@ -42,13 +59,31 @@ public class RFC1006Server {
 		if (maxClients < 1) {
 			throw new IllegalArgumentException("rfc1006.server.max-clients must be >= 1");
 		}
+		if (maxVirtualSessions < 1) {
+			throw new IllegalArgumentException("rfc1006.server.max-virtual-sessions must be >= 1");
+		}
+		if (maxQueuedClients < 0) {
+			throw new IllegalArgumentException("rfc1006.server.max-queued-clients must be >= 0");
+		}
+		if (maxConnectionsPerSource < 0) {
+			throw new IllegalArgumentException("rfc1006.server.max-connections-per-source must be >= 0");
+		}
 		this.host = host;
 		this.port = port;
 		this.tls = tls;
 		this.tlsEnabled = tlsEnabled;
 		this.needClientAuth = needClientAuth;
 		this.rfc1006Service = rfc1006Service;
-        this.clientExecutor = Executors.newFixedThreadPool(maxClients, new NamedDaemonThreadFactory());
+		this.transportMode = TransportMode.from(transport);
+		if (transportMode == TransportMode.VIRTUAL) {
+			this.admission = new ConnectionAdmission(maxVirtualSessions, maxConnectionsPerSource);
+			this.clientExecutor = Executors.newThreadPerTaskExecutor(
+				Thread.ofVirtual().name("amhs-rfc1006-vclient-", 1).factory()
+			);
+		} else {
+			this.admission = new ConnectionAdmission(maxClients + maxQueuedClients, maxConnectionsPerSource);
+			this.clientExecutor = ConnectionAdmission.workerPool(maxClients, maxQueuedClients, new NamedDaemonThreadFactory());
+		}
     }
 
     public void start() throws Exception {
@@ -56,21 +91,125 @@ public class RFC1006Server {
             SSLServerSocket server = (SSLServerSocket) tls.getServerSocketFactory().createServerSocket(port, 50, InetAddress.getByName(host));
             server.setEnabledProtocols(new String[]{"TLSv1.3", "TLSv1.2"});
             server.setNeedClientAuth(needClientAuth);
-            logger.info("AMHS RFC1006 TLS server listening on {}:{}", host, port);
+            logger.info("AMHS RFC1006 TLS server listening on {}:{} transport={}", host, port, transportMode);
             acceptLoop(server);
             return;
         }
 
         ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(host));
-        logger.info("AMHS RFC1006 clear transport server listening on {}:{}", host, port);
+        logger.info("AMHS RFC1006 clear transport server listening on {}:{} transport={}", host, port, transportMode);
         acceptLoop(server);
     }
 
+    /**
+     * Closes the listening socket; sessions already running are left to finish on their own.
+     */
+    public void stop() throws IOException {
+        ServerSocket server = serverSocket;
+        if (server != null) {
+            server.close();
+        }
+        clientExecutor.shutdown();
+    }
+
+    public TransportStats stats() {
+        long accepted = acceptedSessions.get();
+        return new TransportStats(
+            transportMode.name(),
+            activeSessions.get(),
+            accepted,
+            rejectedSessions.get(),
+            accepted == 0 ? 0 : totalDispatchNanos.get() / accepted / 1_000,
+            maxDispatchNanos.get() / 1_000,
+            Math.max(0, admission.admitted() - activeSessions.get()),
+            admission.refusedAtSourceLimit()
+        );
+    }
+
     private void acceptLoop(ServerSocket server) throws Exception {
+        serverSocket = server;
         while (true) {
-            Socket socket = server.accept();
-            logger.info("AMHS Connection from {}", socket.getInetAddress());
-            clientExecutor.execute(() -> rfc1006Service.handleClient(socket));
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException ex) {
+                if (server.isClosed()) {
+                    logger.info("AMHS RFC1006 server on {}:{} stopped", host, port);
+                    return;
+                }
+                throw ex;
+            }
+            long acceptedAt = System.nanoTime();
+            InetAddress source = socket.getInetAddress();
+            ConnectionAdmission.Decision decision = admission.tryAdmit(source);
+            if (decision != ConnectionAdmission.Decision.ADMITTED) {
+                refuse(socket, source, decision == ConnectionAdmission.Decision.SOURCE_LIMIT
+                    ? "per-source connection limit" : "session limit");
+                continue;
+            }
+            logger.info("AMHS Connection from {}", source);
+            try {
+                clientExecutor.execute(() -> runSession(socket, source, acceptedAt));
+            } catch (RejectedExecutionException ex) {
+                admission.release(source);
+                refuse(socket, source, "worker queue limit");
+            }
+        }
+    }
+
+    private void refuse(Socket socket, InetAddress source, String limit) {
+        rejectedSessions.incrementAndGet();
+        logger.warn("AMHS RFC1006 {} reached; rejecting connection from {}", limit, source);
+        admission.refuse(socket, true);
+    }
+
+    private void runSession(Socket socket, InetAddress source, long acceptedAt) {
+        long dispatchNanos = System.nanoTime() - acceptedAt;
+        acceptedSessions.incrementAndGet();
+        totalDispatchNanos.addAndGet(dispatchNanos);
+        maxDispatchNanos.accumulateAndGet(dispatchNanos, Math::max);
+        activeSessions.incrementAndGet();
+        try {
+            rfc1006Service.handleClient(socket);
+        } finally {
+            admission.release(source);
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Session counters; dispatch latency is the time from {@code accept()} returning until the
+     * session handler starts, which includes any wait for a free worker in platform mode.
+     * {@code rejectedSessions} counts every refused connection, {@code rejectedPerSource} the
+     * ones refused by the per-source limit.
+     */
+    public record TransportStats(
+        String transport,
+        int activeSessions,
+        long acceptedSessions,
+        long rejectedSessions,
+        long meanDispatchMicros,
+        long maxDispatchMicros,
+        int queuedSessions,
+        long rejectedPerSource
+    ) {
+    }
+
+    private enum TransportMode {
+        PLATFORM,
+        VIRTUAL;
+
+        private static TransportMode from(String value) {
+            if (value == null || value.isBlank()) {
+                return PLATFORM;
+            }
+            try {
+                return TransportMode.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(
+                    "Invalid rfc1006.server.transport value '" + value + "'. Supported values: PLATFORM, VIRTUAL"
+                );
+            }
         }
     }
 
@@ -1,9 +1,13 @@
 package it.amhs.repository;
 
-import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import it.amhs.domain.AMHSDeliveryReport;
 import it.amhs.domain.AMHSMessage;
@@ -11,7 +15,26 @@ import it.amhs.domain.AMHSMessage;
 @Repository
 public interface AMHSDeliveryReportRepository extends JpaRepository<AMHSDeliveryReport, Long> {
 
-    List<AMHSDeliveryReport> findByMessage(AMHSMessage message);
+    Optional<AMHSDeliveryReport> findFirstByMessageOrderByGeneratedAtDescIdDesc(AMHSMessage message);
 
-    List<AMHSDeliveryReport> findByRecipientIgnoreCaseAndIdGreaterThanOrderByIdAsc(String recipient, Long id);
+    /**
+     * Next report in a recipient mailbox after {@code id}; {@code recipientNormalized} must come from
+     * {@link AMHSDeliveryReport#normalizeRecipient(String)}.
+     */
+    Optional<AMHSDeliveryReport> findFirstByRecipientNormalizedAndIdGreaterThanOrderByIdAsc(String recipientNormalized, Long id);
+
+    @Query("select coalesce(max(r.id), 0) from AMHSDeliveryReport r")
+    long findMaxId();
+
+    boolean existsByRecipientNormalizedIsNull();
+
+    /**
+     * Fills {@code recipient_normalized} for reports stored before the column existed, limited to
+     * ids in {@code (afterId, upToId]} so each batch is a short transaction on the primary key.
+     */
+    @Modifying
+    @Transactional
+    @Query("update AMHSDeliveryReport r set r.recipientNormalized = upper(trim(r.recipient)) "
+        + "where r.recipientNormalized is null and r.id > :afterId and r.id <= :upToId")
+    int backfillNormalizedRecipients(@Param("afterId") long afterId, @Param("upToId") long upToId);
 }
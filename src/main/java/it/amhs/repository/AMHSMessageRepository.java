@@ -4,9 +4,17 @@ import java.util.Date;
 import java.util.Optional;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 import it.amhs.domain.AMHSMessage;
 import it.amhs.domain.AMHSMessageState;
 import it.amhs.domain.AMHSProfile;
@@ -26,6 +34,36 @@ public interface AMHSMessageRepository extends JpaRepository<AMHSMessage, Long>
 
 	List<AMHSMessage> findByLifecycleStateIn(List<AMHSMessageState> states);
 
+	/**
+	 * Returns messages in {@code state} that have never been scheduled for a retry, in id order,
+	 * locking them with {@code FOR UPDATE SKIP LOCKED} so concurrent scanners claim disjoint rows.
+	 * Served in index order by {@code (lifecycle_state, next_retry_at, id)}.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+	@Query("""
+		select m from AMHSMessage m
+		where m.lifecycleState = :state
+		  and m.nextRetryAt is null
+		order by m.id
+		""")
+	List<AMHSMessage> findUnscheduledForRelay(@Param("state") AMHSMessageState state, Pageable page);
+
+	/**
+	 * Returns messages in {@code state} whose retry time has passed, oldest retry first, locking
+	 * them like {@link #findUnscheduledForRelay}. Served in index order by
+	 * {@code (lifecycle_state, next_retry_at, id)}.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+	@Query("""
+		select m from AMHSMessage m
+		where m.lifecycleState = :state
+		  and m.nextRetryAt <= :now
+		order by m.nextRetryAt, m.id
+		""")
+	List<AMHSMessage> findRetryDueForRelay(@Param("state") AMHSMessageState state, @Param("now") Date now, Pageable page);
+
 	long deleteByReceivedAtBefore(Date cutoff);
 
 }
@@ -1,24 +1,47 @@
 package it.amhs.service.address;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.springframework.util.StringUtils;
 
+/**
+ * Immutable, normalized O/R address.
+ * <p>
+ * {@link #parse} scans the text in a single pass and keeps recently parsed addresses in a bounded
+ * cache, so repeated parses of the same text return the same shared instance; addresses that
+ * differ only in spelling (key aliases, separators, quoting, attribute order) share an instance
+ * through their canonical form.
+ * <p>
+ * The thirteen standard attributes live in fixed slots and any domain-defined or extension
+ * attributes in a small overflow map. The canonical string, hash code, organizational units and
+ * ICAO unit are computed once, so instances are cheap to use as map keys; two addresses are equal
+ * when they carry the same attributes.
+ */
 public final class ORAddress {
 
     private static final List<String> CANONICAL_ORDER = List.of("C", "ADMD", "PRMD", "O", "OU1", "OU2", "OU3", "OU4", "CN", "S", "G", "I", "NUMUID");
     private static final Pattern DOMAIN_DEFINED_KEY = Pattern.compile("^DDA-[A-Z0-9][A-Z0-9-]{0,31}$");
     private static final Pattern EXTENSION_KEY = Pattern.compile("^(EXT|X)-[A-Z0-9][A-Z0-9-]{0,31}$");
-    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("(?:^|[\\s/;,])\\s*([A-Za-z][A-Za-z0-9-]*)\\s*=\\s*(\"(?:[^\"]|\\\\\")*\"|[^/;,]*)");
-    private static final Pattern PRINTABLE_STRING = Pattern.compile("^[A-Za-z0-9 '(),\\-.:=?]*$");
-    private static final Pattern IA5_STRING = Pattern.compile("^[\\x20-\\x7E]*$");
-    private static final List<Character> DISALLOWED_VALUE_CHARS = List.of('/', '+', '"');
+    private static final int O_SLOT = 3;
+    private static final int OU1_SLOT = 4;
+    private static final int CN_SLOT = 8;
+    private static final int CACHE_GENERATION_SIZE = 2_048;
+    private static final Generations PARSED_BY_TEXT = new Generations();
+    private static final Generations PARSED_BY_CANONICAL_FORM = new Generations();
     private static final Map<String, Integer> MAX_LENGTHS = Map.ofEntries(
     	Map.entry("C", 3),
         Map.entry("ADMD", 16),
@@ -35,26 +58,115 @@ public final class ORAddress {
         Map.entry("NUMUID", 32)
     );
 
-    private final Map<String, String> attributes;
+    private final String[] standard;
+    private final Map<String, String> extensions;
+    private final int size;
+    private final String canonical;
+    private final int hash;
+    private final List<String> organizationalUnits;
+    private final String icaoUnit;
+    private final Map<String, String> attributeView = new AttributeView();
 
-    private ORAddress(Map<String, String> attributes) {
-        this.attributes = attributes;
+    private ORAddress(String[] standard, Map<String, String> extensions) {
+        this.standard = standard;
+        this.extensions = extensions;
+
+        int present = extensions.size();
+        StringBuilder builder = new StringBuilder(64);
+        for (int slot = 0; slot < standard.length; slot++) {
+            if (standard[slot] != null) {
+                present++;
+                builder.append('/').append(CANONICAL_ORDER.get(slot)).append('=').append(standard[slot]);
+            }
+        }
+        extensions.forEach((key, value) -> builder.append('/').append(key).append('=').append(value));
+        this.size = present;
+        this.canonical = builder.toString();
+        this.hash = 31 * Arrays.hashCode(standard) + extensions.hashCode();
+
+        List<String> units = new ArrayList<>(4);
+        for (int slot = OU1_SLOT; slot < OU1_SLOT + 4; slot++) {
+            if (StringUtils.hasText(standard[slot])) {
+                units.add(standard[slot]);
+            }
+        }
+        this.organizationalUnits = List.copyOf(units);
+        this.icaoUnit = findIcaoUnit(units, standard[O_SLOT], standard[CN_SLOT]);
     }
 
     public static ORAddress of(Map<String, String> attrs) {
-        Map<String, String> normalized = new LinkedHashMap<>();
-        for (String key : CANONICAL_ORDER) {
+        String[] standard = new String[CANONICAL_ORDER.size()];
+        for (int slot = 0; slot < standard.length; slot++) {
+            String key = CANONICAL_ORDER.get(slot);
             String value = attrs.get(key);
             if (hasEffectiveValue(key, value)) {
-                normalized.put(key, normalizedValue(key, value));
+                standard[slot] = normalizedValue(key, value);
+            }
+        }
+        Map<String, String> extensions = null;
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            String key = entry.getKey();
+            if (slotOf(key) < 0 && hasEffectiveValue(key, entry.getValue())) {
+                if (extensions == null) {
+                    extensions = new LinkedHashMap<>();
+                }
+                extensions.putIfAbsent(key, normalizedValue(key, entry.getValue()));
+            }
+        }
+        return new ORAddress(standard, extensions == null ? Map.of() : Collections.unmodifiableMap(extensions));
+    }
+
+    private static int slotOf(String key) {
+        if (key == null) {
+            return -1;
+        }
+        return switch (key) {
+            case "C" -> 0;
+            case "ADMD" -> 1;
+            case "PRMD" -> 2;
+            case "O" -> O_SLOT;
+            case "OU1" -> OU1_SLOT;
+            case "OU2" -> 5;
+            case "OU3" -> 6;
+            case "OU4" -> 7;
+            case "CN" -> CN_SLOT;
+            case "S" -> 9;
+            case "G" -> 10;
+            case "I" -> 11;
+            case "NUMUID" -> 12;
+            default -> -1;
+        };
+    }
+
+    /**
+     * ICAO unit: the first of OU1..OU4, O and CN that consists of 4 to 8 letters, upper-cased.
+     */
+    private static String findIcaoUnit(List<String> units, String organization, String commonName) {
+        for (String unit : units) {
+            String candidate = icaoUnitCandidate(unit);
+            if (candidate != null) {
+                return candidate;
             }
         }
-        attrs.forEach((key, value) -> {
-            if (!normalized.containsKey(key) && hasEffectiveValue(key, value)) {
-                normalized.put(key, normalizedValue(key, value));
+        String candidate = icaoUnitCandidate(organization);
+        return candidate != null ? candidate : icaoUnitCandidate(commonName);
+    }
+
+    private static String icaoUnitCandidate(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.trim().toUpperCase(Locale.ROOT);
+        if (normalized.length() < 4 || normalized.length() > 8) {
+            return null;
+        }
+        for (int i = 0; i < normalized.length(); i++) {
+            char ch = normalized.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                return null;
             }
-        });
-        return new ORAddress(normalized);
+        }
+        return normalized;
     }
 
     private static boolean hasEffectiveValue(String key, String value) {
@@ -73,12 +185,49 @@ public final class ORAddress {
             throw new IllegalArgumentException("O/R address cannot be empty");
         }
 
+        ORAddress cached = PARSED_BY_TEXT.get(address);
+        if (cached != null) {
+            return cached;
+        }
+        ORAddress parsed = parseUncached(address);
+        String canonical = parsed.toCanonicalString();
+        ORAddress shared = PARSED_BY_CANONICAL_FORM.get(canonical);
+        if (shared == null) {
+            shared = PARSED_BY_CANONICAL_FORM.putIfAbsent(canonical, parsed);
+        }
+        return PARSED_BY_TEXT.putIfAbsent(address, shared);
+    }
+
+    /**
+     * Parses {@code address} without consulting the cache.
+     * <p>
+     * Attributes are {@code key=value} pairs. A pair starts at the beginning of the text or after
+     * a {@code /}, {@code ;}, {@code ,} or whitespace; text that does not form a pair is skipped.
+     * A value is either double-quoted or runs up to the next {@code /}, {@code ;} or {@code ,},
+     * or up to whitespace followed by the next {@code key=}.
+     */
+    static ORAddress parseUncached(String address) {
+        String input = address.trim();
+        int length = input.length();
         Map<String, String> values = new LinkedHashMap<>();
-        Matcher matcher = ATTRIBUTE_PATTERN.matcher(address.trim());
-        while (matcher.find()) {
-            String key = normalizeKey(matcher.group(1));
-            String value = normalizeValue(key, matcher.group(2));
 
+        int candidate = 0;
+        while (candidate >= 0) {
+            int keyStart = skipWhitespace(input, candidate);
+            int keyEnd = scanKey(input, keyStart);
+            int equals = skipWhitespace(input, keyEnd);
+            if (keyEnd == keyStart || equals >= length || input.charAt(equals) != '=') {
+                candidate = nextCandidate(input, candidate);
+                continue;
+            }
+
+            int valueStart = skipWhitespace(input, equals + 1);
+            int closingQuote = valueStart < length && input.charAt(valueStart) == '"' ? input.indexOf('"', valueStart + 1) : -1;
+            int valueEnd = closingQuote >= 0 ? closingQuote + 1 : scanUnquotedValue(input, valueStart);
+            candidate = nextCandidate(input, valueEnd);
+
+            String key = normalizeKey(input.substring(keyStart, keyEnd));
+            String value = normalizeValue(key, input.substring(valueStart, valueEnd));
             if (!StringUtils.hasText(key) || (!StringUtils.hasText(value) && !("ADMD".equals(key) && " ".equals(value)))) {
                 continue;
             }
@@ -95,40 +244,122 @@ public final class ORAddress {
         return ORAddress.of(values);
     }
 
-    public String get(String key) {
-        return attributes.get(key);
+    private static int skipWhitespace(String input, int index) {
+        while (index < input.length() && isWhitespace(input.charAt(index))) {
+            index++;
+        }
+        return index;
     }
 
-    public Map<String, String> attributes() {
-        return Collections.unmodifiableMap(attributes);
+    private static int scanKey(String input, int index) {
+        if (index >= input.length() || !isAsciiLetter(input.charAt(index))) {
+            return index;
+        }
+        for (index++; index < input.length(); index++) {
+            char ch = input.charAt(index);
+            if (!isAsciiLetter(ch) && !isAsciiDigit(ch) && ch != '-') {
+                break;
+            }
+        }
+        return index;
     }
 
-    public List<String> organizationalUnits() {
-        List<String> units = new ArrayList<>();
-        for (int i = 1; i <= 4; i++) {
-            String value = attributes.get("OU" + i);
-            if (StringUtils.hasText(value)) {
-                units.add(value);
+    private static int scanUnquotedValue(String input, int index) {
+        while (index < input.length()) {
+            char ch = input.charAt(index);
+            if (ch == '/' || ch == ';' || ch == ',') {
+                return index;
+            }
+            if (isWhitespace(ch) && startsAttribute(input, index)) {
+                return index;
             }
+            index++;
         }
-        return units;
+        return index;
     }
 
-    public String toCanonicalString() {
-        StringBuilder builder = new StringBuilder();
-        for (String key : CANONICAL_ORDER) {
-            if (!attributes.containsKey(key)) {
-                continue;
+    private static boolean startsAttribute(String input, int index) {
+        int keyStart = skipWhitespace(input, index);
+        int keyEnd = scanKey(input, keyStart);
+        int equals = skipWhitespace(input, keyEnd);
+        return keyEnd > keyStart && equals < input.length() && input.charAt(equals) == '=';
+    }
+
+    /**
+     * Returns the position just after the first separator at or after {@code index}, or -1.
+     */
+    private static int nextCandidate(String input, int index) {
+        for (int i = index; i < input.length(); i++) {
+            char ch = input.charAt(i);
+            if (ch == '/' || ch == ';' || ch == ',' || isWhitespace(ch)) {
+                return i + 1;
             }
-            builder.append('/').append(key).append('=').append(attributes.get(key));
         }
-        for (Map.Entry<String, String> entry : attributes.entrySet()) {
-            if (CANONICAL_ORDER.contains(entry.getKey())) {
-                continue;
-            }
-            builder.append('/').append(entry.getKey()).append('=').append(entry.getValue());
+        return -1;
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+
+    private static boolean isAsciiLetter(char ch) {
+        return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z');
+    }
+
+    private static boolean isAsciiDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isPrintableStringChar(char ch) {
+        return isAsciiLetter(ch) || isAsciiDigit(ch) || switch (ch) {
+            case ' ', '\'', '(', ')', ',', '-', '.', ':', '=', '?' -> true;
+            default -> false;
+        };
+    }
+
+    public String get(String key) {
+        int slot = slotOf(key);
+        return slot >= 0 ? standard[slot] : extensions.get(key);
+    }
+
+    /**
+     * Read-only view of the attributes, standard keys first in canonical order.
+     */
+    public Map<String, String> attributes() {
+        return attributeView;
+    }
+
+    public List<String> organizationalUnits() {
+        return organizationalUnits;
+    }
+
+    public Optional<String> icaoUnit() {
+        return Optional.ofNullable(icaoUnit);
+    }
+
+    public String toCanonicalString() {
+        return canonical;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
         }
-        return builder.toString();
+        return other instanceof ORAddress address
+            && hash == address.hash
+            && Arrays.equals(standard, address.standard)
+            && extensions.equals(address.extensions);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return canonical;
     }
 
     private static String normalizeValue(String key, String rawValue) {
@@ -178,18 +409,126 @@ public final class ORAddress {
             throw new IllegalArgumentException("O/R attribute " + key + " exceeds max length " + effectiveMaxLength);
         }
 
-        if ("C".equals(key) && !value.matches("^[A-Z]{2}$|^\\d{3}$")) {
+        if ("C".equals(key) && !isCountryCode(value)) {
             throw new IllegalArgumentException("O/R attribute C must be alpha-2 or numeric-3 country code");
         }
 
-        for (char ch : value.toCharArray()) {
-            if (DISALLOWED_VALUE_CHARS.contains(ch)) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '/' || ch == '+' || ch == '"') {
                 throw new IllegalArgumentException("O/R attribute " + key + " contains disallowed character: " + ch);
             }
         }
 
-        if (!PRINTABLE_STRING.matcher(value).matches()) {
-            throw new IllegalArgumentException("O/R attribute " + key + " must use PrintableString characters");
+        for (int i = 0; i < value.length(); i++) {
+            if (!isPrintableStringChar(value.charAt(i))) {
+                throw new IllegalArgumentException("O/R attribute " + key + " must use PrintableString characters");
+            }
+        }
+    }
+
+    private static boolean isCountryCode(String value) {
+        if (value.length() == 2) {
+            return value.charAt(0) >= 'A' && value.charAt(0) <= 'Z' && value.charAt(1) >= 'A' && value.charAt(1) <= 'Z';
+        }
+        return value.length() == 3 && isAsciiDigit(value.charAt(0)) && isAsciiDigit(value.charAt(1)) && isAsciiDigit(value.charAt(2));
+    }
+
+    private final class AttributeView extends AbstractMap<String, String> {
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String name ? ORAddress.this.get(name) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    Iterator<Entry<String, String>> overflow = extensions.entrySet().iterator();
+                    return new Iterator<>() {
+                        private int slot = nextSlot(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return slot < standard.length || overflow.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (slot < standard.length) {
+                                Entry<String, String> entry = Map.entry(CANONICAL_ORDER.get(slot), standard[slot]);
+                                slot = nextSlot(slot + 1);
+                                return entry;
+                            }
+                            if (!overflow.hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = overflow.next();
+                            return Map.entry(entry.getKey(), entry.getValue());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        private int nextSlot(int from) {
+            int slot = from;
+            while (slot < standard.length && standard[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Bounded cache made of two generations: lookups hit the current generation or promote from
+     * the previous one, and once the current generation is full it becomes the previous one.
+     */
+    private static final class Generations {
+        private volatile Map<String, ORAddress> current = new ConcurrentHashMap<>();
+        private volatile Map<String, ORAddress> previous = Map.of();
+
+        ORAddress get(String key) {
+            ORAddress found = current.get(key);
+            if (found == null) {
+                found = previous.get(key);
+                if (found != null) {
+                    found = putIfAbsent(key, found);
+                }
+            }
+            return found;
+        }
+
+        ORAddress putIfAbsent(String key, ORAddress address) {
+            Map<String, ORAddress> generation = current;
+            if (generation.size() >= CACHE_GENERATION_SIZE) {
+                synchronized (this) {
+                    if (current == generation) {
+                        previous = generation;
+                        current = new ConcurrentHashMap<>();
+                    }
+                    generation = current;
+                }
+            }
+            ORAddress existing = generation.putIfAbsent(key, address);
+            return existing == null ? address : existing;
         }
     }
 }
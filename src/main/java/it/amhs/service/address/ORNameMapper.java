@@ -37,7 +37,7 @@ public final class ORNameMapper {
         }
 
         if (!originator.constructed()) {
-            return fromLegacyIa5(new String(originator.value(), StandardCharsets.US_ASCII));
+            return fromLegacyIa5(originator.valueAsString(StandardCharsets.US_ASCII));
         }
 
         List<BerTlv> fields = extractOrNameFields(originator);
@@ -79,12 +79,12 @@ public final class ORNameMapper {
         }
 
         try {
-            List<BerTlv> direct = BerCodec.decodeAll(originator.value());
+            List<BerTlv> direct = BerCodec.decodeChildren(originator);
             if (direct.size() == 1) {
                 BerTlv only = direct.get(0);
                 if (only.constructed() && only.isUniversal() && only.tagNumber() == 16) {
                     try {
-                        return BerCodec.decodeAll(only.value());
+                        return BerCodec.decodeChildren(only);
                     } catch (RuntimeException ignored) {
                         // fall through
                     }
@@ -103,7 +103,7 @@ public final class ORNameMapper {
 
         // Common case: context[1] wrapping one inner constructed address node.
         try {
-            List<BerTlv> children = BerCodec.decodeAll(field.value());
+            List<BerTlv> children = BerCodec.decodeChildren(field);
             if (children.size() == 1 && children.get(0).constructed()) {
                 decodeStructuredAddress(children.get(0), attributes);
                 if (!attributes.isEmpty()) {
@@ -123,7 +123,7 @@ public final class ORNameMapper {
             return decodeString(field);
         }
 
-        List<BerTlv> roots = BerCodec.decodeAll(field.value());
+        List<BerTlv> roots = BerCodec.decodeChildren(field);
         List<String> canonical = decodeDirectoryDistinguishedName(roots);
         if (!canonical.isEmpty()) {
             return String.join(",", canonical);
@@ -143,15 +143,15 @@ public final class ORNameMapper {
             if (!root.constructed() || !root.isUniversal() || root.tagNumber() != 16) {
                 continue;
             }
-            for (BerTlv rdnSet : BerCodec.decodeAll(root.value())) {
+            for (BerTlv rdnSet : BerCodec.decodeChildren(root)) {
                 if (!rdnSet.constructed() || !rdnSet.isUniversal() || rdnSet.tagNumber() != 17) {
                     continue;
                 }
-                for (BerTlv atv : BerCodec.decodeAll(rdnSet.value())) {
+                for (BerTlv atv : BerCodec.decodeChildren(rdnSet)) {
                     if (!atv.constructed() || !atv.isUniversal() || atv.tagNumber() != 16) {
                         continue;
                     }
-                    List<BerTlv> pair = BerCodec.decodeAll(atv.value());
+                    List<BerTlv> pair = BerCodec.decodeChildren(atv);
                     if (pair.size() < 2 || !pair.get(0).isUniversal() || pair.get(0).tagNumber() != 6) {
                         continue;
                     }
@@ -168,7 +168,7 @@ public final class ORNameMapper {
     private static void collectDirectoryValues(List<BerTlv> nodes, List<String> values) {
         for (BerTlv node : nodes) {
             if (node.constructed()) {
-                collectDirectoryValues(BerCodec.decodeAll(node.value()), values);
+                collectDirectoryValues(BerCodec.decodeChildren(node), values);
                 continue;
             }
             values.add(decodeString(node));
@@ -180,7 +180,7 @@ public final class ORNameMapper {
             return;
         }
 
-        List<BerTlv> children = BerCodec.decodeAll(node.value());
+        List<BerTlv> children = BerCodec.decodeChildren(node);
         for (BerTlv child : children) {
             if (child.tagClass() != 2) {
                 continue;
@@ -204,7 +204,7 @@ public final class ORNameMapper {
         }
 
         try {
-            List<BerTlv> nested = BerCodec.decodeAll(tlv.value());
+            List<BerTlv> nested = BerCodec.decodeChildren(tlv);
             if (nested.size() == 1 && !nested.get(0).constructed()) {
                 return decodeString(nested.get(0)).trim();
             }
@@ -231,7 +231,7 @@ public final class ORNameMapper {
         }
 
         try {
-            for (BerTlv child : BerCodec.decodeAll(node.value())) {
+            for (BerTlv child : BerCodec.decodeChildren(node)) {
                 collectPrimitiveStrings(child, values);
             }
         } catch (RuntimeException ignored) {
@@ -276,23 +276,23 @@ public final class ORNameMapper {
 
     private static String decodeString(BerTlv tlv) {
         if (tlv.constructed()) {
-            List<BerTlv> nested = BerCodec.decodeAll(tlv.value());
+            List<BerTlv> nested = BerCodec.decodeChildren(tlv);
             if (nested.size() == 1) {
                 return decodeString(nested.get(0));
             }
         }
 
         if (tlv.tagClass() != 0) {
-            return new String(tlv.value(), StandardCharsets.UTF_8);
+            return tlv.valueAsString(StandardCharsets.UTF_8);
         }
 
         return switch (tlv.tagNumber()) {
-            case 12 -> new String(tlv.value(), StandardCharsets.UTF_8);
-            case 19, 22, 25 -> new String(tlv.value(), StandardCharsets.US_ASCII);
-            case 20 -> new String(tlv.value(), StandardCharsets.ISO_8859_1);
+            case 12 -> tlv.valueAsString(StandardCharsets.UTF_8);
+            case 19, 22, 25 -> tlv.valueAsString(StandardCharsets.US_ASCII);
+            case 20 -> tlv.valueAsString(StandardCharsets.ISO_8859_1);
             case 30 -> decodeBmpString(tlv.value());
             case 28 -> decodeUniversalString(tlv.value());
-            default -> new String(tlv.value(), StandardCharsets.UTF_8);
+            default -> tlv.valueAsString(StandardCharsets.UTF_8);
         };
     }
 
@@ -1,20 +1,32 @@
 package it.amhs.service.bootstrap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 import it.amhs.api.ChannelRequest;
+import it.amhs.repository.AMHSDeliveryReportRepository;
 import it.amhs.service.channel.AMHSChannelService;
 
 @Component
 public class AMHSBootstrapService implements CommandLineRunner {
 
+    private static final Logger logger = LoggerFactory.getLogger(AMHSBootstrapService.class);
+    private static final long BACKFILL_BATCH_SIZE = 10_000;
+
     private final AMHSChannelService channelService;
+    private final AMHSDeliveryReportRepository deliveryReportRepository;
     private final boolean needClientAuth;
 
-    public AMHSBootstrapService(AMHSChannelService channelService, @Value("${rfc1006.tls.need-client-auth:false}") boolean needClientAuth) {
+    public AMHSBootstrapService(
+        AMHSChannelService channelService,
+        AMHSDeliveryReportRepository deliveryReportRepository,
+        @Value("${rfc1006.tls.need-client-auth:false}") boolean needClientAuth
+    ) {
         this.channelService = channelService;
+        this.deliveryReportRepository = deliveryReportRepository;
         this.needClientAuth = needClientAuth;
     }
 
@@ -27,5 +39,23 @@ public class AMHSBootstrapService implements CommandLineRunner {
 
         channelService.createOrUpdate(new ChannelRequest(AMHSChannelService.DEFAULT_CHANNEL_NAME, atfmExpectedCn, atfmExpectedOu, true));
         channelService.createOrUpdate(new ChannelRequest("AFTN", aftnExpectedCn, aftnExpectedOu, true));
+
+        backfillNormalizedRecipients();
+    }
+
+    /**
+     * Fills the normalized recipient key of reports stored before it existed. Once every report
+     * has one this is a single index probe; otherwise it walks the ids in batches.
+     */
+    private void backfillNormalizedRecipients() {
+        if (!deliveryReportRepository.existsByRecipientNormalizedIsNull()) {
+            return;
+        }
+        long maxId = deliveryReportRepository.findMaxId();
+        long backfilled = 0;
+        for (long afterId = 0; afterId < maxId; afterId += BACKFILL_BATCH_SIZE) {
+            backfilled += deliveryReportRepository.backfillNormalizedRecipients(afterId, afterId + BACKFILL_BATCH_SIZE);
+        }
+        logger.info("Normalized recipient key backfilled for {} delivery reports", backfilled);
     }
 }
@@ -1,16 +1,29 @@
 package it.amhs.service.channel;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 import it.amhs.api.ChannelRequest;
 import it.amhs.domain.AMHSChannel;
 import it.amhs.repository.AMHSChannelRepository;
 
+/**
+ * Channel lookup and maintenance.
+ * <p>
+ * {@link #requireEnabledChannel} is served from a read-through cache of channel policies so the
+ * per-message path neither opens a transaction nor queries the database on a hit. Local writes
+ * evict the entry before and again after commit; entries expire after {@code cache-ttl-ms} so
+ * changes made by other nodes sharing the database are picked up within that bound.
+ */
 @Service
 public class AMHSChannelService {
 
@@ -18,13 +31,21 @@ public class AMHSChannelService {
 
     private final AMHSChannelRepository channelRepository;
     private final boolean databaseEnabled;
+    private final long cacheTtlNanos;
+    private final ConcurrentHashMap<String, CachedPolicy> policies = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
 
     public AMHSChannelService(
         AMHSChannelRepository channelRepository,
-        @Value("${amhs.database.enabled:true}") boolean databaseEnabled
+        @Value("${amhs.database.enabled:true}") boolean databaseEnabled,
+        @Value("${amhs.channel.cache-ttl-ms:5000}") long cacheTtlMillis
     ) {
+        if (cacheTtlMillis < 0) {
+            throw new IllegalArgumentException("amhs.channel.cache-ttl-ms must be >= 0");
+        }
         this.channelRepository = channelRepository;
         this.databaseEnabled = databaseEnabled;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMillis);
     }
 
     @Transactional
@@ -46,7 +67,9 @@ public class AMHSChannelService {
         channel.setExpectedOu(normalize(request.expectedOu()));
         channel.setEnabled(request.enabled() == null || request.enabled());
 
-        return channelRepository.save(channel);
+        AMHSChannel saved = channelRepository.save(channel);
+        evictAfterCommit(normalizedName);
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -54,18 +77,65 @@ public class AMHSChannelService {
         return channelRepository.findAll();
     }
 
-    @Transactional
+    /**
+     * Returns a detached copy of the named channel, or the default channel when the name is
+     * blank. Not transactional: a cache hit touches no database resources at all.
+     */
     public AMHSChannel requireEnabledChannel(String channelName) {
         String normalized = normalizeChannelName(channelName);
 
-        AMHSChannel channel = channelRepository.findByNameIgnoreCase(normalized)
-            .orElseGet(() -> resolveMissingChannel(normalized));
+        ChannelPolicy policy = cachedPolicy(normalized);
+        if (policy == null) {
+            policy = loadPolicy(normalized);
+        }
 
-        if (!channel.isEnabled()) {
+        if (!policy.enabled()) {
             throw new IllegalArgumentException("AMHS channel is disabled: " + normalized);
         }
 
-        return channel;
+        return policy.toChannel();
+    }
+
+    private ChannelPolicy cachedPolicy(String normalizedChannelName) {
+        CachedPolicy cached = policies.get(normalizedChannelName);
+        if (cached == null) {
+            return null;
+        }
+        if (System.nanoTime() - cached.loadedAtNanos() >= cacheTtlNanos) {
+            policies.remove(normalizedChannelName, cached);
+            return null;
+        }
+        return cached.policy();
+    }
+
+    private ChannelPolicy loadPolicy(String normalizedChannelName) {
+        long loadedAtNanos = System.nanoTime();
+        long evictionsBefore = evictions.get();
+        AMHSChannel channel = channelRepository.findByNameIgnoreCase(normalizedChannelName)
+            .orElseGet(() -> resolveMissingChannel(normalizedChannelName));
+        ChannelPolicy policy = ChannelPolicy.of(channel);
+        // A write that raced with this read may have been evicted already; do not cache over it.
+        if (cacheTtlNanos > 0 && evictions.get() == evictionsBefore) {
+            policies.put(normalizedChannelName, new CachedPolicy(policy, loadedAtNanos));
+        }
+        return policy;
+    }
+
+    private void evictAfterCommit(String normalizedChannelName) {
+        evict(normalizedChannelName);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(normalizedChannelName);
+                }
+            });
+        }
+    }
+
+    private void evict(String normalizedChannelName) {
+        evictions.incrementAndGet();
+        policies.remove(normalizedChannelName);
     }
 
     private AMHSChannel resolveMissingChannel(String normalizedChannelName) {
@@ -78,7 +148,12 @@ public class AMHSChannelService {
 
         if (DEFAULT_CHANNEL_NAME.equals(normalizedChannelName)) {
             AMHSChannel channel = buildEnabledChannel(DEFAULT_CHANNEL_NAME);
-            return channelRepository.save(channel);
+            try {
+                return channelRepository.save(channel);
+            } catch (RuntimeException ex) {
+                // Another node may have created the default channel concurrently.
+                return channelRepository.findByNameIgnoreCase(normalizedChannelName).orElseThrow(() -> ex);
+            }
         }
 
         throw new IllegalArgumentException("Unknown AMHS channel: " + normalizedChannelName);
@@ -102,4 +177,24 @@ public class AMHSChannelService {
     private String normalize(String value) {
         return StringUtils.hasText(value) ? value.trim() : null;
     }
+
+    private record ChannelPolicy(Long id, String name, String expectedCn, String expectedOu, boolean enabled) {
+
+        static ChannelPolicy of(AMHSChannel channel) {
+            return new ChannelPolicy(channel.getId(), channel.getName(), channel.getExpectedCn(), channel.getExpectedOu(), channel.isEnabled());
+        }
+
+        AMHSChannel toChannel() {
+            AMHSChannel channel = new AMHSChannel();
+            channel.setId(id);
+            channel.setName(name);
+            channel.setExpectedCn(expectedCn);
+            channel.setExpectedOu(expectedOu);
+            channel.setEnabled(enabled);
+            return channel;
+        }
+    }
+
+    private record CachedPolicy(ChannelPolicy policy, long loadedAtNanos) {
+    }
 }
\ No newline at end of file
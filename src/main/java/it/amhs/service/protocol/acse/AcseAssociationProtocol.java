@@ -48,7 +48,17 @@ public class AcseAssociationProtocol {
     }
 
     public AcseModels.AcseApdu decode(byte[] payload) {
-        BerTlv apdu = BerCodec.decodeSingle(payload);
+        return decode(BerCodec.decodeSingle(payload));
+    }
+
+    /**
+     * Decodes the APDU at {@code buffer[offset, offset + length)} without copying the range first.
+     */
+    public AcseModels.AcseApdu decode(byte[] buffer, int offset, int length) {
+        return decode(BerCodec.decodeSingle(buffer, offset, length));
+    }
+
+    private AcseModels.AcseApdu decode(BerTlv apdu) {
         if (apdu.tagClass() != TAG_CLASS_APPLICATION || !apdu.constructed()) {
             throw new IllegalArgumentException("ACSE APDU must use APPLICATION class constructed encoding");
         }
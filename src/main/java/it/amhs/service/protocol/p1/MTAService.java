@@ -12,6 +12,7 @@ import org.springframework.util.StringUtils;
 
 import it.amhs.compliance.AMHSComplianceValidator;
 import it.amhs.domain.AMHSChannel;
+import it.amhs.domain.AMHSDeliveryReport;
 import it.amhs.domain.AMHSMessage;
 import it.amhs.domain.AMHSDeliveryStatus;
 import it.amhs.domain.AMHSMessageState;
@@ -35,6 +36,7 @@ public class MTAService {
     private final AMHSDeliveryReportService deliveryReportService;
     private final boolean databaseEnabled;
     private final X411DiagnosticMapper diagnosticMapper;
+    private final MessageGroupCommitter groupCommitter;
 
     public MTAService(
         AMHSMessageRepository amhsMessagesRepository,
@@ -43,6 +45,7 @@ public class MTAService {
         AMHSMessageStateMachine stateMachine,
         AMHSDeliveryReportService deliveryReportService,
         X411DiagnosticMapper diagnosticMapper,
+        MessageGroupCommitter groupCommitter,
         @Value("${amhs.database.enabled:true}") boolean databaseEnabled
     ) {
         this.amhsMessagesRepository = amhsMessagesRepository;
@@ -52,6 +55,7 @@ public class MTAService {
         this.deliveryReportService = deliveryReportService;
         this.databaseEnabled = databaseEnabled;
         this.diagnosticMapper = diagnosticMapper;
+        this.groupCommitter = groupCommitter;
     }
 
     public AMHSMessage storeMessage(
@@ -182,6 +186,10 @@ public class MTAService {
             complianceValidator.validateOrAddressBinding(from, certificateCn, certificateOu);
             message.setChannelName(channel.getName());
 
+            if (groupCommitter.isEnabled()) {
+                return commitFinalState(message);
+            }
+
             stateMachine.transition(message, AMHSMessageState.TRANSFERRED);
             deliveryReportService.setReportExpiration(message);
 
@@ -193,7 +201,12 @@ public class MTAService {
             stateMachine.transition(delivered, AMHSMessageState.REPORTED);
             return amhsMessagesRepository.save(delivered);
         } catch (RuntimeException ex) {
-            if (message.getLifecycleState() != AMHSMessageState.REPORTED) {
+            if (message.getLifecycleState() == AMHSMessageState.REPORTED) {
+                throw ex;
+            }
+            if (groupCommitter.isEnabled()) {
+                commitFailure(message, ex);
+            } else {
                 stateMachine.transition(message, AMHSMessageState.FAILED);
                 AMHSMessage failed = amhsMessagesRepository.save(message);
                 String reason = "validation-or-routing-failure";
@@ -206,6 +219,28 @@ public class MTAService {
         }
     }
 
+    /**
+     * Walks the accepted message through TRANSFERRED and DELIVERED to REPORTED in memory and
+     * writes only the final row plus its delivery report, in a shared group transaction.
+     */
+    private AMHSMessage commitFinalState(AMHSMessage message) {
+        stateMachine.transition(message, AMHSMessageState.TRANSFERRED);
+        deliveryReportService.setReportExpiration(message);
+        stateMachine.transition(message, AMHSMessageState.DELIVERED);
+        AMHSDeliveryReport report = deliveryReportService.buildDeliveryReport(message);
+        stateMachine.transition(message, AMHSMessageState.REPORTED);
+        return groupCommitter.commit(message, report);
+    }
+
+    private void commitFailure(AMHSMessage message, RuntimeException ex) {
+        stateMachine.transition(message, AMHSMessageState.FAILED);
+        String reason = "validation-or-routing-failure";
+        String diagnosticCode = diagnosticMapper.map(reason, ex.getMessage());
+        AMHSDeliveryReport report = deliveryReportService.buildNonDeliveryReport(message, reason, diagnosticCode, AMHSDeliveryStatus.FAILED);
+        stateMachine.transition(message, AMHSMessageState.REPORTED);
+        groupCommitter.commit(message, report);
+    }
+
     private void logReceivedMessage(AMHSMessage message) {
         logger.info(
             "Database disabled. Received AMHS message [messageId={}, from={}, to={}, channel={}, profile={}, priority={}, subject={}, body={}]",
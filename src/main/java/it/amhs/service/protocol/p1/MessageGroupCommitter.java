@@ -0,0 +1,213 @@
+package it.amhs.service.protocol.p1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.amhs.domain.AMHSDeliveryReport;
+import it.amhs.domain.AMHSMessage;
+import it.amhs.repository.AMHSDeliveryReportRepository;
+import it.amhs.repository.AMHSMessageRepository;
+import it.amhs.service.report.ReportNotificationHub;
+
+/**
+ * Writes messages in their final lifecycle state together with their report, sharing one
+ * transaction among messages that arrive concurrently.
+ * <p>
+ * Callers block in {@link #commit} until their batch has committed. A batch is flushed once it
+ * holds {@code max-batch} entries or {@code max-delay-ms} after its first entry was taken,
+ * whichever comes first. If a batch transaction fails, its entries are retried one by one so a
+ * single bad message does not fail its neighbours. On shutdown the flusher commits what is still
+ * queued before it stops.
+ */
+@Component
+public class MessageGroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageGroupCommitter.class);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+    private static final PendingWrite SHUTDOWN = new PendingWrite(null, null, null);
+
+    private final AMHSMessageRepository messageRepository;
+    private final AMHSDeliveryReportRepository reportRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReportNotificationHub notificationHub;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final LinkedBlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile Thread flusher;
+
+    public MessageGroupCommitter(
+        AMHSMessageRepository messageRepository,
+        AMHSDeliveryReportRepository reportRepository,
+        PlatformTransactionManager transactionManager,
+        ReportNotificationHub notificationHub,
+        @Value("${amhs.ingest.group-commit.enabled:false}") boolean enabled,
+        @Value("${amhs.ingest.group-commit.max-batch:64}") int maxBatch,
+        @Value("${amhs.ingest.group-commit.max-delay-ms:5}") long maxDelayMillis
+    ) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("amhs.ingest.group-commit.max-batch must be >= 1");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("amhs.ingest.group-commit.max-delay-ms must be >= 0");
+        }
+        this.messageRepository = messageRepository;
+        this.reportRepository = reportRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.notificationHub = notificationHub;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Persists {@code message} and {@code report} and returns the saved message once the
+     * enclosing group transaction has committed.
+     */
+    public AMHSMessage commit(AMHSMessage message, AMHSDeliveryReport report) {
+        if (closed) {
+            throw new IllegalStateException("Group committer is shut down");
+        }
+        ensureStarted();
+        PendingWrite write = new PendingWrite(message, report, new CompletableFuture<>());
+        pending.add(write);
+        try {
+            return write.result().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Group commit failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Stops accepting writes, lets the flusher commit everything already queued and waits for it.
+     * Writes that raced with the shutdown are committed on the calling thread.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        closed = true;
+        Thread running = flusher;
+        if (running != null) {
+            pending.add(SHUTDOWN);
+            running.join(SHUTDOWN_TIMEOUT_MILLIS);
+            if (running.isAlive()) {
+                logger.warn("Group commit flusher did not stop within {} ms", SHUTDOWN_TIMEOUT_MILLIS);
+                return;
+            }
+        }
+        List<PendingWrite> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        remaining.remove(SHUTDOWN);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    private void ensureStarted() {
+        if (started.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::flushLoop, "amhs-group-commit");
+            thread.setDaemon(true);
+            flusher = thread;
+            thread.start();
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping && !Thread.currentThread().isInterrupted()) {
+            try {
+                PendingWrite first = pending.take();
+                if (first == SHUTDOWN) {
+                    return;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                logger.error("Group commit flusher failed", ex);
+                batch.forEach(write -> write.result().completeExceptionally(ex));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<AMHSMessage> saved;
+        try {
+            saved = transactionTemplate.execute(status -> write(batch));
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(ex);
+                return;
+            }
+            logger.warn("Group commit of {} message(s) failed, retrying individually: {}", batch.size(), ex.getMessage());
+            for (PendingWrite write : batch) {
+                write.message().setId(null);
+                write.report().setId(null);
+                flush(List.of(write));
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(saved.get(i));
+        }
+    }
+
+    private List<AMHSMessage> write(List<PendingWrite> batch) {
+        List<AMHSMessage> saved = new ArrayList<>(batch.size());
+        List<AMHSDeliveryReport> reports = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            AMHSMessage message = messageRepository.save(write.message());
+            write.report().setMessage(message);
+            saved.add(message);
+            reports.add(write.report());
+        }
+        reportRepository.saveAll(reports);
+        reports.forEach(notificationHub::reportSaved);
+        return saved;
+    }
+
+    private record PendingWrite(AMHSMessage message, AMHSDeliveryReport report, CompletableFuture<AMHSMessage> result) {
+    }
+}
@@ -63,7 +63,17 @@ public class P1AssociationProtocol {
     }
 
     public Pdu decode(byte[] payload) {
-        BerTlv pdu = BerCodec.decodeSingle(payload);
+        return decode(BerCodec.decodeSingle(payload));
+    }
+
+    /**
+     * Decodes the PDU at {@code buffer[offset, offset + length)} without copying the range first.
+     */
+    public Pdu decode(byte[] buffer, int offset, int length) {
+        return decode(BerCodec.decodeSingle(buffer, offset, length));
+    }
+
+    private Pdu decode(BerTlv pdu) {
         if (!pdu.constructed()) {
             throw new IllegalArgumentException("P1 association PDU must use constructed tags");
         }
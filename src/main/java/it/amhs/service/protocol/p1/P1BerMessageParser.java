@@ -11,11 +11,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.TimeZone;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Component;
 
 import it.amhs.asn1.BerCodec;
+import it.amhs.asn1.BerReader;
 import it.amhs.asn1.BerTlv;
 import it.amhs.compliance.SecurityLabelPolicy;
 import it.amhs.domain.AMHSPriority;
@@ -27,6 +27,8 @@ import it.amhs.service.address.ORNameMapper;
 @Component
 public class P1BerMessageParser {
 
+    private static final int TRANSFER_ENVELOPE_TAG = 9;
+
     private final SecurityLabelPolicy securityLabelPolicy;
 
     public P1BerMessageParser(SecurityLabelPolicy securityLabelPolicy) {
@@ -39,9 +41,9 @@ public class P1BerMessageParser {
             throw new IllegalArgumentException("P1 BER payload must be a SEQUENCE");
         }
 
-        List<BerTlv> fields = BerCodec.decodeAll(root.value());
+        BerTlv[] fields = BerReader.over(root).contextFields(TRANSFER_ENVELOPE_TAG);
 
-        TransferEnvelope transferEnvelope = parseTransferEnvelope(fields);
+        TransferEnvelope transferEnvelope = parseTransferEnvelope(fields[TRANSFER_ENVELOPE_TAG]);
 
         String from = transferEnvelope.originator()
             .map(this::mapOriginator)
@@ -54,7 +56,7 @@ public class P1BerMessageParser {
         String messageId = transferEnvelope.mtsIdentifier().flatMap(MTSIdentifier::localIdentifier)
             .orElseGet(() -> optionalIa5(fields, 6).orElse(null));
         Date filingTime = transferEnvelope.mtsIdentifier().flatMap(MTSIdentifier::filingTime)
-            .orElseGet(() -> parseFilingTime(fields));
+            .orElseGet(() -> parseFilingTime(fields[7], fields[8]));
 
         return new ParsedP1Message(from, to, body, profile, priority, subject, messageId, filingTime, transferEnvelope);
     }
@@ -72,135 +74,143 @@ public class P1BerMessageParser {
         try {
             return ORNameMapper.fromBer(originator).orAddress().toCanonicalString();
         } catch (IllegalArgumentException ex) {
-            return new String(originator.value(), StandardCharsets.UTF_8);
+            return originator.valueAsString(StandardCharsets.UTF_8);
         }
     }
 
-    private TransferEnvelope parseTransferEnvelope(List<BerTlv> fields) {
-        Optional<BerTlv> envelopeTlv = BerCodec.findOptional(fields, 2, 9).filter(BerTlv::constructed);
-        if (envelopeTlv.isEmpty()) {
+    private TransferEnvelope parseTransferEnvelope(BerTlv envelopeTlv) {
+        if (envelopeTlv == null || !envelopeTlv.constructed()) {
             return new TransferEnvelope(Optional.empty(), List.of(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), List.of());
         }
 
-        List<BerTlv> envelopeFields = BerCodec.decodeAll(envelopeTlv.get().value());
-        Optional<MTSIdentifier> mtsIdentifier = BerCodec.findOptional(envelopeFields, 2, X411TagMap.ENVELOPE_MTS_IDENTIFIER)
-            .filter(BerTlv::constructed)
+        BerTlv[] envelopeFields = new BerTlv[X411TagMap.ENVELOPE_EXTENSIONS + 1];
+        ExtensionContainer extensions = new ExtensionContainer();
+        int unsupportedTag = -1;
+        BerReader reader = BerReader.over(envelopeTlv);
+        while (reader.next()) {
+            if (reader.tagClass() != 2) {
+                continue;
+            }
+            int tag = reader.tagNumber();
+            if (X411TagMap.isKnownEnvelopeFieldTag(tag)) {
+                if (envelopeFields[tag] == null) {
+                    envelopeFields[tag] = reader.tlv();
+                }
+            } else if (X411TagMap.isExtensionEnvelopeFieldTag(tag)) {
+                extensions.add(reader.tlv());
+            } else if (unsupportedTag < 0) {
+                unsupportedTag = tag;
+            }
+        }
+
+        Optional<MTSIdentifier> mtsIdentifier = constructedField(envelopeFields, X411TagMap.ENVELOPE_MTS_IDENTIFIER)
             .map(this::parseMtsIdentifier);
 
-        List<PerRecipientFields> perRecipientFields = BerCodec.findOptional(envelopeFields, 2, X411TagMap.ENVELOPE_PER_RECIPIENT)
-            .filter(BerTlv::constructed)
+        List<PerRecipientFields> perRecipientFields = constructedField(envelopeFields, X411TagMap.ENVELOPE_PER_RECIPIENT)
             .map(this::parsePerRecipientFields)
             .orElse(List.of());
 
-        Optional<TraceInformation> traceInformation = BerCodec.findOptional(envelopeFields, 2, X411TagMap.ENVELOPE_TRACE)
-            .filter(BerTlv::constructed)
+        Optional<TraceInformation> traceInformation = constructedField(envelopeFields, X411TagMap.ENVELOPE_TRACE)
             .map(this::parseTraceInformation);
 
-        Optional<String> contentTypeOid = BerCodec.findOptional(envelopeFields, 2, X411TagMap.ENVELOPE_CONTENT_TYPE)
+        Optional<String> contentTypeOid = field(envelopeFields, X411TagMap.ENVELOPE_CONTENT_TYPE)
             .map(this::parseContentTypeOid);
 
-        Optional<String> originator = BerCodec.findOptional(envelopeFields, 2, X411TagMap.ENVELOPE_ORIGINATOR)
+        Optional<String> originator = field(envelopeFields, X411TagMap.ENVELOPE_ORIGINATOR)
             .map(this::mapOriginator);
 
-        Optional<SecurityParameters> securityParameters = BerCodec.findOptional(envelopeFields, 2, X411TagMap.ENVELOPE_SECURITY_PARAMETERS)
-            .filter(BerTlv::constructed)
+        Optional<SecurityParameters> securityParameters = constructedField(envelopeFields, X411TagMap.ENVELOPE_SECURITY_PARAMETERS)
             .map(this::parseSecurityParameters);
 
-        List<ExtensibilityContainers.UnknownExtension> unknownExtensions = parseUnknownEnvelopeExtensions(envelopeFields);
-        return new TransferEnvelope(mtsIdentifier, perRecipientFields, traceInformation, contentTypeOid, originator, securityParameters, unknownExtensions);
+        if (unsupportedTag >= 0) {
+            throw new IllegalArgumentException("Unsupported X.411 envelope field tag [" + unsupportedTag + "]");
+        }
+        return new TransferEnvelope(mtsIdentifier, perRecipientFields, traceInformation, contentTypeOid, originator, securityParameters, extensions.unknownExtensions());
     }
 
-    private List<ExtensibilityContainers.UnknownExtension> parseUnknownEnvelopeExtensions(List<BerTlv> envelopeFields) {
-        ExtensionContainer container = new ExtensionContainer();
-        for (BerTlv tlv : envelopeFields) {
-            if (tlv.tagClass() != 2) {
-                continue;
-            }
-            int tag = tlv.tagNumber();
-            if (X411TagMap.isKnownEnvelopeFieldTag(tag)) {
-                continue;
-            }
-            if (X411TagMap.isExtensionEnvelopeFieldTag(tag)) {
-                container.add(tlv);
-                continue;
-            }
-            throw new IllegalArgumentException("Unsupported X.411 envelope field tag [" + tag + "]");
-        }
-        return container.unknownExtensions();
+    private static Optional<BerTlv> field(BerTlv[] fields, int contextTag) {
+        return Optional.ofNullable(fields[contextTag]);
+    }
+
+    private static Optional<BerTlv> constructedField(BerTlv[] fields, int contextTag) {
+        return field(fields, contextTag).filter(BerTlv::constructed);
     }
 
     private SecurityParameters parseSecurityParameters(BerTlv securityTlv) {
-        List<BerTlv> fields = BerCodec.decodeAll(securityTlv.value());
-        String label = BerCodec.findOptional(fields, 2, 0).map(v -> new String(v.value(), StandardCharsets.UTF_8)).orElse("UNCLASSIFIED");
-        String token = BerCodec.findOptional(fields, 2, 1).map(v -> new String(v.value(), StandardCharsets.US_ASCII)).orElse("NONE");
-        String oid = BerCodec.findOptional(fields, 2, 2).map(v -> new String(v.value(), StandardCharsets.US_ASCII)).orElse("1.2.840.113549.1.1.1");
+        BerTlv[] fields = BerReader.over(securityTlv).contextFields(2);
+        String label = field(fields, 0).map(v -> v.valueAsString(StandardCharsets.UTF_8)).orElse("UNCLASSIFIED");
+        String token = field(fields, 1).map(v -> v.valueAsString(StandardCharsets.US_ASCII)).orElse("NONE");
+        String oid = field(fields, 2).map(v -> v.valueAsString(StandardCharsets.US_ASCII)).orElse("1.2.840.113549.1.1.1");
         SecurityParameters parameters = new SecurityParameters(label, token, oid);
         securityLabelPolicy.validate(parameters);
         return parameters;
     }
 
     private MTSIdentifier parseMtsIdentifier(BerTlv mtsIdentifierTlv) {
-        List<BerTlv> mtsFields = BerCodec.decodeAll(mtsIdentifierTlv.value());
-        Optional<String> localIdentifier = BerCodec.findOptional(mtsFields, 2, 0)
-            .map(value -> new String(value.value(), StandardCharsets.US_ASCII));
-        Optional<Date> filingTime = parseOptionalFilingTime(mtsFields);
+        BerTlv[] mtsFields = BerReader.over(mtsIdentifierTlv).contextFields(8);
+        Optional<String> localIdentifier = field(mtsFields, 0)
+            .map(value -> value.valueAsString(StandardCharsets.US_ASCII));
+        Optional<Date> filingTime = parseOptionalFilingTime(mtsFields[7], mtsFields[8]);
         return new MTSIdentifier(localIdentifier, filingTime);
     }
 
     private List<PerRecipientFields> parsePerRecipientFields(BerTlv perRecipientTlv) {
-        List<BerTlv> entries = BerCodec.decodeAll(perRecipientTlv.value());
-        return entries.stream()
-            .filter(BerTlv::constructed)
-            .map(entry -> {
-                List<BerTlv> fields = BerCodec.decodeAll(entry.value());
-                String recipient = BerCodec.findOptional(fields, 2, 0)
-                    .map(this::mapOriginator)
-                    .orElse(null);
-                Optional<Integer> responsibility = BerCodec.findOptional(fields, 2, 1)
-                    .map(this::parseIntegerValue);
-                Optional<Integer> deliveryFlags = BerCodec.findOptional(fields, 2, 2)
-                    .map(this::parseIntegerValue);
-                List<String> extensionIds = BerCodec.findOptional(fields, 2, 3)
-                    .filter(BerTlv::constructed)
-                    .map(this::parseStringList)
-                    .orElse(List.of());
-                return new PerRecipientFields(recipient, responsibility, deliveryFlags, extensionIds);
-            })
-            .collect(Collectors.toList());
+        List<PerRecipientFields> result = new ArrayList<>();
+        BerReader entries = BerReader.over(perRecipientTlv);
+        while (entries.next()) {
+            if (!entries.constructed()) {
+                continue;
+            }
+            BerTlv[] fields = entries.enter().contextFields(3);
+            String recipient = field(fields, 0)
+                .map(this::mapOriginator)
+                .orElse(null);
+            Optional<Integer> responsibility = field(fields, 1)
+                .map(this::parseIntegerValue);
+            Optional<Integer> deliveryFlags = field(fields, 2)
+                .map(this::parseIntegerValue);
+            List<String> extensionIds = constructedField(fields, 3)
+                .map(this::parseStringList)
+                .orElse(List.of());
+            result.add(new PerRecipientFields(recipient, responsibility, deliveryFlags, extensionIds));
+        }
+        return result;
     }
 
     private List<String> parseStringList(BerTlv listTlv) {
         List<String> values = new ArrayList<>();
-        for (BerTlv item : BerCodec.decodeAll(listTlv.value())) {
-            values.add(new String(item.value(), StandardCharsets.UTF_8));
+        BerReader items = BerReader.over(listTlv);
+        while (items.next()) {
+            values.add(items.string(StandardCharsets.UTF_8));
         }
         return values;
     }
 
     private TraceInformation parseTraceInformation(BerTlv traceTlv) {
-        List<BerTlv> hops = BerCodec.decodeAll(traceTlv.value());
-        List<String> hopNames = hops.stream()
-            .map(hop -> {
-                if (!hop.constructed()) {
-                    return bytesToHex(hop.value());
-                }
-                List<BerTlv> hopFields = BerCodec.decodeAll(hop.value());
-                return BerCodec.findOptional(hopFields, 2, 0)
-                    .map(value -> new String(value.value(), StandardCharsets.US_ASCII))
-                    .orElse(bytesToHex(hop.value()));
-            })
-            .collect(Collectors.toList());
+        List<String> hopNames = new ArrayList<>();
+        BerReader hops = BerReader.over(traceTlv);
+        while (hops.next()) {
+            BerTlv hop = hops.tlv();
+            if (!hop.constructed()) {
+                hopNames.add(bytesToHex(hop.value()));
+                continue;
+            }
+            BerReader hopFields = hops.enter();
+            hopNames.add(hopFields.skipTo(2, 0)
+                ? hopFields.string(StandardCharsets.US_ASCII)
+                : bytesToHex(hop.value()));
+        }
         return new TraceInformation(hopNames);
     }
 
     private String parseContentTypeOid(BerTlv contentTypeField) {
         BerTlv oidSource = contentTypeField;
         if (contentTypeField.constructed()) {
-            List<BerTlv> nested = BerCodec.decodeAll(contentTypeField.value());
-            oidSource = nested.stream()
-                .filter(item -> item.isUniversal() && item.tagNumber() == 6)
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("TransferEnvelope content type does not include an OBJECT IDENTIFIER"));
+            BerReader nested = BerReader.over(contentTypeField);
+            if (!nested.skipTo(0, 6)) {
+                throw new IllegalArgumentException("TransferEnvelope content type does not include an OBJECT IDENTIFIER");
+            }
+            oidSource = nested.tlv();
         }
 
         if (!oidSource.isUniversal() || oidSource.tagNumber() != 6) {
@@ -209,26 +219,17 @@ public class P1BerMessageParser {
         return decodeOid(oidSource.value());
     }
 
-    private Date parseFilingTime(List<BerTlv> fields) {
-        return parseOptionalFilingTime(fields).orElseGet(() -> Date.from(Instant.now()));
+    private Date parseFilingTime(BerTlv utc, BerTlv generalized) {
+        return parseOptionalFilingTime(utc, generalized).orElseGet(() -> Date.from(Instant.now()));
     }
 
-    private Optional<Date> parseOptionalFilingTime(List<BerTlv> fields) {
-        Optional<BerTlv> utc = BerCodec.findOptional(fields, 2, 7);
-        Optional<BerTlv> generalized = BerCodec.findOptional(fields, 2, 8);
-
-        BerTlv selected = null;
-        if (generalized.isPresent()) {
-            selected = generalized.get();
-        } else if (utc.isPresent()) {
-            selected = utc.get();
-        }
-
+    private Optional<Date> parseOptionalFilingTime(BerTlv utc, BerTlv generalized) {
+        BerTlv selected = generalized != null ? generalized : utc;
         if (selected == null) {
             return Optional.empty();
         }
 
-        String value = new String(selected.value(), StandardCharsets.US_ASCII);
+        String value = selected.valueAsString(StandardCharsets.US_ASCII);
         try {
             if (selected.tagNumber() == 8) {
                 SimpleDateFormat generalizedFormat = new SimpleDateFormat("yyyyMMddHHmmss'Z'", Locale.ROOT);
@@ -243,50 +244,50 @@ public class P1BerMessageParser {
         }
     }
 
-    private String requiredIa5(List<BerTlv> fields, int contextTag, String field) {
+    private String requiredIa5(BerTlv[] fields, int contextTag, String field) {
         return optionalIa5(fields, contextTag)
             .orElseThrow(() -> new IllegalArgumentException("Missing BER field '" + field + "'"));
     }
 
-    private Optional<String> optionalIa5(List<BerTlv> fields, int contextTag) {
-        return BerCodec.findOptional(fields, 2, contextTag)
+    private Optional<String> optionalIa5(BerTlv[] fields, int contextTag) {
+        return field(fields, contextTag)
             .map(value -> decodeTextValue(value, StandardCharsets.US_ASCII));
     }
 
-    private String requiredUtf8(List<BerTlv> fields, int contextTag, String field) {
+    private String requiredUtf8(BerTlv[] fields, int contextTag, String field) {
         return optionalUtf8(fields, contextTag)
             .orElseThrow(() -> new IllegalArgumentException("Missing BER field '" + field + "'"));
     }
 
-    private Optional<String> optionalUtf8(List<BerTlv> fields, int contextTag) {
-        return BerCodec.findOptional(fields, 2, contextTag)
+    private Optional<String> optionalUtf8(BerTlv[] fields, int contextTag) {
+        return field(fields, contextTag)
             .map(value -> decodeTextValue(value, StandardCharsets.UTF_8));
     }
 
     private String decodeTextValue(BerTlv value, Charset fallbackCharset) {
         if (!value.constructed()) {
-            return new String(value.value(), fallbackCharset);
+            return value.valueAsString(fallbackCharset);
         }
 
-        List<BerTlv> nested = BerCodec.decodeAll(value.value());
-        if (nested.size() == 1 && !nested.get(0).constructed()) {
-            BerTlv nestedValue = nested.get(0);
+        BerReader nested = BerReader.over(value);
+        BerTlv nestedValue = nested.next() ? nested.tlv() : null;
+        if (nestedValue != null && !nested.next() && !nestedValue.constructed()) {
             if (!nestedValue.isUniversal()) {
-                return new String(nestedValue.value(), fallbackCharset);
+                return nestedValue.valueAsString(fallbackCharset);
             }
             return switch (nestedValue.tagNumber()) {
-                case 12 -> new String(nestedValue.value(), StandardCharsets.UTF_8);
-                case 19, 22, 25 -> new String(nestedValue.value(), StandardCharsets.US_ASCII);
-                case 20 -> new String(nestedValue.value(), StandardCharsets.ISO_8859_1);
-                default -> new String(nestedValue.value(), fallbackCharset);
+                case 12 -> nestedValue.valueAsString(StandardCharsets.UTF_8);
+                case 19, 22, 25 -> nestedValue.valueAsString(StandardCharsets.US_ASCII);
+                case 20 -> nestedValue.valueAsString(StandardCharsets.ISO_8859_1);
+                default -> nestedValue.valueAsString(fallbackCharset);
             };
         }
 
-        return new String(value.value(), fallbackCharset);
+        return value.valueAsString(fallbackCharset);
     }
 
-    private Optional<Integer> optionalEnumerated(List<BerTlv> fields, int contextTag) {
-        return BerCodec.findOptional(fields, 2, contextTag)
+    private Optional<Integer> optionalEnumerated(BerTlv[] fields, int contextTag) {
+        return field(fields, contextTag)
             .map(this::parseIntegerValue);
     }
 
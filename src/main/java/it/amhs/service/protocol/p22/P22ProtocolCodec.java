@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 
 import it.amhs.asn1.BerCodec;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.DecodeResult;
 import it.amhs.service.protocol.p22.P22OperationModels.InterPersonalMessageRequest;
 import it.amhs.service.protocol.p22.P22OperationModels.InterPersonalMessageResult;
 import it.amhs.service.protocol.p22.P22OperationModels.P22Error;
@@ -46,30 +47,45 @@ public class P22ProtocolCodec {
     }
 
     public boolean isSupportedApplicationApdu(byte[] encodedApdu) {
+        return probe(encodedApdu).supported();
+    }
+
+    /**
+     * Finds the first decode path of {@link #handle(byte[])} that accepts {@code encodedApdu}
+     * without throwing; the returned probe carries what that path decoded.
+     */
+    public Probe probe(byte[] encodedApdu) {
         if (encodedApdu == null || encodedApdu.length == 0) {
-            return false;
+            return Probe.rejected("Empty P22 APDU", "Empty P22 APDU");
         }
 
-        try {
-            roseCodec.decodeInvoke(encodedApdu);
-            return true;
-        } catch (RuntimeException ignored) {
+        DecodeResult<RoseInvoke> invoke = roseCodec.tryDecodeInvoke(encodedApdu);
+        if (invoke.isDecoded()) {
+            return new Probe(ApduKind.ROSE_INVOKE, invoke.value(), null, null, null);
         }
+        return probeBeyondStrictInvoke(encodedApdu, invoke.reason());
+    }
 
+    private Probe probeBeyondStrictInvoke(byte[] encodedApdu, String strictReason) {
         if (looksLikeReleaseOrControlApdu(encodedApdu)) {
-            return true;
+            return new Probe(ApduKind.RELEASE_OR_CONTROL, null, null, strictReason, null);
         }
 
-        try {
-            decodeCompatInvoke(encodedApdu);
-            return true;
-        } catch (RuntimeException ignored) {
+        DecodeResult<CompatRoseInvoke> compat = tryDecodeCompatInvoke(encodedApdu);
+        if (compat.isDecoded()) {
+            return new Probe(ApduKind.COMPAT_INVOKE, null, compat.value(), strictReason, null);
         }
-
-        return false;
+        return Probe.rejected(strictReason, compat.reason());
     }
 
     public byte[] handle(byte[] encodedApdu) {
+        return handle(encodedApdu, probe(encodedApdu));
+    }
+
+    /**
+     * Handles an APDU already probed by {@link #probe(byte[])}, reusing whatever the probe decoded.
+     */
+    public byte[] handle(byte[] encodedApdu, Probe probe) {
         try {
             if (encodedApdu == null || encodedApdu.length == 0) {
                 throw new IllegalArgumentException("Empty P22 APDU");
@@ -81,52 +97,60 @@ public class P22ProtocolCodec {
                 toHexPreview(encodedApdu, 192)
             );
 
-            try {
-                RoseInvoke invoke = roseCodec.decodeInvoke(encodedApdu);
-
-                logger.info(
-                    "P22 strict ROSE invoke decoded invokeId={} operationCode={} arg-first-bytes={}",
-                    invoke.invokeId(),
-                    invoke.operationCode(),
-                    toHexPreview(invoke.argument(), 128)
-                );
-
-                if (invoke.operationCode() == OP_INTERPERSONAL_MESSAGE
-                    && looksLikeRealInterPersonalMessageArgument(invoke.argument())) {
-                    return handleInterPersonalMessage(invoke);
-                }
+            if (probe.kind == ApduKind.ROSE_INVOKE) {
+                try {
+                    RoseInvoke invoke = probe.invoke;
 
-                if (looksLikeRealInterPersonalMessageArgument(invoke.argument())) {
                     logger.info(
-                        "P22 strict invoke compat-accepted as interpersonal-message invokeId={} operationCode={}",
+                        "P22 strict ROSE invoke decoded invokeId={} operationCode={} arg-first-bytes={}",
                         invoke.invokeId(),
-                        invoke.operationCode()
+                        invoke.operationCode(),
+                        toHexPreview(invoke.argument(), 128)
                     );
-                    return handleInterPersonalMessage(invoke);
-                }
 
-                logger.warn(
-                    "Unsupported strict P22 ROSE invoke operation op={} invokeId={}",
-                    invoke.operationCode(),
-                    invoke.invokeId()
-                );
+                    if (invoke.operationCode() == OP_INTERPERSONAL_MESSAGE
+                        && looksLikeRealInterPersonalMessageArgument(invoke.argument())) {
+                        return handleInterPersonalMessage(invoke);
+                    }
 
-                return roseCodec.encodeReturnError(
-                    new P22Error(
-                        invoke.invokeId(),
-                        "unsupported-operation",
-                        "Unsupported P22 operation",
-                        false
-                    )
-                );
-            } catch (RuntimeException strictFailure) {
+                    if (looksLikeRealInterPersonalMessageArgument(invoke.argument())) {
+                        logger.info(
+                            "P22 strict invoke compat-accepted as interpersonal-message invokeId={} operationCode={}",
+                            invoke.invokeId(),
+                            invoke.operationCode()
+                        );
+                        return handleInterPersonalMessage(invoke);
+                    }
+
+                    logger.warn(
+                        "Unsupported strict P22 ROSE invoke operation op={} invokeId={}",
+                        invoke.operationCode(),
+                        invoke.invokeId()
+                    );
+
+                    return roseCodec.encodeReturnError(
+                        new P22Error(
+                            invoke.invokeId(),
+                            "unsupported-operation",
+                            "Unsupported P22 operation",
+                            false
+                        )
+                    );
+                } catch (RuntimeException strictFailure) {
+                    logger.info(
+                        "P22 strict ROSE decode failed, trying control/compat paths: {}",
+                        strictFailure.getMessage()
+                    );
+                    probe = probeBeyondStrictInvoke(encodedApdu, strictFailure.getMessage());
+                }
+            } else {
                 logger.info(
                     "P22 strict ROSE decode failed, trying control/compat paths: {}",
-                    strictFailure.getMessage()
+                    probe.strictReason
                 );
             }
 
-            if (looksLikeReleaseOrControlApdu(encodedApdu)) {
+            if (probe.kind == ApduKind.RELEASE_OR_CONTROL) {
                 logger.info(
                     "P22 control/release-like APDU detected len={} first-bytes={}",
                     encodedApdu.length,
@@ -142,7 +166,10 @@ public class P22ProtocolCodec {
             }
 
             try {
-                CompatRoseInvoke compat = decodeCompatInvoke(encodedApdu);
+                if (probe.kind != ApduKind.COMPAT_INVOKE) {
+                    throw new IllegalArgumentException(probe.compatReason);
+                }
+                CompatRoseInvoke compat = probe.compat;
 
                 logger.info(
                     "P22 compat invoke decoded invokeId={} operationCode={} arg-first-bytes={}",
@@ -216,36 +243,30 @@ public class P22ProtocolCodec {
         return roseCodec.encodeReturnResult(request.invokeId(), resultPayload);
     }
 
-    private CompatRoseInvoke decodeCompatInvoke(byte[] encodedApdu) {
-        if (encodedApdu == null || encodedApdu.length == 0) {
-            throw new IllegalArgumentException("Empty P22 APDU");
-        }
-
-        BerTlv outer;
-        try {
-            outer = BerCodec.decodeSingle(encodedApdu);
-        } catch (RuntimeException ex) {
-            throw new IllegalArgumentException("Invalid BER in P22 APDU", ex);
+    private DecodeResult<CompatRoseInvoke> tryDecodeCompatInvoke(byte[] encodedApdu) {
+        DecodeResult<BerTlv> decodedOuter = BerCodec.tryDecodeSingle(encodedApdu);
+        if (!decodedOuter.isDecoded()) {
+            return DecodeResult.rejected("Invalid BER in P22 APDU");
         }
+        BerTlv outer = decodedOuter.value();
 
         if (outer.tagClass() != TAG_CLASS_APPLICATION || !outer.constructed()) {
-            throw new IllegalArgumentException("P22 APDU is not an application-constructed BER object");
+            return DecodeResult.rejected("P22 APDU is not an application-constructed BER object");
         }
 
         if (outer.tagNumber() < 1 || outer.tagNumber() > 4) {
-            throw new IllegalArgumentException("Unsupported P22 application tag " + outer.tagNumber());
+            return DecodeResult.rejected("Unsupported P22 application tag " + outer.tagNumber());
         }
 
         if (encodedApdu.length <= MAX_CONTROL_APDU_LEN) {
-            throw new IllegalArgumentException("Tiny APDU reserved for control/release handling");
+            return DecodeResult.rejected("Tiny APDU reserved for control/release handling");
         }
 
-        List<BerTlv> outerFields;
-        try {
-            outerFields = BerCodec.decodeAll(outer.value());
-        } catch (RuntimeException ex) {
-            throw new IllegalArgumentException("Unable to decode outer P22 fields", ex);
+        DecodeResult<List<BerTlv>> decodedFields = BerCodec.tryDecodeChildren(outer);
+        if (!decodedFields.isDecoded()) {
+            return DecodeResult.rejected("Unable to decode outer P22 fields");
         }
+        List<BerTlv> outerFields = decodedFields.value();
 
         Optional<Integer> invokeId = Optional.empty();
         Optional<Integer> operationCode = Optional.empty();
@@ -256,6 +277,9 @@ public class P22ProtocolCodec {
                 && field.tagClass() == TAG_CLASS_UNIVERSAL
                 && !field.constructed()
                 && field.tagNumber() == TAG_INTEGER) {
+                if (field.length() == 0 || field.length() > 4) {
+                    return DecodeResult.rejected("Invalid INTEGER length");
+                }
                 invokeId = Optional.of(decodeSmallInteger(field.value()));
                 continue;
             }
@@ -272,14 +296,14 @@ public class P22ProtocolCodec {
         }
 
         if (!invokeId.isPresent()) {
-            throw new IllegalArgumentException("P22 compat invoke does not contain invokeId");
+            return DecodeResult.rejected("P22 compat invoke does not contain invokeId");
         }
 
         if (argument == null) {
-            throw new IllegalArgumentException("P22 compat invoke does not contain a real interpersonal-message argument");
+            return DecodeResult.rejected("P22 compat invoke does not contain a real interpersonal-message argument");
         }
 
-        return new CompatRoseInvoke(invokeId.get(), operationCode, argument);
+        return DecodeResult.decoded(new CompatRoseInvoke(invokeId.get(), operationCode, argument));
     }
 
     private Optional<byte[]> extractRealInterPersonalMessageArgumentFromNode(BerTlv node) {
@@ -384,36 +408,34 @@ public class P22ProtocolCodec {
     }
 
     private boolean looksLikeReleaseOrControlApdu(byte[] encodedApdu) {
-        if (encodedApdu == null || encodedApdu.length == 0) {
+        if (encodedApdu == null || encodedApdu.length == 0 || encodedApdu.length > MAX_CONTROL_APDU_LEN) {
             return false;
         }
 
-        try {
-            BerTlv tlv = BerCodec.decodeSingle(encodedApdu);
-
-            if (tlv.tagClass() != TAG_CLASS_APPLICATION || !tlv.constructed() || tlv.tagNumber() != 1) {
-                return false;
-            }
+        DecodeResult<BerTlv> decoded = BerCodec.tryDecodeSingle(encodedApdu);
+        if (!decoded.isDecoded()) {
+            return false;
+        }
+        BerTlv tlv = decoded.value();
 
-            if (encodedApdu.length > MAX_CONTROL_APDU_LEN) {
-                return false;
-            }
+        if (tlv.tagClass() != TAG_CLASS_APPLICATION || !tlv.constructed() || tlv.tagNumber() != 1) {
+            return false;
+        }
 
-            List<BerTlv> fields = BerCodec.decodeAll(tlv.value());
-            boolean hasInvokeId = false;
+        DecodeResult<List<BerTlv>> fields = BerCodec.tryDecodeChildren(tlv);
+        if (!fields.isDecoded()) {
+            return false;
+        }
 
-            for (BerTlv field : fields) {
-                if (field.tagClass() == TAG_CLASS_UNIVERSAL
-                    && !field.constructed()
-                    && field.tagNumber() == TAG_INTEGER) {
-                    hasInvokeId = true;
-                }
+        for (BerTlv field : fields.value()) {
+            if (field.tagClass() == TAG_CLASS_UNIVERSAL
+                && !field.constructed()
+                && field.tagNumber() == TAG_INTEGER) {
+                return true;
             }
-
-            return hasInvokeId;
-        } catch (RuntimeException ex) {
-            return false;
         }
+
+        return false;
     }
 
     private byte[] buildReleaseResultInsideCodec(byte[] inboundApdu) {
@@ -586,4 +608,50 @@ public class P22ProtocolCodec {
     }
 
     private record CompatRoseInvoke(int invokeId, Optional<Integer> operationCode, byte[] argument) {}
+
+    /**
+     * Outcome of {@link #probe(byte[])}: the decode path that accepted the APDU together with what it
+     * decoded, or the reasons every path rejected it.
+     */
+    public static final class Probe {
+
+        private final ApduKind kind;
+        private final RoseInvoke invoke;
+        private final CompatRoseInvoke compat;
+        private final String strictReason;
+        private final String compatReason;
+
+        private Probe(ApduKind kind, RoseInvoke invoke, CompatRoseInvoke compat, String strictReason, String compatReason) {
+            this.kind = kind;
+            this.invoke = invoke;
+            this.compat = compat;
+            this.strictReason = strictReason;
+            this.compatReason = compatReason;
+        }
+
+        private static Probe rejected(String strictReason, String compatReason) {
+            return new Probe(null, null, null, strictReason, compatReason);
+        }
+
+        public Optional<ApduKind> kind() {
+            return Optional.ofNullable(kind);
+        }
+
+        public boolean supported() {
+            return kind != null;
+        }
+
+        /**
+         * Why the APDU is unsupported, or {@code null} if it is supported.
+         */
+        public String reason() {
+            return kind == null ? strictReason + "; " + compatReason : null;
+        }
+    }
+
+    public enum ApduKind {
+        ROSE_INVOKE,
+        RELEASE_OR_CONTROL,
+        COMPAT_INVOKE
+    }
 }
\ No newline at end of file
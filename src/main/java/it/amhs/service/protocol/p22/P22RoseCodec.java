@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 
 import it.amhs.asn1.BerCodec;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.DecodeResult;
 import it.amhs.service.protocol.p22.P22OperationModels.P22Error;
 import it.amhs.service.protocol.p22.P22OperationModels.RoseInvoke;
 
@@ -38,32 +39,55 @@ public class P22RoseCodec {
     }
 
     public RoseInvoke decodeInvoke(byte[] encoded) {
+        return tryDecodeInvoke(encoded).orElseThrow();
+    }
+
+    /**
+     * Decodes a ROSE invoke, reporting why {@code encoded} is not one instead of throwing.
+     */
+    public DecodeResult<RoseInvoke> tryDecodeInvoke(byte[] encoded) {
         if (encoded == null || encoded.length == 0) {
-            throw new IllegalArgumentException("Empty ROSE APDU");
+            return DecodeResult.rejected("Empty ROSE APDU");
         }
 
-        BerTlv root = BerCodec.decodeSingle(encoded);
+        DecodeResult<BerTlv> decodedRoot = BerCodec.tryDecodeSingle(encoded);
+        if (!decodedRoot.isDecoded()) {
+            return DecodeResult.rejected(decodedRoot.reason());
+        }
+        BerTlv root = decodedRoot.value();
         if (root.tagClass() != TAG_CLASS_APPLICATION
             || !root.constructed()
             || root.tagNumber() != ROSE_INVOKE_TAG) {
-            throw new IllegalArgumentException("Not a ROSE invoke APDU");
+            return DecodeResult.rejected("Not a ROSE invoke APDU");
         }
 
-        List<BerTlv> fields = BerCodec.decodeAll(root.value());
+        DecodeResult<List<BerTlv>> decodedFields = BerCodec.tryDecodeChildren(root);
+        if (!decodedFields.isDecoded()) {
+            return DecodeResult.rejected(decodedFields.reason());
+        }
+        List<BerTlv> fields = decodedFields.value();
         if (fields.size() < 3) {
-            throw new IllegalArgumentException("ROSE invoke must contain invokeId, operationCode and argument");
+            return DecodeResult.rejected("ROSE invoke must contain invokeId, operationCode and argument");
         }
 
         BerTlv invokeIdField = fields.get(0);
         BerTlv operationCodeField = fields.get(1);
 
+        String integerProblem = integerFieldProblem(invokeIdField);
+        if (integerProblem == null) {
+            integerProblem = integerFieldProblem(operationCodeField);
+        }
+        if (integerProblem != null) {
+            return DecodeResult.rejected(integerProblem);
+        }
+
         int invokeId = decodeIntegerField(invokeIdField);
         int operationCode = decodeIntegerField(operationCodeField);
 
         BerTlv argumentField = fields.get(2);
         byte[] argument = BerCodec.encode(argumentField);
 
-        return new RoseInvoke(invokeId, operationCode, argument);
+        return DecodeResult.decoded(new RoseInvoke(invokeId, operationCode, argument));
     }
 
     public byte[] encodeReturnResult(int invokeId, byte[] resultPayload) {
@@ -149,16 +173,18 @@ public class P22RoseCodec {
         );
     }
 
-    private int decodeIntegerField(BerTlv tlv) {
+    private String integerFieldProblem(BerTlv tlv) {
         if (tlv.tagClass() != TAG_CLASS_UNIVERSAL || tlv.constructed() || tlv.tagNumber() != 2) {
-            throw new IllegalArgumentException("Expected universal INTEGER");
+            return "Expected universal INTEGER";
         }
-
-        byte[] value = tlv.value();
-        if (value == null || value.length == 0 || value.length > 4) {
-            throw new IllegalArgumentException("Unsupported INTEGER length");
+        if (tlv.length() == 0 || tlv.length() > 4) {
+            return "Unsupported INTEGER length";
         }
+        return null;
+    }
 
+    private int decodeIntegerField(BerTlv tlv) {
+        byte[] value = tlv.value();
         int out = 0;
         for (byte b : value) {
             out = (out << 8) | (b & 0xFF);
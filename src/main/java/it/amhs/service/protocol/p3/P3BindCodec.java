@@ -16,6 +16,7 @@ import org.springframework.util.StringUtils;
 
 import it.amhs.asn1.BerCodec;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.DecodeResult;
 import it.amhs.service.address.ORAddress;
 import it.amhs.service.protocol.p3.P3OperationModels.BindRequest;
 import it.amhs.service.protocol.p3.P3OperationModels.BindResult;
@@ -38,7 +39,14 @@ public class P3BindCodec {
         }
 
         try {
-            BerTlv apdu = BerCodec.decodeSingle(encodedApdu);
+            return isLikelyBindRequest(BerCodec.decodeSingle(encodedApdu));
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    public boolean isLikelyBindRequest(BerTlv apdu) {
+        try {
             return isLikelyNativeBind(apdu) || isLikelyMtsBind(apdu);
         } catch (RuntimeException ex) {
             return false;
@@ -62,17 +70,31 @@ public class P3BindCodec {
             throw new IllegalArgumentException("Not a bind APDU");
         }
 
-        BerTlv apdu = BerCodec.decodeSingle(encodedApdu);
+        return tryDecodeBindRequest(BerCodec.decodeSingle(encodedApdu), encodedApdu).orElseThrow();
+    }
 
-        if (isLikelyNativeBind(apdu)) {
-            return decodeNativeBindRequest(apdu, encodedApdu);
+    /**
+     * Decodes the bind whose top-level TLV {@code apdu} was already parsed from {@code encodedApdu},
+     * returning the reason instead of throwing when it is not a supported bind.
+     */
+    public DecodeResult<BindRequest> tryDecodeBindRequest(BerTlv apdu, byte[] encodedApdu) {
+        if (apdu == null || apdu.tagClass() != TAG_CLASS_CONTEXT || !apdu.constructed()) {
+            return DecodeResult.rejected("Not a supported bind APDU");
         }
 
-        if (isLikelyMtsBind(apdu)) {
-            return decodeMtsBindRequest(apdu, encodedApdu);
+        try {
+            if (apdu.tagNumber() == NATIVE_BIND_REQUEST_OUTER_TAG) {
+                return decodeNativeBindRequest(apdu, encodedApdu);
+            }
+
+            if (apdu.tagNumber() == MTS_BIND_REQUEST_OUTER_TAG) {
+                return decodeMtsBindRequest(apdu, encodedApdu);
+            }
+        } catch (RuntimeException ex) {
+            return DecodeResult.rejected("Invalid bind APDU: " + ex.getMessage());
         }
 
-        throw new IllegalArgumentException("Not a supported bind APDU");
+        return DecodeResult.rejected("Not a supported bind APDU");
     }
 
     public byte[] encodeBindResult(byte[] inboundBindApdu, BindResult result) {
@@ -153,19 +175,20 @@ public class P3BindCodec {
         return StringUtils.hasText(sender) && StringUtils.hasText(password);
     }
 
-    private BindRequest decodeNativeBindRequest(BerTlv apdu, byte[] originalApdu) {
+    private DecodeResult<BindRequest> decodeNativeBindRequest(BerTlv apdu, byte[] originalApdu) {
         String sender = extractSenderFromBind(apdu);
         String password = extractPasswordFromBind(apdu);
-        String username = extractUsernameFromBind(apdu);
-        String channel = extractChannelFromBind(apdu);
 
         if (!StringUtils.hasText(sender)) {
-            throw new IllegalArgumentException("Native P3 bind does not contain sender O/R address");
+            return DecodeResult.rejected("Native P3 bind does not contain sender O/R address");
         }
         if (!StringUtils.hasText(password)) {
-            throw new IllegalArgumentException("Native P3 bind does not contain password");
+            return DecodeResult.rejected("Native P3 bind does not contain password");
         }
 
+        String username = extractUsernameFromBind(apdu);
+        String channel = extractChannelFromBind(apdu);
+
         logger.info(
             "P3 native bind decoded authenticatedIdentity={} sender={} channel={} password='{}' password-length={}",
             safe(username),
@@ -175,28 +198,29 @@ public class P3BindCodec {
             password.length()
         );
 
-        return new BindRequest(
+        return DecodeResult.decoded(new BindRequest(
             trimToNull(username),
             password,
             sender,
             Optional.ofNullable(trimToNull(channel)),
             originalApdu
-        );
+        ));
     }
 
-    private BindRequest decodeMtsBindRequest(BerTlv apdu, byte[] originalApdu) {
+    private DecodeResult<BindRequest> decodeMtsBindRequest(BerTlv apdu, byte[] originalApdu) {
         String sender = extractSenderFromMtsBind(apdu);
         String password = extractPasswordFromMtsBind(apdu);
-        String username = extractUsernameFromMtsBind(apdu);
-        String channel = extractChannelFromMtsBind(apdu);
 
         if (!StringUtils.hasText(sender)) {
-            throw new IllegalArgumentException("MTS bind does not contain sender O/R address");
+            return DecodeResult.rejected("MTS bind does not contain sender O/R address");
         }
         if (!StringUtils.hasText(password)) {
-            throw new IllegalArgumentException("MTS bind does not contain password");
+            return DecodeResult.rejected("MTS bind does not contain password");
         }
 
+        String username = extractUsernameFromMtsBind(apdu);
+        String channel = extractChannelFromMtsBind(apdu);
+
         logger.info(
             "P3 MTS bind decoded authenticatedIdentity={} sender={} channel={} password='{}' password-length={}",
             safe(username),
@@ -206,13 +230,13 @@ public class P3BindCodec {
             password.length()
         );
 
-        return new BindRequest(
+        return DecodeResult.decoded(new BindRequest(
             trimToNull(username),
             password,
             sender,
             Optional.ofNullable(trimToNull(channel)),
             originalApdu
-        );
+        ));
     }
 
     private byte[] encodeNativeBindResultApdu(BerTlv inboundBindRoot, BindResult result) {
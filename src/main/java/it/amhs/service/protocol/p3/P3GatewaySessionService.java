@@ -10,8 +10,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +29,7 @@ import it.amhs.repository.AMHSMessageRepository;
 import it.amhs.service.address.ORAddress;
 import it.amhs.service.channel.AMHSChannelService;
 import it.amhs.service.message.X400MessageService;
+import it.amhs.service.report.ReportNotificationHub;
 import it.amhs.service.relay.RelayRoutingService;
 import it.amhs.service.relay.RelayRoutingService.AMHSMessageEnvelope;
 
@@ -45,6 +44,7 @@ public class P3GatewaySessionService {
     private final RelayRoutingService relayRoutingService;
     private final AMHSMessageRepository messageRepository;
     private final AMHSDeliveryReportRepository deliveryReportRepository;
+    private final ReportNotificationHub notificationHub;
 
     private final long defaultStatusWaitTimeoutMs;
     private final long defaultStatusRetryIntervalMs;
@@ -58,7 +58,7 @@ public class P3GatewaySessionService {
     private final String defaultServerAddress;
 
     private final SecurityLabelPolicy securityLabelPolicy = new SecurityLabelPolicy();
-    private final ConcurrentMap<String, Long> submissionCorrelationTable = new ConcurrentHashMap<>();
+    private final SubmissionCorrelationCache submissionCorrelations;
 
     public P3GatewaySessionService(
         X400MessageService x400MessageService,
@@ -67,6 +67,7 @@ public class P3GatewaySessionService {
         RelayRoutingService relayRoutingService,
         AMHSMessageRepository messageRepository,
         AMHSDeliveryReportRepository deliveryReportRepository,
+        ReportNotificationHub notificationHub,
         @Value("${amhs.p3.gateway.status.wait-timeout-ms:10000}") long defaultStatusWaitTimeoutMs,
         @Value("${amhs.p3.gateway.status.retry-interval-ms:1000}") long defaultStatusRetryIntervalMs,
         @Value("${amhs.p3.gateway.auth.required:true}") boolean authRequired,
@@ -74,7 +75,9 @@ public class P3GatewaySessionService {
         @Value("${amhs.p3.gateway.auth.password:}") String expectedPassword,
         @Value("${amhs.p3.gateway.protocol-index:RFC1006}") String defaultProtocolIndex,
         @Value("${amhs.p3.gateway.protocol-address:127.0.0.1:102}") String defaultProtocolAddress,
-        @Value("${amhs.p3.gateway.server-address:AMHS-P3-GATEWAY}") String defaultServerAddress
+        @Value("${amhs.p3.gateway.server-address:AMHS-P3-GATEWAY}") String defaultServerAddress,
+        @Value("${amhs.p3.gateway.correlation.max-entries:100000}") int correlationMaxEntries,
+        @Value("${amhs.archive.retention-days:30}") int retentionDays
     ) {
         this.x400MessageService = x400MessageService;
         this.complianceValidator = complianceValidator;
@@ -82,14 +85,16 @@ public class P3GatewaySessionService {
         this.relayRoutingService = relayRoutingService;
         this.messageRepository = messageRepository;
         this.deliveryReportRepository = deliveryReportRepository;
+        this.notificationHub = notificationHub;
         this.defaultStatusWaitTimeoutMs = Math.max(0L, defaultStatusWaitTimeoutMs);
-        this.defaultStatusRetryIntervalMs = Math.max(1L, defaultStatusRetryIntervalMs);
+        this.defaultStatusRetryIntervalMs = Math.max(0L, defaultStatusRetryIntervalMs);
         this.authRequired = authRequired;
         this.expectedUsername = trimToNull(expectedUsername);
         this.expectedPassword = trimToNull(expectedPassword);
         this.defaultProtocolIndex = defaultProtocolIndex;
         this.defaultProtocolAddress = defaultProtocolAddress;
         this.defaultServerAddress = defaultServerAddress;
+        this.submissionCorrelations = new SubmissionCorrelationCache(correlationMaxEntries, Duration.ofDays(Math.max(1, retentionDays)));
         
         logger.info(
         	    "P3 auth config loaded authRequired={} expectedUsername='{}' expectedPasswordLength={}",
@@ -99,6 +104,10 @@ public class P3GatewaySessionService {
         	);
     }
 
+    public SubmissionCorrelationCache.Stats correlationStats() {
+        return submissionCorrelations.stats();
+    }
+
     public SessionState newSession() {
         return new SessionState();
     }
@@ -418,9 +427,7 @@ public class P3GatewaySessionService {
 
         AMHSMessage storedMessage = x400MessageService.storeFromP3(request);
         Long storedId = storedMessage.getId();
-        if (storedId != null) {
-            submissionCorrelationTable.put(submissionId, storedId);
-        }
+        submissionCorrelations.put(submissionId, storedId);
 
         logger.info(
             "P3 submit accepted sender={} recipient={} channel={} submissionId={} messageId={}",
@@ -469,23 +476,23 @@ public class P3GatewaySessionService {
             return retryInterval.error();
         }
 
-        long waitTimeoutMs = waitTimeout.value();
-        long retryIntervalMs = Math.max(1L, retryInterval.value());
-        Instant deadline = Instant.now().plusMillis(Math.max(0L, waitTimeoutMs));
+        long recheckIntervalMs = retryInterval.value();
+        Instant deadline = Instant.now().plusMillis(waitTimeout.value());
 
         StatusSnapshot snapshot = loadStatus(submissionId);
-        while (snapshot != null
-            && snapshot.drStatus.equals("PENDING")
-            && waitTimeoutMs > 0
-            && Instant.now().isBefore(deadline)) {
-            long remainingMs = Math.max(1L, Duration.between(Instant.now(), deadline).toMillis());
-            try {
-                Thread.sleep(Math.min(retryIntervalMs, remainingMs));
+        long remainingMs;
+        while (isPending(snapshot) && (remainingMs = remainingMillis(deadline)) > 0) {
+            // Register before re-reading so a report committed in between still wakes us.
+            try (ReportNotificationHub.Waiter waiter = notificationHub.awaitMessage(snapshot.message.getId())) {
+                snapshot = loadStatus(submissionId);
+                if (isPending(snapshot)) {
+                    waiter.await(waitSlice(remainingMs, recheckIntervalMs));
+                    snapshot = loadStatus(submissionId);
+                }
             } catch (InterruptedException ex) {
                 Thread.currentThread().interrupt();
                 return "ERR code=interrupted detail=Status wait interrupted";
             }
-            snapshot = loadStatus(submissionId);
         }
 
         if (snapshot == null) {
@@ -512,31 +519,45 @@ public class P3GatewaySessionService {
     }
 
     private StatusSnapshot loadStatus(String submissionId) {
-        Long internalMessageId = submissionCorrelationTable.get(submissionId);
+        Long internalMessageId = submissionCorrelations.get(submissionId);
         Optional<AMHSMessage> maybeMessage = internalMessageId != null
             ? messageRepository.findById(internalMessageId)
             : Optional.empty();
 
         if (maybeMessage.isEmpty()) {
+            // Misses resolve through the unique message_id index and repopulate the cache.
             maybeMessage = messageRepository.findByMessageId(submissionId);
+            maybeMessage.ifPresent(message -> submissionCorrelations.put(submissionId, message.getId()));
         }
         if (maybeMessage.isEmpty()) {
             return null;
         }
 
         AMHSMessage message = maybeMessage.get();
-        if (message.getId() != null) {
-            submissionCorrelationTable.put(submissionId, message.getId());
-        }
 
-        Optional<AMHSDeliveryReport> latestReport = deliveryReportRepository.findByMessage(message).stream()
-            .max((left, right) -> left.getGeneratedAt().compareTo(right.getGeneratedAt()));
+        Optional<AMHSDeliveryReport> latestReport = deliveryReportRepository.findFirstByMessageOrderByGeneratedAtDescIdDesc(message);
 
         String drStatus = latestReport.map(report -> report.getDeliveryStatus().name()).orElse("PENDING");
         String ipnStatus = resolveIpnStatus(message, latestReport.isPresent());
         return new StatusSnapshot(message, latestReport.orElse(null), drStatus, ipnStatus);
     }
 
+    private boolean isPending(StatusSnapshot snapshot) {
+        return snapshot != null && snapshot.drStatus.equals("PENDING");
+    }
+
+    private long remainingMillis(Instant deadline) {
+        return Duration.between(Instant.now(), deadline).toMillis();
+    }
+
+    /**
+     * Waits are woken by {@link ReportNotificationHub}; a positive re-check interval additionally
+     * bounds each wait so reports saved by other nodes are noticed before the deadline.
+     */
+    private long waitSlice(long remainingMs, long recheckIntervalMs) {
+        return recheckIntervalMs > 0 ? Math.min(recheckIntervalMs, remainingMs) : remainingMs;
+    }
+
     private String resolveIpnStatus(AMHSMessage message, boolean hasReport) {
         if (message.getIpnRequest() == null || message.getIpnRequest() <= 0) {
             return "NOT-REQUESTED";
@@ -601,20 +622,22 @@ public class P3GatewaySessionService {
             return retryInterval.error();
         }
 
-        long waitTimeoutMs = waitTimeout.value();
-        long retryIntervalMs = Math.max(1L, retryInterval.value());
-        Instant deadline = Instant.now().plusMillis(Math.max(0L, waitTimeoutMs));
+        long recheckIntervalMs = retryInterval.value();
+        Instant deadline = Instant.now().plusMillis(waitTimeout.value());
 
-        AMHSDeliveryReport report = loadNextReport(recipient, state.lastReadReportId);
-        while (report == null && waitTimeoutMs > 0 && Instant.now().isBefore(deadline)) {
-            long remainingMs = Math.max(1L, Duration.between(Instant.now(), deadline).toMillis());
-            try {
-                Thread.sleep(Math.min(retryIntervalMs, remainingMs));
+        AMHSDeliveryReport report;
+        while (true) {
+            try (ReportNotificationHub.Waiter waiter = notificationHub.awaitRecipient(recipient)) {
+                report = loadNextReport(recipient, state.lastReadReportId);
+                long remainingMs = remainingMillis(deadline);
+                if (report != null || remainingMs <= 0) {
+                    break;
+                }
+                waiter.await(waitSlice(remainingMs, recheckIntervalMs));
             } catch (InterruptedException ex) {
                 Thread.currentThread().interrupt();
                 return "ERR code=interrupted detail=" + operationName + " wait interrupted";
             }
-            report = loadNextReport(recipient, state.lastReadReportId);
         }
 
         String operationCode = operationName.equalsIgnoreCase("Report") ? "report" : "read";
@@ -635,9 +658,7 @@ public class P3GatewaySessionService {
     private AMHSDeliveryReport loadNextReport(String recipient, Long afterId) {
         long cursor = afterId == null ? 0L : Math.max(0L, afterId);
         return deliveryReportRepository
-            .findByRecipientIgnoreCaseAndIdGreaterThanOrderByIdAsc(recipient, cursor)
-            .stream()
-            .findFirst()
+            .findFirstByRecipientNormalizedAndIdGreaterThanOrderByIdAsc(AMHSDeliveryReport.normalizeRecipient(recipient), cursor)
             .orElse(null);
     }
 
@@ -759,6 +780,10 @@ public class P3GatewaySessionService {
         private boolean closed;
         private Long lastReadReportId;
 
+        public boolean isBound() {
+            return bound;
+        }
+
         public boolean isClosed() {
             return closed;
         }
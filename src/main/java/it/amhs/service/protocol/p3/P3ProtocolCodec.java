@@ -1,11 +1,15 @@
 package it.amhs.service.protocol.p3;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import it.amhs.asn1.BerCodec;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.DecodeResult;
 import it.amhs.service.protocol.p3.P3OperationModels.BindRequest;
 import it.amhs.service.protocol.p3.P3OperationModels.BindResult;
 import it.amhs.service.protocol.p3.P3OperationModels.P3Error;
@@ -37,68 +41,97 @@ public class P3ProtocolCodec {
         this.sessionService = sessionService;
     }
 
+    /**
+     * Cheap shape check; unlike {@link #probe(byte[])} it does not decode the operation argument.
+     */
     public boolean isSupportedApplicationApdu(byte[] encodedApdu) {
-        if (encodedApdu == null || encodedApdu.length < 4) {
+        DecodeResult<BerTlv> root = decodeRoot(encodedApdu);
+        if (!root.isDecoded()) {
             return false;
         }
+        BerTlv apdu = root.value();
+        return isRoseInvoke(apdu)
+            || bindCodec.isLikelyBindRequest(apdu)
+            || submitCodec.isLikelySubmitRequest(apdu, encodedApdu)
+            || releaseCodec.isLikelyReleaseRequest(apdu);
+    }
 
-        try {
-            if (isRoseInvoke(encodedApdu)) {
-                return true;
-            }
+    /**
+     * Finds the operation {@link #handle(P3GatewaySessionService.SessionState, byte[])} would
+     * dispatch {@code encodedApdu} to without throwing. The returned probe carries the decoded
+     * top-level TLV and, for a ROSE invoke or a bind, the decoded operation so the handler does not
+     * decode it again.
+     */
+    public Probe probe(byte[] encodedApdu) {
+        DecodeResult<BerTlv> root = decodeRoot(encodedApdu);
+        if (!root.isDecoded()) {
+            return new Probe(null, null, null, null, root.reason());
+        }
 
-            return bindCodec.isLikelyBindRequest(encodedApdu)
-                || submitCodec.isLikelySubmitRequest(encodedApdu)
-                || releaseCodec.isLikelyReleaseRequest(encodedApdu);
-        } catch (RuntimeException ex) {
-            return false;
+        BerTlv apdu = root.value();
+        if (isRoseInvoke(apdu)) {
+            return new Probe(ApduKind.ROSE_INVOKE, apdu, decodeRoseInvoke(apdu), null, null);
+        }
+
+        DecodeResult<BindRequest> bind = bindCodec.tryDecodeBindRequest(apdu, encodedApdu);
+        if (bind.isDecoded()) {
+            return new Probe(ApduKind.BIND, apdu, null, bind.value(), null);
         }
+        if (submitCodec.isLikelySubmitRequest(apdu, encodedApdu)) {
+            return new Probe(ApduKind.SUBMIT, apdu, null, null, null);
+        }
+        if (releaseCodec.isLikelyReleaseRequest(apdu)) {
+            return new Probe(ApduKind.RELEASE, apdu, null, null, null);
+        }
+        return new Probe(null, apdu, null, null, bind.reason());
     }
 
     public byte[] handle(P3GatewaySessionService.SessionState session, byte[] encodedApdu) {
-        try {
-            logInboundApdu(encodedApdu);
-
-            if (isRoseInvoke(encodedApdu)) {
-                return handleRoseInvoke(session, encodedApdu);
-            }
-
-            if (bindCodec.isLikelyBindRequest(encodedApdu)) {
-                return handleBind(session, encodedApdu);
-            }
+        return handle(session, encodedApdu, probe(encodedApdu));
+    }
 
-            if (submitCodec.isLikelySubmitRequest(encodedApdu)) {
-                return handleSubmit(session, encodedApdu);
-            }
+    /**
+     * Handles an APDU already probed by {@link #probe(byte[])}, reusing what the probe decoded.
+     */
+    public byte[] handle(P3GatewaySessionService.SessionState session, byte[] encodedApdu, Probe probe) {
+        try {
+            logInboundApdu(encodedApdu, probe);
 
-            if (releaseCodec.isLikelyReleaseRequest(encodedApdu)) {
-                return handleRelease(session, encodedApdu);
+            if (!probe.supported()) {
+                logger.warn("Unsupported P3 APDU: {}", probe.reason);
+                return bindCodec.encodeBindError(null, new P3Error("unsupported-operation", "Unsupported P3 operation", false));
             }
 
-            logger.warn("Unsupported P3 APDU");
-            return bindCodec.encodeBindError(null, new P3Error("unsupported-operation", "Unsupported P3 operation", false));
+            return switch (probe.kind) {
+                case ROSE_INVOKE -> handleRoseInvoke(session, probe.invoke);
+                case BIND -> handleBind(session, probe.bindRequest);
+                case SUBMIT -> handleSubmit(session, submitCodec.decodeSubmitRequest(probe.root, encodedApdu));
+                case RELEASE -> handleRelease(session);
+            };
         } catch (IllegalArgumentException ex) {
             logger.warn("Malformed P3 APDU: {}", ex.getMessage());
             return bindCodec.encodeBindError(null, new P3Error("malformed-apdu", ex.getMessage(), false));
         }
     }
     
-    private byte[] handleRoseInvoke(P3GatewaySessionService.SessionState session, byte[] rosInvoke) {
-        int opCode = extractRoseOperationCode(rosInvoke, -1);
-        byte[] operationArg = extractRoseInvokeArgument(rosInvoke);
+    private byte[] handleRoseInvoke(P3GatewaySessionService.SessionState session, RoseInvoke invoke) {
+        int opCode = invoke.operationCode();
+        byte[] operationArg = invoke.argument();
 
         if (operationArg == null || operationArg.length == 0) {
             return wrapRoseErrorIfNeeded(
-                rosInvoke,
+                invoke,
                 submitCodec.encodeSubmitError(
                     new P3Error("malformed-apdu", "Missing ROS argument", false)
                 )
             );
         }
 
+        DecodeResult<BerTlv> argument = BerCodec.tryDecodeSingle(operationArg);
         try {
-            if (opCode == 3 || submitCodec.isLikelySubmitRequest(operationArg)) {
-                SubmitRequest request = submitCodec.decodeSubmitRequest(operationArg);
+            if (opCode == 3
+                || (argument.isDecoded() && submitCodec.isLikelySubmitRequest(argument.value(), operationArg))) {
+                SubmitRequest request = submitCodec.decodeSubmitRequest(argument.orElseThrow(), operationArg);
 
                 String command = "SUBMIT"
                     + " recipient=" + value(request.recipientOrAddress())
@@ -113,22 +146,22 @@ public class P3ProtocolCodec {
                     String senderOrAddress = parseField(response, "sender", "");
                     byte[] nativeResult = submitCodec.encodeSubmitResult(new SubmitResult(submissionId, messageId), senderOrAddress);
 
-                    return wrapRoseResultIfNeeded(rosInvoke, nativeResult);
+                    return wrapRoseResultIfNeeded(invoke, nativeResult);
                 }
                 
                 return wrapRoseErrorIfNeeded(
-                    rosInvoke,
+                    invoke,
                     submitCodec.encodeSubmitError(toError(response))
                 );
             }
 
-            if (releaseCodec.isLikelyReleaseRequest(operationArg)) {
-                byte[] nativeResult = handleRelease(session, operationArg);
-                return wrapRoseResultIfNeeded(rosInvoke, nativeResult);
+            if (argument.isDecoded() && releaseCodec.isLikelyReleaseRequest(argument.value())) {
+                byte[] nativeResult = handleRelease(session);
+                return wrapRoseResultIfNeeded(invoke, nativeResult);
             }
 
             return wrapRoseErrorIfNeeded(
-                rosInvoke,
+                invoke,
                 submitCodec.encodeSubmitError(
                     new P3Error(
                         "unsupported-operation",
@@ -140,7 +173,7 @@ public class P3ProtocolCodec {
 
         } catch (RuntimeException ex) {
             return wrapRoseErrorIfNeeded(
-                rosInvoke,
+                invoke,
                 submitCodec.encodeSubmitError(
                     new P3Error("malformed-apdu", ex.getMessage(), false)
                 )
@@ -148,65 +181,47 @@ public class P3ProtocolCodec {
         }
     }
     
-    private int extractRoseOperationCode(byte[] rosInvoke, int fallback) {
-        try {
-            BerTlv root = BerCodec.decodeSingle(rosInvoke);
+    /**
+     * Reads invoke id, operation code and argument in one pass over the invoke's children. Fields
+     * that cannot be read keep their fallbacks: invoke id 1, operation code -1 and no argument.
+     */
+    private RoseInvoke decodeRoseInvoke(BerTlv root) {
+        int invokeId = 1;
+        boolean invokeIdFound = false;
+        int operationCode = -1;
+        byte[] argument = null;
+
+        DecodeResult<List<BerTlv>> children = BerCodec.tryDecodeChildren(root);
+        if (children.isDecoded()) {
             int integerCount = 0;
 
-            for (BerTlv child : BerCodec.decodeAll(root.value())) {
+            for (BerTlv child : children.value()) {
                 if (child.tagClass() == BerCodec.TAG_CLASS_UNIVERSAL
                     && !child.constructed()
                     && child.tagNumber() == 2) {
-
                     integerCount++;
+                    byte[] value = child.value();
+                    int lastOctet = value.length > 0 ? value[value.length - 1] & 0xFF : -1;
+                    if (!invokeIdFound && lastOctet >= 0) {
+                        invokeId = lastOctet;
+                        invokeIdFound = true;
+                    }
                     if (integerCount == 2) {
-                        return child.value()[child.value().length - 1] & 0xFF;
+                        operationCode = lastOctet;
                     }
-                }
-            }
-        } catch (RuntimeException ignored) {
-        }
-
-        return fallback;
-    }
-
-    private byte[] extractRoseInvokeArgument(byte[] rosInvoke) {
-        try {
-            BerTlv root = BerCodec.decodeSingle(rosInvoke);
-            int integerCount = 0;
-
-            for (BerTlv child : BerCodec.decodeAll(root.value())) {
-                if (child.tagClass() == BerCodec.TAG_CLASS_UNIVERSAL
-                    && !child.constructed()
-                    && child.tagNumber() == 2) {
-                    integerCount++;
                     continue;
                 }
 
-                if (integerCount >= 2) {
-                    return BerCodec.encode(child);
+                if (integerCount >= 2 && argument == null) {
+                    argument = BerCodec.encode(child);
                 }
             }
-        } catch (RuntimeException ignored) {
         }
 
-        return null;
-    }
-
-    private boolean isRoseApdu(byte[] apdu) {
-        try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
-            return root.tagClass() == BerCodec.TAG_CLASS_CONTEXT
-                && root.constructed()
-                && root.tagNumber() >= 1
-                && root.tagNumber() <= 4;
-        } catch (RuntimeException ex) {
-            return false;
-        }
+        return new RoseInvoke(invokeId, operationCode, argument);
     }
 
-    private byte[] handleBind(P3GatewaySessionService.SessionState session, byte[] encodedApdu) {
-        BindRequest request = bindCodec.decodeBindRequest(encodedApdu);
+    private byte[] handleBind(P3GatewaySessionService.SessionState session, BindRequest request) {
 
         String command = "BIND"
             + " username=" + value(request.authenticatedIdentity())
@@ -232,8 +247,7 @@ public class P3ProtocolCodec {
         );
     }
 
-    private byte[] handleSubmit(P3GatewaySessionService.SessionState session, byte[] encodedApdu) {
-        SubmitRequest request = submitCodec.decodeSubmitRequest(encodedApdu);
+    private byte[] handleSubmit(P3GatewaySessionService.SessionState session, SubmitRequest request) {
 
         String command = "SUBMIT"
             + " recipient=" + value(request.recipientOrAddress())
@@ -252,19 +266,14 @@ public class P3ProtocolCodec {
                 senderOrAddress
             );
 
-            return wrapRoseResultIfNeeded(encodedApdu, nativeResult);
+            return nativeResult;
         }
 
-        byte[] nativeError = submitCodec.encodeSubmitError(toError(response));
-        return wrapRoseErrorIfNeeded(encodedApdu, nativeError);
+        return submitCodec.encodeSubmitError(toError(response));
     }
     
-    private byte[] wrapRoseResultIfNeeded(byte[] requestApdu, byte[] nativeResult) {
-        if (!isRoseInvoke(requestApdu)) {
-            return nativeResult;
-        }
-
-        int invokeId = extractRoseInvokeId(requestApdu, 1);
+    private byte[] wrapRoseResultIfNeeded(RoseInvoke invoke, byte[] nativeResult) {
+        int invokeId = invoke.invokeId();
 
         byte[] invokeIdTlv = BerCodec.encode(
             new BerTlv(BerCodec.TAG_CLASS_UNIVERSAL, false, 2, 0, 1, new byte[] { (byte) invokeId })
@@ -277,12 +286,8 @@ public class P3ProtocolCodec {
         );
     }
 
-    private byte[] wrapRoseErrorIfNeeded(byte[] requestApdu, byte[] nativeError) {
-        if (!isRoseInvoke(requestApdu)) {
-            return nativeError;
-        }
-
-        int invokeId = extractRoseInvokeId(requestApdu, 1);
+    private byte[] wrapRoseErrorIfNeeded(RoseInvoke invoke, byte[] nativeError) {
+        int invokeId = invoke.invokeId();
 
         byte[] invokeIdTlv = BerCodec.encode(
             new BerTlv(BerCodec.TAG_CLASS_UNIVERSAL, false, 2, 0, 1, new byte[] { (byte) invokeId })
@@ -303,31 +308,17 @@ public class P3ProtocolCodec {
         );
     }
 
-    private boolean isRoseInvoke(byte[] apdu) {
-        try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
-            return root.tagClass() == BerCodec.TAG_CLASS_CONTEXT
-                && root.constructed()
-                && root.tagNumber() == 1;
-        } catch (RuntimeException ex) {
-            return false;
+    private DecodeResult<BerTlv> decodeRoot(byte[] encodedApdu) {
+        if (encodedApdu == null || encodedApdu.length < 4) {
+            return DecodeResult.rejected("P3 APDU too short");
         }
+        return BerCodec.tryDecodeSingle(encodedApdu);
     }
 
-    private int extractRoseInvokeId(byte[] apdu, int fallback) {
-        try {
-            BerTlv root = BerCodec.decodeSingle(apdu);
-            for (BerTlv child : BerCodec.decodeAll(root.value())) {
-                if (child.tagClass() == BerCodec.TAG_CLASS_UNIVERSAL
-                    && !child.constructed()
-                    && child.tagNumber() == 2
-                    && child.value().length > 0) {
-                    return child.value()[child.value().length - 1] & 0xFF;
-                }
-            }
-        } catch (RuntimeException ignored) {
-        }
-        return fallback;
+    private boolean isRoseInvoke(BerTlv root) {
+        return root.tagClass() == BerCodec.TAG_CLASS_CONTEXT
+            && root.constructed()
+            && root.tagNumber() == 1;
     }
 
     private byte[] concat(byte[]... parts) {
@@ -349,9 +340,7 @@ public class P3ProtocolCodec {
         return out;
     }
 
-    private byte[] handleRelease(P3GatewaySessionService.SessionState session, byte[] encodedApdu) {
-        releaseCodec.decodeReleaseRequest(encodedApdu);
-
+    private byte[] handleRelease(P3GatewaySessionService.SessionState session) {
         String response = sessionService.handleCommand(session, "UNBIND");
         if (response.startsWith("OK")) {
             return releaseCodec.encodeReleaseResult(new ReleaseResult());
@@ -394,23 +383,69 @@ public class P3ProtocolCodec {
         return maybeNull == null ? "" : maybeNull;
     }
 
-    private void logInboundApdu(byte[] encodedApdu) {
+    private void logInboundApdu(byte[] encodedApdu, Probe probe) {
         if (encodedApdu == null || encodedApdu.length == 0) {
             logger.info("P3 application decode empty APDU");
             return;
         }
 
-        try {
-            BerTlv tlv = BerCodec.decodeSingle(encodedApdu);
-            logger.info(
-                "P3 application decode tagClass={} constructed={} tagNumber={} len={}",
-                tlv.tagClass(),
-                tlv.constructed(),
-                tlv.tagNumber(),
-                tlv.length()
-            );
-        } catch (RuntimeException ex) {
-            logger.info("P3 application decode could not parse BER: {}", ex.getMessage());
+        BerTlv tlv = probe.root;
+        if (tlv == null) {
+            logger.info("P3 application decode could not parse BER: {}", probe.reason);
+            return;
+        }
+
+        logger.info(
+            "P3 application decode tagClass={} constructed={} tagNumber={} len={}",
+            tlv.tagClass(),
+            tlv.constructed(),
+            tlv.tagNumber(),
+            tlv.length()
+        );
+    }
+
+    public enum ApduKind {
+        ROSE_INVOKE,
+        BIND,
+        SUBMIT,
+        RELEASE
+    }
+
+    private record RoseInvoke(int invokeId, int operationCode, byte[] argument) {}
+
+    /**
+     * Outcome of {@link #probe(byte[])}: the operation and what was decoded to find it, or the
+     * reason the APDU is not a supported P3 operation.
+     */
+    public static final class Probe {
+
+        private final ApduKind kind;
+        private final BerTlv root;
+        private final RoseInvoke invoke;
+        private final BindRequest bindRequest;
+        private final String reason;
+
+        private Probe(ApduKind kind, BerTlv root, RoseInvoke invoke, BindRequest bindRequest, String reason) {
+            this.kind = kind;
+            this.root = root;
+            this.invoke = invoke;
+            this.bindRequest = bindRequest;
+            this.reason = reason;
+        }
+
+        public Optional<ApduKind> kind() {
+            return Optional.ofNullable(kind);
+        }
+
+        public boolean supported() {
+            return kind != null;
+        }
+
+        /**
+         * Why the APDU is unsupported, or {@code null} if it is supported.
+         */
+        public String reason() {
+            return kind == null ? reason : null;
         }
     }
 }
\ No newline at end of file
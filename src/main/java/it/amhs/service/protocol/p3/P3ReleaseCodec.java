@@ -25,15 +25,18 @@ public class P3ReleaseCodec {
         }
 
         try {
-            BerTlv apdu = BerCodec.decodeSingle(encodedApdu);
-            return apdu.tagClass() == TAG_CLASS_CONTEXT
-                && apdu.constructed()
-                && apdu.tagNumber() == RELEASE_REQUEST_TAG;
+            return isLikelyReleaseRequest(BerCodec.decodeSingle(encodedApdu));
         } catch (RuntimeException ex) {
             return false;
         }
     }
 
+    public boolean isLikelyReleaseRequest(BerTlv apdu) {
+        return apdu.tagClass() == TAG_CLASS_CONTEXT
+            && apdu.constructed()
+            && apdu.tagNumber() == RELEASE_REQUEST_TAG;
+    }
+
     public ReleaseRequest decodeReleaseRequest(byte[] encodedApdu) {
         BerTlv apdu = BerCodec.decodeSingle(encodedApdu);
         if (apdu.tagClass() != TAG_CLASS_CONTEXT || !apdu.constructed() || apdu.tagNumber() != RELEASE_REQUEST_TAG) {
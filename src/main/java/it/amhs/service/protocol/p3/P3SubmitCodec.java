@@ -23,6 +23,7 @@ import org.springframework.util.StringUtils;
 
 import it.amhs.asn1.BerCodec;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.BerWriter;
 import it.amhs.service.address.ORAddress;
 import it.amhs.service.protocol.p3.P3OperationModels.P3Error;
 import it.amhs.service.protocol.p3.P3OperationModels.SubmitRequest;
@@ -52,29 +53,35 @@ public class P3SubmitCodec {
         }
 
         try {
-            BerTlv apdu = BerCodec.decodeSingle(encodedApdu);
-
-            if (apdu.tagClass() == TAG_CLASS_CONTEXT
-                && apdu.constructed()
-                && apdu.tagNumber() == SUBMIT_REQUEST_TAG) {
-                return true;
-            }
-
-            // Real P3 submit argument inside ROS invoke:
-            // 30 82 ... = SEQUENCE
-            return apdu.tagClass() == TAG_CLASS_UNIVERSAL
-                && apdu.constructed()
-                && apdu.tagNumber() == 16
-                && encodedApdu.length > 80;
-
+            return isLikelySubmitRequest(BerCodec.decodeSingle(encodedApdu), encodedApdu);
         } catch (RuntimeException ex) {
             return false;
         }
     }
 
+    /**
+     * Shape check on the already decoded top-level TLV {@code apdu} of {@code encodedApdu}.
+     */
+    public boolean isLikelySubmitRequest(BerTlv apdu, byte[] encodedApdu) {
+        if (apdu.tagClass() == TAG_CLASS_CONTEXT
+            && apdu.constructed()
+            && apdu.tagNumber() == SUBMIT_REQUEST_TAG) {
+            return true;
+        }
+
+        // Real P3 submit argument inside ROS invoke:
+        // 30 82 ... = SEQUENCE
+        return apdu.tagClass() == TAG_CLASS_UNIVERSAL
+            && apdu.constructed()
+            && apdu.tagNumber() == 16
+            && encodedApdu.length > 80;
+    }
+
     public SubmitRequest decodeSubmitRequest(byte[] encodedApdu) {
-        BerTlv apdu = BerCodec.decodeSingle(encodedApdu);
+        return decodeSubmitRequest(BerCodec.decodeSingle(encodedApdu), encodedApdu);
+    }
 
+    public SubmitRequest decodeSubmitRequest(BerTlv apdu, byte[] encodedApdu) {
         if (apdu.tagClass() == TAG_CLASS_CONTEXT
             && apdu.constructed()
             && apdu.tagNumber() == SUBMIT_REQUEST_TAG) {
@@ -255,20 +262,14 @@ public class P3SubmitCodec {
             ? result.internalMessageId()
             : result.submissionId();
 
-        byte[] opCode = BerCodec.encode(
-            new BerTlv(TAG_CLASS_UNIVERSAL, false, 2, 0, 1, new byte[] { 0x03 })
-        );
-
-        byte[] mtsResult = encodeMtsResult(id, senderOrAddress);
-
-        byte[] resultValue = concat(List.of(opCode, mtsResult));
-
-        return BerCodec.encode(
-            new BerTlv(TAG_CLASS_UNIVERSAL, true, 16, 0, resultValue.length, resultValue)
-        );
+        BerWriter writer = new BerWriter(128);
+        writer.startConstructed(TAG_CLASS_UNIVERSAL, 16);
+        writer.writePrimitive(TAG_CLASS_UNIVERSAL, 2, new byte[] { 0x03 });
+        encodeMtsResult(writer, id, senderOrAddress);
+        return writer.end().toByteArray();
     }
     
-    private byte[] encodeMtsResult(String id, String senderOrAddress) {
+    private void encodeMtsResult(BerWriter writer, String id, String senderOrAddress) {
         String safe = StringUtils.hasText(id) ? id : UUID.randomUUID().toString();
         ORAddress sender = ORAddress.parse(senderOrAddress);
 
@@ -277,62 +278,16 @@ public class P3SubmitCodec {
 
         String localId = buildLocalIdentifier(timestampWithSeconds);
 
-        byte[] globalDomainIdentifier = encodeGlobalDomainIdentifier(sender);
-
-        byte[] localIdentifier = BerCodec.encode(
-            new BerTlv(
-                TAG_CLASS_UNIVERSAL,
-                false,
-                22,
-                0,
-                localId.length(),
-                localId.getBytes(StandardCharsets.US_ASCII)
-            )
-        );
-
-        byte[] submissionIdentifierValue = concat(List.of(
-            globalDomainIdentifier,
-            localIdentifier
-        ));
-
-        byte[] messageSubmissionIdentifier = BerCodec.encode(
-            new BerTlv(
-                TAG_CLASS_APPLICATION,
-                true,
-                4,
-                0,
-                submissionIdentifierValue.length,
-                submissionIdentifierValue
-            )
-        );
-
-        
-        byte[] messageSubmissionTime = BerCodec.encode(
-    	    new BerTlv(
-    	        TAG_CLASS_CONTEXT,
-    	        false,
-    	        0,
-    	        0,
-    	        timestampWithoutSeconds.length(),
-    	        timestampWithoutSeconds.getBytes(StandardCharsets.US_ASCII)
-    	    )
-    	);
-
-        byte[] mtsResultValue = concat(List.of(
-            messageSubmissionIdentifier,
-            messageSubmissionTime
-        ));
-
-        return BerCodec.encode(
-            new BerTlv(
-                TAG_CLASS_UNIVERSAL,
-                true,
-                17,
-                0,
-                mtsResultValue.length,
-                mtsResultValue
-            )
-        );
+        writer.startConstructed(TAG_CLASS_UNIVERSAL, 17);
+
+        writer.startConstructed(TAG_CLASS_APPLICATION, 4);
+        encodeGlobalDomainIdentifier(writer, sender);
+        writer.writeString(TAG_CLASS_UNIVERSAL, 22, localId, StandardCharsets.US_ASCII);
+        writer.end();
+
+        writer.writeString(TAG_CLASS_CONTEXT, 0, timestampWithoutSeconds, StandardCharsets.US_ASCII);
+
+        writer.end();
     }
     
     private String buildLocalIdentifier(String timestamp) {
@@ -352,45 +307,28 @@ public class P3SubmitCodec {
             + time;
     }
 
-    private byte[] encodeGlobalDomainIdentifier(ORAddress sender) {
-        List<byte[]> parts = new ArrayList<>();
+    private void encodeGlobalDomainIdentifier(BerWriter writer, ORAddress sender) {
+        writer.startConstructed(TAG_CLASS_APPLICATION, 3);
 
-        addPrintableApplication(parts, 1, sender.get("C"));
-        addPrintableApplication(parts, 2, sender.get("ADMD"));
+        addPrintableApplication(writer, 1, sender.get("C"));
+        addPrintableApplication(writer, 2, sender.get("ADMD"));
 
         String prmd = sender.get("PRMD");
         if (StringUtils.hasText(prmd)) {
-            parts.add(encodePrintableString(prmd)); // IMPORTANT: bare 13 xx, not A2
+            writer.writeString(TAG_CLASS_UNIVERSAL, 19, prmd, StandardCharsets.US_ASCII); // IMPORTANT: bare 13 xx, not A2
         }
 
-        byte[] value = concat(parts);
-
-        return BerCodec.encode(
-            new BerTlv(TAG_CLASS_APPLICATION, true, 3, 0, value.length, value)
-        );
+        writer.end();
     }
 
-    private void addPrintableApplication(List<byte[]> parts, int tag, String value) {
+    private void addPrintableApplication(BerWriter writer, int tag, String value) {
         if (!StringUtils.hasText(value)) {
             return;
         }
 
-        byte[] inner = BerCodec.encode(
-            new BerTlv(TAG_CLASS_UNIVERSAL, false, 19, 0,
-                value.length(),
-                value.getBytes(StandardCharsets.US_ASCII))
-        );
-
-        parts.add(BerCodec.encode(
-            new BerTlv(TAG_CLASS_APPLICATION, true, tag, 0, inner.length, inner)
-        ));
-    }
-
-    private byte[] encodePrintableString(String value) {
-        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(
-            new BerTlv(TAG_CLASS_UNIVERSAL, false, 19, 0, bytes.length, bytes)
-        );
+        writer.startConstructed(TAG_CLASS_APPLICATION, tag);
+        writer.writeString(TAG_CLASS_UNIVERSAL, 19, value, StandardCharsets.US_ASCII);
+        writer.end();
     }
 
     public byte[] encodeSubmitError(P3Error error) {
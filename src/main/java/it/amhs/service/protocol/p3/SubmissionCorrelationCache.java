@@ -0,0 +1,98 @@
+package it.amhs.service.protocol.p3;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Maps P3 submission ids to internal message ids, bounded by entry count and age.
+ * <p>
+ * Entries are kept in access order; the least recently used entry is dropped once
+ * {@code maxEntries} is exceeded, and entries older than {@code ttl} are dropped when touched or
+ * when they reach the eviction end of the map. A miss is not an error: callers fall back to the
+ * unique {@code message_id} index.
+ */
+public final class SubmissionCorrelationCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    SubmissionCorrelationCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    SubmissionCorrelationCache(int maxEntries, Duration ttl, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Correlation cache requires at least one entry");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Correlation cache TTL must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    Long get(String submissionId) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry entry = entries.get(submissionId);
+            if (entry != null && !entry.expired(now, ttlNanos)) {
+                hits.incrementAndGet();
+                return entry.messageId();
+            }
+            if (entry != null) {
+                entries.remove(submissionId);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(String submissionId, Long messageId) {
+        if (submissionId == null || messageId == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            entries.put(submissionId, new Entry(messageId, now));
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (eldest.hasNext()) {
+                Map.Entry<String, Entry> candidate = eldest.next();
+                if (entries.size() <= maxEntries && !candidate.getValue().expired(now, ttlNanos)) {
+                    break;
+                }
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, hits.get(), misses.get(), evictions.get());
+    }
+
+    public record Stats(int size, long hits, long misses, long evictions) {
+    }
+
+    private record Entry(Long messageId, long storedAtNanos) {
+
+        boolean expired(long now, long ttlNanos) {
+            return now - storedAtNanos >= ttlNanos;
+        }
+    }
+}
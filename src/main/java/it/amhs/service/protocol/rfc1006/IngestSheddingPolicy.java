@@ -0,0 +1,45 @@
+package it.amhs.service.protocol.rfc1006;
+
+import it.amhs.domain.AMHSPriority;
+
+/**
+ * Decides which inbound messages to turn away while ingest is backed up.
+ * <p>
+ * Low-priority traffic goes first: GG and KK are deferred once the ingest workers hold
+ * {@code shedDepth} messages, FF at twice that, and SS/DD are never shed, so flash and
+ * immediate traffic keep the workers to themselves under overload. A depth of 0 disables
+ * shedding.
+ */
+final class IngestSheddingPolicy {
+
+    private final int shedDepth;
+
+    IngestSheddingPolicy(int shedDepth) {
+        if (shedDepth < 0) {
+            throw new IllegalArgumentException("amhs.ingest.shed-depth must be >= 0");
+        }
+        this.shedDepth = shedDepth;
+    }
+
+    /**
+     * Threshold used when none is configured: twice the worker count, that is as many messages
+     * waiting as there are workers busy. Each session waits for its own store, so the backlog
+     * never exceeds the number of concurrent sessions; a threshold derived from the workers is
+     * reached as soon as enough sessions store at once for messages to wait, whatever the
+     * listener limits are.
+     */
+    static int defaultShedDepth(int workers) {
+        return 2 * workers;
+    }
+
+    boolean shouldShed(AMHSPriority priority, int backlog) {
+        if (shedDepth == 0 || priority == null) {
+            return false;
+        }
+        return switch (priority) {
+            case SS, DD -> false;
+            case FF -> backlog >= 2 * shedDepth;
+            case GG, KK -> backlog >= shedDepth;
+        };
+    }
+}
@@ -0,0 +1,237 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An outbound RFC1006 connection carrying a bound P1 association.
+ * <p>
+ * Once bound, several threads may {@link #exchange} over it at the same time: requests are written
+ * back to back without waiting for earlier responses, and since the peer answers in order, each
+ * response read is handed to the oldest outstanding request. Whichever caller is still waiting
+ * reads the next frame, so no dedicated reader thread is needed. Any I/O or framing error breaks
+ * the association and fails every outstanding request.
+ */
+final class P1Association implements Closeable {
+
+    static final byte COTP_PDU_DT = TpktTransport.PDU_DT;
+    private static final int RESPONSE_RETAINED_CAPACITY = 256 * 1024;
+
+    private final Socket socket;
+    private final TpktTransport transport;
+    private final TsduReassemblyBuffer response = new TsduReassemblyBuffer(
+        TpktTransport.DEFAULT_MAX_USER_DATA,
+        RESPONSE_RETAINED_CAPACITY
+    );
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final Queue<CompletableFuture<byte[]>> awaitingResponse = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile byte[] releaseRequest;
+    private volatile boolean broken;
+    private volatile boolean exchanged;
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    P1Association(Socket socket) throws IOException {
+        this.socket = socket;
+        this.transport = TpktTransport.open(socket, false);
+    }
+
+    /**
+     * Applies the TPDU size agreed in the CR/CC exchange to outbound DT segmentation.
+     */
+    void negotiateTpduSize(int tpduSize) {
+        transport.negotiateTpduSize(tpduSize);
+    }
+
+    /**
+     * Sets the APDU sent to release the association when it is closed cleanly.
+     */
+    void releaseWith(byte[] releaseRequest) {
+        this.releaseRequest = releaseRequest;
+    }
+
+    /**
+     * Sends {@code payload} as a COTP TSDU and returns the user data of the matching response.
+     * Throws {@link StaleAssociationException} when the peer cannot have acted on the request:
+     * the association was already unusable, the write failed, or the connection was closed while
+     * this was the only request in flight.
+     */
+    byte[] exchange(byte[] payload) throws IOException {
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        boolean alone;
+        writeLock.lock();
+        try {
+            if (broken) {
+                throw new StaleAssociationException("P1 association is no longer usable", null);
+            }
+            alone = awaitingResponse.isEmpty();
+            awaitingResponse.add(response);
+            sendData(payload);
+        } catch (StaleAssociationException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            fail(ex);
+            throw new StaleAssociationException("P1 request could not be written", ex);
+        } finally {
+            writeLock.unlock();
+        }
+
+        while (!response.isDone()) {
+            readLock.lock();
+            try {
+                if (!response.isDone()) {
+                    Frame frame = read();
+                    if (frame.type() != COTP_PDU_DT) {
+                        throw new IOException("Unexpected COTP TPDU type 0x" + Integer.toHexString(frame.type() & 0xFF) + " on P1 association");
+                    }
+                    CompletableFuture<byte[]> oldest = awaitingResponse.poll();
+                    if (oldest == null) {
+                        throw new IOException("Unsolicited P1 response");
+                    }
+                    oldest.complete(frame.payload());
+                }
+            } catch (IOException ex) {
+                fail(ex);
+            } finally {
+                readLock.unlock();
+            }
+        }
+        lastUsedNanos = System.nanoTime();
+        try {
+            byte[] result = response.get();
+            exchanged = true;
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for P1 response", ex);
+        } catch (ExecutionException ex) {
+            if (alone && ex.getCause() instanceof EOFException) {
+                throw new StaleAssociationException("P1 association closed by peer before the request was answered", ex.getCause());
+            }
+            throw new IOException("P1 association failed", ex.getCause());
+        }
+    }
+
+    void send(byte[] cotpTpdu) throws IOException {
+        transport.sendTpdu(cotpTpdu);
+    }
+
+    void sendData(byte[] payload) throws IOException {
+        transport.sendData(payload);
+    }
+
+    /**
+     * Reads the next control TPDU, or a whole TSDU reassembled from its DT segments.
+     */
+    Frame read() throws IOException {
+        try {
+            while (true) {
+                TpktTransport.Frame frame = transport.readFrame();
+                if (frame == null) {
+                    throw new EOFException("No RFC1006 response");
+                }
+                if (frame.type() != COTP_PDU_DT) {
+                    response.reset();
+                    return new Frame(frame.type(), frame.tpdu());
+                }
+                transport.readUserData(response);
+                if (frame.endOfTsdu()) {
+                    byte[] payload = response.rawBytes();
+                    response.reset();
+                    return new Frame(frame.type(), payload);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Malformed RFC1006 response: " + ex.getMessage(), ex);
+        }
+    }
+
+    void retain() {
+        users.incrementAndGet();
+    }
+
+    void unretain() {
+        users.decrementAndGet();
+    }
+
+    int users() {
+        return users.get();
+    }
+
+    /**
+     * Whether a response has already been received over this association, so a failure now means
+     * the connection went stale rather than that the peer refused it.
+     */
+    boolean hasExchanged() {
+        return exchanged;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    boolean idleLongerThan(long nanos) {
+        return users.get() == 0 && System.nanoTime() - lastUsedNanos > nanos;
+    }
+
+    void markBroken() {
+        fail(new IOException("P1 association marked broken"));
+    }
+
+    /**
+     * Releases the association if it is still healthy, then closes the connection.
+     */
+    @Override
+    public void close() {
+        byte[] release = releaseRequest;
+        if (!broken && release != null) {
+            try {
+                exchange(release);
+            } catch (IOException ignored) {
+                // the peer may already have gone; the socket is closed below either way
+            }
+        }
+        broken = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nothing left to clean up
+        }
+    }
+
+    private void fail(IOException cause) {
+        broken = true;
+        CompletableFuture<byte[]> waiting;
+        while ((waiting = awaitingResponse.poll()) != null) {
+            waiting.completeExceptionally(cause);
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // already failing
+        }
+    }
+
+    record Frame(byte type, byte[] payload) {
+    }
+
+    /**
+     * A request that never reached a live peer, so resending it on another association cannot
+     * duplicate it.
+     */
+    static final class StaleAssociationException extends IOException {
+
+        StaleAssociationException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps bound P1 associations open per endpoint so consecutive transfers skip the transport
+ * connect, TLS handshake and bind.
+ * <p>
+ * An idle association is reused first; a busy one is shared (its transfers are pipelined) unless
+ * fewer than {@code maxPerEndpoint} associations are open, in which case a new one is bound.
+ * Associations are opened outside the pool lock, so a slow peer never holds up callers that can
+ * share an association already open. Broken associations are dropped as soon as they are
+ * released, idle ones once they have been unused for longer than the idle timeout, either on the
+ * next acquire or by a background sweep.
+ */
+final class P1AssociationPool {
+
+    @FunctionalInterface
+    interface Connector {
+        P1Association open() throws Exception;
+    }
+
+    private final int maxPerEndpoint;
+    private final long idleTimeoutNanos;
+    private final Map<String, Slots> endpoints = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    P1AssociationPool(int maxPerEndpoint, long idleTimeoutMillis) {
+        if (maxPerEndpoint < 1) {
+            throw new IllegalArgumentException("amhs.relay.pool.max-associations-per-endpoint must be >= 1");
+        }
+        if (idleTimeoutMillis < 1) {
+            throw new IllegalArgumentException("amhs.relay.pool.idle-timeout-ms must be >= 1");
+        }
+        this.maxPerEndpoint = maxPerEndpoint;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "amhs-relay-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMillis = Math.max(idleTimeoutMillis, 1_000L);
+        evictor.scheduleWithFixedDelay(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an association to {@code endpoint}, opening one through {@code connector} if needed.
+     * Every acquired association must be handed back through {@link #release}.
+     */
+    P1Association acquire(String endpoint, Connector connector) throws Exception {
+        Slots slots = slots(endpoint);
+        List<P1Association> expired = new ArrayList<>();
+        try {
+            synchronized (slots) {
+                while (true) {
+                    if (closed) {
+                        throw new IllegalStateException("P1 association pool is closed");
+                    }
+                    P1Association leastUsed = prune(slots, expired);
+                    boolean canOpen = slots.open.size() + slots.opening < maxPerEndpoint;
+                    if (leastUsed != null && (leastUsed.users() == 0 || !canOpen)) {
+                        leastUsed.retain();
+                        return leastUsed;
+                    }
+                    if (canOpen) {
+                        slots.opening++;
+                        break;
+                    }
+                    // the only association allowed is still being opened by another caller
+                    slots.wait();
+                }
+            }
+        } finally {
+            expired.forEach(P1Association::close);
+        }
+        return open(slots, connector);
+    }
+
+    /**
+     * Opens a new association to {@code endpoint} without reusing an open one, to retry a transfer
+     * whose reused association turned out to be dead. The dead one is dropped when it is released,
+     * so this replaces it rather than growing the pool.
+     */
+    P1Association acquireFresh(String endpoint, Connector connector) throws Exception {
+        Slots slots = slots(endpoint);
+        synchronized (slots) {
+            slots.opening++;
+        }
+        return open(slots, connector);
+    }
+
+    void release(String endpoint, P1Association association) {
+        association.unretain();
+        if (!association.isBroken()) {
+            return;
+        }
+        Slots slots = endpoints.get(endpoint);
+        if (slots != null) {
+            synchronized (slots) {
+                slots.open.remove(association);
+            }
+        }
+        association.close();
+    }
+
+    int openAssociations(String endpoint) {
+        Slots slots = endpoints.get(endpoint);
+        if (slots == null) {
+            return 0;
+        }
+        synchronized (slots) {
+            return slots.open.size();
+        }
+    }
+
+    /**
+     * Closes broken associations and those idle for longer than the idle timeout.
+     */
+    void evictIdle() {
+        List<P1Association> expired = new ArrayList<>();
+        for (Slots slots : endpoints.values()) {
+            synchronized (slots) {
+                prune(slots, expired);
+            }
+        }
+        expired.forEach(P1Association::close);
+    }
+
+    /**
+     * Stops the background sweep and closes every open association. Associations still being
+     * opened are closed as soon as they are bound.
+     */
+    void close() {
+        closed = true;
+        evictor.shutdownNow();
+        List<P1Association> all = new ArrayList<>();
+        for (Slots slots : endpoints.values()) {
+            synchronized (slots) {
+                all.addAll(slots.open);
+                slots.open.clear();
+                slots.notifyAll();
+            }
+        }
+        all.forEach(P1Association::close);
+    }
+
+    private Slots slots(String endpoint) {
+        if (closed) {
+            throw new IllegalStateException("P1 association pool is closed");
+        }
+        return endpoints.computeIfAbsent(endpoint, key -> new Slots());
+    }
+
+    private P1Association open(Slots slots, Connector connector) throws Exception {
+        P1Association association = null;
+        boolean pooled = false;
+        try {
+            association = connector.open();
+        } finally {
+            synchronized (slots) {
+                slots.opening--;
+                if (association != null && !closed) {
+                    association.retain();
+                    slots.open.add(association);
+                    pooled = true;
+                }
+                slots.notifyAll();
+            }
+        }
+        if (!pooled) {
+            association.close();
+            throw new IllegalStateException("P1 association pool is closed");
+        }
+        return association;
+    }
+
+    private P1Association prune(Slots slots, List<P1Association> expired) {
+        P1Association leastUsed = null;
+        for (Iterator<P1Association> it = slots.open.iterator(); it.hasNext();) {
+            P1Association association = it.next();
+            if (association.isBroken() || association.idleLongerThan(idleTimeoutNanos)) {
+                it.remove();
+                expired.add(association);
+            } else if (leastUsed == null || association.users() < leastUsed.users()) {
+                leastUsed = association;
+            }
+        }
+        return leastUsed;
+    }
+
+    private static final class Slots {
+        private final List<P1Association> open = new ArrayList<>();
+        private int opening;
+    }
+}
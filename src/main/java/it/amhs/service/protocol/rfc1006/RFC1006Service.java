@@ -1,12 +1,9 @@
 package it.amhs.service.protocol.rfc1006;
 
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.EOFException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.time.Instant;
@@ -20,10 +17,6 @@ import java.util.UUID;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.io.ByteArrayOutputStream;
 
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.Rdn;
@@ -40,6 +33,7 @@ import it.amhs.domain.AMHSMessage;
 import it.amhs.domain.AMHSPriority;
 import it.amhs.domain.AMHSProfile;
 import it.amhs.repository.AMHSMessageRepository;
+import it.amhs.service.address.ORAddress;
 import it.amhs.service.channel.AMHSChannelService;
 import it.amhs.service.protocol.acse.AcseAssociationProtocol;
 import it.amhs.service.protocol.acse.AcseModels;
@@ -52,19 +46,10 @@ import it.amhs.service.protocol.p1.P1BerMessageParser;
 public class RFC1006Service {
 
     private static final Logger logger = LoggerFactory.getLogger(RFC1006Service.class);
-    private static final byte TPKT_VERSION = 0x03;
-    private static final byte TPKT_RESERVED = 0x00;
-    private static final byte[] COTP_DATA_HEADER = new byte[] { 0x02, (byte) 0xF0, (byte) 0x80 };
-    private static final byte COTP_PDU_CR = (byte) 0xE0;
-    private static final byte COTP_PDU_CC = (byte) 0xD0;
-    private static final byte COTP_PDU_DR = (byte) 0x80;
-    private static final byte COTP_PDU_DC = (byte) 0xC0;
-    private static final byte COTP_PDU_ER = 0x70;
-    private static final byte COTP_PDU_ED = 0x10;
-    private static final byte COTP_PDU_DT = (byte) 0xF0;
-    private static final int MAX_TPKT_LENGTH = 65_535;
-    private static final int MAX_DT_USER_DATA_PER_FRAME = 16_384;
+    private static final int MAX_DT_USER_DATA_PER_FRAME = TpktTransport.DEFAULT_MAX_USER_DATA;
+    private static final int REASSEMBLY_RETAINED_CAPACITY = 256 * 1024;
     private static final int MAX_ACSE_USER_INFORMATION_SIZE = 4_096;
+    private static final int RECIPIENT_STATUS_DEFERRED = 1;
     public static final String ICAO_AMHS_P1_OID = "2.6.0.1.6.1";
     static final int RFC1006_CLASS_0 = 0;
     static final int RFC1006_CLASS_0_LEGACY_OPTIONS = 0x0A;
@@ -78,7 +63,8 @@ public class RFC1006Service {
     private final AcseAssociationProtocol acseAssociationProtocol;
     private final String localMtaName;
     private final String localRoutingDomain;
-    private final ThreadPoolExecutor priorityExecutor;
+    private final StripedPriorityExecutor ingestExecutor;
+    private final IngestSheddingPolicy ingestSheddingPolicy;
     private final int idleTimeoutMillis;
     private final boolean requireAcseAuthentication;
     private final String expectedAcseAuthenticationValue;
@@ -94,7 +80,9 @@ public class RFC1006Service {
         @Value("${amhs.mta.routing-domain:LOCAL}") String localRoutingDomain,
         @Value("${rfc1006.idle-timeout-ms:300000}") int idleTimeoutMillis,
         @Value("${amhs.acse.require-authentication-value:false}") boolean requireAcseAuthentication,
-        @Value("${amhs.acse.expected-authentication-value:}") String expectedAcseAuthenticationValue
+        @Value("${amhs.acse.expected-authentication-value:}") String expectedAcseAuthenticationValue,
+        @Value("${amhs.ingest.workers:0}") int ingestWorkers,
+        @Value("${amhs.ingest.shed-depth:-1}") int ingestShedDepth
     ) {
         this.amhsMessagesRepository = amhsMessagesRepository;
         this.mtaService = mtaService;
@@ -107,93 +95,109 @@ public class RFC1006Service {
         this.requireAcseAuthentication = requireAcseAuthentication;
         this.expectedAcseAuthenticationValue = expectedAcseAuthenticationValue == null ? "" : expectedAcseAuthenticationValue;
         this.incomingMessageParser = new IncomingMessageParser(p1BerMessageParser, p1AssociationProtocol, localMtaName, localRoutingDomain);
-        this.priorityExecutor = new ThreadPoolExecutor(
-            1,
-            1,
-            0L,
-            TimeUnit.MILLISECONDS,
-            new PriorityBlockingQueue<>()
+        this.ingestExecutor = new StripedPriorityExecutor(
+            ingestWorkers > 0 ? ingestWorkers : Runtime.getRuntime().availableProcessors(),
+            "amhs-ingest-"
+        );
+        this.ingestSheddingPolicy = new IngestSheddingPolicy(
+            ingestShedDepth < 0 ? IngestSheddingPolicy.defaultShedDepth(ingestExecutor.workers()) : ingestShedDepth
         );
     }
 
     public void handleClient(Socket socket) {
-        try (InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+        try {
             socket.setSoTimeout(idleTimeoutMillis);
+            TpktTransport transport = TpktTransport.open(socket, true);
             CertificateIdentity identity = extractCertificateIdentity(socket);
-            ByteArrayOutputStream segmentedPayload = new ByteArrayOutputStream();
+            TsduReassemblyBuffer tsdu = new TsduReassemblyBuffer(MAX_DT_USER_DATA_PER_FRAME, REASSEMBLY_RETAINED_CAPACITY);
             P1AssociationState associationState = new P1AssociationState(false, MAX_DT_USER_DATA_PER_FRAME);
 
             while (true) {
-                COTPFrame frame = readFramedPayload(in);
+                TpktTransport.Frame frame = transport.readFrame();
                 if (frame == null) {
                     break;
                 }
 
-                if (frame.type == COTP_PDU_CR) {
-                    CotpConnectionTpdu request = CotpConnectionTpdu.parse(frame.payload);
+                if (frame.type() == TpktTransport.PDU_CR) {
+                    CotpConnectionTpdu request = CotpConnectionTpdu.parse(frame.tpdu());
                     validateClassNegotiation(request.tpduClass());
                     associationState.negotiatedMaxUserData = Math.min(MAX_DT_USER_DATA_PER_FRAME, request.negotiatedMaxUserData());
-                    sendConnectionConfirm(out, request);
+                    transport.negotiateTpduSize(request.negotiatedMaxUserData());
+                    sendConnectionConfirm(transport, request);
                     continue;
                 }
 
-                if (frame.type == COTP_PDU_DR) {
+                if (frame.type() == TpktTransport.PDU_DR) {
                     logger.info("Peer requested RFC1006 disconnect");
-                    sendDisconnectConfirm(out);
+                    sendDisconnectConfirm(transport);
                     break;
                 }
 
-                if (frame.type == COTP_PDU_ER) {
+                if (frame.type() == TpktTransport.PDU_ER) {
                     logger.warn("Received COTP ER TPDU; closing association");
                     associationState.active = false;
                     break;
                 }
 
-                if (frame.type == COTP_PDU_ED) {
+                if (frame.type() == TpktTransport.PDU_ED) {
                     logger.warn("Expedited data TPDU is not supported in this profile");
-                    sendErrorTpdu(out, (byte) 0x01);
+                    sendErrorTpdu(transport, (byte) 0x01);
                     continue;
                 }
 
-                if (frame.type != COTP_PDU_DT) {
-                    throw new IllegalArgumentException("Unsupported COTP TPDU type: 0x" + Integer.toHexString(frame.type & 0xFF));
+                if (frame.type() != TpktTransport.PDU_DT) {
+                    throw new IllegalArgumentException("Unsupported COTP TPDU type: " + String.format("0x%02X", frame.code()));
+                }
+                if (frame.code() != TpktTransport.PDU_DT) {
+                    throw new IllegalArgumentException("Unsupported COTP DT TPDU code: " + String.format("0x%02X", frame.code()));
                 }
 
-                if (frame.payload.length > associationState.negotiatedMaxUserData) {
+                if (frame.userDataLength() > associationState.negotiatedMaxUserData) {
                     throw new IllegalArgumentException("COTP DT segment exceeds negotiated maximum user data");
                 }
-                segmentedPayload.write(frame.payload);
-                if (!frame.endOfTSDU) {
+                transport.readUserData(tsdu);
+                if (!frame.endOfTsdu()) {
                     continue;
                 }
 
-                byte[] payload = segmentedPayload.toByteArray();
-                segmentedPayload.reset();
-                byte[] normalizedPayload = stripUtf8Bom(payload);
-
-                String message = new String(normalizedPayload, StandardCharsets.UTF_8).trim();
-
-                if (isLikelyP1AssociationPdu(normalizedPayload)) {
-                    handleP1AssociationPdu(normalizedPayload, out, associationState, identity);
+                int first = tsdu.firstOctet();
+                if (isLikelyP1AssociationOctet(first)) {
+                    // Decoded in place; nothing derived from the buffer outlives this call.
+                    handleP1AssociationPdu(tsdu.array(), tsdu.offset(), tsdu.length(), transport, associationState, identity);
+                    tsdu.reset();
                     if (!associationState.active()) {
                         break;
                     }
                     continue;
                 }
 
-                if (message.startsWith("RETRIEVE")) {
-                    handleRetrieve(message, out);
+                if (tsdu.startsWithTrimmed("RETRIEVE")) {
+                    String message = tsdu.decodeUtf8().trim();
+                    tsdu.reset();
+                    handleRetrieve(message, transport);
                     continue;
                 }
 
-                if (normalizedPayload.length > 0 && (normalizedPayload[0] & 0xFF) == 0x30) {
+                if (first == 0x30) {
+                    tsdu.reset();
                     String diagnostic = "Raw BER message without P1 association is rejected; send P1 Bind and Transfer PDUs";
                     logger.warn(diagnostic);
-                    sendRFC1006(out, diagnostic + "\n");
+                    sendRFC1006(transport, diagnostic + "\n");
                     continue;
                 }
 
+                byte[] normalizedPayload = tsdu.toByteArray();
+                String message = tsdu.decodeUtf8().trim();
+                tsdu.reset();
+
                 IncomingMessage incoming = incomingMessageParser.parse(normalizedPayload, message, identity.cn(), identity.ou());
+                Optional<String> shedDiagnostic = loadSheddingDiagnostic(incoming);
+                if (shedDiagnostic.isPresent()) {
+                    sendRFC1006(transport, "Message-ID: " + incoming.messageId + "\n"
+                        + "Status: DEFERRED\n"
+                        + "Error: " + shedDiagnostic.get() + "\n");
+                    continue;
+                }
                 try {
                     storeWithStrictPriority(incoming);
                     String ackWithDeliveryReport = "Message-ID: " + incoming.messageId + "\n"
@@ -203,13 +207,13 @@ public class RFC1006Service {
                         + "Report-Type: DR\n"
                         + "Delivery-Status: DELIVERED\n"
                         + "Original-Message-ID: " + incoming.messageId + "\n";
-                    sendRFC1006(out, ackWithDeliveryReport);
+                    sendRFC1006(transport, ackWithDeliveryReport);
                 } catch (IllegalArgumentException ex) {
                     logger.warn("AMHS message rejected: {}", ex.getMessage());
                     String nack = "Message-ID: " + incoming.messageId + "\n"
                         + "Status: REJECTED\n"
                         + "Error: " + ex.getMessage() + "\n";
-                    sendRFC1006(out, nack);
+                    sendRFC1006(transport, nack);
                 }
             }
         } catch (SocketTimeoutException timeout) {
@@ -230,7 +234,10 @@ public class RFC1006Service {
         if (payload.length == 0) {
             return false;
         }
-        int first = payload[0] & 0xFF;
+        return isLikelyP1AssociationOctet(payload[0] & 0xFF);
+    }
+
+    private static boolean isLikelyP1AssociationOctet(int first) {
         return (first >= 0xA0 && first <= 0xAF) || (first >= 0x60 && first <= 0x64);
     }
 
@@ -245,22 +252,24 @@ public class RFC1006Service {
     }
 
     private void handleP1AssociationPdu(
-        byte[] payload,
-        OutputStream out,
+        byte[] buffer,
+        int offset,
+        int length,
+        TpktTransport transport,
         P1AssociationState associationState,
         CertificateIdentity identity
     ) throws Exception {
-        if ((payload[0] & 0xFF) >= 0x60 && (payload[0] & 0xFF) <= 0x64) {
-            handleAcseAssociationPdu(payload, out, associationState, identity);
+        if ((buffer[offset] & 0xFF) >= 0x60 && (buffer[offset] & 0xFF) <= 0x64) {
+            handleAcseAssociationPdu(buffer, offset, length, transport, associationState, identity);
             return;
         }
 
         P1AssociationProtocol.Pdu pdu;
         try {
-            pdu = p1AssociationProtocol.decode(payload);
+            pdu = p1AssociationProtocol.decode(buffer, offset, length);
         } catch (IllegalArgumentException ex) {
             logger.warn("Invalid P1 association PDU: {}", ex.getMessage());
-            sendRFC1006(out, p1AssociationProtocol.encodeError("invalid-pdu", ex.getMessage()));
+            sendRFC1006(transport, p1AssociationProtocol.encodeError("invalid-pdu", ex.getMessage()));
             return;
         }
 
@@ -268,14 +277,14 @@ public class RFC1006Service {
             associationState.bound = true;
             associationState.active = true;
             logger.info("Accepted P1 bind for abstract syntax {}", bindPdu.abstractSyntaxOid());
-            sendRFC1006(out, p1AssociationProtocol.encodeBindResult(true, "bind-accepted"));
+            sendRFC1006(transport, p1AssociationProtocol.encodeBindResult(true, "bind-accepted"));
             return;
         }
 
         if (pdu instanceof P1AssociationProtocol.ReleasePdu) {
             associationState.bound = false;
             associationState.active = false;
-            sendRFC1006(out, p1AssociationProtocol.encodeReleaseResult());
+            sendRFC1006(transport, p1AssociationProtocol.encodeReleaseResult());
             return;
         }
 
@@ -293,13 +302,13 @@ public class RFC1006Service {
 
         Optional<String> unsupportedDiagnostic = p1AssociationProtocol.unsupportedRelayProfileDiagnostic(pdu);
         if (unsupportedDiagnostic.isPresent()) {
-            sendRFC1006(out, p1AssociationProtocol.encodeError("unsupported-operation", unsupportedDiagnostic.get()));
+            sendRFC1006(transport, p1AssociationProtocol.encodeError("unsupported-operation", unsupportedDiagnostic.get()));
             return;
         }
 
         if (pdu instanceof P1AssociationProtocol.TransferPdu transferPdu) {
             if (!associationState.bound()) {
-                sendRFC1006(out, p1AssociationProtocol.encodeError("association", "P1 transfer received before successful bind"));
+                sendRFC1006(transport, p1AssociationProtocol.encodeError("association", "P1 transfer received before successful bind"));
                 return;
             }
 
@@ -332,8 +341,18 @@ public class RFC1006Service {
                 System.nanoTime()
             );
 
+            Optional<String> shedDiagnostic = loadSheddingDiagnostic(incoming);
+            if (shedDiagnostic.isPresent()) {
+                sendRFC1006(transport, p1AssociationProtocol.encodeTransferResult(
+                    false,
+                    incoming.mtsIdentifier != null ? incoming.mtsIdentifier : incoming.messageId,
+                    List.of(new P1AssociationProtocol.RecipientTransferResult(incoming.to, RECIPIENT_STATUS_DEFERRED, shedDiagnostic))
+                ));
+                return;
+            }
+
             storeWithStrictPriority(incoming);
-            sendRFC1006(out, p1AssociationProtocol.encodeTransferResult(
+            sendRFC1006(transport, p1AssociationProtocol.encodeTransferResult(
                 true,
                 incoming.mtsIdentifier != null ? incoming.mtsIdentifier : incoming.messageId,
                 List.of(new P1AssociationProtocol.RecipientTransferResult(incoming.to, 0, java.util.Optional.of("delivered")))
@@ -342,17 +361,19 @@ public class RFC1006Service {
     }
 
     private void handleAcseAssociationPdu(
-    	    byte[] payload,
-    	    OutputStream out,
+    	    byte[] buffer,
+    	    int offset,
+    	    int length,
+    	    TpktTransport transport,
     	    P1AssociationState associationState,
     	    CertificateIdentity identity
     	) throws Exception {
     	    AcseModels.AcseApdu apdu;
     	    try {
-    	        apdu = acseAssociationProtocol.decode(payload);
+    	        apdu = acseAssociationProtocol.decode(buffer, offset, length);
     	    } catch (IllegalArgumentException ex) {
     	        logger.warn("Invalid ACSE association APDU: {}", ex.getMessage());
-    	        sendRFC1006(out, p1AssociationProtocol.encodeError("invalid-acse-pdu", ex.getMessage()));
+    	        sendRFC1006(transport, p1AssociationProtocol.encodeError("invalid-acse-pdu", ex.getMessage()));
     	        return;
     	    }
 
@@ -360,7 +381,7 @@ public class RFC1006Service {
     	        associationState.acseStateMachine.onInbound(apdu);
     	    } catch (IllegalStateException ex) {
     	        logger.warn("Invalid ACSE state transition: {}", ex.getMessage());
-    	        sendRFC1006(out, p1AssociationProtocol.encodeError("acse-state", ex.getMessage()));
+    	        sendRFC1006(transport, p1AssociationProtocol.encodeError("acse-state", ex.getMessage()));
     	        return;
     	    }
 
@@ -376,7 +397,7 @@ public class RFC1006Service {
     	                buildRejectedAare(Optional.ofNullable(aarq.applicationContextName()), ex.getMessage());
 
     	            associationState.acseStateMachine.onOutbound(reject);
-    	            sendRFC1006(out, acseAssociationProtocol.encode(reject));
+    	            sendRFC1006(transport, acseAssociationProtocol.encode(reject));
     	            return;
     	        }
 
@@ -400,7 +421,7 @@ public class RFC1006Service {
     	        );
 
     	        associationState.acseStateMachine.onOutbound(accept);
-    	        sendRFC1006(out, acseAssociationProtocol.encode(accept));
+    	        sendRFC1006(transport, acseAssociationProtocol.encode(accept));
     	        return;
     	    }
 
@@ -410,7 +431,7 @@ public class RFC1006Service {
 
     	        AcseModels.RLREApdu release = new AcseModels.RLREApdu(true);
     	        associationState.acseStateMachine.onOutbound(release);
-    	        sendRFC1006(out, acseAssociationProtocol.encode(release));
+    	        sendRFC1006(transport, acseAssociationProtocol.encode(release));
     	        return;
     	    }
 
@@ -625,6 +646,26 @@ public class RFC1006Service {
         return value == null ? "" : value.trim().toUpperCase();
     }
 
+    /**
+     * Returns a diagnostic when the ingest backlog is too deep for the priority of
+     * {@code incoming}, in which case the message is deferred back to the peer instead of queued.
+     * The backlog is shared by all stripes: every session waits for its own store, so a single
+     * stripe rarely holds more than a few messages even when all workers are saturated.
+     */
+    private Optional<String> loadSheddingDiagnostic(IncomingMessage incoming) {
+        int backlog = ingestExecutor.backlog();
+        if (!ingestSheddingPolicy.shouldShed(incoming.priority, backlog)) {
+            return Optional.empty();
+        }
+        logger.warn(
+            "AMHS ingest overloaded ({} queued or storing); deferring {} message {}",
+            backlog,
+            incoming.priority,
+            incoming.messageId
+        );
+        return Optional.of("ingest-congested: " + incoming.priority + " traffic deferred, retry later");
+    }
+
     private void storeWithStrictPriority(IncomingMessage incoming) {
         PriorityFutureTask task = new PriorityFutureTask(incoming, () -> mtaService.storeX400Message(
             incoming.from,
@@ -649,7 +690,7 @@ public class RFC1006Service {
             incoming.traceInformation,
             incoming.perRecipientFields
         ));
-        priorityExecutor.execute(task);
+        ingestExecutor.execute(ingestStripeKey(incoming.to), task);
         try {
             task.get();
         } catch (InterruptedException ex) {
@@ -664,6 +705,30 @@ public class RFC1006Service {
         }
     }
 
+    /**
+     * Stripes by the first recipient, in canonical O/R form when it parses, so messages for one
+     * recipient keep strict priority order while recipients within one PRMD still spread across
+     * workers.
+     */
+    static String ingestStripeKey(String recipients) {
+        if (recipients == null) {
+            return "";
+        }
+        String recipient = recipients.trim().toUpperCase(Locale.ROOT);
+        int separator = recipient.indexOf(',');
+        if (separator >= 0) {
+            recipient = recipient.substring(0, separator).trim();
+        }
+        if (recipient.indexOf('=') >= 0) {
+            try {
+                return ORAddress.parse(recipient).toCanonicalString();
+            } catch (IllegalArgumentException ignored) {
+                // not a valid O/R address: fall back to the literal recipient
+            }
+        }
+        return recipient;
+    }
+
     private IncomingMessage parseIncomingMessage(byte[] rawPayload, String message, CertificateIdentity identity) {
         if (rawPayload.length > 0 && (rawPayload[0] & 0xFF) == 0x30) {
             P1BerMessageParser.ParsedP1Message berMessage = p1BerMessageParser.parse(rawPayload);
@@ -750,7 +815,7 @@ public class RFC1006Service {
         return existingTrace.trim() + ">" + hop;
     }
 
-    private void handleRetrieve(String command, OutputStream out) throws Exception {
+    private void handleRetrieve(String command, TpktTransport transport) throws Exception {
         String response;
         if (command.equalsIgnoreCase("RETRIEVE ALL")) {
             List<AMHSMessage> allMsgs = amhsMessagesRepository.findAll();
@@ -786,7 +851,7 @@ public class RFC1006Service {
         } else {
             response = "Unknown command.\n";
         }
-        sendRFC1006(out, response);
+        sendRFC1006(transport, response);
     }
 
     private CertificateIdentity extractCertificateIdentity(Socket socket) {
@@ -820,110 +885,18 @@ public class RFC1006Service {
         return new CertificateIdentity(cn, ou);
     }
 
-    private COTPFrame readFramedPayload(InputStream in) throws Exception {
-        int first = in.read();
-        if (first == -1) {
-            return null;
-        }
-
-        int second = in.read();
-        if (second == -1) {
-            throw new EOFException("Connection closed while reading frame header");
-        }
-
-        if (first == TPKT_VERSION && second == TPKT_RESERVED) {
-            int lenHi = in.read();
-            int lenLo = in.read();
-            if (lenHi == -1 || lenLo == -1) {
-                throw new EOFException("Connection closed while reading TPKT length");
-            }
-            int tpktLength = ((lenHi & 0xFF) << 8) | (lenLo & 0xFF);
-            if (tpktLength < 7 || tpktLength > MAX_TPKT_LENGTH) {
-                throw new IllegalArgumentException("Invalid TPKT frame length: " + tpktLength);
-            }
-
-            byte[] cotpTpdu = readFully(in, tpktLength - 4);
-            if (cotpTpdu.length < 2) {
-                throw new IllegalArgumentException("COTP TPDU is too short");
-            }
-            int lengthIndicator = cotpTpdu[0] & 0xFF;
-            if (lengthIndicator + 1 > cotpTpdu.length) {
-                throw new IllegalArgumentException("Invalid COTP length indicator: " + lengthIndicator);
-            }
-            byte type = (byte) (cotpTpdu[1] & (byte) 0xF0);
-
-            if (type == COTP_PDU_CR || type == COTP_PDU_CC || type == COTP_PDU_DR || type == COTP_PDU_DC || type == COTP_PDU_ER) {
-                return new COTPFrame(type, true, cotpTpdu);
-            }
-
-            if (type == COTP_PDU_ED) {
-                if (lengthIndicator < 2) {
-                    throw new IllegalArgumentException("Invalid COTP ED header length indicator: " + lengthIndicator);
-                }
-                boolean eot = (cotpTpdu[2] & (byte) 0x80) != 0;
-                int dataOffset = lengthIndicator + 1;
-                byte[] userData = new byte[cotpTpdu.length - dataOffset];
-                System.arraycopy(cotpTpdu, dataOffset, userData, 0, userData.length);
-                return new COTPFrame(type, eot, userData);
-            }
-
-            if (type == COTP_PDU_DT) {
-                if (lengthIndicator < 2) {
-                    throw new IllegalArgumentException("Invalid COTP DT header length indicator: " + lengthIndicator);
-                }
-                if (cotpTpdu[1] != COTP_DATA_HEADER[1]) {
-                    throw new IllegalArgumentException("Unsupported COTP DT TPDU code: " + String.format("0x%02X", cotpTpdu[1]));
-                }
-                boolean eot = (cotpTpdu[2] & (byte) 0x80) != 0;
-                int dataOffset = lengthIndicator + 1;
-                byte[] userData = new byte[cotpTpdu.length - dataOffset];
-                System.arraycopy(cotpTpdu, dataOffset, userData, 0, userData.length);
-                return new COTPFrame(type, eot, userData);
-            }
-
-            throw new IllegalArgumentException("Unsupported COTP TPDU type: " + String.format("0x%02X", cotpTpdu[1]));
-        }
-
-        int legacyLength = ((first & 0xFF) << 8) | (second & 0xFF);
-        return new COTPFrame(COTP_PDU_DT, true, readFully(in, legacyLength));
-    }
-
-    private byte[] readFully(InputStream in, int length) throws Exception {
-        byte[] data = new byte[length];
-        int offset = 0;
-        while (offset < length) {
-            int read = in.read(data, offset, length - offset);
-            if (read == -1) {
-                throw new EOFException("Connection closed while reading payload");
-            }
-            offset += read;
-        }
-        return data;
-    }
-
-    private void sendRFC1006(OutputStream out, String message) throws Exception {
+    private void sendRFC1006(TpktTransport transport, String message) throws Exception {
         byte[] msgBytes = message.getBytes(StandardCharsets.UTF_8);
-        sendRFC1006(out, msgBytes);
+        sendRFC1006(transport, msgBytes);
     }
 
-    private void sendRFC1006(OutputStream out, byte[] msgBytes) throws Exception {
+    private void sendRFC1006(TpktTransport transport, byte[] msgBytes) throws Exception {
         if (msgBytes == null) {
             msgBytes = new byte[0];
         }
 
         logger.info("Sending RFC1006 response payload ({} bytes, preview={})", msgBytes.length, payloadPreview(msgBytes));
-        int offset = 0;
-
-        while (offset < msgBytes.length || msgBytes.length == 0) {
-            int chunkLen = Math.min(MAX_DT_USER_DATA_PER_FRAME, msgBytes.length - offset);
-            boolean eot = offset + chunkLen >= msgBytes.length;
-            sendDtFrame(out, msgBytes, offset, chunkLen, eot);
-            offset += chunkLen;
-            if (msgBytes.length == 0) {
-                break;
-            }
-        }
-        out.flush();
+        transport.sendData(msgBytes);
     }
 
     private String oneLinePreview(String message) {
@@ -967,7 +940,7 @@ public class RFC1006Service {
         return "hex:" + hex;
     }
 
-    private void sendConnectionConfirm(OutputStream out, CotpConnectionTpdu requestTpdu) throws Exception {
+    private void sendConnectionConfirm(TpktTransport transport, CotpConnectionTpdu requestTpdu) throws Exception {
         CotpConnectionTpdu confirm = new CotpConnectionTpdu(
             CotpConnectionTpdu.PDU_CC,
             requestTpdu.sourceReference(),
@@ -976,44 +949,15 @@ public class RFC1006Service {
             requestTpdu.tpduSize(),
             requestTpdu.unknownParameters()
         );
-        sendTpktFrame(out, confirm.serialize());
-        out.flush();
+        transport.sendTpdu(confirm.serialize());
     }
 
-    private void sendDisconnectConfirm(OutputStream out) throws Exception {
-        byte[] tpdu = new byte[] {0x06, COTP_PDU_DC, 0x00, 0x00, 0x00, 0x00, 0x00};
-        sendTpktFrame(out, tpdu);
-        out.flush();
+    private void sendDisconnectConfirm(TpktTransport transport) throws Exception {
+        transport.sendTpdu(new byte[] {0x06, TpktTransport.PDU_DC, 0x00, 0x00, 0x00, 0x00, 0x00});
     }
 
-    private void sendErrorTpdu(OutputStream out, byte rejectCause) throws Exception {
-        byte[] tpdu = new byte[] {0x02, COTP_PDU_ER, rejectCause};
-        sendTpktFrame(out, tpdu);
-        out.flush();
-    }
-
-    private void sendDtFrame(OutputStream out, byte[] bytes, int offset, int chunkLength, boolean eot) throws Exception {
-        byte[] dtTpdu = new byte[3 + chunkLength];
-        dtTpdu[0] = COTP_DATA_HEADER[0];
-        dtTpdu[1] = COTP_DATA_HEADER[1];
-        dtTpdu[2] = eot ? (byte) 0x80 : 0x00;
-        if (chunkLength > 0) {
-            System.arraycopy(bytes, offset, dtTpdu, 3, chunkLength);
-        }
-        sendTpktFrame(out, dtTpdu);
-    }
-
-    private void sendTpktFrame(OutputStream out, byte[] cotpTpdu) throws Exception {
-        int tpktLength = 4 + cotpTpdu.length;
-        if (tpktLength > MAX_TPKT_LENGTH) {
-            throw new IllegalArgumentException("TPKT frame exceeds maximum allowed length: " + tpktLength);
-        }
-        ByteBuffer bb = ByteBuffer.allocate(tpktLength);
-        bb.put(TPKT_VERSION);
-        bb.put(TPKT_RESERVED);
-        bb.putShort((short) tpktLength);
-        bb.put(cotpTpdu);
-        out.write(bb.array());
+    private void sendErrorTpdu(TpktTransport transport, byte rejectCause) throws Exception {
+        transport.sendTpdu(new byte[] {0x02, TpktTransport.PDU_ER, rejectCause});
     }
 
     private record CertificateIdentity(String cn, String ou) {
@@ -1041,9 +985,6 @@ public class RFC1006Service {
         }
     }
 
-    private record COTPFrame(byte type, boolean endOfTSDU, byte[] payload) {
-    }
-
     public static record IncomingMessage(
         String messageId,
         String from,
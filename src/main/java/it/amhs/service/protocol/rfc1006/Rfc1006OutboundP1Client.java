@@ -1,10 +1,10 @@
 package it.amhs.service.protocol.rfc1006;
 
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -14,83 +14,169 @@ import java.util.TimeZone;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import it.amhs.asn1.BerCodec;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.BerWriter;
 import it.amhs.domain.AMHSMessage;
 import it.amhs.service.protocol.acse.AcseAssociationProtocol;
 import it.amhs.service.protocol.acse.AcseModels;
 import it.amhs.service.protocol.p1.P1AssociationProtocol;
 import it.amhs.service.relay.OutboundP1Client;
+import jakarta.annotation.PreDestroy;
 
 @Component
 public class Rfc1006OutboundP1Client implements OutboundP1Client {
 
     private final P1AssociationProtocol p1AssociationProtocol;
     private final AcseAssociationProtocol acseAssociationProtocol;
-
-    public Rfc1006OutboundP1Client(P1AssociationProtocol p1AssociationProtocol, AcseAssociationProtocol acseAssociationProtocol) {
+    private final P1AssociationPool associationPool;
+    private final String localMtaName;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public Rfc1006OutboundP1Client(
+        P1AssociationProtocol p1AssociationProtocol,
+        AcseAssociationProtocol acseAssociationProtocol,
+        @Value("${amhs.relay.pool.enabled:true}") boolean poolEnabled,
+        @Value("${amhs.relay.pool.max-associations-per-endpoint:1}") int maxAssociationsPerEndpoint,
+        @Value("${amhs.relay.pool.idle-timeout-ms:60000}") long idleTimeoutMillis,
+        @Value("${amhs.mta.local-name:LOCAL-MTA}") String localMtaName,
+        @Value("${amhs.relay.connect-timeout-ms:10000}") int connectTimeoutMillis,
+        @Value("${amhs.relay.read-timeout-ms:30000}") int readTimeoutMillis
+    ) {
+        if (connectTimeoutMillis < 0) {
+            throw new IllegalArgumentException("amhs.relay.connect-timeout-ms must be >= 0");
+        }
+        if (readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("amhs.relay.read-timeout-ms must be >= 0");
+        }
         this.p1AssociationProtocol = p1AssociationProtocol;
         this.acseAssociationProtocol = acseAssociationProtocol;
+        this.associationPool = poolEnabled ? new P1AssociationPool(maxAssociationsPerEndpoint, idleTimeoutMillis) : null;
+        this.localMtaName = localMtaName;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
     }
 
-    private static final byte TPKT_VERSION = 0x03;
-    private static final byte TPKT_RESERVED = 0x00;
-    private static final byte COTP_LENGTH_DT = 0x02;
     private static final byte COTP_PDU_CR = (byte) 0xE0;
     private static final byte COTP_PDU_CC = (byte) 0xD0;
-    private static final byte COTP_PDU_DT = (byte) 0xF0;
     private static final int COTP_CLASS_0 = 0;
     private static final int COTP_NEGOTIATED_MAX_USER_DATA = 16_384;
 
     @Override
     public RelayTransferOutcome relay(String endpoint, AMHSMessage message) {
+        try {
+            byte[] transfer = encodeTransfer(message);
+            if (associationPool == null) {
+                try (P1Association association = openAssociation(endpoint)) {
+                    return transfer(association, message, transfer);
+                }
+            }
+            P1Association association = associationPool.acquire(endpoint, () -> openAssociation(endpoint));
+            boolean reused = association.hasExchanged();
+            try {
+                return transfer(association, message, transfer);
+            } catch (P1Association.StaleAssociationException ex) {
+                if (!reused) {
+                    throw ex;
+                }
+            } finally {
+                associationPool.release(endpoint, association);
+            }
+            // the peer dropped a pooled association while it sat idle and never saw the transfer;
+            // anything else (a read timeout, a failure after the transfer went out) is left to the
+            // relay engine's retry schedule so the peer is not sent the message twice at once
+            association = associationPool.acquireFresh(endpoint, () -> openAssociation(endpoint));
+            try {
+                return transfer(association, message, transfer);
+            } finally {
+                associationPool.release(endpoint, association);
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException("Outbound relay failure to endpoint " + endpoint, ex);
+        }
+    }
+
+    /**
+     * Opening an association is bounded by the connect timeout, then waits for the TLS handshake,
+     * the CC and the bind result; the transfer waits for its result. Each read is bounded by the
+     * read timeout; with no read or connect timeout there is no bound. A transfer is only resent
+     * after a stale association failed without waiting for a response, which adds no read.
+     */
+    @Override
+    public long maxTransferMillis() {
+        if (connectTimeoutMillis == 0 || readTimeoutMillis == 0) {
+            return 0;
+        }
+        return connectTimeoutMillis + 4L * readTimeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (associationPool != null) {
+            associationPool.close();
+        }
+    }
+
+    private RelayTransferOutcome transfer(P1Association association, AMHSMessage message, byte[] transfer) throws IOException {
+        byte[] response = association.exchange(transfer);
+        try {
+            return mapTransferOutcome(message, p1AssociationProtocol.decode(response));
+        } catch (RuntimeException ex) {
+            association.markBroken();
+            throw ex;
+        }
+    }
+
+    private P1Association openAssociation(String endpoint) throws Exception {
         String[] hostPort = endpoint.split(":", 2);
         String host = hostPort[0];
         int port = Integer.parseInt(hostPort.length > 1 ? hostPort[1] : "102");
 
-        try (SSLSocket socket = (SSLSocket) SSLSocketFactory.getDefault().createSocket(host, port);
-             OutputStream out = socket.getOutputStream();
-             InputStream in = socket.getInputStream()) {
-
-            sendFrame(out, buildConnectionRequestTpdu());
-            COTPFrame connectResponse = readFrame(in);
-            if (connectResponse.type != COTP_PDU_CC) {
-                throw new IllegalStateException("Expected COTP CC after CR, got TPDU type 0x" + Integer.toHexString(connectResponse.type & 0xFF));
+        Socket transport = new Socket();
+        SSLSocket socket = null;
+        P1Association association = null;
+        try {
+            transport.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+            transport.setSoTimeout(readTimeoutMillis);
+            socket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(transport, host, port, true);
+            socket.startHandshake();
+            association = new P1Association(socket);
+            association.send(buildConnectionRequestTpdu());
+            P1Association.Frame connectResponse = association.read();
+            if (connectResponse.type() != COTP_PDU_CC) {
+                throw new IllegalStateException("Expected COTP CC after CR, got TPDU type 0x" + Integer.toHexString(connectResponse.type() & 0xFF));
             }
+            association.negotiateTpduSize(CotpConnectionTpdu.parse(connectResponse.payload()).negotiatedMaxUserData());
 
-            sendDataFrame(out, encodeAcseBind(message));
-            byte[] associationResponse = readFrame(in).payload();
-            boolean boundWithAcse = isAcseApplicationTag(associationResponse);
-            if (boundWithAcse) {
+            association.sendData(encodeAcseBind());
+            byte[] associationResponse = association.read().payload();
+            if (isAcseApplicationTag(associationResponse)) {
                 AcseModels.AcseApdu bindResult = acseAssociationProtocol.decode(associationResponse);
                 if (!(bindResult instanceof AcseModels.AAREApdu aare) || !aare.accepted()) {
                     throw new IllegalStateException("ACSE bind rejected by peer");
                 }
+                association.releaseWith(acseAssociationProtocol.encode(new AcseModels.RLRQApdu(Optional.of("normal"))));
             } else {
                 P1AssociationProtocol.Pdu bindResult = p1AssociationProtocol.decode(associationResponse);
                 if (!(bindResult instanceof P1AssociationProtocol.BindResultPdu bind) || !bind.accepted()) {
                     throw new IllegalStateException("P1 bind rejected by peer");
                 }
+                association.releaseWith(BerCodec.encode(new BerTlv(2, true, 2, 0, 0, new byte[0])));
             }
-
-            byte[] payload = encodeMessage(message);
-            byte[] transfer = BerCodec.encode(new BerTlv(2, true, 1, 0, payload.length, payload));
-            sendDataFrame(out, transfer);
-            P1AssociationProtocol.Pdu transferResult = p1AssociationProtocol.decode(readFrame(in).payload());
-            RelayTransferOutcome outcome = mapTransferOutcome(message, transferResult);
-
-            if (boundWithAcse) {
-                sendDataFrame(out, acseAssociationProtocol.encode(new AcseModels.RLRQApdu(Optional.of("normal"))));
-                acseAssociationProtocol.decode(readFrame(in).payload());
-            } else {
-                sendDataFrame(out, BerCodec.encode(new BerTlv(2, true, 2, 0, 0, new byte[0])));
-                readFrame(in);
-            }
-            return outcome;
+            return association;
         } catch (Exception ex) {
-            throw new IllegalStateException("Outbound relay failure to endpoint " + endpoint, ex);
+            if (association != null) {
+                association.markBroken();
+            }
+            if (socket != null) {
+                socket.close();
+            }
+            transport.close();
+            throw ex;
         }
     }
 
@@ -112,11 +198,15 @@ public class Rfc1006OutboundP1Client implements OutboundP1Client {
         return new RelayTransferOutcome(transferResult.accepted(), mtsIdentifier, transferResult.diagnostic(), recipients);
     }
 
-    private byte[] encodeAcseBind(AMHSMessage message) {
+    /**
+     * Binds as the local MTA rather than as any one message's originator, since the association is
+     * pooled per endpoint and carries transfers for every originator and recipient behind it.
+     */
+    private byte[] encodeAcseBind() {
         return acseAssociationProtocol.encode(new AcseModels.AARQApdu(
             RFC1006Service.ICAO_AMHS_P1_OID,
-            Optional.ofNullable(message.getSender()).map(String::trim).filter(s -> !s.isEmpty()),
-            Optional.ofNullable(message.getRecipient()).map(String::trim).filter(s -> !s.isEmpty()),
+            Optional.ofNullable(localMtaName).map(String::trim).filter(s -> !s.isEmpty()),
+            Optional.empty(),
             Optional.empty(),
             Optional.empty(),
             Optional.empty(),
@@ -146,148 +236,88 @@ public class Rfc1006OutboundP1Client implements OutboundP1Client {
         ).serialize();
     }
 
-    private byte[] encodeMessage(AMHSMessage message) {
-        byte[] from = contextIa5(0, message.getSender());
-        byte[] to = contextIa5(1, message.getRecipient());
-        byte[] body = contextUtf8(2, message.getBody());
-        byte[] profile = contextEnumerated(3, message.getProfile() == null ? 0 : switch (message.getProfile()) {
+    private byte[] encodeTransfer(AMHSMessage message) {
+        BerWriter writer = new BerWriter(estimateTransferSize(message));
+        writer.startConstructed(2, 1);
+        writer.startConstructed(0, 16);
+        contextIa5(writer, 0, message.getSender());
+        contextIa5(writer, 1, message.getRecipient());
+        contextUtf8(writer, 2, message.getBody());
+        contextEnumerated(writer, 3, message.getProfile() == null ? 0 : switch (message.getProfile()) {
         	case P1 -> 0;    
         	case P3 -> 1;
             case P7 -> 2;
         });
-        byte[] priority = contextEnumerated(4, message.getPriority() == null ? 3 : switch (message.getPriority()) {
+        contextEnumerated(writer, 4, message.getPriority() == null ? 3 : switch (message.getPriority()) {
             case SS -> 0;
             case DD -> 1;
             case FF -> 2;
             case GG -> 3;
             case KK -> 4;
         });
-        byte[] subject = optionalContextUtf8(5, message.getSubject());
-        byte[] messageId = optionalContextIa5(6, message.getMessageId());
-        byte[] filingTime = optionalGeneralizedTime(8, message.getFilingTime());
+        optionalContextUtf8(writer, 5, message.getSubject());
+        optionalContextIa5(writer, 6, message.getMessageId());
+        optionalGeneralizedTime(writer, 8, message.getFilingTime());
+        transferEnvelope(writer, message);
+        return writer.end().end().toByteArray();
+    }
 
-        byte[] envelope = transferEnvelope(message);
-        byte[] seqValue = concat(from, to, body, profile, priority, subject, messageId, filingTime, envelope);
-        return BerCodec.encode(new BerTlv(0, true, 16, 0, seqValue.length, seqValue));
+    private int estimateTransferSize(AMHSMessage message) {
+        int bodyLength = message.getBody() == null ? 0 : message.getBody().length();
+        return 512 + bodyLength + (bodyLength >> 1);
     }
 
-    private byte[] transferEnvelope(AMHSMessage message) {
-        byte[] mtsIdentifierValue = concat(
-            optionalContextIa5(0, Optional.ofNullable(message.getMtsIdentifier()).orElse(message.getMessageId())),
-            optionalGeneralizedTime(1, message.getFilingTime())
-        );
-        byte[] mtsIdentifier = BerCodec.encode(new BerTlv(2, true, 0, 0, mtsIdentifierValue.length, mtsIdentifierValue));
-
-        byte[] recipientEntryValue = optionalContextIa5(0, message.getRecipient());
-        byte[] recipientEntry = BerCodec.encode(new BerTlv(2, true, 0, 0, recipientEntryValue.length, recipientEntryValue));
-        byte[] perRecipientFields = BerCodec.encode(new BerTlv(2, true, 1, 0, recipientEntry.length, recipientEntry));
-
-        byte[] contentType = optionalContextIa5(3, message.getTransferContentTypeOid());
-        byte[] originator = optionalContextIa5(4, message.getSender());
-        byte[] envelopeValue = concat(mtsIdentifier, perRecipientFields, contentType, originator);
-        return BerCodec.encode(new BerTlv(2, true, 9, 0, envelopeValue.length, envelopeValue));
+    private void transferEnvelope(BerWriter writer, AMHSMessage message) {
+        writer.startConstructed(2, 9);
+
+        writer.startConstructed(2, 0);
+        optionalContextIa5(writer, 0, Optional.ofNullable(message.getMtsIdentifier()).orElse(message.getMessageId()));
+        optionalGeneralizedTime(writer, 1, message.getFilingTime());
+        writer.end();
+
+        writer.startConstructed(2, 1);
+        writer.startConstructed(2, 0);
+        optionalContextIa5(writer, 0, message.getRecipient());
+        writer.end().end();
+
+        optionalContextIa5(writer, 3, message.getTransferContentTypeOid());
+        optionalContextIa5(writer, 4, message.getSender());
+        writer.end();
     }
 
-    private byte[] contextIa5(int tag, String value) {
-        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(new BerTlv(2, false, tag, 0, bytes.length, bytes));
+    private void contextIa5(BerWriter writer, int tag, String value) {
+        writer.writeString(2, tag, value == null ? "" : value, StandardCharsets.US_ASCII);
     }
 
-    private byte[] optionalContextIa5(int tag, String value) {
+    private void optionalContextIa5(BerWriter writer, int tag, String value) {
         if (value == null || value.isBlank()) {
-            return new byte[0];
+            return;
         }
-        byte[] bytes = value.trim().getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(new BerTlv(2, false, tag, 0, bytes.length, bytes));
+        writer.writeString(2, tag, value.trim(), StandardCharsets.US_ASCII);
     }
 
-    private byte[] contextUtf8(int tag, String value) {
-        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
-        return BerCodec.encode(new BerTlv(2, false, tag, 0, bytes.length, bytes));
+    private void contextUtf8(BerWriter writer, int tag, String value) {
+        writer.writeString(2, tag, value == null ? "" : value, StandardCharsets.UTF_8);
     }
 
-    private byte[] optionalContextUtf8(int tag, String value) {
+    private void optionalContextUtf8(BerWriter writer, int tag, String value) {
         if (value == null || value.isBlank()) {
-            return new byte[0];
+            return;
         }
-        byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
-        return BerCodec.encode(new BerTlv(2, false, tag, 0, bytes.length, bytes));
+        writer.writeString(2, tag, value.trim(), StandardCharsets.UTF_8);
     }
 
-    private byte[] contextEnumerated(int tag, int value) {
-        return BerCodec.encode(new BerTlv(2, false, tag, 0, 1, new byte[] {(byte) value}));
+    private void contextEnumerated(BerWriter writer, int tag, int value) {
+        writer.writePrimitive(2, tag, new byte[] {(byte) value});
     }
 
-    private byte[] optionalGeneralizedTime(int tag, java.util.Date value) {
+    private void optionalGeneralizedTime(BerWriter writer, int tag, java.util.Date value) {
         if (value == null) {
-            return new byte[0];
+            return;
         }
         SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss'Z'", Locale.ROOT);
         format.setTimeZone(TimeZone.getTimeZone("UTC"));
-        byte[] bytes = format.format(value).getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(new BerTlv(2, false, tag, 0, bytes.length, bytes));
-    }
-
-    private byte[] concat(byte[]... chunks) {
-        int len = 0;
-        for (byte[] chunk : chunks) {
-            len += chunk.length;
-        }
-        byte[] out = new byte[len];
-        int offset = 0;
-        for (byte[] chunk : chunks) {
-            System.arraycopy(chunk, 0, out, offset, chunk.length);
-            offset += chunk.length;
-        }
-        return out;
-    }
-
-    private void sendFrame(OutputStream out, byte[] cotpTpdu) throws Exception {
-        int length = 4 + cotpTpdu.length;
-        byte[] tpkt = new byte[length];
-        tpkt[0] = TPKT_VERSION;
-        tpkt[1] = TPKT_RESERVED;
-        tpkt[2] = (byte) ((length >> 8) & 0xFF);
-        tpkt[3] = (byte) (length & 0xFF);
-        System.arraycopy(cotpTpdu, 0, tpkt, 4, cotpTpdu.length);
-        out.write(tpkt);
-        out.flush();
-    }
-
-    private void sendDataFrame(OutputStream out, byte[] payload) throws Exception {
-        byte[] tpdu = new byte[3 + payload.length];
-        tpdu[0] = COTP_LENGTH_DT;
-        tpdu[1] = COTP_PDU_DT;
-        tpdu[2] = (byte) 0x80;
-        System.arraycopy(payload, 0, tpdu, 3, payload.length);
-        sendFrame(out, tpdu);
-    }
-
-    private COTPFrame readFrame(InputStream in) throws Exception {
-        byte[] hdr = in.readNBytes(4);
-        if (hdr.length < 4) {
-            throw new IllegalStateException("No RFC1006 response");
-        }
-        int length = ((hdr[2] & 0xFF) << 8) | (hdr[3] & 0xFF);
-        byte[] body = in.readNBytes(length - 4);
-        if (body.length != length - 4) {
-            throw new IllegalStateException("Short RFC1006 response");
-        }
-        if (body.length < 2) {
-            throw new IllegalStateException("Short COTP TPDU");
-        }
-
-        byte type = (byte) (body[1] & (byte) 0xF0);
-        if (type == COTP_PDU_DT) {
-            if (body.length < 3) {
-                throw new IllegalStateException("Short COTP DT TPDU");
-            }
-            return new COTPFrame(type, Arrays.copyOfRange(body, 3, body.length));
-        }
-        return new COTPFrame(type, body);
-    }
-
-    private record COTPFrame(byte type, byte[] payload) {
+        writer.writeString(2, tag, format.format(value), StandardCharsets.US_ASCII);
     }
 
 }
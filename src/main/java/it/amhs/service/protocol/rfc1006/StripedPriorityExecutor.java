@@ -0,0 +1,89 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of single-worker executors, each draining its own priority queue.
+ * <p>
+ * Tasks with the same stripe key always land on the same worker, so ordering among them follows
+ * their {@link Comparable} order exactly as with a single priority executor, while unrelated
+ * stripes make progress in parallel. Submitted tasks must implement {@link Comparable}.
+ */
+final class StripedPriorityExecutor {
+
+    private final ThreadPoolExecutor[] stripes;
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    StripedPriorityExecutor(int workers, String threadNamePrefix) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Striped executor requires at least one worker");
+        }
+        this.stripes = new ThreadPoolExecutor[workers];
+        for (int i = 0; i < workers; i++) {
+            String threadName = threadNamePrefix + (i + 1);
+            stripes[i] = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            ) {
+                @Override
+                protected void afterExecute(Runnable task, Throwable failure) {
+                    backlog.decrementAndGet();
+                }
+            };
+        }
+    }
+
+    void execute(String stripeKey, Runnable task) {
+        backlog.incrementAndGet();
+        try {
+            stripes[stripeFor(stripeKey)].execute(task);
+        } catch (RejectedExecutionException ex) {
+            backlog.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Tasks queued or running across all stripes.
+     */
+    int backlog() {
+        return backlog.get();
+    }
+
+    /**
+     * The hash is mixed first: keys that differ only in repeated characters, such as an O and an
+     * OU1 sharing a location indicator, cancel out in the low bits of {@link String#hashCode()}.
+     */
+    int stripeFor(String stripeKey) {
+        if (stripeKey == null) {
+            return 0;
+        }
+        int hash = stripeKey.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, stripes.length);
+    }
+
+    int workers() {
+        return stripes.length;
+    }
+
+    void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * RFC1006 framing (TPKT header plus COTP class 0 TPDU) shared by the inbound P1 server, the P3
+ * gateway and the outbound P1 client.
+ * <p>
+ * Reads go through a buffered stream, so header octets do not cost a system call each. A DT TPDU
+ * is read in two steps: {@link #readFrame()} returns its header and the caller then consumes the
+ * user data with {@link #readUserData(TsduReassemblyBuffer)}, {@link #readUserData()} or
+ * {@link #skipUserData()}, which lets it check limits before anything is buffered. Writes assemble
+ * the TPKT header, the COTP header and the payload in an output buffer large enough for a whole
+ * frame and flush once per TSDU, so each frame leaves in one write. Outbound TSDUs are segmented
+ * into DT TPDUs no larger than the negotiated TPDU size. Not thread-safe.
+ */
+public final class TpktTransport {
+
+    public static final byte PDU_CR = (byte) 0xE0;
+    public static final byte PDU_CC = (byte) 0xD0;
+    public static final byte PDU_DR = (byte) 0x80;
+    public static final byte PDU_DC = (byte) 0xC0;
+    public static final byte PDU_ER = 0x70;
+    public static final byte PDU_ED = 0x10;
+    public static final byte PDU_DT = (byte) 0xF0;
+
+    public static final int MAX_TPKT_LENGTH = 65_535;
+    public static final int DEFAULT_MAX_USER_DATA = 16_384;
+
+    private static final byte TPKT_VERSION = 0x03;
+    private static final byte TPKT_RESERVED = 0x00;
+    private static final int TPKT_HEADER_LENGTH = 4;
+    private static final int DT_HEADER_LENGTH = 3;
+    private static final int MIN_TPKT_LENGTH = 7;
+    private static final int MAX_DT_USER_DATA = MAX_TPKT_LENGTH - TPKT_HEADER_LENGTH - DT_HEADER_LENGTH;
+    private static final int INPUT_BUFFER_SIZE = 32 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = MAX_TPKT_LENGTH + 1;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final boolean legacyLengthFraming;
+    private final byte[] header = new byte[256];
+    private int maxUserData = DEFAULT_MAX_USER_DATA;
+    private int pendingUserData;
+
+    /**
+     * Uses the streams as given; they should already be buffered (see {@link #open(Socket)}).
+     *
+     * @param legacyLengthFraming accept frames that carry a bare two-octet length instead of a
+     *                            TPKT header, reported as a single end-of-TSDU DT
+     */
+    public TpktTransport(InputStream in, OutputStream out, boolean legacyLengthFraming) {
+        this.in = in;
+        this.out = out;
+        this.legacyLengthFraming = legacyLengthFraming;
+    }
+
+    /**
+     * Applies {@link #configure(Socket)} and wraps the socket streams in buffers sized for a frame.
+     */
+    public static TpktTransport open(Socket socket, boolean legacyLengthFraming) throws IOException {
+        configure(socket);
+        return new TpktTransport(
+            bufferedInput(socket.getInputStream()),
+            bufferedOutput(socket.getOutputStream()),
+            legacyLengthFraming
+        );
+    }
+
+    /**
+     * Socket options every RFC1006 stack uses. Nagle is disabled because each TSDU is written with
+     * a single flush, so coalescing only adds delayed-ACK latency to request/response exchanges.
+     */
+    public static void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+    }
+
+    public static InputStream bufferedInput(InputStream in) {
+        return new BufferedInputStream(in, INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Output buffer that holds a whole TPKT frame, so a frame is never split across writes.
+     */
+    public static OutputStream bufferedOutput(OutputStream out) {
+        return new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Limits outbound DTs to the TPDU size agreed in the CR/CC exchange; each DT then carries at
+     * most {@code tpduSize} minus its three header octets of user data.
+     */
+    public void negotiateTpduSize(int tpduSize) {
+        if (tpduSize <= DT_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Negotiated COTP TPDU size is too small: " + tpduSize);
+        }
+        this.maxUserData = Math.min(tpduSize - DT_HEADER_LENGTH, MAX_DT_USER_DATA);
+    }
+
+    public int maxUserData() {
+        return maxUserData;
+    }
+
+    /**
+     * Reads the next frame, or returns {@code null} on a clean end of stream before a frame.
+     * For a DT TPDU only the header is consumed; its user data must be read or skipped before
+     * the next call.
+     */
+    public Frame readFrame() throws IOException {
+        if (pendingUserData != 0) {
+            throw new IllegalStateException("Previous COTP DT user data was not consumed");
+        }
+
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        readFully(header, 0, 1, "Connection closed while reading frame header");
+
+        if (first != TPKT_VERSION || header[0] != TPKT_RESERVED) {
+            if (!legacyLengthFraming) {
+                throw new IllegalArgumentException("Invalid TPKT header");
+            }
+            int legacyLength = ((first & 0xFF) << 8) | (header[0] & 0xFF);
+            pendingUserData = legacyLength;
+            return new Frame(PDU_DT, PDU_DT, true, null, legacyLength);
+        }
+
+        readFully(header, 0, 2, "Connection closed while reading TPKT length");
+        int tpktLength = ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+        if (tpktLength < MIN_TPKT_LENGTH || tpktLength > MAX_TPKT_LENGTH) {
+            throw new IllegalArgumentException("Invalid TPKT frame length: " + tpktLength);
+        }
+
+        readFully(header, 2, 2, "Truncated TPKT payload");
+        int tpduLength = tpktLength - TPKT_HEADER_LENGTH;
+        int lengthIndicator = header[2] & 0xFF;
+        if (lengthIndicator < 1 || lengthIndicator + 1 > tpduLength) {
+            throw new IllegalArgumentException("Invalid COTP length indicator: " + lengthIndicator);
+        }
+        byte code = header[3];
+        byte type = (byte) (code & 0xF0);
+
+        if (type == PDU_DT) {
+            if (lengthIndicator < 2) {
+                throw new IllegalArgumentException("Invalid COTP DT header length indicator: " + lengthIndicator);
+            }
+            readFully(header, 0, lengthIndicator - 1, "Truncated TPKT payload");
+            boolean endOfTsdu = (header[0] & 0x80) != 0;
+            pendingUserData = tpduLength - (lengthIndicator + 1);
+            return new Frame(type, code, endOfTsdu, null, pendingUserData);
+        }
+
+        byte[] tpdu = new byte[tpduLength];
+        tpdu[0] = (byte) lengthIndicator;
+        tpdu[1] = code;
+        readFully(tpdu, 2, tpduLength - 2, "Truncated TPKT payload");
+        return new Frame(type, code, true, tpdu, 0);
+    }
+
+    /**
+     * Appends the pending DT user data to {@code tsdu}.
+     */
+    public void readUserData(TsduReassemblyBuffer tsdu) throws IOException {
+        int length = pendingUserData;
+        pendingUserData = 0;
+        tsdu.readFrom(in, length);
+    }
+
+    /**
+     * Returns the pending DT user data in a new array.
+     */
+    public byte[] readUserData() throws IOException {
+        byte[] data = new byte[pendingUserData];
+        pendingUserData = 0;
+        readFully(data, 0, data.length, "Connection closed while reading payload");
+        return data;
+    }
+
+    public void skipUserData() throws IOException {
+        int length = pendingUserData;
+        pendingUserData = 0;
+        in.skipNBytes(length);
+    }
+
+    /**
+     * Sends a non-DT TPDU (CR, CC, DR, DC, ER) in one frame.
+     */
+    public void sendTpdu(byte[] tpdu) throws IOException {
+        int tpktLength = TPKT_HEADER_LENGTH + tpdu.length;
+        if (tpktLength > MAX_TPKT_LENGTH) {
+            throw new IllegalArgumentException("TPKT frame exceeds maximum allowed length: " + tpktLength);
+        }
+        writeTpktHeader(tpktLength);
+        out.write(tpdu);
+        out.flush();
+    }
+
+    public void sendData(byte[] payload) throws IOException {
+        sendData(payload, 0, payload == null ? 0 : payload.length);
+    }
+
+    /**
+     * Sends a TSDU as DT TPDUs of at most {@link #maxUserData()} octets, the last one marked
+     * end-of-TSDU. An empty TSDU is sent as one empty DT.
+     */
+    public void sendData(byte[] payload, int offset, int length) throws IOException {
+        int end = offset + length;
+        int position = offset;
+        do {
+            int chunk = Math.min(maxUserData, end - position);
+            boolean endOfTsdu = position + chunk >= end;
+            writeTpktHeader(TPKT_HEADER_LENGTH + DT_HEADER_LENGTH + chunk);
+            out.write(DT_HEADER_LENGTH - 1);
+            out.write(PDU_DT);
+            out.write(endOfTsdu ? 0x80 : 0x00);
+            if (chunk > 0) {
+                out.write(payload, position, chunk);
+            }
+            position += chunk;
+        } while (position < end);
+        out.flush();
+    }
+
+    private void writeTpktHeader(int tpktLength) throws IOException {
+        out.write(TPKT_VERSION);
+        out.write(TPKT_RESERVED);
+        out.write((tpktLength >> 8) & 0xFF);
+        out.write(tpktLength & 0xFF);
+    }
+
+    private void readFully(byte[] target, int offset, int length, String truncatedMessage) throws IOException {
+        if (in.readNBytes(target, offset, length) != length) {
+            throw new EOFException(truncatedMessage);
+        }
+    }
+
+    /**
+     * One inbound frame. {@code tpdu} holds the whole TPDU for non-DT types and is {@code null}
+     * for DT, whose {@code userDataLength} octets are still unread. {@code code} is the raw TPDU
+     * code octet and {@code type} its high nibble.
+     */
+    public record Frame(byte type, byte code, boolean endOfTsdu, byte[] tpdu, int userDataLength) {
+    }
+}
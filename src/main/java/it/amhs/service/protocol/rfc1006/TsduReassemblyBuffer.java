@@ -0,0 +1,141 @@
+package it.amhs.service.protocol.rfc1006;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Per-connection buffer that COTP DT user data is read into until the end of the TSDU.
+ * <p>
+ * The backing array is reused for every TSDU of the connection, so a P1 transfer is decoded in
+ * place from {@link #array()} starting at {@link #offset()} (which skips a UTF-8 BOM) instead of
+ * being copied out per segment and again per TSDU. Callers must not retain the array, or views over
+ * it, after {@link #reset()}. A TSDU larger than {@code retainedCapacity} grows the array only until
+ * the next reset. Not thread-safe: a buffer belongs to one connection thread.
+ */
+public final class TsduReassemblyBuffer {
+
+    private static final int UTF8_BOM_LENGTH = 3;
+
+    private final int initialCapacity;
+    private final int retainedCapacity;
+    private byte[] buffer;
+    private int length;
+
+    public TsduReassemblyBuffer(int initialCapacity, int retainedCapacity) {
+        if (initialCapacity <= 0 || retainedCapacity < initialCapacity) {
+            throw new IllegalArgumentException("Invalid reassembly buffer capacities");
+        }
+        this.initialCapacity = initialCapacity;
+        this.retainedCapacity = retainedCapacity;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Appends exactly {@code count} octets read from {@code in}.
+     */
+    public void readFrom(InputStream in, int count) throws IOException {
+        ensureCapacity(count);
+        int end = length + count;
+        while (length < end) {
+            int read = in.read(buffer, length, end - length);
+            if (read == -1) {
+                throw new EOFException("Connection closed while reading payload");
+            }
+            length += read;
+        }
+    }
+
+    public void reset() {
+        length = 0;
+        if (buffer.length > retainedCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+    }
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Start of the TSDU content, past a leading UTF-8 BOM if there is one.
+     */
+    public int offset() {
+        if (length >= UTF8_BOM_LENGTH
+            && (buffer[0] & 0xFF) == 0xEF
+            && (buffer[1] & 0xFF) == 0xBB
+            && (buffer[2] & 0xFF) == 0xBF) {
+            return UTF8_BOM_LENGTH;
+        }
+        return 0;
+    }
+
+    /**
+     * Length of the TSDU content from {@link #offset()}.
+     */
+    public int length() {
+        return length - offset();
+    }
+
+    /**
+     * First content octet as an unsigned value, or -1 if the TSDU is empty.
+     */
+    public int firstOctet() {
+        return length() == 0 ? -1 : buffer[offset()] & 0xFF;
+    }
+
+    /**
+     * Whether the content, ignoring the leading whitespace that {@link String#trim()} removes,
+     * starts with the ASCII {@code prefix}; answers the text-command check without decoding.
+     */
+    public boolean startsWithTrimmed(String prefix) {
+        int start = offset();
+        while (start < length && (buffer[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        if (length - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[start + i] != (byte) prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Octets read since the last reset, including a leading BOM.
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Copy of every octet read since the last reset, including a leading BOM.
+     */
+    public byte[] rawBytes() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(buffer, offset(), length);
+    }
+
+    public String decodeUtf8() {
+        int start = offset();
+        return new String(buffer, start, length - start, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = length + additional;
+        if (required < 0) {
+            throw new IllegalArgumentException("TSDU exceeds maximum reassembly size");
+        }
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+}
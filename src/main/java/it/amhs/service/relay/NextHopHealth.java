@@ -0,0 +1,161 @@
+package it.amhs.service.relay;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks how each next-hop endpoint has been behaving, from the outcome of every relay attempt.
+ * <p>
+ * Latency and error rate are exponentially weighted moving averages. After
+ * {@code failure-threshold} consecutive transport failures the endpoint's circuit opens and it
+ * receives no traffic for {@code open-ms}; the first transfer afterwards is a half-open probe that
+ * either closes the circuit or opens it again. The probe is claimed through {@link #tryAcquire}
+ * right before the transfer; one that never reports back expires after another {@code open-ms}.
+ */
+@Component
+public class NextHopHealth {
+
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final double ERROR_PENALTY = 4.0;
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public record HopStatus(CircuitState state, double latencyMillis, double errorRate) {
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public NextHopHealth(
+        @Value("${amhs.relay.health.failure-threshold:3}") int failureThreshold,
+        @Value("${amhs.relay.health.open-ms:30000}") long openMillis
+    ) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("amhs.relay.health.failure-threshold must be >= 1");
+        }
+        if (openMillis < 1) {
+            throw new IllegalArgumentException("amhs.relay.health.open-ms must be >= 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    public void recordSuccess(String endpoint, long latencyNanos) {
+        Endpoint state = endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+        synchronized (state) {
+            state.latencyNanos = state.latencyNanos < 0 ? latencyNanos : ewma(state.latencyNanos, latencyNanos);
+            state.errorRate = ewma(state.errorRate, 0.0);
+            state.consecutiveFailures = 0;
+            state.probing = false;
+            state.open = false;
+        }
+    }
+
+    public void recordFailure(String endpoint) {
+        Endpoint state = endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+        synchronized (state) {
+            state.errorRate = ewma(state.errorRate, 1.0);
+            state.consecutiveFailures++;
+            if (state.probing || state.consecutiveFailures >= failureThreshold) {
+                state.openUntil = System.nanoTime() + openNanos;
+                state.open = true;
+                state.probing = false;
+            }
+        }
+    }
+
+    public HopStatus status(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        if (state == null) {
+            return new HopStatus(CircuitState.CLOSED, 0.0, 0.0);
+        }
+        CircuitState circuit;
+        if (!state.open) {
+            circuit = CircuitState.CLOSED;
+        } else if (state.probing || System.nanoTime() - state.openUntil >= 0) {
+            circuit = CircuitState.HALF_OPEN;
+        } else {
+            circuit = CircuitState.OPEN;
+        }
+        return new HopStatus(circuit, Math.max(0, state.latencyNanos) / 1_000_000.0, state.errorRate);
+    }
+
+    /**
+     * Returns whether the endpoint may be offered traffic at {@code now}, without claiming a probe.
+     */
+    boolean isAvailable(String endpoint, long now) {
+        Endpoint state = endpoints.get(endpoint);
+        return state == null || !state.open || now - state.openUntil >= 0;
+    }
+
+    /**
+     * Claims the endpoint for one transfer; for an endpoint whose open period has elapsed this
+     * claims the single half-open probe and fails for everyone else until the probe reports.
+     */
+    boolean tryAcquire(String endpoint, long now) {
+        Endpoint state = endpoints.get(endpoint);
+        if (state == null || !state.open) {
+            return true;
+        }
+        synchronized (state) {
+            if (!state.open) {
+                return true;
+            }
+            if (now - state.openUntil < 0) {
+                return false;
+            }
+            state.openUntil = now + openNanos;
+            state.probing = true;
+            return true;
+        }
+    }
+
+    /**
+     * Lower is better: EWMA latency inflated by the recent error rate. An endpoint with no latency
+     * sample yet is assumed to be as fast as the average measured endpoint, so it is neither
+     * preferred nor avoided for being new, while its failures still count against it.
+     */
+    double score(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        if (state == null) {
+            return priorLatencyNanos();
+        }
+        double latency = state.latencyNanos < 0 ? priorLatencyNanos() : state.latencyNanos;
+        return latency * (1.0 + ERROR_PENALTY * state.errorRate);
+    }
+
+    private double priorLatencyNanos() {
+        double total = 0.0;
+        int measured = 0;
+        for (Endpoint state : endpoints.values()) {
+            double latency = state.latencyNanos;
+            if (latency >= 0) {
+                total += latency;
+                measured++;
+            }
+        }
+        return measured == 0 ? 1.0 : Math.max(1.0, total / measured);
+    }
+
+    private static double ewma(double current, double sample) {
+        return current + EWMA_WEIGHT * (sample - current);
+    }
+
+    private static final class Endpoint {
+        private volatile double latencyNanos = -1;
+        private volatile double errorRate;
+        private volatile boolean open;
+        private volatile long openUntil;
+        private volatile boolean probing;
+        private int consecutiveFailures;
+    }
+}
@@ -6,6 +6,13 @@ public interface OutboundP1Client {
 
     RelayTransferOutcome relay(String endpoint, AMHSMessage message);
 
+    /**
+     * Upper bound on one {@link #relay} call, or 0 if the client cannot bound it.
+     */
+    default long maxTransferMillis() {
+        return 0;
+    }
+
     record RelayTransferOutcome(
         boolean accepted,
         String mtsIdentifier,
@@ -3,7 +3,9 @@ package it.amhs.service.relay;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,29 +31,44 @@ public class OutboundRelayEngine {
     private final RelayRoutingService routingService;
     private final OutboundP1Client outboundP1Client;
     private final AMHSDeliveryReportService deliveryReportService;
+    private final RelayQueue relayQueue;
     private final String localMtaName;
     private final String localRoutingDomain;
     private final boolean relayEnabled;
     private final int maxAttempts;
+    private final RelayLanes lanes;
+    private final long laneFullBackoffMillis;
+    private final long minimumClaimLeaseMillis;
 
     public OutboundRelayEngine(
         AMHSMessageRepository messageRepository,
         RelayRoutingService routingService,
         OutboundP1Client outboundP1Client,
         AMHSDeliveryReportService deliveryReportService,
+        RelayQueue relayQueue,
         @Value("${amhs.mta.local-name:LOCAL-MTA}") String localMtaName,
         @Value("${amhs.mta.routing-domain:LOCAL}") String localRoutingDomain,
         @Value("${amhs.relay.enabled:false}") boolean relayEnabled,
-        @Value("${amhs.relay.max-attempts:5}") int maxAttempts
+        @Value("${amhs.relay.max-attempts:5}") int maxAttempts,
+        @Value("${amhs.relay.lane.concurrency:2}") int laneConcurrency,
+        @Value("${amhs.relay.lane.queue-depth:16}") int laneQueueDepth,
+        @Value("${amhs.relay.lane.full-backoff-ms:15000}") long laneFullBackoffMillis
     ) {
+        if (laneFullBackoffMillis < 1) {
+            throw new IllegalArgumentException("amhs.relay.lane.full-backoff-ms must be >= 1");
+        }
         this.messageRepository = messageRepository;
         this.routingService = routingService;
         this.outboundP1Client = outboundP1Client;
         this.deliveryReportService = deliveryReportService;
+        this.relayQueue = relayQueue;
         this.localMtaName = localMtaName;
         this.localRoutingDomain = localRoutingDomain;
         this.relayEnabled = relayEnabled;
         this.maxAttempts = maxAttempts;
+        this.lanes = new RelayLanes(laneConcurrency, laneQueueDepth);
+        this.laneFullBackoffMillis = laneFullBackoffMillis;
+        this.minimumClaimLeaseMillis = lanes.maxResidenceMillis(outboundP1Client.maxTransferMillis());
     }
 
     @Scheduled(fixedDelayString = "${amhs.relay.scan-delay-ms:5000}")
@@ -60,20 +77,64 @@ public class OutboundRelayEngine {
             return;
         }
 
-        List<AMHSMessageState> states = List.of(AMHSMessageState.SUBMITTED, AMHSMessageState.DEFERRED);
-        for (AMHSMessage message : messageRepository.findByLifecycleStateIn(states)) {
-            if (message.getNextRetryAt() != null && message.getNextRetryAt().after(new Date())) {
-                continue;
+        Set<Long> seen = new HashSet<>();
+        Set<String> saturated = new HashSet<>();
+        while (true) {
+            RelayQueue.ClaimedPage page = relayQueue.claimDue(lanes.inFlight(), minimumClaimLeaseMillis);
+            boolean repeated = false;
+            boolean queuedAny = false;
+            for (AMHSMessage message : page.messages()) {
+                if (message.getId() != null && !seen.add(message.getId())) {
+                    repeated = true;
+                    continue;
+                }
+                queuedAny |= dispatch(message, saturated);
+            }
+            if (!page.full() || repeated || !queuedAny) {
+                return;
             }
-            relaySingle(message);
         }
     }
 
     public void relaySingle(AMHSMessage message) {
+        RelayRoutingService.RelayNextHop nextHop = resolveNextHop(message);
+        if (nextHop != null) {
+            transfer(message, nextHop);
+        }
+    }
+
+    /**
+     * Hands a claimed message to the lane of the next hop it resolves to and returns whether it was
+     * queued or settled. If the lane is full the message is retried after {@code full-backoff-ms},
+     * and the rest of the scan backs off messages for that next hop without offering them.
+     */
+    private boolean dispatch(AMHSMessage message, Set<String> saturated) {
+        RelayRoutingService.RelayNextHop nextHop = resolveNextHop(message);
+        if (nextHop == null) {
+            return true;
+        }
+        String endpoint = nextHop.endpoint();
+        boolean queued = !saturated.contains(endpoint) && lanes.submit(endpoint, message.getId(), () -> {
+            try {
+                transfer(message, nextHop);
+            } catch (RuntimeException ex) {
+                logger.error("AMHS relay of message {} via {} failed", message.getMessageId(), endpoint, ex);
+            }
+        });
+        if (!queued) {
+            saturated.add(endpoint);
+            message.setNextRetryAt(new Date(System.currentTimeMillis() + laneFullBackoffMillis));
+            messageRepository.save(message);
+            logger.debug("Relay lane {} full ({} in flight); message {} retries in {} ms", endpoint, lanes.backlog(endpoint), message.getMessageId(), laneFullBackoffMillis);
+        }
+        return queued;
+    }
+
+    private RelayRoutingService.RelayNextHop resolveNextHop(AMHSMessage message) {
         String existingTrace = message.getTransferTrace();
         if (hasLoop(existingTrace, localMtaName, localRoutingDomain)) {
             deadLetter(message, "loop-detected");
-            return;
+            return null;
         }
 
         ORAddress recipient = ORAddress.parse(StringUtils.hasText(message.getRecipientOrAddress()) ? message.getRecipientOrAddress() : message.getRecipient());
@@ -83,11 +144,29 @@ public class OutboundRelayEngine {
 
         if (nextHop == null) {
             deadLetter(message, "no-route");
-            return;
         }
+        return nextHop;
+    }
 
+    private void transfer(AMHSMessage message, RelayRoutingService.RelayNextHop nextHop) {
+        if (!routingService.tryAcquire(nextHop.endpoint())) {
+            // another transfer is probing the next hop or its circuit opened after routing
+            message.setNextRetryAt(new Date(System.currentTimeMillis() + laneFullBackoffMillis));
+            messageRepository.save(message);
+            logger.debug("Next hop {} unavailable; message {} retries in {} ms", nextHop.endpoint(), message.getMessageId(), laneFullBackoffMillis);
+            return;
+        }
+        String existingTrace = message.getTransferTrace();
         try {
-            OutboundP1Client.RelayTransferOutcome transferOutcome = outboundP1Client.relay(nextHop.endpoint(), message);
+            OutboundP1Client.RelayTransferOutcome transferOutcome;
+            long started = System.nanoTime();
+            try {
+                transferOutcome = outboundP1Client.relay(nextHop.endpoint(), message);
+            } catch (RuntimeException ex) {
+                routingService.recordFailure(nextHop.endpoint());
+                throw ex;
+            }
+            routingService.recordSuccess(nextHop.endpoint(), System.nanoTime() - started);
             message.setMtsIdentifier(transferOutcome.mtsIdentifier());
             message.setPerRecipientFields(transferOutcome.recipientOutcomes().isEmpty()
                 ? null
@@ -0,0 +1,105 @@
+package it.amhs.service.relay;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One bounded worker pool per next-hop endpoint.
+ * <p>
+ * Each lane runs at most {@code concurrency} transfers at once and queues at most
+ * {@code queueDepth} more; anything beyond that is refused rather than queued, so a stalled
+ * peer only ever holds its own lane's threads and backlog. Message ids stay registered as in
+ * flight, with their lane, from submission until the transfer finishes.
+ */
+final class RelayLanes {
+
+    private final int concurrency;
+    private final int queueDepth;
+    private final Map<String, ThreadPoolExecutor> lanes = new ConcurrentHashMap<>();
+    private final Map<Long, String> inFlight = new ConcurrentHashMap<>();
+
+    RelayLanes(int concurrency, int queueDepth) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("amhs.relay.lane.concurrency must be >= 1");
+        }
+        if (queueDepth < 1) {
+            throw new IllegalArgumentException("amhs.relay.lane.queue-depth must be >= 1");
+        }
+        this.concurrency = concurrency;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Queues {@code task} for message {@code messageId} on the lane for {@code endpoint}; returns
+     * {@code false} if that lane is full. A message that is already in flight is not queued again.
+     */
+    boolean submit(String endpoint, long messageId, Runnable task) {
+        if (inFlight.putIfAbsent(messageId, endpoint) != null) {
+            return true;
+        }
+        try {
+            lanes.computeIfAbsent(endpoint, this::newLane).execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.remove(messageId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(messageId);
+            return false;
+        }
+    }
+
+    /**
+     * Ids of messages queued or running on any lane.
+     */
+    Set<Long> inFlight() {
+        return Collections.unmodifiableSet(inFlight.keySet());
+    }
+
+    boolean saturated(String endpoint) {
+        return backlog(endpoint) >= concurrency + queueDepth;
+    }
+
+    /**
+     * Longest a message can wait in a full lane before its own transfer ends, if no transfer takes
+     * longer than {@code maxTransferMillis}.
+     */
+    long maxResidenceMillis(long maxTransferMillis) {
+        long rounds = (queueDepth + concurrency + concurrency - 1) / concurrency;
+        return rounds * maxTransferMillis;
+    }
+
+    int backlog(String endpoint) {
+        ThreadPoolExecutor lane = lanes.get(endpoint);
+        return lane == null ? 0 : lane.getQueue().size() + lane.getActiveCount();
+    }
+
+    private ThreadPoolExecutor newLane(String endpoint) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor lane = new ThreadPoolExecutor(
+            concurrency,
+            concurrency,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueDepth),
+            runnable -> {
+                Thread thread = new Thread(runnable, "amhs-relay-" + endpoint + "-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        lane.allowCoreThreadTimeOut(true);
+        return lane;
+    }
+}
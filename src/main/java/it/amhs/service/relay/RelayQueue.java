@@ -0,0 +1,102 @@
+package it.amhs.service.relay;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.amhs.domain.AMHSMessage;
+import it.amhs.domain.AMHSMessageState;
+import it.amhs.repository.AMHSMessageRepository;
+
+/**
+ * Claims messages that are due for relay, one page at a time.
+ * <p>
+ * A page is filled per relayable state from two queries that each walk the
+ * {@code (lifecycle_state, next_retry_at, id)} index in its own order: messages never scheduled
+ * ({@code next_retry_at is null}, by id) and messages whose retry time has passed (by retry time).
+ * They run in a short transaction that skips rows locked by other scanners and leases the claimed
+ * rows by moving their {@code next_retry_at} forward, which also takes them out of both queries,
+ * so the next page needs no cursor. The lease is released when the relay outcome is saved; if the
+ * node dies mid-relay the messages become due again once the lease expires.
+ */
+@Component
+public class RelayQueue {
+
+    static final List<AMHSMessageState> RELAYABLE_STATES = List.of(AMHSMessageState.SUBMITTED, AMHSMessageState.DEFERRED);
+
+    private final AMHSMessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private final long claimLeaseMillis;
+
+    public RelayQueue(
+        AMHSMessageRepository messageRepository,
+        PlatformTransactionManager transactionManager,
+        @Value("${amhs.relay.page-size:200}") int pageSize,
+        @Value("${amhs.relay.claim-lease-ms:300000}") long claimLeaseMillis
+    ) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("amhs.relay.page-size must be >= 1");
+        }
+        if (claimLeaseMillis < 1) {
+            throw new IllegalArgumentException("amhs.relay.claim-lease-ms must be >= 1");
+        }
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pageSize = pageSize;
+        this.claimLeaseMillis = claimLeaseMillis;
+    }
+
+    /**
+     * Claims up to {@link #pageSize()} due messages and returns those not in {@code inFlight}.
+     * Messages still queued in a relay lane are leased again but not handed out twice. The lease
+     * lasts {@code claim-lease-ms} or {@code minimumLeaseMillis}, whichever is longer.
+     */
+    public ClaimedPage claimDue(Set<Long> inFlight, long minimumLeaseMillis) {
+        ClaimedPage claimed = transactionTemplate.execute(status -> {
+            Date now = new Date();
+            List<AMHSMessage> due = new ArrayList<>(pageSize);
+            for (AMHSMessageState state : RELAYABLE_STATES) {
+                addPage(due, remaining -> messageRepository.findUnscheduledForRelay(state, PageRequest.of(0, remaining)));
+            }
+            for (AMHSMessageState state : RELAYABLE_STATES) {
+                addPage(due, remaining -> messageRepository.findRetryDueForRelay(state, now, PageRequest.of(0, remaining)));
+            }
+            Date leaseExpiry = new Date(now.getTime() + Math.max(claimLeaseMillis, minimumLeaseMillis));
+            List<AMHSMessage> dispatchable = new ArrayList<>(due.size());
+            for (AMHSMessage message : due) {
+                message.setNextRetryAt(leaseExpiry);
+                if (message.getId() == null || !inFlight.contains(message.getId())) {
+                    dispatchable.add(message);
+                }
+            }
+            return new ClaimedPage(dispatchable, due.size() == pageSize);
+        });
+        return claimed == null ? new ClaimedPage(List.of(), false) : claimed;
+    }
+
+    private void addPage(List<AMHSMessage> due, IntFunction<List<AMHSMessage>> query) {
+        int remaining = pageSize - due.size();
+        if (remaining > 0) {
+            due.addAll(query.apply(remaining));
+        }
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Messages to dispatch from one claim; {@code full} means the page was filled, so more may be due.
+     */
+    public record ClaimedPage(List<AMHSMessage> messages, boolean full) {
+    }
+}
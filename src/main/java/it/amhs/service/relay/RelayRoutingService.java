@@ -1,53 +1,213 @@
 package it.amhs.service.relay;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import it.amhs.service.address.ORAddress;
 
+/**
+ * Resolves relay next hops from the configured routing table.
+ * <p>
+ * Routes come from {@code amhs.relay.routing-table} followed by the lines of the optional
+ * {@code amhs.relay.routing-file}. The compiled table is an immutable snapshot held in a volatile
+ * field: a changed routing file is parsed and compiled on the polling thread and then swapped in
+ * with a single write, so lookups never wait for a reload. A changed file is only read once its
+ * size and modification time have stayed the same across two polls, so a file still being written
+ * is not picked up half way. A file that fails to parse, that yields no routes, or that would drop
+ * more than {@code amhs.relay.routing-max-shrink-percent} of the current routes leaves the current
+ * snapshot in place until the file changes again.
+ * <p>
+ * Among the next hops of the matched route, endpoints whose circuit is open are skipped and the
+ * fastest healthy one is preferred, as reported through {@link #recordSuccess} and
+ * {@link #recordFailure}. The relay attempt number only decides the order in which equally good
+ * hops are considered. Looking up a next hop has no effect on the circuits; the transfer itself
+ * claims the endpoint through {@link #tryAcquire} and then reports its outcome.
+ */
 @Service
 public class RelayRoutingService {
 
-    private final List<RouteEntry> routeEntries;
+    private static final Logger logger = LoggerFactory.getLogger(RelayRoutingService.class);
+    private static final double SWITCH_MARGIN = 0.8;
 
-    public RelayRoutingService(@Value("${amhs.relay.routing-table:}") String routingTable) {
-        this.routeEntries = parse(routingTable);
+    private final String routingTable;
+    private final Path routingFile;
+    private final int maxShrinkPercent;
+    private final NextHopHealth health;
+    private volatile RouteTrie routes;
+    private FileStamp loadedStamp;
+    private FileStamp changedStamp;
+    private FileStamp rejectedStamp;
+
+    public RelayRoutingService(
+        @Value("${amhs.relay.routing-table:}") String routingTable,
+        @Value("${amhs.relay.routing-file:}") String routingFile,
+        @Value("${amhs.relay.routing-max-shrink-percent:50}") int maxShrinkPercent,
+        NextHopHealth health
+    ) {
+        if (maxShrinkPercent < 0 || maxShrinkPercent > 100) {
+            throw new IllegalArgumentException("amhs.relay.routing-max-shrink-percent must be between 0 and 100");
+        }
+        this.routingTable = routingTable;
+        this.routingFile = StringUtils.hasText(routingFile) ? Path.of(routingFile.trim()) : null;
+        this.maxShrinkPercent = maxShrinkPercent;
+        this.health = health;
+        reload();
     }
 
+    /**
+     * Returns the next hop of the most specific route matching the recipient; routes listed
+     * earlier win among equally specific ones.
+     */
     public Optional<RelayNextHop> findNextHop(AMHSMessageEnvelope envelope, int attempt) {
-        ORAddress recipient = envelope.recipient();
-        for (RouteEntry entry : routeEntries) {
-            if (!entry.matches(recipient.attributes())) {
-                continue;
-            }
-            if (entry.nextHops().isEmpty()) {
-                continue;
-            }
-            int index = Math.floorMod(attempt, entry.nextHops().size());
-            return Optional.of(new RelayNextHop(entry.nextHops().get(index), entry.criteria()));
+        RouteTrie.Route route = routes.find(envelope.recipient());
+        if (route == null) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return Optional.of(new RelayNextHop(selectHop(route.nextHops(), attempt), route.criteria()));
+    }
+
+    /**
+     * Claims {@code endpoint} for a transfer about to start. Fails while its circuit is open or
+     * while another transfer is the half-open probe; a successful claim must be followed by
+     * {@link #recordSuccess} or {@link #recordFailure}.
+     */
+    public boolean tryAcquire(String endpoint) {
+        return health.tryAcquire(endpoint, System.nanoTime());
+    }
+
+    public void recordSuccess(String endpoint, long latencyNanos) {
+        health.recordSuccess(endpoint, latencyNanos);
+    }
+
+    public void recordFailure(String endpoint) {
+        health.recordFailure(endpoint);
     }
 
     public boolean hasRoutesConfigured() {
-        return !routeEntries.isEmpty();
+        return routes.size() > 0;
     }
 
-    private List<RouteEntry> parse(String routingTable) {
-        if (!StringUtils.hasText(routingTable)) {
-            return List.of();
+    @Scheduled(fixedDelayString = "${amhs.relay.routing-file-poll-ms:10000}")
+    public synchronized void reloadIfChanged() {
+        if (routingFile == null) {
+            return;
+        }
+        FileStamp stamp;
+        try {
+            stamp = FileStamp.of(routingFile);
+        } catch (IOException ex) {
+            logger.warn("Keeping current relay routing table; cannot stat {}: {}", routingFile, ex.getMessage());
+            return;
+        }
+        if (stamp.equals(loadedStamp) || stamp.equals(rejectedStamp)) {
+            changedStamp = null;
+            return;
+        }
+        if (!stamp.equals(changedStamp)) {
+            // may still be being written; read it once the next poll sees the same stamp
+            changedStamp = stamp;
+            return;
+        }
+        changedStamp = null;
+        try {
+            reload();
+        } catch (RuntimeException ex) {
+            rejectedStamp = stamp;
+            logger.warn("Keeping current relay routing table; reload from {} failed: {}", routingFile, ex.getMessage());
+        }
+    }
+
+    /**
+     * Re-reads the routing sources, swaps in the new snapshot and returns what changed. The
+     * current snapshot is kept if the sources cannot be read or parsed, if the routing file
+     * changes while it is read, or if the new table is empty or much smaller than the current one.
+     */
+    public synchronized RoutingDiff reload() {
+        FileStamp stamp = null;
+        List<RouteTrie.Route> parsed = new ArrayList<>();
+        parse(List.of(routingTable == null ? new String[0] : routingTable.split(";")), parsed);
+        if (routingFile != null) {
+            try {
+                stamp = FileStamp.of(routingFile);
+                parse(Files.readAllLines(routingFile, StandardCharsets.UTF_8), parsed);
+                if (!stamp.equals(FileStamp.of(routingFile))) {
+                    throw new IllegalStateException("Relay routing file " + routingFile + " changed while being read");
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to read relay routing file " + routingFile, ex);
+            }
+        }
+        RouteTrie compiled = RouteTrie.compile(parsed);
+
+        RouteTrie previous = routes;
+        if (previous != null) {
+            validate(previous.size(), compiled.size());
         }
+        routes = compiled;
+        loadedStamp = stamp;
+        rejectedStamp = null;
 
-        List<RouteEntry> routes = new ArrayList<>();
-        String[] rows = routingTable.split(";");
+        RoutingDiff diff = diff(previous == null ? List.of() : previous.routes(), compiled.routes());
+        if (previous != null) {
+            logger.info("Relay routing table reloaded: {} route(s), {} added, {} removed", compiled.size(), diff.added().size(), diff.removed().size());
+            diff.added().forEach(route -> logger.info("Relay route added: {}", route));
+            diff.removed().forEach(route -> logger.info("Relay route removed: {}", route));
+        }
+        return diff;
+    }
+
+    private void validate(int currentSize, int newSize) {
+        if (currentSize == 0) {
+            return;
+        }
+        if (newSize == 0) {
+            throw new IllegalStateException("Reloaded relay routing table is empty");
+        }
+        if ((long) (currentSize - newSize) * 100 > (long) currentSize * maxShrinkPercent) {
+            throw new IllegalStateException("Reloaded relay routing table would shrink from " + currentSize + " to " + newSize
+                + " route(s), more than amhs.relay.routing-max-shrink-percent=" + maxShrinkPercent);
+        }
+    }
+
+    private String selectHop(List<String> hops, int attempt) {
+        int size = hops.size();
+        long now = System.nanoTime();
+        int best = -1;
+        double bestScore = 0.0;
+        for (int offset = 0; offset < size; offset++) {
+            int index = Math.floorMod(attempt + offset, size);
+            String hop = hops.get(index);
+            if (!health.isAvailable(hop, now)) {
+                continue;
+            }
+            double score = health.score(hop);
+            if (best < 0 || score < bestScore * SWITCH_MARGIN) {
+                best = index;
+                bestScore = score;
+            }
+        }
+        return hops.get(best < 0 ? Math.floorMod(attempt, size) : best);
+    }
+
+    private static void parse(List<String> rows, List<RouteTrie.Route> routes) {
         for (String row : rows) {
-            if (!StringUtils.hasText(row) || !row.contains("->")) {
+            if (!StringUtils.hasText(row) || !row.contains("->") || row.trim().startsWith("#")) {
                 continue;
             }
 
@@ -59,18 +219,35 @@ public class RelayRoutingService {
                 .filter(StringUtils::hasText)
                 .map(h -> h.toLowerCase(Locale.ROOT))
                 .toList();
-            routes.add(new RouteEntry(criteria, hops));
+            routes.add(new RouteTrie.Route(criteria, hops, routes.size()));
+        }
+    }
+
+    private static RoutingDiff diff(List<RouteTrie.Route> before, List<RouteTrie.Route> after) {
+        Set<String> previous = definitions(before);
+        Set<String> current = definitions(after);
+        List<String> added = current.stream().filter(route -> !previous.contains(route)).toList();
+        List<String> removed = previous.stream().filter(route -> !current.contains(route)).toList();
+        return new RoutingDiff(added, removed);
+    }
+
+    private static Set<String> definitions(List<RouteTrie.Route> routes) {
+        Set<String> definitions = new LinkedHashSet<>();
+        for (RouteTrie.Route route : routes) {
+            definitions.add(route.definition());
         }
-        return List.copyOf(routes);
+        return definitions;
     }
 
-    private record RouteEntry(Map<String, String> criteria, List<String> nextHops) {
-        boolean matches(Map<String, String> recipient) {
-            return criteria.entrySet().stream()
-                .allMatch(e -> e.getValue().equalsIgnoreCase(recipient.getOrDefault(e.getKey(), "")));
+    private record FileStamp(FileTime modified, long size) {
+        static FileStamp of(Path file) throws IOException {
+            return new FileStamp(Files.getLastModifiedTime(file), Files.size(file));
         }
     }
 
+    public record RoutingDiff(List<String> added, List<String> removed) {
+    }
+
     public record RelayNextHop(String endpoint, Map<String, String> matchedRoute) {
     }
 
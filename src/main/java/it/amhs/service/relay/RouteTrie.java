@@ -0,0 +1,145 @@
+package it.amhs.service.relay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import it.amhs.service.address.ORAddress;
+
+/**
+ * Routing table compiled into a trie over O/R attributes in hierarchy order
+ * (C, ADMD, PRMD, O, OU1..OU4, personal attributes, then any other keys).
+ * <p>
+ * A route only adds edges for the attributes it constrains, so a node may branch to any deeper
+ * level. Lookup follows every edge whose value equals the address attribute, ignoring case, and
+ * returns the route constraining the most attributes; among equally specific routes the one
+ * listed first in the table wins. Lookup does not allocate beyond upper-casing values that are
+ * not upper case already.
+ */
+final class RouteTrie {
+
+    private static final List<String> HIERARCHY = List.of("C", "ADMD", "PRMD", "O", "OU1", "OU2", "OU3", "OU4", "CN", "S", "G", "I", "NUMUID");
+
+    record Route(Map<String, String> criteria, List<String> nextHops, int order) {
+
+        /**
+         * Returns the route in routing-table syntax, e.g. {@code /C=IT/ADMD=ICAO->mta1:102|mta2:102}.
+         */
+        String definition() {
+            StringBuilder builder = new StringBuilder();
+            criteria.forEach((key, value) -> builder.append('/').append(key).append('=').append(value));
+            return builder.append("->").append(String.join("|", nextHops)).toString();
+        }
+    }
+
+    private final String[] levels;
+    private final Node root;
+    private final List<Route> routes;
+
+    private RouteTrie(String[] levels, Node root, List<Route> routes) {
+        this.levels = levels;
+        this.root = root;
+        this.routes = routes;
+    }
+
+    static RouteTrie compile(List<Route> routes) {
+        List<String> levelKeys = new ArrayList<>(HIERARCHY);
+        TreeSet<String> otherKeys = new TreeSet<>();
+        for (Route route : routes) {
+            for (String key : route.criteria().keySet()) {
+                if (!HIERARCHY.contains(key)) {
+                    otherKeys.add(key);
+                }
+            }
+        }
+        levelKeys.addAll(otherKeys);
+        String[] levels = levelKeys.toArray(String[]::new);
+
+        Node root = new Node(levels.length);
+        for (Route route : routes) {
+            if (route.nextHops().isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (int level = 0; level < levels.length; level++) {
+                String value = route.criteria().get(levels[level]);
+                if (value != null) {
+                    node = node.child(level, normalize(value), levels.length);
+                }
+            }
+            if (node.route == null) {
+                node.route = route;
+            }
+        }
+        return new RouteTrie(levels, root, List.copyOf(routes));
+    }
+
+    Route find(ORAddress address) {
+        return find(root, address);
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    List<Route> routes() {
+        return routes;
+    }
+
+    private Route find(Node node, ORAddress address) {
+        Route best = node.route;
+        for (int level : node.branchLevels) {
+            String value = address.get(levels[level]);
+            if (value == null) {
+                continue;
+            }
+            Node child = node.children[level].get(normalize(value));
+            if (child == null) {
+                continue;
+            }
+            Route candidate = find(child, address);
+            if (candidate != null && (best == null || moreSpecific(candidate, best))) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static boolean moreSpecific(Route candidate, Route current) {
+        int candidateSize = candidate.criteria().size();
+        int currentSize = current.criteria().size();
+        return candidateSize > currentSize || (candidateSize == currentSize && candidate.order() < current.order());
+    }
+
+    private static String normalize(String value) {
+        return value.toUpperCase(Locale.ROOT);
+    }
+
+    private static final class Node {
+        private final Map<String, Node>[] children;
+        private int[] branchLevels = new int[0];
+        private Route route;
+
+        @SuppressWarnings("unchecked")
+        Node(int levelCount) {
+            this.children = new Map[levelCount];
+        }
+
+        Node child(int level, String value, int levelCount) {
+            if (children[level] == null) {
+                children[level] = new HashMap<>();
+                int position = -Arrays.binarySearch(branchLevels, level) - 1;
+                int[] grown = new int[branchLevels.length + 1];
+                System.arraycopy(branchLevels, 0, grown, 0, position);
+                grown[position] = level;
+                System.arraycopy(branchLevels, position, grown, position + 1, branchLevels.length - position);
+                branchLevels = grown;
+            }
+            return children[level].computeIfAbsent(value, key -> new Node(levelCount));
+        }
+    }
+}
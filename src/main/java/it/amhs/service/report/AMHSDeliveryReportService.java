@@ -32,6 +32,7 @@ public class AMHSDeliveryReportService {
     private final AMHSMessageStateMachine stateMachine;
     private final X411DiagnosticMapper diagnosticMapper;
     private final X411DeliveryReportApduCodec reportApduCodec;
+    private final ReportNotificationHub notificationHub;
 
     private static final int BASIC_PROFILE_MAX_RETURN_CONTENT_OCTETS = 2048;
     private static final int EXTENDED_PROFILE_MAX_RETURN_CONTENT_OCTETS = 8192;
@@ -40,13 +41,15 @@ public class AMHSDeliveryReportService {
         AMHSDeliveryReportRepository deliveryReportRepository,
         AMHSMessageRepository messageRepository,
         AMHSMessageStateMachine stateMachine,
-        X411DiagnosticMapper diagnosticMapper
+        X411DiagnosticMapper diagnosticMapper,
+        ReportNotificationHub notificationHub
     ) {
         this.deliveryReportRepository = deliveryReportRepository;
         this.messageRepository = messageRepository;
         this.stateMachine = stateMachine;
         this.diagnosticMapper = diagnosticMapper;
         this.reportApduCodec = new X411DeliveryReportApduCodec();
+        this.notificationHub = notificationHub;
     }
 
     public void setReportExpiration(AMHSMessage message) {
@@ -56,7 +59,14 @@ public class AMHSDeliveryReportService {
     }
 
     public void createDeliveryReport(AMHSMessage message) {
-        AMHSDeliveryReport report = buildReport(
+        save(buildDeliveryReport(message));
+    }
+
+    /**
+     * Builds the delivery report for {@code message} without persisting it.
+     */
+    public AMHSDeliveryReport buildDeliveryReport(AMHSMessage message) {
+        return buildReport(
             message,
             message.getRecipient(),
             AMHSReportType.DR,
@@ -66,7 +76,6 @@ public class AMHSDeliveryReportService {
             null,
             null
         );
-        deliveryReportRepository.save(report);
     }
 
 
@@ -148,6 +157,13 @@ public class AMHSDeliveryReportService {
     }
 
     public void createNonDeliveryReport(AMHSMessage message, String reason, String diagnosticCode, AMHSDeliveryStatus status) {
+        save(buildNonDeliveryReport(message, reason, diagnosticCode, status));
+    }
+
+    /**
+     * Builds the single-recipient non-delivery report for {@code message} without persisting it.
+     */
+    public AMHSDeliveryReport buildNonDeliveryReport(AMHSMessage message, String reason, String diagnosticCode, AMHSDeliveryStatus status) {
         X411DeliveryReportApduCodec.NonDeliveryReportApdu apdu = new X411DeliveryReportApduCodec.NonDeliveryReportApdu(
             message.getMtsIdentifier() == null ? message.getMessageId() : message.getMtsIdentifier(),
             shouldReturnContent(message),
@@ -156,7 +172,16 @@ public class AMHSDeliveryReportService {
         );
         byte[] rawNdrApdu = reportApduCodec.encodeNonDeliveryReport(apdu);
         X411DeliveryReportApduCodec.ValidationResult validationResult = reportApduCodec.validateEncodedNonDeliveryReport(rawNdrApdu);
-        createNonDeliveryReportForRecipient(message, message.getRecipient(), reason, diagnosticCode, status, rawNdrApdu, validationResult);
+        return buildReport(
+            message,
+            message.getRecipient(),
+            AMHSReportType.NDR,
+            status,
+            diagnosticCode,
+            reason,
+            rawNdrApdu,
+            validationResult
+        );
     }
 
     private void createNonDeliveryReportForRecipient(
@@ -178,7 +203,12 @@ public class AMHSDeliveryReportService {
             rawNdrApdu,
             validationResult
         );
+        save(report);
+    }
+
+    private void save(AMHSDeliveryReport report) {
         deliveryReportRepository.save(report);
+        notificationHub.reportSaved(report);
     }
 
     @Scheduled(fixedDelayString = "${amhs.dr.expiration-check-ms:30000}")
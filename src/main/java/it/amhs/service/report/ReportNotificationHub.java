@@ -0,0 +1,133 @@
+package it.amhs.service.report;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import it.amhs.domain.AMHSDeliveryReport;
+
+/**
+ * Wakes threads waiting for a delivery report instead of having them poll the database.
+ * <p>
+ * Waiters register for a message id or a recipient address before checking the database and then
+ * park until a matching report is published or their timeout elapses. Reports saved inside a
+ * transaction are published after it commits, so a woken waiter always finds the report. Only
+ * reports saved by this node are signalled.
+ */
+@Component
+public class ReportNotificationHub {
+
+    private final ConcurrentHashMap<Long, Signal> byMessageId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Signal> byRecipient = new ConcurrentHashMap<>();
+
+    public Waiter awaitMessage(Long messageId) {
+        return register(byMessageId, messageId);
+    }
+
+    public Waiter awaitRecipient(String recipient) {
+        return register(byRecipient, recipientKey(recipient));
+    }
+
+    public void reportSaved(AMHSDeliveryReport report) {
+        if (report == null) {
+            return;
+        }
+        Long messageId = report.getMessage() == null ? null : report.getMessage().getId();
+        String recipient = recipientKey(report.getRecipient());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fire(messageId, recipient);
+                }
+            });
+        } else {
+            fire(messageId, recipient);
+        }
+    }
+
+    int waiting() {
+        return byMessageId.size() + byRecipient.size();
+    }
+
+    private void fire(Long messageId, String recipient) {
+        if (messageId != null) {
+            fire(byMessageId.remove(messageId));
+        }
+        if (recipient != null) {
+            fire(byRecipient.remove(recipient));
+        }
+    }
+
+    private static void fire(Signal signal) {
+        if (signal != null) {
+            signal.fired.complete(null);
+        }
+    }
+
+    private static <K> Waiter register(ConcurrentHashMap<K, Signal> signals, K key) {
+        if (key == null) {
+            return new Waiter(new Signal(), () -> { });
+        }
+        Signal signal = signals.compute(key, (ignored, current) -> {
+            Signal registered = current == null ? new Signal() : current;
+            registered.waiters++;
+            return registered;
+        });
+        return new Waiter(signal, () -> signals.computeIfPresent(key, (ignored, current) ->
+            current != signal || --current.waiters > 0 ? current : null
+        ));
+    }
+
+    private static String recipientKey(String recipient) {
+        return recipient == null || recipient.isBlank() ? null : AMHSDeliveryReport.normalizeRecipient(recipient);
+    }
+
+    private static final class Signal {
+        private final CompletableFuture<Void> fired = new CompletableFuture<>();
+        private int waiters;
+    }
+
+    /**
+     * Registration for one wake-up. Register before checking the database so a report committed in
+     * between is not missed, and close once done waiting.
+     */
+    public static final class Waiter implements AutoCloseable {
+
+        private final Signal signal;
+        private final Runnable release;
+
+        private Waiter(Signal signal, Runnable release) {
+            this.signal = signal;
+            this.release = release;
+        }
+
+        /**
+         * Returns {@code true} if a matching report was published, {@code false} on timeout.
+         */
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            if (timeoutMillis <= 0) {
+                return signal.fired.isDone();
+            }
+            try {
+                signal.fired.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException ex) {
+                return false;
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Report signal failed", ex.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            release.run();
+        }
+    }
+}
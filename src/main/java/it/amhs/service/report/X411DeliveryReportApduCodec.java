@@ -1,11 +1,14 @@
 package it.amhs.service.report;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 import it.amhs.asn1.BerCodec;
+import it.amhs.asn1.BerReader;
 import it.amhs.asn1.BerTlv;
+import it.amhs.asn1.BerWriter;
 import it.amhs.domain.AMHSDeliveryStatus;
 import it.amhs.service.address.ORAddress;
 import it.amhs.service.address.ORNameMapper;
@@ -22,15 +25,13 @@ public class X411DeliveryReportApduCodec {
         if (report.reportedRecipientInfo() == null || report.reportedRecipientInfo().isEmpty()) {
             throw new IllegalArgumentException("NonDeliveryReport requires at least one ReportedRecipientInfo");
         }
-        byte[] payload = concat(
-            encodeMtsIdentifier(report.mtsIdentifier(), report.reportedRecipientInfo()),
-            encodeBoolean(1, report.returnOfContent()),
-            encodeReportedRecipientInfo(report.reportedRecipientInfo()),
-            encodeOptionalIa5(3, report.nonDeliveryReason())
-        );
-        return BerCodec.encode(
-            new BerTlv(X411TagMap.TAG_CLASS_APPLICATION, true, X411TagMap.APDU_NON_DELIVERY_REPORT, 0, payload.length, payload)
-        );
+        BerWriter writer = new BerWriter(128 + 96 * report.reportedRecipientInfo().size());
+        writer.startConstructed(X411TagMap.TAG_CLASS_APPLICATION, X411TagMap.APDU_NON_DELIVERY_REPORT);
+        encodeMtsIdentifier(writer, report.mtsIdentifier(), report.reportedRecipientInfo());
+        encodeBoolean(writer, 1, report.returnOfContent());
+        encodeReportedRecipientInfo(writer, report.reportedRecipientInfo());
+        encodeOptionalIa5(writer, 3, report.nonDeliveryReason());
+        return writer.end().toByteArray();
     }
 
     public ValidationResult validateEncodedNonDeliveryReport(byte[] apdu) {
@@ -62,112 +63,112 @@ public class X411DeliveryReportApduCodec {
         if (tlv.tagClass() != X411TagMap.TAG_CLASS_APPLICATION || !tlv.constructed() || tlv.tagNumber() != X411TagMap.APDU_NON_DELIVERY_REPORT) {
             throw new IllegalArgumentException("Unexpected APDU tag for NonDeliveryReport");
         }
-        List<BerTlv> fields = BerCodec.decodeAll(tlv.value());
-        String mtsId = decodeMtsIdentifier(fields);
-        boolean returnContent = BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, 1)
-            .map(flag -> flag.value().length > 0 && flag.value()[0] != 0)
-            .orElse(false);
-        List<ReportedRecipientInfo> recipients = decodeRecipients(fields);
-        String reason = BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, 3)
-            .map(v -> new String(v.value(), StandardCharsets.US_ASCII))
-            .orElse(null);
+        BerTlv[] fields = BerReader.over(tlv).contextFields(3);
+        String mtsId = decodeMtsIdentifier(fields[0]);
+        boolean returnContent = fields[1] != null && fields[1].length() > 0 && fields[1].value()[0] != 0;
+        List<ReportedRecipientInfo> recipients = decodeRecipients(fields[2]);
+        String reason = fields[3] == null ? null : fields[3].valueAsString(StandardCharsets.US_ASCII);
         return new NonDeliveryReportApdu(mtsId, returnContent, recipients, reason);
     }
 
-    private String decodeMtsIdentifier(List<BerTlv> fields) {
-        BerTlv mtsField = BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, 0)
-            .orElseThrow(() -> new IllegalArgumentException("Missing report field 'mtsIdentifier'"));
+    private String decodeMtsIdentifier(BerTlv mtsField) {
+        if (mtsField == null) {
+            throw new IllegalArgumentException("Missing report field 'mtsIdentifier'");
+        }
         if (!mtsField.constructed()) {
-            String legacy = new String(mtsField.value(), StandardCharsets.US_ASCII).trim();
+            String legacy = mtsField.valueAsString(StandardCharsets.US_ASCII).trim();
             if (legacy.isBlank()) {
                 throw new IllegalArgumentException("Missing report field 'mtsIdentifier'");
             }
             return legacy;
         }
 
-        List<BerTlv> mtsFields = BerCodec.decodeAll(mtsField.value());
-        if (BerCodec.findOptional(mtsFields, X411TagMap.TAG_CLASS_CONTEXT, 1).isPresent()) {
-            return decodeRequiredIa5(mtsFields, 1, "mtsIdentifier.messageIdentifier.localIdentifier");
+        BerTlv[] mtsFields = BerReader.over(mtsField).contextFields(1);
+        if (mtsFields[1] != null) {
+            return decodeRequiredIa5(mtsFields[1], "mtsIdentifier.messageIdentifier.localIdentifier");
         }
-        return decodeRequiredIa5(mtsFields, 0, "mtsIdentifier.localIdentifier");
+        return decodeRequiredIa5(mtsFields[0], "mtsIdentifier.localIdentifier");
     }
 
-    private List<ReportedRecipientInfo> decodeRecipients(List<BerTlv> fields) {
-        BerTlv container = BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, 2)
-            .orElseThrow(() -> new IllegalArgumentException("Missing reported-recipient-info"));
-        List<BerTlv> items = BerCodec.decodeAll(container.value());
-        if (items.isEmpty()) {
+    private List<ReportedRecipientInfo> decodeRecipients(BerTlv container) {
+        if (container == null) {
+            throw new IllegalArgumentException("Missing reported-recipient-info");
+        }
+        BerReader items = BerReader.over(container);
+        if (!items.hasNext()) {
             throw new IllegalArgumentException("reported-recipient-info must not be empty");
         }
-        return items.stream().map(item -> {
-            List<BerTlv> recipientFields = BerCodec.decodeAll(item.value());
-            String recipient = decodeRecipient(recipientFields);
-            String statusValue = decodeDeliveryStatus(recipientFields);
-            Integer diagnostic = BerCodec.findOptional(recipientFields, X411TagMap.TAG_CLASS_CONTEXT, 2)
-                .map(this::decodeDiagnosticCode)
-                .orElse(null);
-            return new ReportedRecipientInfo(recipient, statusValue, diagnostic);
-        }).toList();
+        List<ReportedRecipientInfo> recipients = new ArrayList<>();
+        while (items.next()) {
+            BerTlv[] recipientFields = items.enter().contextFields(2);
+            String recipient = decodeRecipient(recipientFields[0]);
+            String statusValue = decodeDeliveryStatus(recipientFields[1]);
+            Integer diagnostic = recipientFields[2] == null ? null : decodeDiagnosticCode(recipientFields[2]);
+            recipients.add(new ReportedRecipientInfo(recipient, statusValue, diagnostic));
+        }
+        return List.copyOf(recipients);
     }
 
-    private byte[] encodeReportedRecipientInfo(List<ReportedRecipientInfo> recipients) {
-        byte[] content = concat(recipients.stream().map(this::encodeRecipientInfo).toArray(byte[][]::new));
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, 2, 0, content.length, content));
+    private void encodeReportedRecipientInfo(BerWriter writer, List<ReportedRecipientInfo> recipients) {
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, 2);
+        for (ReportedRecipientInfo info : recipients) {
+            encodeRecipientInfo(writer, info);
+        }
+        writer.end();
     }
 
-    private byte[] encodeRecipientInfo(ReportedRecipientInfo info) {
-        byte[] value = concat(
-            encodeRecipient(info.recipient()),
-            encodeDeliveryStatus(info.deliveryStatus()),
-            encodeOptionalDiagnostic(2, info.diagnosticCode())
-        );
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, 16, 0, value.length, value));
+    private void encodeRecipientInfo(BerWriter writer, ReportedRecipientInfo info) {
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, 16);
+        encodeRecipient(writer, info.recipient());
+        encodeDeliveryStatus(writer, info.deliveryStatus());
+        encodeOptionalDiagnostic(writer, 2, info.diagnosticCode());
+        writer.end();
     }
 
-    private byte[] encodeMtsIdentifier(String mtsIdentifier, List<ReportedRecipientInfo> recipients) {
-        byte[] localIdentifier = encodeIa5(1, mtsIdentifier);
-        byte[] globalDomainIdentifier = deriveGlobalDomainIdentifier(recipients);
-        byte[] mtsContent = globalDomainIdentifier.length == 0
-            ? encodeIa5(0, mtsIdentifier)
-            : concat(globalDomainIdentifier, localIdentifier);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, 0, 0, mtsContent.length, mtsContent));
+    private void encodeMtsIdentifier(BerWriter writer, String mtsIdentifier, List<ReportedRecipientInfo> recipients) {
+        if (mtsIdentifier == null || mtsIdentifier.isBlank()) {
+            throw new IllegalArgumentException("Required report field is blank [tag=1]");
+        }
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, 0);
+        if (encodeGlobalDomainIdentifier(writer, recipients)) {
+            encodeIa5(writer, 1, mtsIdentifier);
+        } else {
+            encodeIa5(writer, 0, mtsIdentifier);
+        }
+        writer.end();
     }
 
-    private byte[] deriveGlobalDomainIdentifier(List<ReportedRecipientInfo> recipients) {
+    private boolean encodeGlobalDomainIdentifier(BerWriter writer, List<ReportedRecipientInfo> recipients) {
         if (recipients == null || recipients.isEmpty()) {
-            return new byte[0];
+            return false;
         }
         ORAddress address = ORAddress.parse(recipients.get(0).recipient().trim());
         String country = address.get("C");
         String admd = address.get("ADMD");
         String prmd = address.get("PRMD");
         if (country == null || admd == null || prmd == null) {
-            return new byte[0];
-        }
-        byte[] content = concat(
-            encodeExplicitPrintable(0, country),
-            encodeExplicitPrintable(1, admd),
-            encodeOptionalExplicitPrintable(2, prmd)
-        );
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, 0, 0, content.length, content));
+            return false;
+        }
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, 0);
+        encodeExplicitPrintable(writer, 0, country);
+        encodeExplicitPrintable(writer, 1, admd);
+        encodeOptionalExplicitPrintable(writer, 2, prmd);
+        writer.end();
+        return true;
     }
 
-    private byte[] encodeRecipient(String recipient) {
+    private void encodeRecipient(BerWriter writer, String recipient) {
         if (recipient == null || recipient.isBlank()) {
             throw new IllegalArgumentException("Required report field is blank [recipient]");
         }
         ORAddress address = ORAddress.parse(recipient.trim());
-        byte[] addressContent = concat(address.attributes().entrySet().stream()
-            .map(entry -> encodeAddressAttribute(entry.getKey(), entry.getValue()))
-            .toArray(byte[][]::new));
-        byte[] orAddress = BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, 1, 0, addressContent.length, addressContent));
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, 0, 0, orAddress.length, orAddress));
-    }
-
-    private byte[] encodeAddressAttribute(String key, String value) {
-        int tag = mapAddressAttributeTag(key);
-        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, tag, 0, bytes.length, bytes));
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, 0);
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, 1);
+        for (var entry : address.attributes().entrySet()) {
+            int tag = mapAddressAttributeTag(entry.getKey());
+            writer.writeString(X411TagMap.TAG_CLASS_CONTEXT, tag, entry.getValue(), StandardCharsets.US_ASCII);
+        }
+        writer.end().end();
     }
 
     private int mapAddressAttributeTag(String key) {
@@ -193,29 +194,30 @@ public class X411DeliveryReportApduCodec {
         };
     }
 
-    private String decodeRecipient(List<BerTlv> fields) {
-        BerTlv recipientField = BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, 0)
-            .orElseThrow(() -> new IllegalArgumentException("Missing report field 'recipient'"));
+    private String decodeRecipient(BerTlv recipientField) {
+        if (recipientField == null) {
+            throw new IllegalArgumentException("Missing report field 'recipient'");
+        }
 
         if (!recipientField.constructed()) {
-            return decodeRequiredIa5(fields, 0, "recipient");
+            return decodeRequiredIa5(recipientField, "recipient");
         }
 
         return ORNameMapper.fromBer(recipientField).orAddress().toCanonicalString();
     }
 
-    private byte[] encodeDeliveryStatus(String status) {
+    private void encodeDeliveryStatus(BerWriter writer, String status) {
         if (status == null || status.isBlank()) {
             throw new IllegalArgumentException("Required report field is blank [status]");
         }
         int code = deliveryStatusToCode(status);
-        byte[] value = encodeInteger(code);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, 1, 0, value.length, value));
+        writer.writePrimitive(X411TagMap.TAG_CLASS_CONTEXT, 1, encodeInteger(code));
     }
 
-    private String decodeDeliveryStatus(List<BerTlv> fields) {
-        BerTlv statusField = BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, 1)
-            .orElseThrow(() -> new IllegalArgumentException("Missing report field 'status'"));
+    private String decodeDeliveryStatus(BerTlv statusField) {
+        if (statusField == null) {
+            throw new IllegalArgumentException("Missing report field 'status'");
+        }
         if (looksLikeAscii(statusField.value())) {
             return new String(statusField.value(), StandardCharsets.US_ASCII).trim();
         }
@@ -224,13 +226,13 @@ public class X411DeliveryReportApduCodec {
 
     private Integer decodeDiagnosticCode(BerTlv tlv) {
         if (tlv.constructed()) {
-            List<BerTlv> components = BerCodec.decodeAll(tlv.value());
-            int reason = BerCodec.findOptional(components, X411TagMap.TAG_CLASS_CONTEXT, 0)
-                .map(value -> decodeInteger(value.value()))
-                .orElse(X411Diagnostic.ReasonCode.UNABLE_TO_TRANSFER.code());
-            int diagnostic = BerCodec.findOptional(components, X411TagMap.TAG_CLASS_CONTEXT, 1)
-                .map(value -> decodeInteger(value.value()))
-                .orElse(X411Diagnostic.DEFAULT_DIAGNOSTIC_CODE);
+            BerTlv[] components = BerReader.over(tlv).contextFields(1);
+            int reason = components[0] == null
+                ? X411Diagnostic.ReasonCode.UNABLE_TO_TRANSFER.code()
+                : decodeInteger(components[0].value());
+            int diagnostic = components[1] == null
+                ? X411Diagnostic.DEFAULT_DIAGNOSTIC_CODE
+                : decodeInteger(components[1].value());
             if (!X411Diagnostic.ReasonCode.fromCodeOptional(reason).isPresent()) {
                 throw new IllegalArgumentException("Unsupported X.411 reason-code " + reason);
             }
@@ -284,75 +286,57 @@ public class X411DeliveryReportApduCodec {
 
 
 
-    private byte[] encodeOptionalDiagnostic(int tag, Integer diagnosticCode) {
+    private void encodeOptionalDiagnostic(BerWriter writer, int tag, Integer diagnosticCode) {
         if (diagnosticCode == null) {
-            return new byte[0];
+            return;
         }
         int normalizedDiagnostic = X411Diagnostic.isValidDiagnosticCode(diagnosticCode)
             ? diagnosticCode
             : X411Diagnostic.DEFAULT_DIAGNOSTIC_CODE;
         int reasonCode = X411Diagnostic.ReasonCode.UNABLE_TO_TRANSFER.code();
-        byte[] payload = concat(
-            encodeTaggedInteger(0, reasonCode),
-            encodeTaggedInteger(1, normalizedDiagnostic)
-        );
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, tag, 0, payload.length, payload));
-    }
-
-    private byte[] encodeTaggedInteger(int tag, int value) {
-        byte[] bytes = encodeInteger(value);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, tag, 0, bytes.length, bytes));
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, tag);
+        writer.writePrimitive(X411TagMap.TAG_CLASS_CONTEXT, 0, encodeInteger(reasonCode));
+        writer.writePrimitive(X411TagMap.TAG_CLASS_CONTEXT, 1, encodeInteger(normalizedDiagnostic));
+        writer.end();
     }
 
-    private byte[] encodeExplicitPrintable(int tag, String value) {
-        byte[] bytes = value.trim().getBytes(StandardCharsets.US_ASCII);
-        byte[] printable = BerCodec.encode(new BerTlv(0, false, 19, 0, bytes.length, bytes));
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, true, tag, 0, printable.length, printable));
+    private void encodeExplicitPrintable(BerWriter writer, int tag, String value) {
+        writer.startConstructed(X411TagMap.TAG_CLASS_CONTEXT, tag);
+        writer.writeString(0, 19, value.trim(), StandardCharsets.US_ASCII);
+        writer.end();
     }
 
-    private byte[] encodeOptionalExplicitPrintable(int tag, String value) {
+    private void encodeOptionalExplicitPrintable(BerWriter writer, int tag, String value) {
         if (value == null || value.isBlank()) {
-            return new byte[0];
+            return;
         }
-        return encodeExplicitPrintable(tag, value);
+        encodeExplicitPrintable(writer, tag, value);
     }
 
-    private byte[] encodeIa5(int tag, String value) {
+    private void encodeIa5(BerWriter writer, int tag, String value) {
         if (value == null || value.isBlank()) {
             throw new IllegalArgumentException("Required report field is blank [tag=" + tag + "]");
         }
-        byte[] bytes = value.trim().getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, tag, 0, bytes.length, bytes));
+        writer.writeString(X411TagMap.TAG_CLASS_CONTEXT, tag, value.trim(), StandardCharsets.US_ASCII);
     }
 
-    private String decodeRequiredIa5(List<BerTlv> fields, int tag, String field) {
-        return BerCodec.findOptional(fields, X411TagMap.TAG_CLASS_CONTEXT, tag)
-            .map(v -> new String(v.value(), StandardCharsets.US_ASCII))
-            .filter(s -> !s.isBlank())
-            .orElseThrow(() -> new IllegalArgumentException("Missing report field '" + field + "'"));
+    private String decodeRequiredIa5(BerTlv value, String field) {
+        String decoded = value == null ? null : value.valueAsString(StandardCharsets.US_ASCII);
+        if (decoded == null || decoded.isBlank()) {
+            throw new IllegalArgumentException("Missing report field '" + field + "'");
+        }
+        return decoded;
     }
 
-    private byte[] encodeOptionalIa5(int tag, String value) {
+    private void encodeOptionalIa5(BerWriter writer, int tag, String value) {
         if (value == null || value.isBlank()) {
-            return new byte[0];
+            return;
         }
-        byte[] bytes = value.trim().getBytes(StandardCharsets.US_ASCII);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, tag, 0, bytes.length, bytes));
+        writer.writeString(X411TagMap.TAG_CLASS_CONTEXT, tag, value.trim(), StandardCharsets.US_ASCII);
     }
 
-    private byte[] encodeBoolean(int tag, boolean value) {
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, tag, 0, 1, new byte[] {(byte) (value ? 0xFF : 0x00)}));
-    }
-
-    private byte[] encodeOptionalInteger(int tag, Integer value) {
-        if (value == null) {
-            return new byte[0];
-        }
-        if (value < 0) {
-            throw new IllegalArgumentException("INTEGER value must be non-negative");
-        }
-        byte[] bytes = encodeInteger(value);
-        return BerCodec.encode(new BerTlv(X411TagMap.TAG_CLASS_CONTEXT, false, tag, 0, bytes.length, bytes));
+    private void encodeBoolean(BerWriter writer, int tag, boolean value) {
+        writer.writePrimitive(X411TagMap.TAG_CLASS_CONTEXT, tag, new byte[] {(byte) (value ? 0xFF : 0x00)});
     }
 
     private static byte[] encodeInteger(int value) {
@@ -389,25 +373,6 @@ public class X411DeliveryReportApduCodec {
         return result;
     }
 
-    private static byte[] concat(byte[]... chunks) {
-        int len = 0;
-        for (byte[] chunk : chunks) {
-            if (chunk != null) {
-                len += chunk.length;
-            }
-        }
-        byte[] out = new byte[len];
-        int offset = 0;
-        for (byte[] chunk : chunks) {
-            if (chunk == null || chunk.length == 0) {
-                continue;
-            }
-            System.arraycopy(chunk, 0, out, offset, chunk.length);
-            offset += chunk.length;
-        }
-        return out;
-    }
-
     public record NonDeliveryReportApdu(
         String mtsIdentifier,
         boolean returnOfContent,
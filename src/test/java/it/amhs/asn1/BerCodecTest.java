@@ -2,7 +2,13 @@ package it.amhs.asn1;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -20,8 +26,87 @@ class BerCodecTest {
     }
 
     @Test
-    void shouldRejectIndefiniteLength() {
-        byte[] invalid = new byte[] {0x30, (byte) 0x80, 0x00, 0x00};
+    void shouldDecodeNestedIndefiniteLength() {
+        byte[] encoded = new byte[] {
+            0x30, (byte) 0x80,
+            (byte) 0xA0, (byte) 0x80, (byte) 0x80, 0x02, 'A', 'A', 0x00, 0x00,
+            (byte) 0x81, 0x01, 'B',
+            0x00, 0x00
+        };
+
+        BerTlv root = BerCodec.decodeSingle(encoded);
+        assertTrue(root.indefiniteLength());
+        assertEquals(11, root.length());
+        assertEquals(encoded.length, root.encodedLength());
+
+        List<BerTlv> children = BerCodec.decodeChildren(root);
+        assertEquals(2, children.size());
+        assertEquals("AA", BerCodec.decodeNested(children.get(0)).valueAsString(StandardCharsets.US_ASCII));
+        assertEquals("B", children.get(1).valueAsString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void shouldRejectMalformedIndefiniteLength() {
+        byte[] primitive = new byte[] {0x04, (byte) 0x80, 'A', 0x00, 0x00};
+        byte[] unterminated = new byte[] {0x30, (byte) 0x80, (byte) 0x80, 0x01, 'A'};
+        assertThrows(IllegalArgumentException.class, () -> BerCodec.decodeSingle(primitive));
+        assertThrows(IllegalArgumentException.class, () -> BerCodec.decodeSingle(unterminated));
+    }
+
+    @Test
+    void shouldDecodeChildrenAsViewsOverParentBuffer() {
+        byte[] encoded = new byte[] {0x30, 0x09, (byte) 0xA0, 0x04, (byte) 0x80, 0x02, 'A', 'A', (byte) 0x81, 0x01, 'B'};
+
+        BerTlv root = BerCodec.decodeSingle(encoded);
+        List<BerTlv> children = BerCodec.decodeChildren(root);
+        assertEquals(2, children.size());
+
+        BerTlv nested = BerCodec.decodeNested(children.get(0));
+        assertEquals(0, nested.tagNumber());
+        assertEquals("AA", nested.valueAsString(StandardCharsets.US_ASCII));
+        assertEquals("B", children.get(1).valueAsString(StandardCharsets.US_ASCII));
+
+        ByteBuffer view = children.get(1).valueBuffer();
+        assertEquals(1, view.remaining());
+        assertEquals('B', view.get(0));
+        assertTrue(view.isReadOnly());
+
+        assertArrayEquals(new byte[] {(byte) 0x80, 0x02, 'A', 'A'}, children.get(0).value());
+        assertArrayEquals(new byte[] {(byte) 0xA0, 0x04, (byte) 0x80, 0x02, 'A', 'A'}, BerCodec.encode(children.get(0)));
+        assertEquals(BerCodec.decodeAll(root.value()).size(), children.size());
+    }
+
+    @Test
+    void shouldKeepChildDecodingWithinParentBounds() {
+        byte[] encoded = new byte[] {0x30, 0x03, 0x04, 0x03, 'A', 'B', 'C'};
+
+        BerTlv root = BerCodec.decodeAll(encoded, 0, 2 + 3).get(0);
+        assertThrows(IllegalArgumentException.class, () -> BerCodec.decodeChildren(root));
+    }
+
+    @Test
+    void shouldRejectOverflowingLength() {
+        byte[] invalid = new byte[] {0x04, (byte) 0x84, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x00};
         assertThrows(IllegalArgumentException.class, () -> BerCodec.decodeSingle(invalid));
     }
+
+    @Test
+    void shouldReportTheSameFailuresWithoutThrowing() {
+        byte[] truncated = new byte[] {0x30, 0x05, 0x02};
+        IllegalArgumentException thrown =
+            assertThrows(IllegalArgumentException.class, () -> BerCodec.decodeSingle(truncated));
+
+        DecodeResult<BerTlv> rejected = BerCodec.tryDecodeSingle(truncated);
+        assertFalse(rejected.isDecoded());
+        assertEquals(thrown.getMessage(), rejected.reason());
+        assertFalse(BerCodec.tryDecodeSingle(new byte[0]).isDecoded());
+
+        byte[] encoded = new byte[] {0x30, 0x03, 0x04, 0x03, 'A', 'B', 'C'};
+        BerTlv outOfBounds = BerCodec.decodeAll(encoded, 0, 2 + 3).get(0);
+        assertFalse(BerCodec.tryDecodeChildren(outOfBounds).isDecoded());
+
+        DecodeResult<BerTlv> decoded = BerCodec.tryDecodeSingle(new byte[] {0x30, 0x03, 0x04, 0x01, 'A'});
+        assertTrue(decoded.isDecoded());
+        assertEquals(1, BerCodec.tryDecodeChildren(decoded.value()).orElseThrow().size());
+    }
 }
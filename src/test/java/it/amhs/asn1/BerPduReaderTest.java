@@ -0,0 +1,83 @@
+package it.amhs.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class BerPduReaderTest {
+
+    private static final byte[] DEFINITE = new byte[] {0x30, 0x03, (byte) 0x80, 0x01, 'A'};
+    private static final byte[] INDEFINITE = new byte[] {
+        0x60, (byte) 0x80,
+        (byte) 0xA2, (byte) 0x80, 0x04, 0x02, 'I', 'P', 0x00, 0x00,
+        0x00, 0x00
+    };
+
+    @Test
+    void shouldReadConsecutiveDefiniteAndIndefinitePdus() throws Exception {
+        byte[] stream = new byte[DEFINITE.length + INDEFINITE.length];
+        System.arraycopy(INDEFINITE, 0, stream, 0, INDEFINITE.length);
+        System.arraycopy(DEFINITE, 0, stream, INDEFINITE.length, DEFINITE.length);
+        BerPduReader reader = new BerPduReader(new ByteArrayInputStream(stream), 1024);
+
+        assertArrayEquals(INDEFINITE, reader.read());
+        assertArrayEquals(DEFINITE, reader.read());
+        assertNull(reader.read());
+    }
+
+    @Test
+    void shouldHandOverLargeDefinitePduWithoutAliasingTheNextRead() throws Exception {
+        byte[] large = new byte[4 + 10_000];
+        large[0] = 0x04;
+        large[1] = (byte) 0x82;
+        large[2] = (byte) (10_000 >> 8);
+        large[3] = (byte) 10_000;
+        for (int i = 4; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        byte[] stream = new byte[large.length * 2];
+        System.arraycopy(large, 0, stream, 0, large.length);
+        System.arraycopy(large, 0, stream, large.length, large.length);
+        stream[stream.length - 1] = 0x55;
+        BerPduReader reader = new BerPduReader(new ByteArrayInputStream(stream), 65_536);
+
+        byte[] first = reader.read();
+        byte[] second = reader.read();
+
+        assertArrayEquals(large, first);
+        assertNotSame(first, second);
+        assertArrayEquals(Arrays.copyOfRange(stream, large.length, stream.length), second);
+    }
+
+    @Test
+    void shouldEnforcePduCeiling() {
+        byte[] declared = new byte[] {0x30, (byte) 0x83, 0x10, 0x00, 0x00};
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new BerPduReader(new ByteArrayInputStream(declared), 1024).read()
+        );
+
+        byte[] endless = new byte[4096];
+        for (int i = 0; i < endless.length; i += 2) {
+            endless[i] = 0x30;
+            endless[i + 1] = (byte) 0x80;
+        }
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new BerPduReader(new ByteArrayInputStream(endless), 1024).read()
+        );
+    }
+
+    @Test
+    void shouldRejectTruncatedIndefinitePdu() {
+        byte[] truncated = new byte[] {0x30, (byte) 0x80, 0x04, 0x01, 'A'};
+        assertThrows(EOFException.class, () -> new BerPduReader(new ByteArrayInputStream(truncated), 1024).read());
+    }
+}
@@ -0,0 +1,61 @@
+package it.amhs.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class BerReaderTest {
+
+    private static final byte[] SEQUENCE = new byte[] {
+        0x30, 0x0F,
+        (byte) 0x80, 0x02, 'A', 'A',
+        (byte) 0xA1, 0x03, 0x04, 0x01, 'X',
+        (byte) 0x83, 0x01, 'C',
+        (byte) 0x80, 0x01, 'Z'
+    };
+
+    @Test
+    void shouldWalkElementsAndEnterConstructedValues() {
+        BerReader reader = BerReader.over(BerCodec.decodeSingle(SEQUENCE));
+
+        assertTrue(reader.next());
+        assertTrue(reader.isTag(BerCodec.TAG_CLASS_CONTEXT, 0));
+        assertEquals("AA", reader.string(StandardCharsets.US_ASCII));
+
+        assertTrue(reader.next());
+        assertTrue(reader.constructed());
+        BerReader nested = reader.enter();
+        assertTrue(nested.next());
+        assertEquals(4, nested.tagNumber());
+        assertEquals("X", nested.string(StandardCharsets.US_ASCII));
+        assertFalse(nested.next());
+
+        assertTrue(reader.skipTo(BerCodec.TAG_CLASS_CONTEXT, 0));
+        assertEquals("Z", reader.string(StandardCharsets.US_ASCII));
+        assertFalse(reader.hasNext());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void shouldIndexFirstContextFieldPerTag() {
+        BerTlv[] fields = BerReader.over(BerCodec.decodeSingle(SEQUENCE)).contextFields(3);
+
+        assertEquals("AA", fields[0].valueAsString(StandardCharsets.US_ASCII));
+        assertTrue(fields[1].constructed());
+        assertNull(fields[2]);
+        assertEquals("C", fields[3].valueAsString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void shouldRejectAccessBeforeNext() {
+        BerReader reader = new BerReader(SEQUENCE);
+        assertThrows(IllegalStateException.class, reader::tagNumber);
+        assertThrows(IllegalArgumentException.class, () -> new BerReader(SEQUENCE, 4, SEQUENCE.length));
+    }
+}
@@ -0,0 +1,64 @@
+package it.amhs.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class BerWriterTest {
+
+    @Test
+    void shouldMatchNestedCodecEncoding() {
+        byte[] leaf = "LIRRZQZX".getBytes(StandardCharsets.US_ASCII);
+        byte[] inner = BerCodec.encode(new BerTlv(2, false, 0, 0, leaf.length, leaf));
+        byte[] middle = BerCodec.encode(new BerTlv(2, true, 1, 0, inner.length, inner));
+        byte[] expected = BerCodec.encode(new BerTlv(0, true, 16, 0, middle.length, middle));
+
+        byte[] encoded = new BerWriter(16)
+            .startConstructed(0, 16)
+            .startConstructed(2, 1)
+            .writeString(2, 0, "LIRRZQZX", StandardCharsets.US_ASCII)
+            .end()
+            .end()
+            .toByteArray();
+
+        assertArrayEquals(expected, encoded);
+    }
+
+    @Test
+    void shouldBackPatchLongFormLengths() {
+        byte[] medium = new byte[200];
+        byte[] large = new byte[300];
+        Arrays.fill(medium, (byte) 'M');
+        Arrays.fill(large, (byte) 'L');
+
+        byte[] encoded = new BerWriter(16)
+            .startConstructed(2, 9)
+            .startConstructed(2, 0)
+            .writePrimitive(2, 0, medium)
+            .end()
+            .writePrimitive(2, 1, large)
+            .end()
+            .toByteArray();
+
+        BerTlv root = BerCodec.decodeSingle(encoded);
+        assertEquals(4, root.headerLength());
+        assertEquals(encoded.length - 4, root.length());
+        BerTlv first = BerCodec.decodeChildren(root).get(0);
+        assertEquals(3, first.headerLength());
+        assertArrayEquals(medium, BerCodec.decodeNested(first).value());
+        assertArrayEquals(large, BerCodec.decodeChildren(root).get(1).value());
+    }
+
+    @Test
+    void shouldRejectUnbalancedElements() {
+        BerWriter writer = new BerWriter().startConstructed(2, 0);
+        assertThrows(IllegalStateException.class, writer::toByteArray);
+        assertThrows(IllegalStateException.class, () -> writer.end().end());
+        assertEquals(2, writer.reset().writeEncoded(new byte[] {0x05, 0x00}).size());
+    }
+}
@@ -0,0 +1,42 @@
+package it.amhs.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.Test;
+
+class ConnectionAdmissionTest {
+
+    @Test
+    void shouldEnforceGlobalAndPerSourceLimitsAndFreeSlotsOnRelease() throws Exception {
+        ConnectionAdmission admission = new ConnectionAdmission(3, 2);
+        InetAddress first = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress second = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        assertEquals(ConnectionAdmission.Decision.ADMITTED, admission.tryAdmit(first));
+        assertEquals(ConnectionAdmission.Decision.ADMITTED, admission.tryAdmit(first));
+        assertEquals(ConnectionAdmission.Decision.SOURCE_LIMIT, admission.tryAdmit(first));
+        assertEquals(ConnectionAdmission.Decision.ADMITTED, admission.tryAdmit(second));
+        assertEquals(ConnectionAdmission.Decision.GLOBAL_LIMIT, admission.tryAdmit(second));
+        assertEquals(3, admission.admitted());
+
+        admission.release(first);
+        assertEquals(ConnectionAdmission.Decision.ADMITTED, admission.tryAdmit(first));
+        assertEquals(1, admission.refusedAtSourceLimit());
+        assertEquals(1, admission.refusedAtGlobalLimit());
+    }
+
+    @Test
+    void shouldTreatZeroPerSourceLimitAsUnlimited() throws Exception {
+        ConnectionAdmission admission = new ConnectionAdmission(2, 0);
+        InetAddress source = InetAddress.getLoopbackAddress();
+
+        assertEquals(ConnectionAdmission.Decision.ADMITTED, admission.tryAdmit(source));
+        assertEquals(ConnectionAdmission.Decision.ADMITTED, admission.tryAdmit(source));
+        assertEquals(ConnectionAdmission.Decision.GLOBAL_LIMIT, admission.tryAdmit(source));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionAdmission(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionAdmission(1, -1));
+    }
+}
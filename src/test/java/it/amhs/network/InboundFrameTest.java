@@ -0,0 +1,69 @@
+package it.amhs.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import it.amhs.service.protocol.p22.P22ProtocolCodec;
+import it.amhs.service.protocol.p3.P3ProtocolCodec;
+
+class InboundFrameTest {
+
+    private static final byte[] ROSE_INVOKE = {
+        (byte) 0xA1, 0x0A, 0x02, 0x01, 0x01, 0x02, 0x01, 0x03, 0x30, 0x02, 0x05, 0x00
+    };
+
+    @Test
+    void probesEachLayerOnceAndSharesTheResult() {
+        P3ProtocolCodec p3 = mock(P3ProtocolCodec.class);
+        P22ProtocolCodec p22 = mock(P22ProtocolCodec.class);
+        P3ProtocolCodec.Probe p3Probe = mock(P3ProtocolCodec.Probe.class);
+        P22ProtocolCodec.Probe p22Probe = mock(P22ProtocolCodec.Probe.class);
+        when(p3Probe.supported()).thenReturn(true);
+        when(p22Probe.supported()).thenReturn(false);
+        when(p3.probe(ROSE_INVOKE)).thenReturn(p3Probe);
+        when(p22.probe(ROSE_INVOKE)).thenReturn(p22Probe);
+        InboundFrame frame = new InboundFrame(p3, p22);
+
+        InboundFrame.Layer layer = frame.layer(ROSE_INVOKE);
+        assertSame(layer, frame.layer(ROSE_INVOKE));
+        assertTrue(layer.applicationSupported());
+        assertTrue(layer.p3Supported());
+        assertFalse(layer.p22Supported());
+        assertSame(p3Probe, layer.p3Probe());
+        assertSame(layer.root(), frame.layer(ROSE_INVOKE).root());
+        assertEquals(1, layer.root().tagNumber());
+
+        verify(p3, times(1)).probe(ROSE_INVOKE);
+        verify(p22, times(1)).probe(ROSE_INVOKE);
+    }
+
+    @Test
+    void unwrapsCarrierOnceAndKeysLayersByIdentity() {
+        InboundFrame frame = new InboundFrame(null, null);
+        AtomicInteger unwraps = new AtomicInteger();
+        InboundFrame.Layer layer = frame.layer(new byte[] {0x30, 0x05, 0x02});
+
+        byte[] inner = layer.inner(encoded -> {
+            unwraps.incrementAndGet();
+            return ROSE_INVOKE.clone();
+        });
+
+        assertSame(inner, layer.inner(encoded -> null));
+        assertEquals(1, unwraps.get());
+        assertNull(layer.root());
+        assertSame(frame.layer(inner), frame.layer(inner));
+        assertNotSame(frame.layer(inner), frame.layer(ROSE_INVOKE));
+    }
+}
@@ -0,0 +1,67 @@
+package it.amhs.network;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+import it.amhs.asn1.BerCodec;
+
+class LayerProfileTest {
+
+    private static final HexFormat HEX = HexFormat.ofDelimiter(" ");
+
+    @Test
+    void replaysLearnedSessionAndPresentationPathOnLaterPdus() {
+        byte[] first = HEX.parseHex("01 00 01 03 19 01 03 61 13 30 11 02 01 03 A0 0C A1 0A 02 01 01 02 01 03 30 02 05 00");
+        byte[] firstApdu = HEX.parseHex("A1 0A 02 01 01 02 01 03 30 02 05 00");
+
+        LayerProfile profile = LayerProfile.learn("OSI_SESSION_SPDU", first, sessionUserData(first), 3, firstApdu);
+
+        assertEquals("LayerProfile[kind=OSI_SESSION_SPDU, sessionOffset=7, contextId=3, path=[0, 1, 0]]", profile.toString());
+        assertTrue(profile.sessionCarried());
+
+        byte[] next = HEX.parseHex("01 00 01 03 19 01 03 61 16 30 14 02 01 03 A0 0F A1 0D 02 01 02 02 01 03 30 05 04 03 41 42 43");
+        byte[] body = profile.body(next);
+        assertArrayEquals(
+            HEX.parseHex("A1 0D 02 01 02 02 01 03 30 05 04 03 41 42 43"),
+            profile.locate(body, BerCodec.decodeSingle(body))
+        );
+    }
+
+    @Test
+    void stepsIntoOctetStringValuesAndKeepsDirectApdus() {
+        byte[] apdu = HEX.parseHex("A1 0A 02 01 01 02 01 03 30 02 05 00");
+        byte[] wrapped = HEX.parseHex("30 10 04 0C A1 0A 02 01 01 02 01 03 30 02 05 00 05 00");
+
+        LayerProfile nested = LayerProfile.learn("BER_APDU", wrapped, null, 1, apdu);
+        assertEquals("LayerProfile[kind=BER_APDU, sessionOffset=-1, contextId=1, path=[0, 0]]", nested.toString());
+        assertArrayEquals(apdu, nested.locate(wrapped, BerCodec.decodeSingle(wrapped)));
+
+        LayerProfile direct = LayerProfile.learn("BER_APDU", apdu, null, 1, apdu);
+        assertSame(apdu, direct.locate(direct.body(apdu), BerCodec.decodeSingle(apdu)));
+    }
+
+    @Test
+    void reportsMismatchesInsteadOfGuessing() {
+        byte[] first = HEX.parseHex("01 00 01 03 19 01 03 61 13 30 11 02 01 03 A0 0C A1 0A 02 01 01 02 01 03 30 02 05 00");
+        LayerProfile profile = LayerProfile.learn(
+            "OSI_SESSION_SPDU", first, sessionUserData(first), 3, HEX.parseHex("A1 0A 02 01 01 02 01 03 30 02 05 00"));
+
+        byte[] shorter = HEX.parseHex("01 00 01 03 19 01 03 61 05 30 03 02 01 03");
+        byte[] body = profile.body(shorter);
+        assertNull(profile.locate(body, BerCodec.decodeSingle(body)));
+        assertNull(profile.body(HEX.parseHex("01 00 01 03 19 01 03")));
+        assertNull(LayerProfile.learn("BER_APDU", first, null, 1, HEX.parseHex("04 01 00")));
+    }
+
+    private static byte[] sessionUserData(byte[] spdu) {
+        return Arrays.copyOfRange(spdu, 7, spdu.length);
+    }
+}
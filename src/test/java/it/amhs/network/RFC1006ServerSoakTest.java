@@ -0,0 +1,202 @@
+package it.amhs.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.amhs.service.protocol.rfc1006.CotpConnectionTpdu;
+import it.amhs.service.protocol.rfc1006.RFC1006Service;
+
+/**
+ * Holds many idle RFC1006 associations open and reports dispatch latency and session counts.
+ * The session count can be raised with {@code -Drfc1006.soak.sessions=N}.
+ */
+class RFC1006ServerSoakTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RFC1006ServerSoakTest.class);
+
+    private static final int SESSIONS = Integer.getInteger("rfc1006.soak.sessions", 400);
+
+    private int port;
+
+    @Test
+    void virtualTransportShouldHoldManyIdleAssociations() throws Exception {
+        RFC1006Server server = startServer("virtual", 4, 0);
+        List<Socket> clients = new ArrayList<>();
+        long[] connectMicros = new long[SESSIONS];
+        try {
+            for (int i = 0; i < SESSIONS; i++) {
+                long started = System.nanoTime();
+                Socket client = connect();
+                clients.add(client);
+                readConnectionConfirm(client);
+                connectMicros[i] = (System.nanoTime() - started) / 1_000;
+            }
+
+            awaitCondition(() -> server.stats().activeSessions() == SESSIONS);
+            RFC1006Server.TransportStats stats = server.stats();
+            Arrays.sort(connectMicros);
+            logger.info(
+                "RFC1006 soak transport={} sessions={} accepted={} rejected={} dispatch-mean={}us dispatch-max={}us "
+                    + "cr-to-cc p50={}us p99={}us max={}us",
+                stats.transport(),
+                stats.activeSessions(),
+                stats.acceptedSessions(),
+                stats.rejectedSessions(),
+                stats.meanDispatchMicros(),
+                stats.maxDispatchMicros(),
+                connectMicros[SESSIONS / 2],
+                connectMicros[SESSIONS * 99 / 100],
+                connectMicros[SESSIONS - 1]
+            );
+            assertEquals(SESSIONS + 1, stats.acceptedSessions());
+            assertEquals(0, stats.rejectedSessions());
+        } finally {
+            closeAll(clients);
+            awaitCondition(() -> server.stats().activeSessions() == 0);
+            server.stop();
+        }
+    }
+
+    @Test
+    void platformTransportShouldQueuePeersBeyondWorkerPool() throws Exception {
+        RFC1006Server server = startServer("platform", 2, 4);
+        List<Socket> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                Socket client = connect();
+                clients.add(client);
+                readConnectionConfirm(client);
+            }
+
+            Socket queued = connect();
+            clients.add(queued);
+            queued.setSoTimeout(300);
+            assertThrows(SocketTimeoutException.class, () -> readConnectionConfirm(queued));
+            assertEquals(2, server.stats().activeSessions());
+        } finally {
+            closeAll(clients);
+            server.stop();
+        }
+    }
+
+    @Test
+    void platformTransportShouldRefuseWithDisconnectOnceQueueIsFull() throws Exception {
+        RFC1006Server server = startServer("platform", 2, 1);
+        List<Socket> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                Socket client = connect();
+                clients.add(client);
+                readConnectionConfirm(client);
+            }
+            clients.add(connect());
+            awaitCondition(() -> server.stats().queuedSessions() == 1);
+
+            Socket refused = connect();
+            clients.add(refused);
+            refused.setSoTimeout(5_000);
+            DataInputStream in = new DataInputStream(refused.getInputStream());
+            byte[] disconnect = new byte[11];
+            in.readFully(disconnect);
+            assertEquals((byte) 0x80, disconnect[5]);
+            assertEquals(0x01, disconnect[10]);
+            assertEquals(1, server.stats().rejectedSessions());
+            assertEquals(2, server.stats().activeSessions());
+        } finally {
+            closeAll(clients);
+            server.stop();
+        }
+    }
+
+    /**
+     * Starts a listener on a free loopback port and waits for it to accept one probe connection,
+     * which is counted in {@code acceptedSessions}.
+     */
+    private RFC1006Server startServer(String transport, int maxClients, int maxQueuedClients) throws Exception {
+        try (ServerSocket probe = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        RFC1006Service service = new RFC1006Service(null, null, null, null, null, "LOCAL-MTA", "LOCAL", 60_000, false, "", 1, 0);
+        RFC1006Server server = new RFC1006Server(
+            "127.0.0.1", port, maxClients, transport, SESSIONS + 16, maxQueuedClients, 0, false, false,
+            SSLContext.getDefault(), service
+        );
+        Thread listener = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception ex) {
+                logger.warn("RFC1006 soak listener failed", ex);
+            }
+        }, "rfc1006-soak-listener");
+        listener.setDaemon(true);
+        listener.start();
+
+        awaitCondition(() -> {
+            try (Socket ignored = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                return true;
+            } catch (IOException ex) {
+                return false;
+            }
+        });
+        awaitCondition(() -> server.stats().acceptedSessions() == 1 && server.stats().activeSessions() == 0);
+        return server;
+    }
+
+    private Socket connect() throws IOException {
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), port);
+        byte[] tpdu = new CotpConnectionTpdu(CotpConnectionTpdu.PDU_CR, 0, 1, 0, Optional.of(16_384), List.of()).serialize();
+        byte[] frame = new byte[4 + tpdu.length];
+        frame[0] = 0x03;
+        frame[2] = (byte) (frame.length >> 8);
+        frame[3] = (byte) frame.length;
+        System.arraycopy(tpdu, 0, frame, 4, tpdu.length);
+        client.getOutputStream().write(frame);
+        client.getOutputStream().flush();
+        return client;
+    }
+
+    private static void readConnectionConfirm(Socket client) throws IOException {
+        DataInputStream in = new DataInputStream(client.getInputStream());
+        byte[] header = new byte[4];
+        in.readFully(header);
+        byte[] tpdu = new byte[(((header[2] & 0xFF) << 8) | (header[3] & 0xFF)) - 4];
+        in.readFully(tpdu);
+        assertEquals(CotpConnectionTpdu.PDU_CC, CotpConnectionTpdu.parse(tpdu).type());
+    }
+
+    private static void closeAll(List<Socket> clients) {
+        for (Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not reached before timeout");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -17,9 +17,9 @@ class RFC1006ServerTest {
         SSLContext sslContext = SSLContext.getDefault();
 
         assertThrows(IllegalArgumentException.class,
-            () -> new RFC1006Server("0.0.0.0", 0, 8, false, false, sslContext, service));
+            () -> new RFC1006Server("0.0.0.0", 0, 8, "platform", 100, 32, 0, false, false, sslContext, service));
         assertThrows(IllegalArgumentException.class,
-            () -> new RFC1006Server("0.0.0.0", 70000, 8, false, false, sslContext, service));
+            () -> new RFC1006Server("0.0.0.0", 70000, 8, "platform", 100, 32, 0, false, false, sslContext, service));
     }
 
     @Test
@@ -28,8 +28,34 @@ class RFC1006ServerTest {
         SSLContext sslContext = SSLContext.getDefault();
 
         assertThrows(IllegalArgumentException.class,
-            () -> new RFC1006Server("0.0.0.0", 102, 0, false, false, sslContext, service));
+            () -> new RFC1006Server("0.0.0.0", 102, 0, "platform", 100, 32, 0, false, false, sslContext, service));
 
-        assertDoesNotThrow(() -> new RFC1006Server("0.0.0.0", 102, 16, false, false, sslContext, service));
+        assertDoesNotThrow(() -> new RFC1006Server("0.0.0.0", 102, 16, "platform", 100, 32, 0, false, false, sslContext, service));
+    }
+
+    @Test
+    void shouldValidateTransportSelection() throws Exception {
+        RFC1006Service service = org.mockito.Mockito.mock(RFC1006Service.class);
+        SSLContext sslContext = SSLContext.getDefault();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new RFC1006Server("0.0.0.0", 102, 16, "selector", 100, 32, 0, false, false, sslContext, service));
+        assertThrows(IllegalArgumentException.class,
+            () -> new RFC1006Server("0.0.0.0", 102, 16, "virtual", 0, 32, 0, false, false, sslContext, service));
+
+        assertDoesNotThrow(() -> new RFC1006Server("0.0.0.0", 102, 16, "virtual", 100, 32, 0, false, false, sslContext, service));
+    }
+
+    @Test
+    void shouldRejectNegativeAdmissionLimits() throws Exception {
+        RFC1006Service service = org.mockito.Mockito.mock(RFC1006Service.class);
+        SSLContext sslContext = SSLContext.getDefault();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new RFC1006Server("0.0.0.0", 102, 16, "platform", 100, -1, 0, false, false, sslContext, service));
+        assertThrows(IllegalArgumentException.class,
+            () -> new RFC1006Server("0.0.0.0", 102, 16, "platform", 100, 32, -1, false, false, sslContext, service));
+
+        assertDoesNotThrow(() -> new RFC1006Server("0.0.0.0", 102, 16, "platform", 100, 0, 4, false, false, sslContext, service));
     }
 }
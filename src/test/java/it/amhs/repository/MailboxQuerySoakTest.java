@@ -0,0 +1,176 @@
+package it.amhs.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import it.amhs.domain.AMHSDeliveryReport;
+import it.amhs.domain.AMHSMessage;
+import it.amhs.domain.AMHSPriority;
+import it.amhs.domain.AMHSProfile;
+import it.amhs.service.channel.AMHSChannelService;
+
+/**
+ * Times the P3 mailbox lookups against PostgreSQL with a mailbox of many reports next to as many
+ * reports spread over smaller mailboxes, and checks with EXPLAIN that the top-1 queries are
+ * answered from the report indexes. Opt-in: run with {@code -Damhs.mailbox.soak.reports=100000}
+ * against the database in {@code spring.datasource.*}. The seeded rows are rolled back.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfSystemProperty(named = "amhs.mailbox.soak.reports", matches = "\\d+")
+class MailboxQuerySoakTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailboxQuerySoakTest.class);
+
+    private static final int REPORTS = Integer.getInteger("amhs.mailbox.soak.reports", 100_000);
+    private static final int REPORTS_PER_MESSAGE = 100;
+    private static final int ITERATIONS = 1_000;
+    private static final int OTHER_MAILBOXES = 50;
+    private static final String MAILBOX = AMHSDeliveryReport.normalizeRecipient("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX");
+    private static final String SPARSE_MAILBOX = MAILBOX + "-0";
+
+    @Configuration
+    @EntityScan(basePackageClasses = AMHSMessage.class)
+    @EnableJpaRepositories(basePackageClasses = AMHSDeliveryReportRepository.class)
+    static class Persistence {
+    }
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AMHSDeliveryReportRepository reportRepository;
+
+    @Test
+    void mailboxLookupsUseTheReportIndexes() {
+        String reports = jdbcTemplate.queryForObject(
+            "select tablename from pg_indexes where indexname = 'idx_amhs_report_recipient_cursor'",
+            String.class
+        );
+        List<AMHSMessage> messages = seedMessages(2 * REPORTS / REPORTS_PER_MESSAGE);
+        seedReports(reports, messages);
+        jdbcTemplate.execute("analyze " + reports);
+
+        long denseCursor = middleId(reports, MAILBOX);
+        long sparseCursor = middleId(reports, SPARSE_MAILBOX);
+        AMHSMessage latest = messages.get(messages.size() / 4);
+
+        assertIndexScan(reports, "recipient_normalized = '" + MAILBOX + "' and id > " + denseCursor + " order by id asc", null);
+        assertIndexScan(
+            reports,
+            "recipient_normalized = '" + SPARSE_MAILBOX + "' and id > " + sparseCursor + " order by id asc",
+            "idx_amhs_report_recipient_cursor"
+        );
+        assertIndexScan(
+            reports,
+            "message_id_fk = " + latest.getId() + " order by generated_at desc, id desc",
+            "idx_amhs_report_message_generated"
+        );
+
+        long denseMicros = time(() -> reportRepository.findFirstByRecipientNormalizedAndIdGreaterThanOrderByIdAsc(MAILBOX, denseCursor));
+        long sparseMicros = time(() -> reportRepository.findFirstByRecipientNormalizedAndIdGreaterThanOrderByIdAsc(SPARSE_MAILBOX, sparseCursor));
+        long latestMicros = time(() -> reportRepository.findFirstByMessageOrderByGeneratedAtDescIdDesc(latest));
+        logger.info(
+            "Mailbox soak reports-per-mailbox={} next-after-cursor mean={}us (sparse mailbox {}us) latest-for-message mean={}us",
+            REPORTS,
+            denseMicros,
+            sparseMicros,
+            latestMicros
+        );
+        assertTrue(reportRepository.findFirstByRecipientNormalizedAndIdGreaterThanOrderByIdAsc(MAILBOX, denseCursor).isPresent());
+        assertTrue(reportRepository.findFirstByRecipientNormalizedAndIdGreaterThanOrderByIdAsc(SPARSE_MAILBOX, sparseCursor).isPresent());
+        assertEquals(latest.getId(), reportRepository.findFirstByMessageOrderByGeneratedAtDescIdDesc(latest).orElseThrow().getMessage().getId());
+    }
+
+    private List<AMHSMessage> seedMessages(int count) {
+        List<AMHSMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AMHSMessage message = new AMHSMessage();
+            message.setMessageId("MAILBOX-SOAK-" + i);
+            message.setSender("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIMM/OU1=LIMMZQZX");
+            message.setRecipient("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX");
+            message.setBody("mailbox soak");
+            message.setChannelName(AMHSChannelService.DEFAULT_CHANNEL_NAME);
+            message.setProfile(AMHSProfile.P3);
+            message.setPriority(AMHSPriority.GG);
+            entityManager.persist(message);
+            messages.add(message);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return messages;
+    }
+
+    /**
+     * The first half of the messages report into {@link #MAILBOX}, the second half into
+     * {@link #OTHER_MAILBOXES} smaller ones such as {@link #SPARSE_MAILBOX}.
+     */
+    private void seedReports(String table, List<AMHSMessage> messages) {
+        String insert = "insert into " + table + " (message_id_fk, recipient, recipient_normalized, report_type, "
+            + "delivery_status, return_of_content, generated_at) "
+            + "select ?, ?, ?, 'DR', 'DELIVERED', false, now() - make_interval(secs => g) from generate_series(1, ?) g";
+        List<Object[]> batch = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            String recipient = i < messages.size() / 2 ? MAILBOX : MAILBOX + "-" + (i % OTHER_MAILBOXES);
+            batch.add(new Object[] {messages.get(i).getId(), recipient, recipient, REPORTS_PER_MESSAGE});
+        }
+        jdbcTemplate.batchUpdate(insert, batch);
+    }
+
+    private long middleId(String table, String mailbox) {
+        return jdbcTemplate.queryForObject(
+            "select (min(id) + max(id)) / 2 from " + table + " where recipient_normalized = ?",
+            Long.class,
+            mailbox
+        );
+    }
+
+    /**
+     * Explains the top-1 query the repository runs and checks it is answered from an index, without
+     * a sequential scan or sort; {@code index}, when given, must be the one used.
+     */
+    private void assertIndexScan(String table, String whereAndOrder, String index) {
+        String plan = String.join(
+            "\n",
+            jdbcTemplate.queryForList("explain select id from " + table + " where " + whereAndOrder + " limit 1", String.class)
+        );
+        logger.info("Mailbox soak plan for {}:\n{}", whereAndOrder, plan);
+        assertTrue(plan.contains("Index Scan") || plan.contains("Index Only Scan"), "Expected an index scan:\n" + plan);
+        assertFalse(plan.contains("Seq Scan") || plan.contains("Sort"), "Expected no scan or sort of the table:\n" + plan);
+        if (index != null) {
+            assertTrue(plan.contains(index), "Expected " + index + " to be used:\n" + plan);
+        }
+    }
+
+    private long time(Runnable query) {
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            query.run();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - started) / 1_000 / ITERATIONS;
+    }
+}
@@ -23,6 +23,7 @@ import it.amhs.repository.AMHSDeliveryReportRepository;
 import it.amhs.repository.AMHSMessageRepository;
 import it.amhs.service.relay.OutboundP1Client;
 import it.amhs.service.report.AMHSDeliveryReportService;
+import it.amhs.service.report.ReportNotificationHub;
 import it.amhs.service.state.AMHSMessageStateMachine;
 import it.amhs.service.x411.X411DiagnosticMapper;
 
@@ -72,7 +73,7 @@ class AMHSDeliveryReportDeterminismEvidenceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         List<AMHSDeliveryReport> persistedReports = new ArrayList<>();
         when(reportRepo.save(any(AMHSDeliveryReport.class))).thenAnswer(invocation -> {
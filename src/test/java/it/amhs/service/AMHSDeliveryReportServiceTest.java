@@ -24,6 +24,7 @@ import it.amhs.repository.AMHSMessageRepository;
 import it.amhs.service.protocol.p1.X411TagMap;
 import it.amhs.service.relay.OutboundP1Client;
 import it.amhs.service.report.AMHSDeliveryReportService;
+import it.amhs.service.report.ReportNotificationHub;
 import it.amhs.service.state.AMHSMessageStateMachine;
 import it.amhs.service.x411.X411DiagnosticMapper;
 
@@ -35,7 +36,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage message = message("MSG-1", "MTS-1");
         service.createDeliveryReport(message);
@@ -52,7 +53,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage message = message("MSG-2", null);
         OutboundP1Client.RelayTransferOutcome outcome = new OutboundP1Client.RelayTransferOutcome(
@@ -80,7 +81,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage message = message("MSG-REDIR-1", null);
         OutboundP1Client.RelayTransferOutcome outcome = new OutboundP1Client.RelayTransferOutcome(
@@ -105,7 +106,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage message = message("MSG-4", "MTS-4");
         OutboundP1Client.RelayTransferOutcome outcome = new OutboundP1Client.RelayTransferOutcome(
@@ -140,7 +141,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage full = message("MSG-FULL", null);
         full.setDeliveryReport("full");
@@ -164,7 +165,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage basicProfile = message("MSG-B", null);
         basicProfile.setProfile(AMHSProfile.P3);
@@ -197,7 +198,7 @@ class AMHSDeliveryReportServiceTest {
         AMHSMessageRepository messageRepo = mock(AMHSMessageRepository.class);
         AMHSMessageStateMachine stateMachine = mock(AMHSMessageStateMachine.class);
         X411DiagnosticMapper mapper = new X411DiagnosticMapper();
-        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper);
+        AMHSDeliveryReportService service = new AMHSDeliveryReportService(reportRepo, messageRepo, stateMachine, mapper, new ReportNotificationHub());
 
         AMHSMessage expected = message("MSG-3", "MTS-3");
         when(messageRepo.findByMtsIdentifier("MTS-3")).thenReturn(java.util.Optional.of(expected));
@@ -0,0 +1,141 @@
+package it.amhs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.amhs.domain.AMHSDeliveryReport;
+import it.amhs.domain.AMHSMessage;
+import it.amhs.repository.AMHSDeliveryReportRepository;
+import it.amhs.repository.AMHSMessageRepository;
+import it.amhs.service.protocol.p1.MessageGroupCommitter;
+import it.amhs.service.report.ReportNotificationHub;
+
+class MessageGroupCommitterTest {
+
+    @Test
+    void concurrentMessagesShareOneTransaction() throws Exception {
+        AMHSMessageRepository messageRepository = mock(AMHSMessageRepository.class);
+        AMHSDeliveryReportRepository reportRepository = mock(AMHSDeliveryReportRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(messageRepository.save(any(AMHSMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        MessageGroupCommitter committer = new MessageGroupCommitter(
+            messageRepository, reportRepository, transactionManager, new ReportNotificationHub(), true, 8, 2_000
+        );
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<AMHSMessage> messages = new ArrayList<>();
+            List<AMHSDeliveryReport> reports = new ArrayList<>();
+            List<Future<AMHSMessage>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                AMHSMessage message = message("MSG-" + i);
+                AMHSDeliveryReport report = new AMHSDeliveryReport();
+                messages.add(message);
+                reports.add(report);
+                results.add(callers.submit(() -> committer.commit(message, report)));
+            }
+
+            for (int i = 0; i < 8; i++) {
+                assertSame(messages.get(i), results.get(i).get());
+                assertSame(messages.get(i), reports.get(i).getMessage());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        verify(transactionManager, times(1)).commit(any());
+        verify(messageRepository, times(8)).save(any(AMHSMessage.class));
+        verify(reportRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void failedBatchIsRetriedPerMessage() throws Exception {
+        AMHSMessageRepository messageRepository = mock(AMHSMessageRepository.class);
+        AMHSDeliveryReportRepository reportRepository = mock(AMHSDeliveryReportRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(messageRepository.save(any(AMHSMessage.class))).thenAnswer(invocation -> {
+            AMHSMessage message = invocation.getArgument(0);
+            if ("BAD".equals(message.getMessageId())) {
+                throw new IllegalStateException("duplicate message_id");
+            }
+            return message;
+        });
+        MessageGroupCommitter committer = new MessageGroupCommitter(
+            messageRepository, reportRepository, transactionManager, new ReportNotificationHub(), true, 2, 2_000
+        );
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            AMHSMessage good = message("GOOD");
+            Future<AMHSMessage> goodResult = callers.submit(() -> committer.commit(good, new AMHSDeliveryReport()));
+            Future<AMHSMessage> badResult = callers.submit(() -> committer.commit(message("BAD"), new AMHSDeliveryReport()));
+
+            assertSame(good, goodResult.get());
+            Exception failure = assertThrows(Exception.class, badResult::get);
+            assertEquals(IllegalStateException.class, failure.getCause().getClass());
+        } finally {
+            callers.shutdownNow();
+        }
+
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    void shutdownFlushesQueuedWritesAndRejectsNewOnes() throws Exception {
+        AMHSMessageRepository messageRepository = mock(AMHSMessageRepository.class);
+        AMHSDeliveryReportRepository reportRepository = mock(AMHSDeliveryReportRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(messageRepository.save(any(AMHSMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        MessageGroupCommitter committer = new MessageGroupCommitter(
+            messageRepository, reportRepository, transactionManager, new ReportNotificationHub(), true, 8, 60_000
+        );
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            AMHSMessage first = message("MSG-1");
+            AMHSMessage second = message("MSG-2");
+            Future<AMHSMessage> firstResult = callers.submit(() -> committer.commit(first, new AMHSDeliveryReport()));
+            Future<AMHSMessage> secondResult = callers.submit(() -> committer.commit(second, new AMHSDeliveryReport()));
+            Thread.sleep(200);
+
+            committer.shutdown();
+
+            assertSame(first, firstResult.get(5, TimeUnit.SECONDS));
+            assertSame(second, secondResult.get(5, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+
+        verify(transactionManager, times(1)).commit(any());
+        assertThrows(IllegalStateException.class, () -> committer.commit(message("LATE"), new AMHSDeliveryReport()));
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageGroupCommitter(null, null, null, null, true, 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> new MessageGroupCommitter(null, null, null, null, true, 8, -1));
+    }
+
+    private static AMHSMessage message(String messageId) {
+        AMHSMessage message = new AMHSMessage();
+        message.setMessageId(messageId);
+        return message;
+    }
+}
@@ -2,8 +2,15 @@ package it.amhs.service;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import org.junit.jupiter.api.Test;
 
 import it.amhs.service.address.ORAddress;
@@ -96,4 +103,43 @@ class ORAddressTest {
         assertEquals("technosky", parsed.get("O"));
         assertEquals("VDTIATIS", parsed.get("OU1"));
     }
+
+    @Test
+    void shouldShareInstancesForRepeatedAndEquivalentAddresses() {
+        ORAddress first = ORAddress.parse("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX");
+        assertSame(first, ORAddress.parse("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX"));
+        assertSame(first, ORAddress.parse("OU=LIRRZQZX,O=LIRR,P=ENAV,A=ICAO,C=IT"));
+        assertThrows(UnsupportedOperationException.class, () -> first.attributes().put("CN", "OPS"));
+    }
+
+    @Test
+    void shouldKeepSpacesInsideValuesThatAreNotFollowedByAnAttribute() {
+        ORAddress parsed = ORAddress.parse("C=IT/ADMD=ICAO/O=Air Traffic Ops/CN=duty officer");
+        assertEquals("Air Traffic Ops", parsed.get("O"));
+        assertEquals("duty officer", parsed.get("CN"));
+    }
+
+    @Test
+    void shouldCompareByValueIndependentOfConstruction() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("DDA-CALLSIGN", "AZA123");
+        attributes.put("O", "ENAV");
+        attributes.put("C", "IT");
+        ORAddress built = ORAddress.of(attributes);
+        ORAddress parsed = ORAddress.parse("/C=IT/O=ENAV/DDA-CALLSIGN=AZA123");
+
+        assertEquals(parsed, built);
+        assertEquals(parsed.hashCode(), built.hashCode());
+        assertEquals("/C=IT/O=ENAV/DDA-CALLSIGN=AZA123", built.toCanonicalString());
+        assertEquals(List.of("C", "O", "DDA-CALLSIGN"), List.copyOf(built.attributes().keySet()));
+        assertNotEquals(parsed, ORAddress.parse("/C=IT/O=ENAV"));
+    }
+
+    @Test
+    void shouldExtractIcaoUnitFromUnitsThenOrganizationThenCommonName() {
+        assertEquals(Optional.of("LIRRZQZX"), ORAddress.parse("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ENAV-ROMA/OU1=lirrzqzx").icaoUnit());
+        assertEquals(Optional.of("LIMM"), ORAddress.parse("/C=IT/ADMD=ICAO/O=LIMM/CN=LIRRZQZX").icaoUnit());
+        assertEquals(Optional.empty(), ORAddress.parse("/C=IT/ADMD=ICAO/O=ENAV 1/CN=OPS").icaoUnit());
+        assertEquals(List.of("LIRR", "ZQZX"), ORAddress.parse("/C=IT/OU1=LIRR/OU2=ZQZX").organizationalUnits());
+    }
 }
@@ -3,11 +3,18 @@ package it.amhs.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import org.junit.jupiter.api.Test;
 
 import it.amhs.domain.AMHSDeliveryStatus;
@@ -15,7 +22,9 @@ import it.amhs.domain.AMHSMessage;
 import it.amhs.domain.AMHSMessageState;
 import it.amhs.repository.AMHSMessageRepository;
 import it.amhs.service.relay.OutboundP1Client;
+import it.amhs.service.relay.NextHopHealth;
 import it.amhs.service.relay.OutboundRelayEngine;
+import it.amhs.service.relay.RelayQueue;
 import it.amhs.service.relay.RelayRoutingService;
 import it.amhs.service.report.AMHSDeliveryReportService;
 
@@ -31,8 +40,8 @@ class OutboundRelayEngineTest {
         AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
         OutboundP1Client client = mock(OutboundP1Client.class);
         AMHSDeliveryReportService dr = mock(AMHSDeliveryReportService.class);
-        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102");
-        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, "LOCAL-MTA", "LOCAL", true, 3);
+        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102", "", 50, new NextHopHealth(3, 30_000));
+        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, mock(RelayQueue.class), "LOCAL-MTA", "LOCAL", true, 3, 1, 10, 15_000);
 
         AMHSMessage msg = message("/C=FR/ADMD=ICAO/PRMD=DGAC/O=ATC/CN=OPS");
         engine.relaySingle(msg);
@@ -50,8 +59,8 @@ class OutboundRelayEngineTest {
         AMHSDeliveryReportService dr = mock(AMHSDeliveryReportService.class);
         when(client.relay(any(), any())).thenThrow(new IllegalStateException("network"));
 
-        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102|mta2:102");
-        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, "LOCAL-MTA", "LOCAL", true, 3);
+        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102|mta2:102", "", 50, new NextHopHealth(3, 30_000));
+        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, mock(RelayQueue.class), "LOCAL-MTA", "LOCAL", true, 3, 1, 10, 15_000);
 
         AMHSMessage msg = message("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS");
         engine.relaySingle(msg);
@@ -73,8 +82,8 @@ class OutboundRelayEngineTest {
             java.util.Map.of("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS", new OutboundP1Client.RelayTransferOutcome.RecipientOutcome(2, "unreachable"))
         ));
 
-        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102");
-        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, "LOCAL-MTA", "LOCAL", true, 3);
+        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102", "", 50, new NextHopHealth(3, 30_000));
+        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, mock(RelayQueue.class), "LOCAL-MTA", "LOCAL", true, 3, 1, 10, 15_000);
 
         AMHSMessage msg = message("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS");
         engine.relaySingle(msg);
@@ -99,8 +108,8 @@ class OutboundRelayEngineTest {
             )
         ));
 
-        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102");
-        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, "LOCAL-MTA", "LOCAL", true, 3);
+        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102", "", 50, new NextHopHealth(3, 30_000));
+        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, mock(RelayQueue.class), "LOCAL-MTA", "LOCAL", true, 3, 1, 10, 15_000);
 
         AMHSMessage msg = message("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS");
         engine.relaySingle(msg);
@@ -111,6 +120,78 @@ class OutboundRelayEngineTest {
         verify(repo).save(msg);
     }
 
+    @Test
+    void relaysClaimedPagesUntilShortPage() {
+        AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
+        OutboundP1Client client = mock(OutboundP1Client.class);
+        AMHSDeliveryReportService dr = mock(AMHSDeliveryReportService.class);
+        RelayQueue queue = mock(RelayQueue.class);
+        AMHSMessage first = message("/C=FR/ADMD=ICAO/PRMD=DGAC/O=ATC/CN=OPS");
+        AMHSMessage second = message("/C=FR/ADMD=ICAO/PRMD=DGAC/O=ATC/CN=OPS");
+        AMHSMessage third = message("/C=FR/ADMD=ICAO/PRMD=DGAC/O=ATC/CN=OPS");
+        first.setId(10L);
+        second.setId(11L);
+        third.setId(42L);
+        when(queue.claimDue(any(), anyLong())).thenReturn(
+            new RelayQueue.ClaimedPage(List.of(first, second), true),
+            new RelayQueue.ClaimedPage(List.of(third), false)
+        );
+
+        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102", "", 50, new NextHopHealth(3, 30_000));
+        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, queue, "LOCAL-MTA", "LOCAL", true, 3, 1, 10, 15_000);
+        engine.relayPendingMessages();
+
+        verify(repo).save(first);
+        verify(repo).save(second);
+        verify(repo).save(third);
+        verify(queue, times(2)).claimDue(any(), anyLong());
+        verify(repo, never()).findByLifecycleStateIn(any());
+    }
+
+    @Test
+    void stalledNextHopOnlyBacksUpItsOwnLane() throws Exception {
+        AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
+        OutboundP1Client client = mock(OutboundP1Client.class);
+        AMHSDeliveryReportService dr = mock(AMHSDeliveryReportService.class);
+        RelayQueue queue = mock(RelayQueue.class);
+        CountDownLatch peerStalled = new CountDownLatch(1);
+        when(client.relay(any(), any())).thenAnswer(invocation -> {
+            if ("mta1:102".equals(invocation.getArgument(0))) {
+                peerStalled.await();
+            }
+            return new OutboundP1Client.RelayTransferOutcome(true, "MTS-1", null, java.util.Map.of());
+        });
+        AMHSMessage running = message("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS");
+        AMHSMessage queued = message("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS");
+        AMHSMessage overflow = message("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATC/CN=OPS");
+        AMHSMessage otherRoute = message("/C=FR/ADMD=ICAO/PRMD=DGAC/O=ATC/CN=OPS");
+        running.setId(1L);
+        queued.setId(2L);
+        overflow.setId(3L);
+        otherRoute.setId(4L);
+        overflow.setNextRetryAt(new java.util.Date(System.currentTimeMillis() + 60_000));
+        when(queue.claimDue(any(), anyLong())).thenReturn(new RelayQueue.ClaimedPage(List.of(running, queued, overflow, otherRoute), false));
+
+        RelayRoutingService routes = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102;/C=FR/ADMD=ICAO->mta2:102", "", 50, new NextHopHealth(3, 30_000));
+        OutboundRelayEngine engine = new OutboundRelayEngine(repo, routes, client, dr, queue, "LOCAL-MTA", "LOCAL", true, 3, 1, 1, 15_000);
+        try {
+            engine.relayPendingMessages();
+
+            verify(repo, timeout(2_000)).save(otherRoute);
+            assertEquals(AMHSMessageState.TRANSFERRED, otherRoute.getLifecycleState());
+            verify(repo).save(overflow);
+            assertEquals(AMHSMessageState.SUBMITTED, overflow.getLifecycleState());
+            long retryIn = overflow.getNextRetryAt().getTime() - System.currentTimeMillis();
+            assertTrue(retryIn > 0 && retryIn <= 15_000);
+            verify(repo, never()).save(running);
+            verify(repo, never()).save(queued);
+        } finally {
+            peerStalled.countDown();
+        }
+        verify(repo, timeout(2_000)).save(queued);
+        assertEquals(AMHSMessageState.TRANSFERRED, running.getLifecycleState());
+    }
+
     private AMHSMessage message(String recipientOrAddress) {
         AMHSMessage msg = new AMHSMessage();
         msg.setMessageId("MSG-1");
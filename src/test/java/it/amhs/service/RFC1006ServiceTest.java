@@ -224,7 +224,9 @@ class RFC1006ServiceTest {
             "LOCAL",
             30_000,
             requireAcseAuthentication,
-            expectedAcseAuthenticationValue
+            expectedAcseAuthenticationValue,
+            1,
+            0
         );
     }
 
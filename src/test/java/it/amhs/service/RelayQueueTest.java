@@ -0,0 +1,97 @@
+package it.amhs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.amhs.domain.AMHSMessage;
+import it.amhs.domain.AMHSMessageState;
+import it.amhs.repository.AMHSMessageRepository;
+import it.amhs.service.relay.RelayQueue;
+
+class RelayQueueTest {
+
+    @Test
+    void leasesClaimedMessagesInsideOneTransaction() {
+        AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        AMHSMessage message = new AMHSMessage();
+        message.setId(7L);
+        when(repo.findUnscheduledForRelay(eq(AMHSMessageState.SUBMITTED), eq(PageRequest.of(0, 50))))
+            .thenReturn(List.of(message));
+        RelayQueue queue = new RelayQueue(repo, transactionManager, 50, 60_000);
+
+        long before = System.currentTimeMillis();
+        List<AMHSMessage> claimed = queue.claimDue(Set.of(), 0).messages();
+
+        assertEquals(List.of(message), claimed);
+        assertTrue(message.getNextRetryAt().getTime() >= before + 60_000);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void fillsPageFromUnscheduledThenRetryDueMessages() {
+        AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        AMHSMessage fresh = new AMHSMessage();
+        AMHSMessage deferredFresh = new AMHSMessage();
+        AMHSMessage retry = new AMHSMessage();
+        when(repo.findUnscheduledForRelay(eq(AMHSMessageState.SUBMITTED), eq(PageRequest.of(0, 3))))
+            .thenReturn(List.of(fresh));
+        when(repo.findUnscheduledForRelay(eq(AMHSMessageState.DEFERRED), eq(PageRequest.of(0, 2))))
+            .thenReturn(List.of(deferredFresh));
+        when(repo.findRetryDueForRelay(eq(AMHSMessageState.SUBMITTED), any(Date.class), eq(PageRequest.of(0, 1))))
+            .thenReturn(List.of(retry));
+        RelayQueue queue = new RelayQueue(repo, transactionManager, 3, 60_000);
+
+        RelayQueue.ClaimedPage page = queue.claimDue(Set.of(), 0);
+
+        assertEquals(List.of(fresh, deferredFresh, retry), page.messages());
+        assertTrue(page.full());
+        verify(repo, never()).findRetryDueForRelay(eq(AMHSMessageState.DEFERRED), any(Date.class), any());
+    }
+
+    @Test
+    void releasesInFlightMessagesAgainWithoutHandingThemOut() {
+        AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        AMHSMessage queuedInLane = new AMHSMessage();
+        queuedInLane.setId(1L);
+        AMHSMessage fresh = new AMHSMessage();
+        fresh.setId(2L);
+        when(repo.findUnscheduledForRelay(eq(AMHSMessageState.SUBMITTED), eq(PageRequest.of(0, 50))))
+            .thenReturn(List.of(queuedInLane, fresh));
+        RelayQueue queue = new RelayQueue(repo, transactionManager, 50, 60_000);
+
+        long before = System.currentTimeMillis();
+        RelayQueue.ClaimedPage page = queue.claimDue(Set.of(1L), 600_000);
+
+        assertEquals(List.of(fresh), page.messages());
+        assertFalse(page.full());
+        assertTrue(queuedInLane.getNextRetryAt().getTime() >= before + 600_000);
+        assertTrue(fresh.getNextRetryAt().getTime() >= before + 600_000);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        AMHSMessageRepository repo = mock(AMHSMessageRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        assertThrows(IllegalArgumentException.class, () -> new RelayQueue(repo, transactionManager, 0, 60_000));
+        assertThrows(IllegalArgumentException.class, () -> new RelayQueue(repo, transactionManager, 50, 0));
+    }
+}
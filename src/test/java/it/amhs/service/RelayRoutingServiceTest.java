@@ -1,18 +1,27 @@
 package it.amhs.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 import it.amhs.service.address.ORAddress;
+import it.amhs.service.relay.NextHopHealth;
 import it.amhs.service.relay.RelayRoutingService;
 
 class RelayRoutingServiceTest {
 
     @Test
     void selectsNextHopAndAlternatesWithAttempts() {
-        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102|mta2:102");
+        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102|mta2:102", "", 50, new NextHopHealth(3, 30_000));
         RelayRoutingService.AMHSMessageEnvelope envelope = new RelayRoutingService.AMHSMessageEnvelope(
             ORAddress.parse("/C=IT/ADMD=ICAO/PRMD=ENAV/O=ATS/CN=AFTN"),
             null
@@ -27,7 +36,7 @@ class RelayRoutingServiceTest {
 
     @Test
     void noMatchingRouteReturnsEmpty() {
-        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102");
+        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102", "", 50, new NextHopHealth(3, 30_000));
         RelayRoutingService.AMHSMessageEnvelope envelope = new RelayRoutingService.AMHSMessageEnvelope(
             ORAddress.parse("/C=FR/ADMD=ICAO/PRMD=DSNA/O=ATC/CN=OPS"),
             null
@@ -35,4 +44,160 @@ class RelayRoutingServiceTest {
 
         assertTrue(service.findNextHop(envelope, 0).isEmpty());
     }
+
+    @Test
+    void mostSpecificRouteWinsRegardlessOfTableOrder() {
+        RelayRoutingService service = new RelayRoutingService(
+            "/C=IT/ADMD=ICAO->hub:102;/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR->rome:102;/C=IT/ADMD=ICAO/PRMD=ENAV->enav:102",
+            "",
+            50,
+            new NextHopHealth(3, 30_000)
+        );
+
+        assertEquals("rome:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/CN=OPS"));
+        assertEquals("enav:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIMM/CN=OPS"));
+        assertEquals("hub:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=AM/O=LIRR"));
+    }
+
+    @Test
+    void matchesIgnoringCaseAndSkippedAttributes() {
+        RelayRoutingService service = new RelayRoutingService("/C=IT/O=lirr->mta1:102;/C=IT/O=LIRR->mta2:102;/C=IT/ADMD=ICAO->hub:102", "", 50, new NextHopHealth(3, 30_000));
+
+        assertEquals("mta1:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=Lirr/CN=OPS"));
+        assertEquals("hub:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIMM/CN=OPS"));
+    }
+
+    @Test
+    void reloadsRoutingFileAndReportsChangedRoutes() throws Exception {
+        Path file = Files.createTempFile("amhs-routes", ".txt");
+        try {
+            Files.writeString(file, "# national table\n/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102\n/C=FR/ADMD=ICAO->paris:102\n", StandardCharsets.UTF_8);
+            RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO->hub:102", file.toString(), 50, new NextHopHealth(3, 30_000));
+            assertEquals("mta1:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR"));
+
+            Files.writeString(file, "/C=IT/ADMD=ICAO/PRMD=ENAV->mta2:102\n/C=FR/ADMD=ICAO->paris:102\n", StandardCharsets.UTF_8);
+            RelayRoutingService.RoutingDiff diff = service.reload();
+
+            assertEquals(List.of("/C=IT/ADMD=ICAO/PRMD=ENAV->mta2:102"), diff.added());
+            assertEquals(List.of("/C=IT/ADMD=ICAO/PRMD=ENAV->mta1:102"), diff.removed());
+            assertEquals("mta2:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR"));
+            assertEquals("hub:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=AM/O=LIRR"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void keepsCurrentRoutesWhenChangedFileIsInvalid() throws Exception {
+        Path file = Files.createTempFile("amhs-routes", ".txt");
+        try {
+            Files.writeString(file, "/C=IT/ADMD=ICAO->mta1:102\n", StandardCharsets.UTF_8);
+            RelayRoutingService service = new RelayRoutingService("", file.toString(), 50, new NextHopHealth(3, 30_000));
+
+            Files.writeString(file, "/C=ITALY/ADMD=ICAO->mta2:102\n", StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            service.reloadIfChanged();
+            service.reloadIfChanged();
+
+            assertEquals("mta1:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void picksUpAChangedFileOnlyOnceItStopsChanging() throws Exception {
+        Path file = Files.createTempFile("amhs-routes", ".txt");
+        try {
+            Files.writeString(file, "/C=IT/ADMD=ICAO->mta1:102\n", StandardCharsets.UTF_8);
+            RelayRoutingService service = new RelayRoutingService("", file.toString(), 50, new NextHopHealth(3, 30_000));
+
+            Files.writeString(file, "/C=IT/ADMD=ICAO->mta2:102\n", StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            service.reloadIfChanged();
+            assertEquals("mta1:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV"));
+
+            service.reloadIfChanged();
+            assertEquals("mta2:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyOrMuchSmallerTable() throws Exception {
+        Path file = Files.createTempFile("amhs-routes", ".txt");
+        try {
+            Files.writeString(file, "/C=IT/ADMD=ICAO->mta1:102\n/C=FR/ADMD=ICAO->paris:102\n/C=DE/ADMD=ICAO->berlin:102\n", StandardCharsets.UTF_8);
+            RelayRoutingService service = new RelayRoutingService("", file.toString(), 50, new NextHopHealth(3, 30_000));
+
+            Files.writeString(file, "", StandardCharsets.UTF_8);
+            assertThrows(IllegalStateException.class, service::reload);
+            Files.writeString(file, "/C=IT/ADMD=ICAO->mta2:102\n", StandardCharsets.UTF_8);
+            assertThrows(IllegalStateException.class, service::reload);
+            assertEquals("mta1:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV"));
+            assertEquals("paris:102", nextHop(service, "/C=FR/ADMD=ICAO/PRMD=DGAC"));
+
+            Files.writeString(file, "/C=IT/ADMD=ICAO->mta2:102\n/C=FR/ADMD=ICAO->paris:102\n", StandardCharsets.UTF_8);
+            service.reload();
+            assertEquals("mta2:102", nextHop(service, "/C=IT/ADMD=ICAO/PRMD=ENAV"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void skipsHopWithOpenCircuitAndLeavesTheProbeToTheTransfer() throws Exception {
+        NextHopHealth health = new NextHopHealth(2, 50);
+        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO->mta1:102|mta2:102;/C=FR/ADMD=ICAO->mta1:102", "", 50, health);
+        String recipient = "/C=IT/ADMD=ICAO/PRMD=ENAV";
+
+        service.recordFailure("mta1:102");
+        assertEquals(NextHopHealth.CircuitState.CLOSED, health.status("mta1:102").state());
+        service.recordFailure("mta1:102");
+        assertEquals(NextHopHealth.CircuitState.OPEN, health.status("mta1:102").state());
+        assertEquals("mta2:102", nextHop(service, recipient));
+        assertFalse(service.tryAcquire("mta1:102"));
+
+        Thread.sleep(60);
+        for (int lookup = 0; lookup < 3; lookup++) {
+            assertEquals("mta1:102", nextHop(service, "/C=FR/ADMD=ICAO/PRMD=DGAC"));
+        }
+        assertEquals("mta2:102", nextHop(service, recipient));
+        assertTrue(service.tryAcquire("mta1:102"));
+        assertFalse(service.tryAcquire("mta1:102"));
+        assertEquals(NextHopHealth.CircuitState.HALF_OPEN, health.status("mta1:102").state());
+        service.recordSuccess("mta1:102", 1_000_000);
+        assertEquals(NextHopHealth.CircuitState.CLOSED, health.status("mta1:102").state());
+    }
+
+    @Test
+    void unmeasuredHopWithFailuresDoesNotOutrankAHealthyOne() {
+        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO->mta1:102|mta2:102", "", 50, new NextHopHealth(3, 30_000));
+        String recipient = "/C=IT/ADMD=ICAO/PRMD=ENAV";
+
+        service.recordSuccess("mta1:102", 40_000_000);
+        service.recordFailure("mta2:102");
+        assertEquals("mta1:102", nextHop(service, recipient));
+    }
+
+    @Test
+    void prefersClearlyFasterHop() {
+        RelayRoutingService service = new RelayRoutingService("/C=IT/ADMD=ICAO->mta1:102|mta2:102", "", 50, new NextHopHealth(3, 30_000));
+        String recipient = "/C=IT/ADMD=ICAO/PRMD=ENAV";
+
+        service.recordSuccess("mta1:102", 40_000_000);
+        service.recordSuccess("mta2:102", 38_000_000);
+        assertEquals("mta1:102", nextHop(service, recipient));
+
+        service.recordSuccess("mta2:102", 5_000_000);
+        service.recordSuccess("mta2:102", 5_000_000);
+        service.recordSuccess("mta2:102", 5_000_000);
+        assertEquals("mta2:102", nextHop(service, recipient));
+    }
+
+    private static String nextHop(RelayRoutingService service, String recipient) {
+        RelayRoutingService.AMHSMessageEnvelope envelope = new RelayRoutingService.AMHSMessageEnvelope(ORAddress.parse(recipient), null);
+        return service.findNextHop(envelope, 0).orElseThrow().endpoint();
+    }
 }
@@ -3,10 +3,12 @@ package it.amhs.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.lang.reflect.Method;
+import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 
 import it.amhs.service.protocol.acse.AcseAssociationProtocol;
+import it.amhs.service.protocol.acse.AcseModels;
 import it.amhs.service.protocol.p1.P1AssociationProtocol;
 import it.amhs.service.protocol.rfc1006.CotpConnectionTpdu;
 import it.amhs.service.protocol.rfc1006.Rfc1006OutboundP1Client;
@@ -15,7 +17,7 @@ class Rfc1006OutboundP1ClientTest {
 
     @Test
     void shouldBuildIcaoCompliantConnectionRequestTpdu() throws Exception {
-        Rfc1006OutboundP1Client client = new Rfc1006OutboundP1Client(new P1AssociationProtocol(), new AcseAssociationProtocol());
+        Rfc1006OutboundP1Client client = new Rfc1006OutboundP1Client(new P1AssociationProtocol(), new AcseAssociationProtocol(), true, 1, 60_000, "LOCAL-MTA", 10_000, 30_000);
         Method builder = Rfc1006OutboundP1Client.class.getDeclaredMethod("buildConnectionRequestTpdu");
         builder.setAccessible(true);
 
@@ -26,4 +28,18 @@ class Rfc1006OutboundP1ClientTest {
         assertEquals(0, parsed.tpduClass());
         assertEquals(16_384, parsed.negotiatedMaxUserData());
     }
+
+    @Test
+    void shouldBindAsTheLocalMtaWhateverTheMessage() throws Exception {
+        AcseAssociationProtocol acse = new AcseAssociationProtocol();
+        Rfc1006OutboundP1Client client = new Rfc1006OutboundP1Client(new P1AssociationProtocol(), acse, true, 1, 60_000, "LIRRMTA", 10_000, 30_000);
+        Method builder = Rfc1006OutboundP1Client.class.getDeclaredMethod("encodeAcseBind");
+        builder.setAccessible(true);
+
+        AcseModels.AARQApdu bind = (AcseModels.AARQApdu) acse.decode((byte[]) builder.invoke(client));
+
+        assertEquals(Optional.of("LIRRMTA"), bind.callingAeTitle());
+        assertEquals(Optional.empty(), bind.calledAeTitle());
+        client.shutdown();
+    }
 }
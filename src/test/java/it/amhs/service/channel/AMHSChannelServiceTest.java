@@ -7,6 +7,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -14,6 +15,7 @@ import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 
+import it.amhs.api.ChannelRequest;
 import it.amhs.domain.AMHSChannel;
 import it.amhs.repository.AMHSChannelRepository;
 
@@ -25,7 +27,7 @@ class AMHSChannelServiceTest {
         when(repository.findByNameIgnoreCase("ATFM")).thenReturn(Optional.empty());
         when(repository.save(any(AMHSChannel.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        AMHSChannelService service = new AMHSChannelService(repository, true);
+        AMHSChannelService service = new AMHSChannelService(repository, true, 5_000);
 
         AMHSChannel channel = service.requireEnabledChannel(null);
 
@@ -39,7 +41,7 @@ class AMHSChannelServiceTest {
         AMHSChannelRepository repository = mock(AMHSChannelRepository.class);
         when(repository.findByNameIgnoreCase("ATFM")).thenReturn(Optional.empty());
 
-        AMHSChannelService service = new AMHSChannelService(repository, false);
+        AMHSChannelService service = new AMHSChannelService(repository, false, 5_000);
 
         AMHSChannel channel = service.requireEnabledChannel("  ");
 
@@ -56,7 +58,7 @@ class AMHSChannelServiceTest {
         channel.setEnabled(true);
         when(repository.findByNameIgnoreCase("ATFM")).thenReturn(Optional.of(channel));
 
-        AMHSChannelService service = new AMHSChannelService(repository, true);
+        AMHSChannelService service = new AMHSChannelService(repository, true, 5_000);
 
         AMHSChannel resolved = service.requireEnabledChannel("atfm");
 
@@ -69,9 +71,59 @@ class AMHSChannelServiceTest {
         AMHSChannelRepository repository = mock(AMHSChannelRepository.class);
         when(repository.findByNameIgnoreCase(anyString())).thenReturn(Optional.empty());
 
-        AMHSChannelService service = new AMHSChannelService(repository, true);
+        AMHSChannelService service = new AMHSChannelService(repository, true, 5_000);
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> service.requireEnabledChannel("AFTN"));
         assertEquals("Unknown AMHS channel: AFTN", ex.getMessage());
     }
+
+    @Test
+    void requireEnabledChannelServesRepeatedLookupsFromCache() {
+        AMHSChannelRepository repository = mock(AMHSChannelRepository.class);
+        when(repository.findByNameIgnoreCase("ATFM")).thenReturn(Optional.of(channel("ATFM", true)));
+
+        AMHSChannelService service = new AMHSChannelService(repository, true, 60_000);
+
+        AMHSChannel first = service.requireEnabledChannel("ATFM");
+        first.setEnabled(false);
+        AMHSChannel second = service.requireEnabledChannel("atfm");
+
+        assertTrue(second.isEnabled());
+        verify(repository, times(1)).findByNameIgnoreCase("ATFM");
+    }
+
+    @Test
+    void createOrUpdateIsVisibleToNextLookup() {
+        AMHSChannelRepository repository = mock(AMHSChannelRepository.class);
+        when(repository.findByNameIgnoreCase("AFTN")).thenReturn(Optional.of(channel("AFTN", true)));
+        when(repository.save(any(AMHSChannel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        AMHSChannelService service = new AMHSChannelService(repository, true, 60_000);
+        service.requireEnabledChannel("AFTN");
+
+        service.createOrUpdate(new ChannelRequest("aftn", null, null, false));
+        when(repository.findByNameIgnoreCase("AFTN")).thenReturn(Optional.of(channel("AFTN", false)));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> service.requireEnabledChannel("AFTN"));
+        assertEquals("AMHS channel is disabled: AFTN", ex.getMessage());
+    }
+
+    @Test
+    void requireEnabledChannelQueriesEveryTimeWhenCacheDisabled() {
+        AMHSChannelRepository repository = mock(AMHSChannelRepository.class);
+        when(repository.findByNameIgnoreCase("ATFM")).thenReturn(Optional.of(channel("ATFM", true)));
+
+        AMHSChannelService service = new AMHSChannelService(repository, true, 0);
+        service.requireEnabledChannel("ATFM");
+        service.requireEnabledChannel("ATFM");
+
+        verify(repository, times(2)).findByNameIgnoreCase("ATFM");
+    }
+
+    private static AMHSChannel channel(String name, boolean enabled) {
+        AMHSChannel channel = new AMHSChannel();
+        channel.setName(name);
+        channel.setEnabled(enabled);
+        return channel;
+    }
 }
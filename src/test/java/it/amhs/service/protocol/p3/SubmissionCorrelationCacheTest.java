@@ -0,0 +1,55 @@
+package it.amhs.service.protocol.p3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class SubmissionCorrelationCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsedEntryBeyondCapacity() {
+        SubmissionCorrelationCache cache = new SubmissionCorrelationCache(2, Duration.ofDays(1));
+        cache.put("A", 1L);
+        cache.put("B", 2L);
+        assertEquals(1L, cache.get("A"));
+
+        cache.put("C", 3L);
+
+        assertEquals(1L, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3L, cache.get("C"));
+        assertEquals(new SubmissionCorrelationCache.Stats(2, 3, 1, 1), cache.stats());
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        SubmissionCorrelationCache cache = new SubmissionCorrelationCache(10, Duration.ofSeconds(5), now::get);
+        cache.put("A", 1L);
+        now.addAndGet(Duration.ofSeconds(4).toNanos());
+        cache.put("B", 2L);
+        assertEquals(1L, cache.get("A"));
+
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        assertNull(cache.get("A"));
+        assertEquals(2L, cache.get("B"));
+        assertEquals(1, cache.stats().size());
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void ignoresUnsavedMessagesAndRejectsInvalidBounds() {
+        SubmissionCorrelationCache cache = new SubmissionCorrelationCache(1, Duration.ofMinutes(1));
+        cache.put("A", null);
+
+        assertEquals(0, cache.stats().size());
+        assertThrows(IllegalArgumentException.class, () -> new SubmissionCorrelationCache(0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> new SubmissionCorrelationCache(1, Duration.ZERO));
+    }
+}
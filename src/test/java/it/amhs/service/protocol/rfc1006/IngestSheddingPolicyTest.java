@@ -0,0 +1,39 @@
+package it.amhs.service.protocol.rfc1006;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import it.amhs.domain.AMHSPriority;
+
+class IngestSheddingPolicyTest {
+
+    @Test
+    void shouldShedLowPriorityFirstAndNeverFlashOrImmediate() {
+        IngestSheddingPolicy policy = new IngestSheddingPolicy(8);
+
+        assertFalse(policy.shouldShed(AMHSPriority.KK, 7));
+        assertTrue(policy.shouldShed(AMHSPriority.KK, 8));
+        assertTrue(policy.shouldShed(AMHSPriority.GG, 8));
+        assertFalse(policy.shouldShed(AMHSPriority.FF, 15));
+        assertTrue(policy.shouldShed(AMHSPriority.FF, 16));
+        assertFalse(policy.shouldShed(AMHSPriority.DD, 10_000));
+        assertFalse(policy.shouldShed(AMHSPriority.SS, 10_000));
+    }
+
+    @Test
+    void shouldDeriveDefaultDepthFromWorkers() {
+        IngestSheddingPolicy policy = new IngestSheddingPolicy(IngestSheddingPolicy.defaultShedDepth(4));
+
+        assertFalse(policy.shouldShed(AMHSPriority.KK, 7));
+        assertTrue(policy.shouldShed(AMHSPriority.KK, 8));
+    }
+
+    @Test
+    void shouldNotShedWhenDisabled() {
+        assertFalse(new IngestSheddingPolicy(0).shouldShed(AMHSPriority.KK, 10_000));
+        assertThrows(IllegalArgumentException.class, () -> new IngestSheddingPolicy(-1));
+    }
+}
@@ -0,0 +1,224 @@
+package it.amhs.service.protocol.rfc1006;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class P1AssociationPoolTest {
+
+    private ServerSocket peer;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    @BeforeEach
+    void startEchoPeer() throws IOException {
+        peer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!peer.isClosed()) {
+                try {
+                    Socket socket = peer.accept();
+                    connections.incrementAndGet();
+                    Thread echo = new Thread(() -> echo(socket));
+                    echo.setDaemon(true);
+                    echo.start();
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void stopEchoPeer() throws IOException {
+        peer.close();
+    }
+
+    @Test
+    void pipelinedExchangesReceiveTheirOwnResponses() throws Exception {
+        P1Association association = connect();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int caller = 0; caller < 8; caller++) {
+                int id = caller;
+                results.add(callers.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        byte[] request = ("transfer-" + id + "-" + i).getBytes(StandardCharsets.US_ASCII);
+                        assertArrayEquals(request, association.exchange(request));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            callers.shutdownNow();
+            association.close();
+        }
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    void reusesAssociationsAndOpensNewOnesOnlyUpToTheLimit() throws Exception {
+        P1AssociationPool pool = new P1AssociationPool(2, 60_000);
+        AtomicInteger opened = new AtomicInteger();
+        P1AssociationPool.Connector connector = () -> {
+            opened.incrementAndGet();
+            return connect();
+        };
+
+        P1Association first = pool.acquire("mta1:102", connector);
+        P1Association second = pool.acquire("mta1:102", connector);
+        P1Association shared = pool.acquire("mta1:102", connector);
+        assertNotSame(first, second);
+        assertTrue(shared == first || shared == second);
+        assertEquals(2, opened.get());
+
+        pool.release("mta1:102", first);
+        pool.release("mta1:102", second);
+        pool.release("mta1:102", shared);
+        P1Association reused = pool.acquire("mta1:102", connector);
+        assertTrue(reused == first || reused == second);
+        assertEquals(2, opened.get());
+        pool.release("mta1:102", reused);
+    }
+
+    @Test
+    void dropsBrokenAndIdleAssociations() throws Exception {
+        P1AssociationPool pool = new P1AssociationPool(1, 1);
+        P1AssociationPool.Connector connector = this::connect;
+
+        P1Association broken = pool.acquire("mta1:102", connector);
+        broken.markBroken();
+        pool.release("mta1:102", broken);
+        assertEquals(0, pool.openAssociations("mta1:102"));
+
+        P1Association idle = pool.acquire("mta1:102", connector);
+        pool.release("mta1:102", idle);
+        assertSame(idle, pool.acquire("mta1:102", connector));
+        pool.release("mta1:102", idle);
+        Thread.sleep(5);
+        P1Association fresh = pool.acquire("mta1:102", connector);
+        assertNotSame(idle, fresh);
+        assertTrue(idle.isBroken());
+        assertEquals(1, pool.openAssociations("mta1:102"));
+        pool.release("mta1:102", fresh);
+    }
+
+    @Test
+    void opensOutsideThePoolLockSoOtherCallersCanShareMeanwhile() throws Exception {
+        P1AssociationPool pool = new P1AssociationPool(2, 60_000);
+        P1Association first = pool.acquire("mta1:102", this::connect);
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        ExecutorService slow = Executors.newSingleThreadExecutor();
+        try {
+            Future<P1Association> second = slow.submit(() -> pool.acquire("mta1:102", () -> {
+                opening.countDown();
+                proceed.await();
+                return connect();
+            }));
+            assertTrue(opening.await(5, TimeUnit.SECONDS));
+
+            P1Association shared = pool.acquire("mta1:102", this::connect);
+            assertSame(first, shared);
+            proceed.countDown();
+            assertNotSame(first, second.get(5, TimeUnit.SECONDS));
+            assertEquals(2, pool.openAssociations("mta1:102"));
+        } finally {
+            slow.shutdownNow();
+            pool.close();
+        }
+    }
+
+    @Test
+    void sweepsIdleAssociationsAndClosesEverythingOnShutdown() throws Exception {
+        P1AssociationPool pool = new P1AssociationPool(2, 1);
+        P1Association idle = pool.acquire("mta1:102", this::connect);
+        P1Association busy = pool.acquire("mta2:102", this::connect);
+        pool.release("mta1:102", idle);
+        Thread.sleep(5);
+
+        pool.evictIdle();
+        assertTrue(idle.isBroken());
+        assertEquals(0, pool.openAssociations("mta1:102"));
+        assertEquals(1, pool.openAssociations("mta2:102"));
+
+        P1Association replacement = pool.acquireFresh("mta2:102", this::connect);
+        assertNotSame(busy, replacement);
+        pool.close();
+        assertTrue(busy.isBroken());
+        assertTrue(replacement.isBroken());
+        assertThrows(IllegalStateException.class, () -> pool.acquire("mta2:102", this::connect));
+    }
+
+    @Test
+    void reportsARequestAsStaleOnlyWhenThePeerCannotHaveSeenIt() throws Exception {
+        try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            P1Association dropped = new P1Association(new Socket(InetAddress.getLoopbackAddress(), silent.getLocalPort()));
+            silent.accept().close();
+            assertThrows(P1Association.StaleAssociationException.class, () -> dropped.exchange(new byte[] {1}));
+            assertThrows(P1Association.StaleAssociationException.class, () -> dropped.exchange(new byte[] {2}));
+
+            Socket slow = new Socket(InetAddress.getLoopbackAddress(), silent.getLocalPort());
+            slow.setSoTimeout(50);
+            P1Association unanswered = new P1Association(slow);
+            try (Socket held = silent.accept()) {
+                IOException timeout = assertThrows(IOException.class, () -> unanswered.exchange(new byte[] {3}));
+                assertFalse(timeout instanceof P1Association.StaleAssociationException);
+                assertInstanceOf(SocketTimeoutException.class, timeout.getCause());
+                assertTrue(unanswered.isBroken());
+            }
+        }
+    }
+
+    private P1Association connect() throws IOException {
+        return new P1Association(new Socket(InetAddress.getLoopbackAddress(), peer.getLocalPort()));
+    }
+
+    private static void echo(Socket socket) {
+        try (socket; InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+            while (true) {
+                byte[] header = in.readNBytes(4);
+                if (header.length < 4) {
+                    return;
+                }
+                int length = ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+                byte[] body = in.readNBytes(length - 4);
+                out.write(header);
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // connection closed by the client
+        }
+    }
+}
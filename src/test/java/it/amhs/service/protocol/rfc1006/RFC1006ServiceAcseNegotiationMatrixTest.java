@@ -352,7 +352,7 @@ class RFC1006ServiceAcseNegotiationMatrixTest {
     }
 
     private static RFC1006Service service(boolean requireAuth, String expectedAuth) {
-        return new RFC1006Service(null, null, null, null, null, "LOCAL-MTA", "LOCAL", 30_000, requireAuth, expectedAuth);
+        return new RFC1006Service(null, null, null, null, null, "LOCAL-MTA", "LOCAL", 30_000, requireAuth, expectedAuth, 1, 0);
     }
 
     private static AcseModels.AARQApdu aarq(
@@ -0,0 +1,172 @@
+package it.amhs.service.protocol.rfc1006;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.amhs.asn1.BerWriter;
+import it.amhs.compliance.SecurityLabelPolicy;
+import it.amhs.domain.AMHSMessage;
+import it.amhs.domain.AMHSPriority;
+import it.amhs.domain.AMHSProfile;
+import it.amhs.service.protocol.acse.AcseAssociationProtocol;
+import it.amhs.service.protocol.acse.AcseModels;
+import it.amhs.service.protocol.acse.PresentationContext;
+import it.amhs.service.protocol.p1.MTAService;
+import it.amhs.service.protocol.p1.P1AssociationProtocol;
+import it.amhs.service.protocol.p1.P1BerMessageParser;
+
+/**
+ * Drives concurrent P1 sessions into the service while every store is held, so the ingest backlog
+ * passes the default shedding threshold of one worker.
+ */
+class RFC1006ServiceLoadSheddingTest {
+
+    private static final String RECIPIENT = "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX";
+
+    private final P1AssociationProtocol protocol = new P1AssociationProtocol();
+    private final AcseAssociationProtocol acse = new AcseAssociationProtocol();
+    private final CountDownLatch releaseStores = new CountDownLatch(1);
+    private final List<AMHSPriority> stored = new CopyOnWriteArrayList<>();
+    private final ExecutorService sessions = Executors.newCachedThreadPool();
+    private final List<Socket> clients = new ArrayList<>();
+    private ServerSocket listener;
+    private RFC1006Service service;
+
+    @BeforeEach
+    void startService() throws IOException {
+        MTAService mtaService = new MTAService(null, null, null, null, null, null, null, false) {
+            @Override
+            public AMHSMessage storeX400Message(
+                String from, String to, String body, String messageId, AMHSProfile profile, AMHSPriority priority,
+                String subject, String channelName, String certificateCn, String certificateOu, Date filingTime,
+                String senderOrAddress, String recipientOrAddress, String presentationAddress, Integer ipnRequest,
+                String deliveryReport, Integer timeoutDr, String mtsIdentifier, String transferContentTypeOid,
+                String transferTrace, String perRecipientFields
+            ) {
+                stored.add(priority);
+                try {
+                    releaseStores.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return new AMHSMessage();
+            }
+        };
+        service = new RFC1006Service(
+            null, mtaService, new P1BerMessageParser(new SecurityLabelPolicy()), protocol, acse,
+            "LOCAL-MTA", "LOCAL", 30_000, false, "", 1, -1
+        );
+        listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        releaseStores.countDown();
+        for (Socket client : clients) {
+            client.close();
+        }
+        listener.close();
+        sessions.shutdownNow();
+    }
+
+    @Test
+    void defersKkTransfersButStillStoresSsOnceWorkersAreSaturated() throws Exception {
+        Future<P1AssociationProtocol.TransferResultPdu> running = transferAsync(AMHSPriority.SS, "SS-1");
+        awaitStored(1);
+        Future<P1AssociationProtocol.TransferResultPdu> waiting = transferAsync(AMHSPriority.SS, "SS-2");
+        awaitBacklog(2);
+
+        P1AssociationProtocol.TransferResultPdu kk = transferAsync(AMHSPriority.KK, "KK-1").get(10, TimeUnit.SECONDS);
+        assertFalse(kk.accepted());
+        assertEquals(1, kk.recipientResults().get(0).status());
+
+        Future<P1AssociationProtocol.TransferResultPdu> flash = transferAsync(AMHSPriority.SS, "SS-3");
+        awaitBacklog(3);
+        releaseStores.countDown();
+
+        for (Future<P1AssociationProtocol.TransferResultPdu> result : List.of(running, waiting, flash)) {
+            P1AssociationProtocol.TransferResultPdu ss = result.get(10, TimeUnit.SECONDS);
+            assertTrue(ss.accepted());
+            assertEquals(0, ss.recipientResults().get(0).status());
+        }
+        assertEquals(List.of(AMHSPriority.SS, AMHSPriority.SS, AMHSPriority.SS), stored);
+    }
+
+    private Future<P1AssociationProtocol.TransferResultPdu> transferAsync(AMHSPriority priority, String messageId) throws IOException {
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+        clients.add(client);
+        Socket accepted = listener.accept();
+        sessions.submit(() -> service.handleClient(accepted));
+        return sessions.submit(() -> {
+            P1Association association = new P1Association(client);
+            association.send(new CotpConnectionTpdu(CotpConnectionTpdu.PDU_CR, 0, 1, 0, Optional.of(16_384), List.of()).serialize());
+            assertEquals(CotpConnectionTpdu.PDU_CC, association.read().type());
+            association.sendData(acse.encode(new AcseModels.AARQApdu(
+                RFC1006Service.ICAO_AMHS_P1_OID, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("assoc-info".getBytes(StandardCharsets.UTF_8)),
+                List.of(RFC1006Service.ICAO_AMHS_P1_OID),
+                List.of(new PresentationContext(1, RFC1006Service.ICAO_AMHS_P1_OID, List.of("2.1.1")))
+            )));
+            AcseModels.AAREApdu aare = assertInstanceOf(AcseModels.AAREApdu.class, acse.decode(association.read().payload()));
+            assertTrue(aare.accepted());
+            return assertInstanceOf(
+                P1AssociationProtocol.TransferResultPdu.class,
+                protocol.decode(association.exchange(transfer(priority, messageId)))
+            );
+        });
+    }
+
+    private static byte[] transfer(AMHSPriority priority, String messageId) {
+        BerWriter writer = new BerWriter(256);
+        writer.startConstructed(2, 1);
+        writer.startConstructed(0, 16);
+        writer.writeString(2, 0, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIMM/OU1=LIMMZQZX", StandardCharsets.US_ASCII);
+        writer.writeString(2, 1, RECIPIENT, StandardCharsets.US_ASCII);
+        writer.writeString(2, 2, "TEST " + messageId, StandardCharsets.UTF_8);
+        writer.writePrimitive(2, 4, new byte[] {(byte) priority.ordinal()});
+        writer.writeString(2, 6, messageId, StandardCharsets.US_ASCII);
+        return writer.end().end().toByteArray();
+    }
+
+    private void awaitStored(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stored.size() < count) {
+            assertTrue(System.nanoTime() < deadline, "Store not reached before timeout");
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitBacklog(int backlog) throws Exception {
+        Field executor = RFC1006Service.class.getDeclaredField("ingestExecutor");
+        executor.setAccessible(true);
+        StripedPriorityExecutor ingest = (StripedPriorityExecutor) executor.get(service);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ingest.backlog() < backlog) {
+            assertTrue(System.nanoTime() < deadline, "Ingest backlog not reached before timeout");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package it.amhs.service.protocol.rfc1006;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class StripedPriorityExecutorTest {
+
+    @Test
+    void shouldRunQueuedTasksOfOneStripeInPriorityOrder() throws Exception {
+        StripedPriorityExecutor executor = new StripedPriorityExecutor(4, "test-ingest-");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        executor.execute("PRMD=ENAV", new RankedTask(-1, () -> await(release)));
+        executor.execute("PRMD=ENAV", new RankedTask(4, () -> record(order, "KK", done)));
+        executor.execute("PRMD=ENAV", new RankedTask(3, () -> record(order, "GG", done)));
+        executor.execute("PRMD=ENAV", new RankedTask(0, () -> record(order, "SS", done)));
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("SS", "GG", "KK"), order);
+    }
+
+    @Test
+    void shouldProgressOtherStripesWhileOneIsBusy() throws Exception {
+        StripedPriorityExecutor executor = new StripedPriorityExecutor(2, "test-ingest-");
+        String busy = "PRMD=ENAV";
+        String other = findKeyOnOtherStripe(executor, busy);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+
+        executor.execute(busy, new RankedTask(0, () -> await(release)));
+        executor.execute(other, new RankedTask(4, otherDone::countDown));
+
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void shouldStripeByCanonicalRecipient() {
+        String slashForm = RFC1006Service.ingestStripeKey("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX");
+        assertEquals(slashForm, RFC1006Service.ingestStripeKey(" c=it;admd=icao;prmd=enav;o=lirr;ou1=lirrzqzx,/C=FR/PRMD=DSNA"));
+        assertNotEquals(slashForm, RFC1006Service.ingestStripeKey("/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIMM/OU1=LIMMZQZX"));
+        assertEquals("LIRRZQZX", RFC1006Service.ingestStripeKey("lirrzqzx"));
+        assertEquals("", RFC1006Service.ingestStripeKey(null));
+    }
+
+    @Test
+    void shouldSpreadRecipientsOfOneDomainAcrossStripes() {
+        StripedPriorityExecutor executor = new StripedPriorityExecutor(8, "test-ingest-");
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 64; i++) {
+            String location = "LI" + (char) ('A' + i % 26) + (char) ('A' + i / 26);
+            used.add(executor.stripeFor(RFC1006Service.ingestStripeKey(
+                "/C=IT/ADMD=ICAO/PRMD=ENAV/O=" + location + "/OU1=" + location + "ZQZX"
+            )));
+        }
+        executor.shutdown();
+
+        assertEquals(8, used.size());
+    }
+
+    private static String findKeyOnOtherStripe(StripedPriorityExecutor executor, String key) {
+        for (int i = 0; ; i++) {
+            String candidate = "PRMD=P" + i;
+            if (executor.stripeFor(candidate) != executor.stripeFor(key)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void record(List<String> order, String value, CountDownLatch done) {
+        order.add(value);
+        done.countDown();
+    }
+
+    private record RankedTask(int rank, Runnable body) implements Runnable, Comparable<RankedTask> {
+
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        @Override
+        public int compareTo(RankedTask other) {
+            return Integer.compare(rank, other.rank);
+        }
+    }
+}
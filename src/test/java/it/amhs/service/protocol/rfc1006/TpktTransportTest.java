@@ -0,0 +1,104 @@
+package it.amhs.service.protocol.rfc1006;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+class TpktTransportTest {
+
+    private static final HexFormat HEX = HexFormat.ofDelimiter(" ");
+
+    @Test
+    void shouldSegmentPerNegotiatedTpduSizeInOneWriteAndReassemble() throws Exception {
+        RecordingOutputStream wire = new RecordingOutputStream();
+        TpktTransport sender = new TpktTransport(new ByteArrayInputStream(new byte[0]), TpktTransport.bufferedOutput(wire), false);
+        sender.negotiateTpduSize(128);
+        byte[] payload = new byte[300];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        sender.sendData(payload);
+
+        assertEquals(1, wire.writes);
+        byte[] frames = wire.toByteArray();
+        assertEquals(300 + 3 * 7, frames.length);
+        assertArrayEquals(HEX.parseHex("03 00 00 84 02 F0 00"), Arrays.copyOfRange(frames, 0, 7));
+
+        TpktTransport receiver = new TpktTransport(new ByteArrayInputStream(frames), OutputStream.nullOutputStream(), false);
+        TsduReassemblyBuffer tsdu = new TsduReassemblyBuffer(16, 1024);
+        int segments = 0;
+        TpktTransport.Frame frame;
+        do {
+            frame = receiver.readFrame();
+            assertEquals(TpktTransport.PDU_DT, frame.type());
+            assertTrue(frame.userDataLength() <= 125);
+            receiver.readUserData(tsdu);
+            segments++;
+        } while (!frame.endOfTsdu());
+
+        assertEquals(3, segments);
+        assertArrayEquals(payload, tsdu.toByteArray());
+        assertNull(receiver.readFrame());
+    }
+
+    @Test
+    void shouldSendEmptyTsduAndControlTpdusAsSingleFrames() throws Exception {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        TpktTransport transport = new TpktTransport(new ByteArrayInputStream(new byte[0]), wire, false);
+
+        transport.sendData(new byte[0]);
+        transport.sendTpdu(new byte[] {0x06, TpktTransport.PDU_DC, 0x00, 0x00, 0x00, 0x00, 0x00});
+
+        assertArrayEquals(HEX.parseHex("03 00 00 07 02 F0 80 03 00 00 0B 06 C0 00 00 00 00 00"), wire.toByteArray());
+    }
+
+    @Test
+    void shouldReadControlTpdusWholeAndLegacyFramesOnlyWhenEnabled() throws Exception {
+        byte[] input = HEX.parseHex("03 00 00 0B 06 E0 00 00 00 01 00 00 03 41 42 43");
+        TpktTransport legacy = new TpktTransport(new ByteArrayInputStream(input), OutputStream.nullOutputStream(), true);
+
+        TpktTransport.Frame connect = legacy.readFrame();
+        assertEquals(TpktTransport.PDU_CR, connect.type());
+        assertArrayEquals(HEX.parseHex("06 E0 00 00 00 01 00"), connect.tpdu());
+
+        TpktTransport.Frame raw = legacy.readFrame();
+        assertEquals(TpktTransport.PDU_DT, raw.type());
+        assertTrue(raw.endOfTsdu());
+        assertThrows(IllegalStateException.class, legacy::readFrame);
+        assertArrayEquals(HEX.parseHex("41 42 43"), legacy.readUserData());
+
+        TpktTransport strict = new TpktTransport(new ByteArrayInputStream(HEX.parseHex("00 03 41 42 43")), OutputStream.nullOutputStream(), false);
+        assertThrows(IllegalArgumentException.class, strict::readFrame);
+
+        TpktTransport shortFrame = new TpktTransport(new ByteArrayInputStream(HEX.parseHex("03 00 00 05 00")), OutputStream.nullOutputStream(), false);
+        IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class, shortFrame::readFrame);
+        assertEquals("Invalid TPKT frame length: 5", invalid.getMessage());
+    }
+
+    private static final class RecordingOutputStream extends ByteArrayOutputStream {
+        private int writes;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            writes++;
+            super.write(b);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package it.amhs.service.protocol.rfc1006;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class TsduReassemblyBufferTest {
+
+    @Test
+    void shouldReassembleSegmentsIntoReusedArrayAndSkipBom() throws Exception {
+        TsduReassemblyBuffer tsdu = new TsduReassemblyBuffer(8, 64);
+        byte[] initial = tsdu.array();
+
+        tsdu.readFrom(new ByteArrayInputStream(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 0x60, 0x01}), 5);
+        tsdu.readFrom(new ByteArrayInputStream(new byte[] {0x02}), 1);
+
+        assertSame(initial, tsdu.array());
+        assertEquals(3, tsdu.offset());
+        assertEquals(3, tsdu.length());
+        assertEquals(0x60, tsdu.firstOctet());
+        assertArrayEquals(new byte[] {0x60, 0x01, 0x02}, tsdu.toByteArray());
+
+        tsdu.reset();
+        assertEquals(0, tsdu.length());
+        assertEquals(-1, tsdu.firstOctet());
+        assertSame(initial, tsdu.array());
+    }
+
+    @Test
+    void shouldMatchTrimmedTextPrefixWithoutDecoding() throws Exception {
+        TsduReassemblyBuffer tsdu = new TsduReassemblyBuffer(8, 64);
+        byte[] text = "\r\n  RETRIEVE id=1".getBytes(StandardCharsets.UTF_8);
+        tsdu.readFrom(new ByteArrayInputStream(text), text.length);
+
+        assertTrue(tsdu.startsWithTrimmed("RETRIEVE"));
+        assertFalse(tsdu.startsWithTrimmed("RETRIEVED"));
+        assertEquals("RETRIEVE id=1", tsdu.decodeUtf8().trim());
+    }
+
+    @Test
+    void shouldDropOversizedArrayOnResetAndFailOnTruncatedInput() throws Exception {
+        TsduReassemblyBuffer tsdu = new TsduReassemblyBuffer(8, 16);
+        tsdu.readFrom(new ByteArrayInputStream(new byte[32]), 32);
+        assertEquals(32, tsdu.length());
+
+        tsdu.reset();
+        assertEquals(8, tsdu.array().length);
+
+        assertThrows(EOFException.class, () -> tsdu.readFrom(new ByteArrayInputStream(new byte[2]), 3));
+    }
+}
@@ -0,0 +1,104 @@
+package it.amhs.service.relay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class RelayLanesTest {
+
+    @Test
+    void fullLaneRefusesWorkWithoutBlockingOtherLanes() throws Exception {
+        RelayLanes lanes = new RelayLanes(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherLaneRan = new CountDownLatch(1);
+        Runnable stalled = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            assertTrue(lanes.submit("mta1:102", 1L, stalled));
+            assertTrue(lanes.submit("mta1:102", 2L, stalled));
+            assertFalse(lanes.submit("mta1:102", 3L, stalled));
+            assertEquals(2, lanes.backlog("mta1:102"));
+            assertTrue(lanes.saturated("mta1:102"));
+            assertEquals(Set.of(1L, 2L), lanes.inFlight());
+
+            assertTrue(lanes.submit("mta2:102", 4L, otherLaneRan::countDown));
+            assertTrue(otherLaneRan.await(2, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void runsUpToConcurrencyTransfersPerLane() throws Exception {
+        RelayLanes lanes = new RelayLanes(3, 1);
+        CountDownLatch allRunning = new CountDownLatch(3);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(lanes.submit("mta1:102", i, () -> {
+                    allRunning.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            assertTrue(allRunning.await(2, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void queuesAMessageOnceAndForgetsItWhenItsTransferEnds() throws Exception {
+        RelayLanes lanes = new RelayLanes(1, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Runnable transfer = () -> {
+            runs.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertTrue(lanes.submit("mta1:102", 7L, transfer));
+        assertTrue(lanes.submit("mta1:102", 7L, transfer));
+        assertEquals(Set.of(7L), lanes.inFlight());
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!lanes.inFlight().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(lanes.inFlight().isEmpty());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void boundsResidenceByRoundsOfTransfers() {
+        assertEquals(9 * 90_000L, new RelayLanes(2, 16).maxResidenceMillis(90_000));
+        assertEquals(2 * 1_000L, new RelayLanes(3, 3).maxResidenceMillis(1_000));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RelayLanes(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RelayLanes(1, 0));
+    }
+}
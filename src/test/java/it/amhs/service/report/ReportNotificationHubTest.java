@@ -0,0 +1,65 @@
+package it.amhs.service.report;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import it.amhs.domain.AMHSDeliveryReport;
+import it.amhs.domain.AMHSMessage;
+
+class ReportNotificationHubTest {
+
+    @Test
+    void wakesWaitersForTheSavedMessageAndRecipient() throws Exception {
+        ReportNotificationHub hub = new ReportNotificationHub();
+        try (ReportNotificationHub.Waiter byMessage = hub.awaitMessage(42L);
+             ReportNotificationHub.Waiter byRecipient = hub.awaitRecipient("/c=it/admd=icao/prmd=enav/o=lirr/ou1=lirrzqzx");
+             ReportNotificationHub.Waiter unrelated = hub.awaitMessage(7L)) {
+            CompletableFuture<Boolean> woken = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return byMessage.await(5_000);
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+
+            hub.reportSaved(report(42L, "/C=IT/ADMD=ICAO/PRMD=ENAV/O=LIRR/OU1=LIRRZQZX"));
+
+            assertTrue(woken.get(5, TimeUnit.SECONDS));
+            assertTrue(byRecipient.await(1));
+            assertFalse(unrelated.await(1));
+        }
+    }
+
+    @Test
+    void closingTheLastWaiterReleasesItsRegistration() throws Exception {
+        ReportNotificationHub hub = new ReportNotificationHub();
+        ReportNotificationHub.Waiter first = hub.awaitMessage(1L);
+        ReportNotificationHub.Waiter second = hub.awaitMessage(1L);
+        assertEquals(1, hub.waiting());
+
+        first.close();
+        assertEquals(1, hub.waiting());
+        second.close();
+        assertEquals(0, hub.waiting());
+
+        hub.reportSaved(report(1L, "LIRRZQZX"));
+        try (ReportNotificationHub.Waiter later = hub.awaitMessage(1L)) {
+            assertFalse(later.await(1));
+        }
+    }
+
+    private static AMHSDeliveryReport report(Long messageId, String recipient) {
+        AMHSMessage message = new AMHSMessage();
+        message.setId(messageId);
+        AMHSDeliveryReport report = new AMHSDeliveryReport();
+        report.setMessage(message);
+        report.setRecipient(recipient);
+        return report;
+    }
+}